@@ -0,0 +1,106 @@
+package edu.ucsb.cs156.example.benchmarks;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.AdminRoleResolver;
+
+/**
+ * Cost of deciding whether a user logging in is an admin, with many logins at once
+ * (e.g. the start of a lab section).
+ * 
+ * legacyGetAdmin is what SecurityConfig.getAdmin used to do: List.contains over
+ * app.admin.emails, then findByEmail.  resolverIsAdmin uses AdminRoleResolver.
+ * The repository is a stand-in whose findByEmail parks the thread for dbLatencyMicros
+ * to model a database round trip, and counts how often it is called.
+ * 
+ * Run with: BENCHMARK=true mvn test-compile exec:exec -Djmh.args="AdminRoleResolverBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(32)
+public class AdminRoleResolverBenchmark {
+
+  @Param({ "10", "1000" })
+  int configuredAdmins;
+
+  @Param({ "5000" })
+  int students;
+
+  @Param({ "200" })
+  long dbLatencyMicros;
+
+  private List<String> adminEmails;
+  private String[] loginEmails;
+  private AdminRoleResolver resolver;
+  private UserRepository userRepository;
+
+  @Setup
+  public void setup() {
+    adminEmails = new ArrayList<>();
+    for (int i = 0; i < configuredAdmins; i++) {
+      adminEmails.add("admin" + i + "@ucsb.edu");
+    }
+    loginEmails = new String[students];
+    for (int i = 0; i < students; i++) {
+      loginEmails[i] = "student" + i + "@ucsb.edu";
+    }
+    long latencyNanos = TimeUnit.MICROSECONDS.toNanos(dbLatencyMicros);
+    userRepository = (UserRepository) Proxy.newProxyInstance(
+        UserRepository.class.getClassLoader(),
+        new Class<?>[] { UserRepository.class },
+        (proxy, method, args) -> {
+          if (!method.getName().equals("findByEmail")) {
+            throw new UnsupportedOperationException(method.getName());
+          }
+          LockSupport.parkNanos(latencyNanos);
+          String email = (String) args[0];
+          return Optional.of(User.builder().email(email).admin(email.startsWith("student1")).build());
+        });
+    resolver = new AdminRoleResolver(adminEmails, userRepository, Duration.ofSeconds(60), 10_000);
+  }
+
+  private String nextLogin() {
+    return loginEmails[ThreadLocalRandom.current().nextInt(loginEmails.length)];
+  }
+
+  @Benchmark
+  public boolean legacyGetAdmin() {
+    String email = nextLogin();
+    if (adminEmails.contains(email)) {
+      return true;
+    }
+    Optional<User> u = userRepository.findByEmail(email);
+    return u.isPresent() && u.get().getAdmin();
+  }
+
+  @Benchmark
+  public boolean resolverIsAdmin() {
+    return resolver.isAdmin(nextLogin());
+  }
+}
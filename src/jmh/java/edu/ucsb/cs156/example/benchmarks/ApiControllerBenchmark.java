@@ -0,0 +1,72 @@
+package edu.ucsb.cs156.example.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.ucsb.cs156.example.controllers.ApiController;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+
+/**
+ * Cost of the helpers every controller uses on its error and delete paths: building an
+ * EntityNotFoundException (message formatting plus the stack trace), turning it into the 404 body,
+ * and building the "... deleted" message returned by the delete endpoints.
+ *
+ * Run with: BENCHMARK=true mvn test-compile exec:exec -Djmh.args="ApiControllerBenchmark"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ApiControllerBenchmark {
+
+  /**
+   * Gives the benchmark access to the protected helpers of ApiController.
+   */
+  static class Controller extends ApiController {
+    Object deleted(long id) {
+      return genericMessage("UCSBDate with id %s deleted".formatted(id));
+    }
+
+    Object message(String message) {
+      return genericMessage(message);
+    }
+  }
+
+  private final Controller controller = new Controller();
+
+  // not final, so that the JIT can't constant-fold the arguments
+  private long id = 12345L;
+  private String message = "UCSBDate with id 12345 deleted";
+
+  @Benchmark
+  public EntityNotFoundException entityNotFoundException() {
+    return new EntityNotFoundException(UCSBDate.class, id);
+  }
+
+  @Benchmark
+  public Object entityNotFoundResponse() {
+    return controller.handleGenericException(new EntityNotFoundException(UCSBDate.class, id));
+  }
+
+  @Benchmark
+  public Object genericMessage() {
+    return controller.message(message);
+  }
+
+  @Benchmark
+  public Object genericMessageForDelete() {
+    return controller.deleted(id);
+  }
+}
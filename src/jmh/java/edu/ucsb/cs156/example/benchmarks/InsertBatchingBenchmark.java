@@ -0,0 +1,118 @@
+package edu.ucsb.cs156.example.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.ucsb.cs156.example.entities.Restaurant;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+
+/**
+ * Cost of inserting rows through JPA in one transaction, with ids from an identity column
+ * (what every entity used to do) vs from a sequence in blocks of 50 with JDBC batching
+ * (what Restaurant and the other entities do now).
+ *
+ * identity inserts one row per statement, since Hibernate needs the generated id back
+ * before it can go on.  sequence takes one nextval per 50 rows and sends the inserts 50
+ * to a batch.  Hibernate is set up with the same id and batching settings as
+ * application.properties.  The default database is H2 in memory, where a round trip is
+ * almost free, so the gap here is the smallest it will be; pass a Postgres URL to see it
+ * with a real network in between, e.g.
+ * -p url=jdbc:postgresql://localhost/bench?user=bench&password=bench&reWriteBatchedInserts=true
+ *
+ * Divide by rows for the cost per row.
+ *
+ * Run with: BENCHMARK=true mvn test-compile exec:exec -Djmh.args="InsertBatchingBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InsertBatchingBenchmark {
+
+  @Param({ "identity", "sequence" })
+  public String ids;
+
+  @Param({ "10", "1000" })
+  public int rows;
+
+  @Param({ "jdbc:h2:mem:inserts;DB_CLOSE_DELAY=-1" })
+  public String url;
+
+  /** Restaurant as it was before the sequences were added. */
+  @Entity(name = "identity_restaurants")
+  public static class IdentityRestaurant {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    public long id;
+
+    public String name;
+    public String description;
+  }
+
+  private SessionFactory sessionFactory;
+
+  @Setup
+  public void setup() {
+    sessionFactory = new Configuration()
+        .addAnnotatedClass(Restaurant.class)
+        .addAnnotatedClass(IdentityRestaurant.class)
+        .setProperty(AvailableSettings.URL, url)
+        .setProperty(AvailableSettings.HBM2DDL_AUTO, "create-drop")
+        .setProperty(AvailableSettings.PREFERRED_POOLED_OPTIMIZER, "pooled-lo")
+        .setProperty(AvailableSettings.STATEMENT_BATCH_SIZE, "50")
+        .setProperty(AvailableSettings.ORDER_INSERTS, "true")
+        .setProperty(AvailableSettings.ORDER_UPDATES, "true")
+        .buildSessionFactory();
+  }
+
+  @TearDown(Level.Iteration)
+  public void deleteRows() {
+    sessionFactory.inTransaction(session -> {
+      session.createMutationQuery("delete from restaurants").executeUpdate();
+      session.createMutationQuery("delete from identity_restaurants").executeUpdate();
+    });
+  }
+
+  @TearDown
+  public void tearDown() {
+    sessionFactory.close();
+  }
+
+  @Benchmark
+  public void insert() {
+    boolean identity = ids.equals("identity");
+    sessionFactory.inTransaction(session -> {
+      for (int i = 0; i < rows; i++) {
+        if (identity) {
+          IdentityRestaurant restaurant = new IdentityRestaurant();
+          restaurant.name = "Restaurant " + i;
+          restaurant.description = "Tacos";
+          session.persist(restaurant);
+        } else {
+          session.persist(Restaurant.builder().name("Restaurant " + i).description("Tacos").build());
+        }
+      }
+    });
+  }
+}
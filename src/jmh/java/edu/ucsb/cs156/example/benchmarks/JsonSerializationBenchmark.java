@@ -0,0 +1,137 @@
+package edu.ucsb.cs156.example.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+
+import edu.ucsb.cs156.example.entities.MenuItemReviews;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.entities.User;
+
+/**
+ * Cost of turning the rows behind an /all endpoint into JSON, for the three entities with the
+ * most (UCSBDate, MenuItemReviews) and the widest (User) rows, at 10, 1k and 100k rows.
+ *
+ * The ObjectMapper is built with Jackson2ObjectMapperBuilder, as Spring Boot does, so dates are
+ * written as ISO strings.  The JSON goes to a stream that discards it, so the numbers are the cost
+ * of serialization, not of the network.  Divide by rows for the cost per row.
+ *
+ * Run with: BENCHMARK=true mvn test-compile exec:exec -Djmh.args="JsonSerializationBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+  @Param({ "UCSBDate", "MenuItemReviews", "User" })
+  public String entity;
+
+  @Param({ "10", "1000", "100000" })
+  public int rows;
+
+  private List<?> list;
+  private ObjectWriter writer;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(42);
+    list = switch (entity) {
+      case "UCSBDate" -> rows(i -> ucsbDate(i, random));
+      case "MenuItemReviews" -> rows(i -> menuItemReview(i, random));
+      case "User" -> rows(i -> user(i, random));
+      default -> throw new IllegalArgumentException(entity);
+    };
+    ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+    Class<?> type = list.get(0).getClass();
+    writer = mapper.writerFor(TypeFactory.defaultInstance().constructCollectionType(List.class, type));
+  }
+
+  @Benchmark
+  public void serialize() throws IOException {
+    writer.writeValue(OutputStream.nullOutputStream(), list);
+  }
+
+  private <T> List<T> rows(IntFunction<T> row) {
+    List<T> result = new ArrayList<>(rows);
+    for (int i = 1; i <= rows; i++) {
+      result.add(row.apply(i));
+    }
+    return result;
+  }
+
+  private static final String[] QUARTERS = { "1", "2", "3", "4" };
+  private static final String[] EVENTS = { "First day of classes", "Last day of classes", "Finals week",
+      "Registration pass 1", "Registration pass 2", "Drop deadline" };
+  private static final String[] COMMENTS = { "Great!", "Too salty.",
+      "The pasta was overcooked but the sauce made up for it; would order again on a busy night.",
+      "Cold by the time I sat down.", "" };
+  private static final String[] NAMES = { "Chris", "Lauren", "Pat", "Sam", "Alex", "Jordan" };
+
+  private static LocalDateTime dateTime(Random random) {
+    return LocalDateTime.of(2020 + random.nextInt(6), 1 + random.nextInt(12), 1 + random.nextInt(28),
+        random.nextInt(24), random.nextInt(60));
+  }
+
+  private static UCSBDate ucsbDate(int i, Random random) {
+    return UCSBDate.builder()
+        .id(i)
+        .quarterYYYYQ("20%02d%s".formatted(20 + random.nextInt(6), QUARTERS[random.nextInt(4)]))
+        .name(EVENTS[random.nextInt(EVENTS.length)])
+        .localDateTime(dateTime(random))
+        .build();
+  }
+
+  private static MenuItemReviews menuItemReview(int i, Random random) {
+    return MenuItemReviews.builder()
+        .id(i)
+        .itemId(1 + random.nextInt(500))
+        .reviewerEmail("student%d@ucsb.edu".formatted(random.nextInt(20000)))
+        .stars(1 + random.nextInt(5))
+        .dateReviewed(dateTime(random))
+        .comments(COMMENTS[random.nextInt(COMMENTS.length)])
+        .build();
+  }
+
+  private static User user(int i, Random random) {
+    String given = NAMES[random.nextInt(NAMES.length)];
+    String family = "Gaucho" + random.nextInt(1000);
+    return User.builder()
+        .id(i)
+        .email("%s.%s%d@ucsb.edu".formatted(given, family, i).toLowerCase())
+        .googleSub(Long.toString(100000000000000000L + random.nextLong(900000000000000000L)))
+        .pictureUrl("https://lh3.googleusercontent.com/a/ACg8ocK%016x=s96-c".formatted(random.nextLong()))
+        .fullName(given + " " + family)
+        .givenName(given)
+        .familyName(family)
+        .emailVerified(true)
+        .locale("en")
+        .hostedDomain("ucsb.edu")
+        .admin(random.nextInt(100) == 0)
+        .build();
+  }
+}
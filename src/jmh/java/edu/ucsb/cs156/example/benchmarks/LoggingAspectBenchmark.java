@@ -0,0 +1,198 @@
+package edu.ucsb.cs156.example.benchmarks;
+
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.Signature;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.aspectj.lang.reflect.SourceLocation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.OutputStreamAppender;
+import edu.ucsb.cs156.example.aop.LoggingAspect;
+import edu.ucsb.cs156.example.controllers.UCSBDatesController;
+import edu.ucsb.cs156.example.logging.BoundedAsyncAppender;
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Per-request cost of LoggingAspect, before and after it was reworked, with 8 request threads.
+ * 
+ * legacy is a copy of the old advice (String.formatted, ArrayList stoplist, synchronous appender).
+ * current is LoggingAspect itself, writing through a BoundedAsyncAppender, at several sample rates.
+ * Both write the same pattern to a stream that discards its output, so the numbers are the cost of
+ * the advice and the logging path, not of the terminal.
+ * 
+ * Run with: BENCHMARK=true mvn test-compile exec:exec -Djmh.args="LoggingAspectBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class LoggingAspectBenchmark {
+
+  /**
+   * The advice as it was before it was reworked.
+   */
+  static class LegacyLoggingAspect {
+    private static final Logger log = LoggerFactory.getLogger(LegacyLoggingAspect.class);
+
+    private ArrayList<String> stoplist = new ArrayList<String>(Arrays.asList(
+        "edu.ucsb.cs156.example.controllers.FrontendProxyController"));
+
+    public void logControllers(JoinPoint joinPoint) {
+      getCurrentHttpRequest().ifPresent(
+          request -> {
+            String declaringTypeName = joinPoint.getSignature().getDeclaringTypeName();
+            if (!stoplist.contains(declaringTypeName)) {
+              log.info("===== %s %s handled by %s in %s".formatted(request.getMethod(), request.getRequestURI(),
+                  joinPoint.getSignature().getName(), declaringTypeName));
+            }
+          });
+    }
+
+    private static Optional<HttpServletRequest> getCurrentHttpRequest() {
+      return Optional.ofNullable(RequestContextHolder.getRequestAttributes())
+          .filter(ServletRequestAttributes.class::isInstance)
+          .map(ServletRequestAttributes.class::cast)
+          .map(ServletRequestAttributes::getRequest);
+    }
+  }
+
+  /**
+   * The join point of a call to UCSBDatesController.allUCSBDates.
+   */
+  static class StubJoinPoint implements JoinPoint, MethodSignature {
+    private final Method method;
+
+    StubJoinPoint(Method method) {
+      this.method = method;
+    }
+
+    // JoinPoint
+    public String toShortString() { return method.getName(); }
+    public String toLongString() { return method.toString(); }
+    public Object getThis() { return null; }
+    public Object getTarget() { return null; }
+    public Object[] getArgs() { return new Object[0]; }
+    public Signature getSignature() { return this; }
+    public SourceLocation getSourceLocation() { return null; }
+    public String getKind() { return JoinPoint.METHOD_EXECUTION; }
+    public StaticPart getStaticPart() { return null; }
+
+    // MethodSignature
+    public Class getReturnType() { return method.getReturnType(); }
+    public Method getMethod() { return method; }
+    public Class[] getParameterTypes() { return method.getParameterTypes(); }
+    public String[] getParameterNames() { return new String[0]; }
+    public Class[] getExceptionTypes() { return method.getExceptionTypes(); }
+    public String getName() { return method.getName(); }
+    public int getModifiers() { return method.getModifiers(); }
+    public Class getDeclaringType() { return method.getDeclaringClass(); }
+    public String getDeclaringTypeName() { return method.getDeclaringClass().getName(); }
+  }
+
+  /**
+   * Each benchmark thread is handling a request.
+   */
+  @State(Scope.Thread)
+  public static class Request {
+    @Setup
+    public void setup() {
+      RequestContextHolder.setRequestAttributes(
+          new ServletRequestAttributes(new MockHttpServletRequest("GET", "/api/ucsbdates/all")));
+    }
+  }
+
+  @Param({ "1.0", "0.1" })
+  double sampleRate;
+
+  private LegacyLoggingAspect legacy;
+  private LoggingAspect current;
+  private JoinPoint joinPoint;
+  private BoundedAsyncAppender async;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+    context.reset();
+    context.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME).setLevel(ch.qos.logback.classic.Level.WARN);
+
+    ch.qos.logback.classic.Logger legacyLogger = context.getLogger(LegacyLoggingAspect.class);
+    legacyLogger.setLevel(ch.qos.logback.classic.Level.INFO);
+    legacyLogger.addAppender(discardingAppender(context, "LEGACY_SINK"));
+
+    async = new BoundedAsyncAppender();
+    async.setName("REQUEST_LOG");
+    async.setContext(context);
+    async.addAppender(discardingAppender(context, "SINK"));
+    async.start();
+    ch.qos.logback.classic.Logger currentLogger = context.getLogger(LoggingAspect.class);
+    currentLogger.setLevel(ch.qos.logback.classic.Level.INFO);
+    currentLogger.setAdditive(false);
+    currentLogger.addAppender(async);
+
+    legacy = new LegacyLoggingAspect();
+    current = new LoggingAspect(List.of("edu.ucsb.cs156.example.controllers.FrontendProxyController"), sampleRate);
+    joinPoint = new StubJoinPoint(UCSBDatesController.class.getMethod("allUCSBDates"));
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() {
+    async.stop();
+    System.out.println("\nBoundedAsyncAppender dropped " + async.getDroppedCount() + " events");
+  }
+
+  private static OutputStreamAppender<ILoggingEvent> discardingAppender(LoggerContext context, String name) {
+    PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+    encoder.setContext(context);
+    encoder.setPattern("%d{yyyy-MM-dd'T'HH:mm:ss.SSSXXX} %5p --- [%t] %-40.40logger{39} : %m%n");
+    encoder.start();
+    OutputStreamAppender<ILoggingEvent> appender = new OutputStreamAppender<>();
+    appender.setName(name);
+    appender.setContext(context);
+    appender.setEncoder(encoder);
+    appender.setOutputStream(OutputStream.nullOutputStream());
+    appender.start();
+    return appender;
+  }
+
+  @Benchmark
+  public void legacy(Request request) {
+    legacy.logControllers(joinPoint);
+  }
+
+  @Benchmark
+  public void current(Request request) {
+    current.logControllers(joinPoint);
+  }
+}
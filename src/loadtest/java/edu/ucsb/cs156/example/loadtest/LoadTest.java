@@ -0,0 +1,398 @@
+package edu.ucsb.cs156.example.loadtest;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.temporaryRedirect;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathMatching;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.tomakehurst.wiremock.client.WireMock;
+
+import edu.ucsb.cs156.example.ExampleApplication;
+
+/**
+ * Load test for the whole app, without Google.
+ *
+ * Starts the app in this JVM with the wiremock and integration profiles (so an in-memory H2
+ * database, and the WireMock OAuth server that WiremockServiceImpl starts on port 8090), teaches
+ * that WireMock server to log in any user name, logs in the synthetic users through the real
+ * OAuth flow, and then has virtual threads replay a mix of list/get/create/update/delete calls
+ * against all nine /api resources.  Prints throughput and p50/p99/p99.9 latency per operation.
+ *
+ * Run with: LOADTEST=true mvn test-compile exec:exec -Dloadtest.args="--users=200 --duration=60s"
+ * See docs/load-testing.md for all of the options.
+ */
+public class LoadTest {
+
+  enum Op {
+    LIST, GET, CREATE, UPDATE, DELETE
+  }
+
+  /**
+   * Command line options.  Any --name=value that is not one of these is passed to Spring.
+   */
+  record Options(int users, int admins, int concurrency, Duration warmup, Duration duration, int seedRows,
+      Map<Op, Integer> mix, Map<String, String> springProperties) {
+
+    static Options parse(String[] args) {
+      Map<String, String> values = new LinkedHashMap<>(Map.of(
+          "users", "50",
+          "concurrency", "",
+          "admins", "",
+          "warmup", "10s",
+          "duration", "30s",
+          "seed-rows", "20",
+          "mix", "list:20,get:50,create:12,update:12,delete:6"));
+      Map<String, String> springProperties = new LinkedHashMap<>();
+      for (String arg : args) {
+        String[] nameAndValue = arg.replaceFirst("^--", "").split("=", 2);
+        String value = nameAndValue.length == 2 ? nameAndValue[1] : "true";
+        (values.containsKey(nameAndValue[0]) ? values : springProperties).put(nameAndValue[0], value);
+      }
+      int users = Integer.parseInt(values.get("users"));
+      Map<Op, Integer> mix = new EnumMap<>(Op.class);
+      for (String weight : values.get("mix").split(",")) {
+        String[] opAndWeight = weight.split(":");
+        mix.put(Op.valueOf(opAndWeight[0].trim().toUpperCase()), Integer.parseInt(opAndWeight[1].trim()));
+      }
+      return new Options(users,
+          values.get("admins").isEmpty() ? Math.max(1, users / 10) : Integer.parseInt(values.get("admins")),
+          values.get("concurrency").isEmpty() ? users : Integer.parseInt(values.get("concurrency")),
+          DurationStyle.detectAndParse(values.get("warmup")),
+          DurationStyle.detectAndParse(values.get("duration")),
+          Integer.parseInt(values.get("seed-rows")),
+          mix, springProperties);
+    }
+
+    Op pick() {
+      int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+      int r = ThreadLocalRandom.current().nextInt(total);
+      for (Map.Entry<Op, Integer> weight : mix.entrySet()) {
+        r -= weight.getValue();
+        if (r < 0) {
+          return weight.getKey();
+        }
+      }
+      throw new IllegalStateException("empty mix");
+    }
+  }
+
+  /**
+   * Keys of the rows of one resource that the load test created and has not deleted.
+   */
+  static final class Keys {
+    private final List<String> keys = new ArrayList<>();
+
+    synchronized void add(String key) {
+      keys.add(key);
+    }
+
+    synchronized String any() {
+      return keys.isEmpty() ? null : keys.get(ThreadLocalRandom.current().nextInt(keys.size()));
+    }
+
+    synchronized String take() {
+      if (keys.isEmpty()) {
+        return null;
+      }
+      int i = ThreadLocalRandom.current().nextInt(keys.size());
+      String key = keys.get(i);
+      keys.set(i, keys.get(keys.size() - 1));
+      keys.remove(keys.size() - 1);
+      return key;
+    }
+  }
+
+  /**
+   * Latencies (in microseconds) and failures of one operation.
+   */
+  static final class Stats {
+    final Histogram latency = new ConcurrentHistogram(3);
+    final Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+
+    void record(long startNanos, int status) {
+      latency.recordValue(Math.max(1, (System.nanoTime() - startNanos) / 1000));
+      if (status < 200 || status >= 300) {
+        failures.computeIfAbsent(status < 0 ? "exception" : Integer.toString(status), s -> new LongAdder())
+            .increment();
+      }
+    }
+
+    long failed() {
+      return failures.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+  }
+
+  private final Options options;
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final AtomicLong sequence = new AtomicLong();
+  private final Map<LoadTestResource, Keys> keys = new ConcurrentHashMap<>();
+  private final Map<Op, Stats> stats = new EnumMap<>(Op.class);
+  private final List<LoadTestClient> clients = new ArrayList<>();
+  private final List<LoadTestClient> admins = new ArrayList<>();
+
+  LoadTest(Options options) {
+    this.options = options;
+    for (Op op : Op.values()) {
+      stats.put(op, new Stats());
+    }
+    for (LoadTestResource resource : LoadTestResource.ALL) {
+      keys.put(resource, new Keys());
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options options = Options.parse(args);
+    // devtools would restart the app in another class loader
+    System.setProperty("spring.devtools.restart.enabled", "false");
+    ConfigurableApplicationContext app = startApp(options);
+    int status = 0;
+    try {
+      int port = Integer.parseInt(app.getEnvironment().getProperty("local.server.port"));
+      new LoadTest(options).run(URI.create("http://localhost:" + port));
+    } catch (Exception e) {
+      e.printStackTrace();
+      status = 1;
+    } finally {
+      app.close();
+    }
+    // the WireMock server started by WiremockServiceImpl is never stopped
+    System.exit(status);
+  }
+
+  private static ConfigurableApplicationContext startApp(Options options) {
+    Map<String, String> properties = new LinkedHashMap<>();
+    properties.put("server.port", "0");
+    properties.put("spring.security.oauth2.client.registration.my-oauth-provider.redirect-uri",
+        "{baseUrl}/login/oauth2/code/{registrationId}");
+    properties.put("app.admin.emails", IntStream.range(0, options.admins())
+        .mapToObj(i -> "loadadmin" + i + "@ucsb.edu").collect(Collectors.joining(",")));
+    // the integration profile logs every statement; that would be most of what we measure
+    properties.put("logging.level.root", "WARN");
+    properties.put("logging.level.sql", "WARN");
+    properties.put("logging.level.org.hibernate.type.descriptor.sql.BasicBinder", "WARN");
+    properties.put("spring.main.banner-mode", "off");
+    properties.putAll(options.springProperties());
+    String[] args = properties.entrySet().stream()
+        .map(property -> "--" + property.getKey() + "=" + property.getValue())
+        .toArray(String[]::new);
+    return new SpringApplicationBuilder(ExampleApplication.class)
+        .profiles("wiremock", "integration")
+        .run(args);
+  }
+
+  /**
+   * Replace the WireMock stubs that always log in the same user with ones that log in whoever
+   * typed their name on the login page: the code, and then the access token, is the user name,
+   * and /userinfo answers with username@ucsb.edu.
+   */
+  private static void stubSyntheticUsers() {
+    WireMock wireMock = new WireMock("localhost", 8090);
+    wireMock.register(post(urlPathEqualTo("/login"))
+        .willReturn(temporaryRedirect(
+            "{{formData request.body 'form' urlDecode=true}}{{{form.redirectUri}}}?code={{{form.username}}}&state={{{form.state}}}")));
+    wireMock.register(post(urlPathEqualTo("/oauth/token"))
+        .willReturn(okJson(
+            "{{formData request.body 'form' urlDecode=true}}{\"access_token\":\"{{{form.code}}}\",\"token_type\":\"Bearer\",\"expires_in\":\"3600\",\"scope\":\"https://www.googleapis.com/auth/userinfo.profile https://www.googleapis.com/auth/userinfo.email openid\"}")));
+    wireMock.register(get(urlPathMatching("/userinfo"))
+        .willReturn(aResponse()
+            .withStatus(200)
+            .withHeader("Content-Type", "application/json")
+            .withBody("""
+                {
+                  "sub": "{{regexExtract request.headers.Authorization '[A-Za-z0-9]+$'}}",
+                  "name": "Load Tester",
+                  "given_name": "Load",
+                  "family_name": "Tester",
+                  "picture": "https://lh3.googleusercontent.com/a/ACg8ocJpOe2SqIpirdIMx7KTj1W4OQ45t6FwpUo40K2V2JON=s96-c",
+                  "email": "{{regexExtract request.headers.Authorization '[A-Za-z0-9]+$'}}@ucsb.edu",
+                  "email_verified": true,
+                  "locale": "en",
+                  "hd": "ucsb.edu"
+                }
+                """)));
+  }
+
+  void run(URI app) throws Exception {
+    stubSyntheticUsers();
+    try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+      HttpClient http = HttpClient.newBuilder()
+          .version(HttpClient.Version.HTTP_1_1)
+          .followRedirects(HttpClient.Redirect.NEVER)
+          .connectTimeout(Duration.ofSeconds(10))
+          .executor(threads)
+          .build();
+
+      Histogram logins = login(http, app, threads);
+      System.out.printf("%nLogged in %d users (%d admins): %s%n", clients.size(), admins.size(),
+          percentiles(logins));
+
+      for (LoadTestResource resource : LoadTestResource.ALL) {
+        for (int i = 0; i < options.seedRows(); i++) {
+          create(resource, admins.get(0));
+        }
+      }
+
+      long start = System.nanoTime();
+      long measureFrom = start + options.warmup().toNanos();
+      long end = measureFrom + options.duration().toNanos();
+      List<Future<?>> workers = new ArrayList<>();
+      for (int i = 0; i < options.concurrency(); i++) {
+        LoadTestClient user = clients.get(i % clients.size());
+        workers.add(threads.submit(() -> work(user, measureFrom, end)));
+      }
+      for (Future<?> worker : workers) {
+        worker.get();
+      }
+      report(options.duration());
+    }
+  }
+
+  private Histogram login(HttpClient http, URI app, ExecutorService threads) throws Exception {
+    for (int i = 0; i < options.admins(); i++) {
+      admins.add(new LoadTestClient(http, app, "loadadmin" + i));
+    }
+    clients.addAll(admins);
+    for (int i = options.admins(); i < options.users(); i++) {
+      clients.add(new LoadTestClient(http, app, "loaduser" + i));
+    }
+    Histogram latency = new ConcurrentHistogram(3);
+    List<Future<?>> logins = new ArrayList<>();
+    for (LoadTestClient client : clients) {
+      logins.add(threads.submit(() -> {
+        long start = System.nanoTime();
+        client.login();
+        latency.recordValue((System.nanoTime() - start) / 1000);
+        return null;
+      }));
+    }
+    for (Future<?> login : logins) {
+      login.get();
+    }
+    return latency;
+  }
+
+  private void work(LoadTestClient user, long measureFrom, long end) {
+    while (System.nanoTime() < end) {
+      LoadTestResource resource = LoadTestResource.ALL.get(
+          ThreadLocalRandom.current().nextInt(LoadTestResource.ALL.size()));
+      LoadTestClient admin = admins.get(ThreadLocalRandom.current().nextInt(admins.size()));
+      Op op = options.pick();
+      long start = System.nanoTime();
+      int status;
+      try {
+        status = switch (op) {
+          case LIST -> user.request("GET", resource.path() + "/all", null).statusCode();
+          case GET -> getOne(resource, user, admin);
+          case CREATE -> create(resource, admin);
+          case UPDATE -> update(resource, admin);
+          case DELETE -> delete(resource, admin);
+        };
+      } catch (IOException e) {
+        status = -1;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      if (start >= measureFrom) {
+        stats.get(op).record(start, status);
+      }
+    }
+  }
+
+  private int getOne(LoadTestResource resource, LoadTestClient user, LoadTestClient admin)
+      throws IOException, InterruptedException {
+    String key = keys.get(resource).any();
+    if (key == null) {
+      return create(resource, admin);
+    }
+    return user.request("GET", resource.rowPath(key), null).statusCode();
+  }
+
+  private int create(LoadTestResource resource, LoadTestClient admin) throws IOException, InterruptedException {
+    HttpResponse<String> response = admin.request("POST",
+        resource.path() + "/post?" + resource.postQuery(sequence.incrementAndGet()), null);
+    if (response.statusCode() == 200) {
+      keys.get(resource).add(mapper.readTree(response.body()).get(resource.keyParam()).asText());
+    }
+    return response.statusCode();
+  }
+
+  private int update(LoadTestResource resource, LoadTestClient admin) throws IOException, InterruptedException {
+    String key = keys.get(resource).any();
+    if (key == null) {
+      return create(resource, admin);
+    }
+    String body = mapper.writeValueAsString(resource.fields().apply(sequence.incrementAndGet()));
+    return admin.request("PUT", resource.rowPath(key), body).statusCode();
+  }
+
+  private int delete(LoadTestResource resource, LoadTestClient admin) throws IOException, InterruptedException {
+    String key = keys.get(resource).take();
+    if (key == null) {
+      return create(resource, admin);
+    }
+    return admin.request("DELETE", resource.rowPath(key), null).statusCode();
+  }
+
+  private void report(Duration duration) {
+    double seconds = duration.toNanos() / 1e9;
+    Histogram total = new Histogram(3);
+    System.out.printf("%n%-8s %9s %9s %9s %9s %9s %9s %8s%n",
+        "op", "requests", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "failed");
+    long failed = 0;
+    for (Map.Entry<Op, Stats> entry : stats.entrySet()) {
+      Histogram latency = entry.getValue().latency;
+      total.add(latency);
+      failed += entry.getValue().failed();
+      printRow(entry.getKey().name().toLowerCase(), latency, seconds, entry.getValue().failed());
+    }
+    printRow("total", total, seconds, failed);
+    stats.forEach((op, stat) -> stat.failures.forEach((status, count) ->
+        System.out.printf("  %s failed with %s: %d%n", op.name().toLowerCase(), status, count.sum())));
+  }
+
+  private static void printRow(String name, Histogram latency, double seconds, long failed) {
+    System.out.printf("%-8s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %8d%n", name, latency.getTotalCount(),
+        latency.getTotalCount() / seconds, millis(latency, 50), millis(latency, 99), millis(latency, 99.9),
+        latency.getMaxValue() / 1000.0, failed);
+  }
+
+  private static String percentiles(Histogram latency) {
+    return "p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms".formatted(millis(latency, 50), millis(latency, 99),
+        millis(latency, 99.9));
+  }
+
+  private static double millis(Histogram latency, double percentile) {
+    return latency.getValueAtPercentile(percentile) / 1000.0;
+  }
+}
@@ -0,0 +1,164 @@
+package edu.ucsb.cs156.example.loadtest;
+
+import java.io.IOException;
+import java.net.HttpCookie;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * One synthetic user: the cookies of their session with the app, and the requests they make.
+ *
+ * All users share one HttpClient, and so one connection pool.  The client does not follow
+ * redirects or keep cookies; this class does both by hand, so that every hop of the OAuth flow
+ * carries the cookies of the right user.
+ */
+class LoadTestClient {
+  private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+  private final HttpClient http;
+  private final URI app;
+  private final String username;
+  private final Map<String, String> cookies = new ConcurrentHashMap<>();
+
+  /**
+   * Create a client for a user who has not logged in yet.
+   * @param http the shared HttpClient
+   * @param app base URI of the app, e.g. http://localhost:43125
+   * @param username the user name typed on the mock login page; the email is username@ucsb.edu
+   */
+  LoadTestClient(HttpClient http, URI app, String username) {
+    this.http = http;
+    this.app = app;
+    this.username = username;
+  }
+
+  String email() {
+    return username + "@ucsb.edu";
+  }
+
+  /**
+   * Log in through the app's OAuth client and the WireMock authorization server, the same
+   * hops a browser makes: app, authorize page, login form, callback to the app.
+   * @throws IOException if a hop fails or does not answer as expected
+   * @throws InterruptedException if interrupted
+   */
+  void login() throws IOException, InterruptedException {
+    URI authorize = redirect(send(HttpRequest.newBuilder(app.resolve("/oauth2/authorization/my-oauth-provider")).GET(),
+        true));
+    expect(send(HttpRequest.newBuilder(authorize).GET(), false), 200);
+
+    Map<String, String> query = query(authorize);
+    String form = form(Map.of(
+        "state", query.get("state"),
+        "redirectUri", query.get("redirect_uri"),
+        "username", username,
+        "password", "password"));
+    URI callback = redirect(send(HttpRequest.newBuilder(authorize.resolve("/login"))
+        .header("Content-Type", "application/x-www-form-urlencoded")
+        .POST(BodyPublishers.ofString(form)), false));
+
+    redirect(send(HttpRequest.newBuilder(callback).GET(), true));
+
+    HttpResponse<String> currentUser = request("GET", "/api/currentUser", null);
+    expect(currentUser, 200);
+    if (!currentUser.body().contains(email())) {
+      throw new IOException("logged in as the wrong user: " + currentUser.body());
+    }
+  }
+
+  /**
+   * Make an API request as this user.
+   * @param method GET, POST, PUT or DELETE
+   * @param pathAndQuery e.g. /api/ucsbdates?id=1
+   * @param json the request body, or null for none
+   * @return the response
+   * @throws IOException if the request fails
+   * @throws InterruptedException if interrupted
+   */
+  HttpResponse<String> request(String method, String pathAndQuery, String json)
+      throws IOException, InterruptedException {
+    HttpRequest.Builder builder = HttpRequest.newBuilder(app.resolve(pathAndQuery));
+    if (json == null) {
+      builder.method(method, BodyPublishers.noBody());
+    } else {
+      builder.header("Content-Type", "application/json").method(method, BodyPublishers.ofString(json));
+    }
+    String csrf = cookies.get("XSRF-TOKEN");
+    if (csrf != null && !method.equals("GET")) {
+      builder.header("X-XSRF-TOKEN", csrf);
+    }
+    return send(builder, true, BodyHandlers.ofString());
+  }
+
+  private HttpResponse<Void> send(HttpRequest.Builder builder, boolean toApp) throws IOException, InterruptedException {
+    return send(builder, toApp, BodyHandlers.discarding());
+  }
+
+  private <T> HttpResponse<T> send(HttpRequest.Builder builder, boolean toApp, BodyHandler<T> body)
+      throws IOException, InterruptedException {
+    builder.timeout(TIMEOUT);
+    if (toApp && !cookies.isEmpty()) {
+      builder.header("Cookie", cookies.entrySet().stream()
+          .map(cookie -> cookie.getKey() + "=" + cookie.getValue())
+          .collect(Collectors.joining("; ")));
+    }
+    HttpResponse<T> response = http.send(builder.build(), body);
+    if (toApp) {
+      for (String header : response.headers().allValues("Set-Cookie")) {
+        for (HttpCookie cookie : HttpCookie.parse(header)) {
+          if (cookie.getMaxAge() == 0) {
+            cookies.remove(cookie.getName());
+          } else {
+            cookies.put(cookie.getName(), cookie.getValue());
+          }
+        }
+      }
+    }
+    return response;
+  }
+
+  private static void expect(HttpResponse<?> response, int status) throws IOException {
+    if (response.statusCode() != status) {
+      throw new IOException("%s %s: expected %d but got %d".formatted(response.request().method(),
+          response.request().uri(), status, response.statusCode()));
+    }
+  }
+
+  private static URI redirect(HttpResponse<?> response) throws IOException {
+    if (response.statusCode() / 100 != 3) {
+      throw new IOException("%s %s: expected a redirect but got %d".formatted(response.request().method(),
+          response.request().uri(), response.statusCode()));
+    }
+    String location = response.headers().firstValue("Location")
+        .orElseThrow(() -> new IOException("no Location header from " + response.request().uri()));
+    return response.request().uri().resolve(location);
+  }
+
+  private static Map<String, String> query(URI uri) {
+    Map<String, String> query = new HashMap<>();
+    for (String pair : uri.getRawQuery().split("&")) {
+      String[] nameAndValue = pair.split("=", 2);
+      query.put(nameAndValue[0], URLDecoder.decode(nameAndValue[1], StandardCharsets.UTF_8));
+    }
+    return query;
+  }
+
+  private static String form(Map<String, String> fields) {
+    return fields.entrySet().stream()
+        .map(field -> field.getKey() + "=" + URLEncoder.encode(field.getValue(), StandardCharsets.UTF_8))
+        .collect(Collectors.joining("&"));
+  }
+}
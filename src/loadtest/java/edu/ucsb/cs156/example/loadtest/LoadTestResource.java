@@ -0,0 +1,122 @@
+package edu.ucsb.cs156.example.loadtest;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * One of the /api resources the load test exercises, and how to make plausible rows for it.
+ *
+ * @param name       name used in the report
+ * @param path       base path of the controller, e.g. /api/ucsbdates
+ * @param keyParam   request parameter that identifies a row for get, put and delete
+ * @param fields     makes the JSON fields of the n-th row; also the PUT body
+ * @param postParams request parameters of the /post endpoint whose name differs from the field
+ */
+record LoadTestResource(String name, String path, String keyParam, LongFunction<Map<String, Object>> fields,
+    Map<String, String> postParams) {
+
+  static final List<LoadTestResource> ALL = List.of(
+      new LoadTestResource("ucsbdates", "/api/ucsbdates", "id", n -> fields(
+          "quarterYYYYQ", "20%02d%d".formatted(20 + random(6), 1 + random(4)),
+          "name", pick("First day of classes", "Last day of classes", "Finals week", "Pass 1 begins"),
+          "localDateTime", dateTime()), Map.of()),
+      new LoadTestResource("ucsbdiningcommons", "/api/ucsbdiningcommons", "code", n -> fields(
+          "code", "lt" + n,
+          "name", "Load test commons " + n,
+          "hasSackMeal", random(2) == 0,
+          "hasTakeOutMeal", random(2) == 0,
+          "hasDiningCam", random(2) == 0,
+          "latitude", 34.40 + random(100) / 10000.0,
+          "longitude", -119.85 + random(100) / 10000.0), Map.of()),
+      new LoadTestResource("ucsbdiningcommonsmenuitem", "/api/ucsbdiningcommonsmenuitem", "id", n -> fields(
+          "diningCommonsCode", pick("carrillo", "de-la-guerra", "ortega", "portola"),
+          "name", pick("Tofu Banh Mi Sandwich (v)", "Chicken Caesar Salad", "Bibimbap Bowl", "Cheese Pizza (vgt)"),
+          "station", pick("Entrees", "Grill (Cafe)", "Salad Bar", "Pizza")), Map.of()),
+      new LoadTestResource("menuitemreviews", "/api/menuitemreviews", "id", n -> fields(
+          "itemId", 1 + random(500),
+          "reviewerEmail", "student%d@ucsb.edu".formatted(random(20000)),
+          "stars", 1 + random(5),
+          "dateReviewed", dateTime(),
+          "comments", pick("Great!", "Too salty.", "Cold by the time I sat down.", "Would order again.")), Map.of()),
+      new LoadTestResource("ucsborganizations", "/api/ucsborganizations", "orgcode", n -> fields(
+          "orgcode", "LT" + n,
+          "orgTranslationShort", "LOAD TEST " + n,
+          "orgTranslation", "Load Test Organization " + n,
+          "inactive", random(10) == 0), Map.of()),
+      new LoadTestResource("restaurants", "/api/restaurants", "id", n -> fields(
+          "name", pick("Freebirds", "Woodstock's Pizza", "Naan Stop", "Blenders in the Grass") + " " + n,
+          "description", pick("Burritos", "Pizza", "Indian", "Smoothies")), Map.of()),
+      new LoadTestResource("articles", "/api/articles", "id", n -> fields(
+          "title", "Article " + n,
+          "url", "https://example.org/articles/" + n,
+          "explanation", "Explains topic " + random(100),
+          "email", "student%d@ucsb.edu".formatted(random(20000)),
+          "dateAdded", dateTime()), Map.of()),
+      new LoadTestResource("helprequests", "/api/helprequests", "id", n -> fields(
+          "requesterEmail", "student%d@ucsb.edu".formatted(random(20000)),
+          "teamId", "s25-%d-%d".formatted(5 + random(3), 1 + random(4)),
+          "tableOrBreakoutRoom", Integer.toString(1 + random(15)),
+          "requestTime", dateTime(),
+          "explanation", pick("Dokku deployment fails", "Tests pass locally but not on CI", "Merge conflict"),
+          "solved", random(4) != 0), Map.of()),
+      new LoadTestResource("recommendationrequests", "/api/recommendationrequests", "id", n -> fields(
+          "requesterEmail", "student%d@ucsb.edu".formatted(random(20000)),
+          "professorEmail", pick("phtcon@ucsb.edu", "richert@ucsb.edu", "ziad@ucsb.edu"),
+          "explanation", pick("PhD program", "MS program", "Internship"),
+          "dateRequested", dateTime(),
+          "dateNeeded", dateTime(),
+          "done", random(3) == 0), Map.of("done", "doneBool")));
+
+  /**
+   * The query string for creating the n-th row through the /post endpoint.
+   * @param n sequence number of the row
+   * @return the url-encoded request parameters
+   */
+  String postQuery(long n) {
+    return fields.apply(n).entrySet().stream()
+        .map(e -> postParams.getOrDefault(e.getKey(), e.getKey()) + "=" + encode(e.getValue()))
+        .collect(Collectors.joining("&"));
+  }
+
+  /**
+   * The path and query that identifies one row, for get, put and delete.
+   * @param key the id or code of the row
+   * @return e.g. /api/ucsbdates?id=17
+   */
+  String rowPath(String key) {
+    return path + "?" + keyParam + "=" + encode(key);
+  }
+
+  private static String encode(Object value) {
+    return URLEncoder.encode(value.toString(), StandardCharsets.UTF_8);
+  }
+
+  private static Map<String, Object> fields(Object... namesAndValues) {
+    Map<String, Object> fields = new LinkedHashMap<>();
+    for (int i = 0; i < namesAndValues.length; i += 2) {
+      fields.put((String) namesAndValues[i], namesAndValues[i + 1]);
+    }
+    return fields;
+  }
+
+  private static int random(int bound) {
+    return ThreadLocalRandom.current().nextInt(bound);
+  }
+
+  private static String pick(String... choices) {
+    return choices[random(choices.length)];
+  }
+
+  private static String dateTime() {
+    return LocalDateTime.of(2020 + random(6), 1 + random(12), 1 + random(28), random(24), random(60))
+        .format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+  }
+}
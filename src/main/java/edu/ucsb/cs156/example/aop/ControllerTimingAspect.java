@@ -0,0 +1,112 @@
+package edu.ucsb.cs156.example.aop;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.RequestMapping;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is an Aspect that times every controller method in the controllers package that is
+ * annotated with {@code @GetMapping}, {@code @PostMapping}, {@code @PutMapping}, {@code @DeleteMapping}
+ * or {@code @PatchMapping}.
+ *
+ * Each method gets its own timer, {@value #TIMER_NAME}, tagged with the controller and method names,
+ * the path it is mapped to (e.g. /api/ucsbdates/all, so that overloads are told apart) and, when
+ * the method throws, the exception class.  The timers publish a percentile histogram, so
+ * p50/p95/p99 can be computed (and aggregated across instances) from the Prometheus scrape.
+ *
+ * The timer for a method, and for each exception it throws, is looked up once and cached, so
+ * timing a call costs two {@code System.nanoTime()} calls and a map lookup.
+ */
+
+@Aspect
+@Component
+public class ControllerTimingAspect {
+  /**
+   * Name of the timers registered by this aspect.
+   */
+  public static final String TIMER_NAME = "app.controller.method";
+
+  // language=PointcutExpression
+  private static final String pointcut = """
+      within(edu.ucsb.cs156.example.controllers..*) && (
+      @annotation(org.springframework.web.bind.annotation.GetMapping) ||
+      @annotation(org.springframework.web.bind.annotation.PostMapping) ||
+      @annotation(org.springframework.web.bind.annotation.PutMapping) ||
+      @annotation(org.springframework.web.bind.annotation.DeleteMapping) ||
+      @annotation(org.springframework.web.bind.annotation.PatchMapping))
+      """;
+
+  private record Failure(Method method, Class<? extends Throwable> exception) {
+  }
+
+  private final MeterRegistry registry;
+  private final Map<Method, Timer> timers = new ConcurrentHashMap<>();
+  private final Map<Failure, Timer> failureTimers = new ConcurrentHashMap<>();
+
+  /**
+   * Create the aspect.
+   * @param registry the registry the timers are registered with
+   */
+  public ControllerTimingAspect(MeterRegistry registry) {
+    this.registry = registry;
+  }
+
+  /**
+   * This method is called around any controller method that is annotated with
+   * {@code @GetMapping}, {@code @PostMapping}, {@code @PutMapping}, {@code @DeleteMapping}
+   * or {@code @PatchMapping}, and records how long the call took.
+   * @param joinPoint the join point (injected by Spring framework)
+   * @return whatever the controller method returned
+   * @throws Throwable whatever the controller method threw
+   */
+  @Around(pointcut)
+  public Object timeControllers(ProceedingJoinPoint joinPoint) throws Throwable {
+    Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+    long start = System.nanoTime();
+    try {
+      Object result = joinPoint.proceed();
+      timers.computeIfAbsent(method, m -> timer(m, "none"))
+          .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      return result;
+    } catch (Throwable t) {
+      failureTimers.computeIfAbsent(new Failure(method, t.getClass()),
+          f -> timer(f.method(), f.exception().getSimpleName()))
+          .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      throw t;
+    }
+  }
+
+  private Timer timer(Method method, String exception) {
+    return Timer.builder(TIMER_NAME)
+        .description("Time spent in controller methods")
+        .tag("controller", method.getDeclaringClass().getSimpleName())
+        .tag("method", method.getName())
+        .tag("uri", uri(method))
+        .tag("exception", exception)
+        .publishPercentileHistogram()
+        .minimumExpectedValue(Duration.ofMillis(1))
+        .maximumExpectedValue(Duration.ofSeconds(30))
+        .register(registry);
+  }
+
+  // the path of the class's @RequestMapping followed by the method's, e.g. /api/ucsbdates/all
+  private static String uri(Method method) {
+    RequestMapping type = AnnotatedElementUtils.findMergedAnnotation(method.getDeclaringClass(), RequestMapping.class);
+    RequestMapping mapping = AnnotatedElementUtils.findMergedAnnotation(method, RequestMapping.class);
+    String prefix = type == null || type.path().length == 0 ? "" : type.path()[0];
+    String path = mapping == null || mapping.path().length == 0 ? "" : mapping.path()[0];
+    return prefix + path;
+  }
+}
@@ -5,19 +5,30 @@ import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Before;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Optional;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * This class is an Aspect that logs all invocations of controller methods that are annotated
  * with {@code @RequestMapping}, {@code @GetMapping}, {@code @PostMapping}, {@code @PutMapping}, {@code @DeleteMapping},
  * or {@code @PatchMapping}.
  * 
+ * Whether a method is logged (i.e. whether its class is on the stoplist) is worked out the first
+ * time it is called and cached.  Only a fraction app.logging.requests.sample-rate of requests
+ * is logged, and the message is only formatted if it is.  logback-spring.xml sends this logger
+ * to a BoundedAsyncAppender, so a request never waits for the console.
+ * 
  * For more information on Aspect Oriented Programming (AOP)
  * and AspectJ, including what a {@code JoinPoint} is, 
  * refer to <a href="https://www.baeldung.com/aspectj">https://www.baeldung.com/aspectj</a> 
@@ -38,8 +49,29 @@ public class LoggingAspect {
       @annotation(org.springframework.web.bind.annotation.PatchMapping)
       """;
 
-  private ArrayList<String> stoplist = new ArrayList<String>(Arrays.asList(
-      "edu.ucsb.cs156.example.controllers.FrontendProxyController"));
+  /**
+   * What to do when a controller method is called.
+   * @param enabled whether calls to the method are logged at all
+   * @param handler the "method in class" part of the message
+   */
+  record Decision(boolean enabled, String handler) {
+  }
+
+  private final Set<String> stoplist;
+  private final double sampleRate;
+  private final Map<Method, Decision> decisions = new ConcurrentHashMap<>();
+
+  /**
+   * Create the aspect.
+   * @param stoplist fully qualified names of controllers whose requests are not logged
+   * @param sampleRate fraction of requests to log, from 0.0 (none) to 1.0 (all)
+   */
+  public LoggingAspect(
+      @Value("${app.logging.requests.stoplist:edu.ucsb.cs156.example.controllers.FrontendProxyController}") List<String> stoplist,
+      @Value("${app.logging.requests.sample-rate:1.0}") double sampleRate) {
+    this.stoplist = Set.copyOf(stoplist);
+    this.sampleRate = sampleRate;
+  }
 
   /**
    * This method is called before any controller method that is annotated with
@@ -49,26 +81,44 @@ public class LoggingAspect {
    */
   @Before(pointcut)
   public void logControllers(JoinPoint joinPoint) {
-    getCurrentHttpRequest().ifPresent(
-        request -> {
-          String declaringTypeName = joinPoint.getSignature().getDeclaringTypeName();
-          if (!stoplist.contains(declaringTypeName)) {
-            log.info("===== %s %s handled by %s in %s".formatted(request.getMethod(), request.getRequestURI(),
-                joinPoint.getSignature().getName(), declaringTypeName));
-          }
-        });
+    if (!log.isInfoEnabled()) {
+      return;
+    }
+    Decision decision = decision(joinPoint);
+    if (!decision.enabled() || !sampled()) {
+      return;
+    }
+    HttpServletRequest request = getCurrentHttpRequest();
+    if (request != null) {
+      log.info("===== {} {} handled by {}", request.getMethod(), request.getRequestURI(), decision.handler());
+    }
+  }
+
+  private Decision decision(JoinPoint joinPoint) {
+    Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+    Decision decision = decisions.get(method);
+    if (decision == null) {
+      String declaringTypeName = joinPoint.getSignature().getDeclaringTypeName();
+      decision = new Decision(!stoplist.contains(declaringTypeName), method.getName() + " in " + declaringTypeName);
+      decisions.putIfAbsent(method, decision);
+    }
+    return decision;
+  }
+
+  private boolean sampled() {
+    return sampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < sampleRate;
   }
 
   /**
-   * The function `getCurrentHttpRequest` returns an `Optional` containing the current
-   * `HttpServletRequest` if available.
+   * The function `getCurrentHttpRequest` returns the current `HttpServletRequest`, if any.
    * 
-   * @return An Optional object containing the current HttpServletRequest, if available.
+   * @return the current HttpServletRequest, or null if there is none
    */
-  private static Optional<HttpServletRequest> getCurrentHttpRequest() {
-    return Optional.ofNullable(RequestContextHolder.getRequestAttributes())
-        .filter(ServletRequestAttributes.class::isInstance)
-        .map(ServletRequestAttributes.class::cast)
-        .map(ServletRequestAttributes::getRequest);
+  private static HttpServletRequest getCurrentHttpRequest() {
+    RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+    if (attributes instanceof ServletRequestAttributes servletRequestAttributes) {
+      return servletRequestAttributes.getRequest();
+    }
+    return null;
   }
 }
@@ -0,0 +1,89 @@
+package edu.ucsb.cs156.example.config;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.OptionalLong;
+
+import javax.cache.CacheManager;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.stat.HibernateMetrics;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Regions of the Hibernate second-level cache, which holds the reference data entities
+ * (dining commons, menu items and organizations) and the results of their cacheable queries.
+ *
+ * Each region is a Caffeine cache, sized and expired according to app.cache.regions.NAME.max-size
+ * and app.cache.regions.NAME.ttl (no limit when unset).  Hibernate fails at startup if an entity
+ * or query uses a region that is not configured here.  The region where Hibernate records when
+ * each table was last written, to tell whether cached query results are stale, is always unbounded.
+ * Cache hit and miss counts are published as hibernate.* metrics, readable by admins at
+ * /actuator/metrics.
+ */
+@Slf4j
+@Configuration
+class SecondLevelCacheConfig {
+
+  /**
+   * Limits of one cache region.
+   * @param maxSize maximum number of entries, or null for no limit
+   * @param ttl how long an entry is kept after it is written, or null for no limit
+   */
+  record Region(Long maxSize, Duration ttl) {
+  }
+
+  /**
+   * A cache manager of its own for each application context, so that contexts (e.g. in tests)
+   * with different databases never share cached rows.
+   * @param environment where app.cache.regions is read from
+   * @return the cache manager holding the configured regions
+   */
+  @Bean(destroyMethod = "close")
+  CacheManager secondLevelCacheManager(Environment environment) {
+    CacheManager cacheManager = new CaffeineCachingProvider().getCacheManager();
+    cacheManager.createCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME,
+        new CaffeineConfiguration<>());
+    Map<String, Region> regions = Binder.get(environment)
+        .bind("app.cache.regions", Bindable.mapOf(String.class, Region.class))
+        .orElse(Map.of());
+    regions.forEach((name, region) -> {
+      CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+      if (region.maxSize() != null) {
+        configuration.setMaximumSize(OptionalLong.of(region.maxSize()));
+      }
+      if (region.ttl() != null) {
+        configuration.setExpireAfterWrite(OptionalLong.of(region.ttl().toNanos()));
+      }
+      cacheManager.createCache(name, configuration);
+      log.info("second-level cache region {}: max-size={}, ttl={}", name, region.maxSize(), region.ttl());
+    });
+    return cacheManager;
+  }
+
+  @Bean
+  HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager secondLevelCacheManager) {
+    return properties -> properties.put(ConfigSettings.CACHE_MANAGER, secondLevelCacheManager);
+  }
+
+  @Bean
+  MeterBinder hibernateMetrics(EntityManagerFactory entityManagerFactory) {
+    return registry -> new HibernateMetrics(entityManagerFactory.unwrap(SessionFactory.class),
+        "entityManagerFactory", Tags.empty()).bindTo(registry);
+  }
+}
@@ -1,7 +1,6 @@
 package edu.ucsb.cs156.example.config;
 
-import edu.ucsb.cs156.example.entities.User;
-import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.AdminRoleResolver;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -11,6 +10,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -24,6 +25,7 @@ import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.authority.mapping.GrantedAuthoritiesMapper;
 import org.springframework.security.oauth2.core.user.OAuth2UserAuthority;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
 import org.springframework.security.web.authentication.Http403ForbiddenEntryPoint;
 import org.springframework.security.web.authentication.SavedRequestAwareAuthenticationSuccessHandler;
 import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
@@ -40,11 +42,10 @@ import static org.springframework.security.web.util.matcher.AntPathRequestMatche
 
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
 import java.util.function.Supplier;
 
@@ -59,11 +60,11 @@ import java.util.function.Supplier;
 @Slf4j
 public class SecurityConfig {
 
-  @Value("${app.admin.emails}")
-  private final List<String> adminEmails = new ArrayList<>();
-
   @Autowired
-  UserRepository userRepository;
+  AdminRoleResolver adminRoleResolver;
+
+  @Value("${app.metrics.scrape-token:}")
+  String metricsScrapeToken;
 
   /**
    * The `filterChain` method in this Java code configures various security
@@ -85,7 +86,11 @@ public class SecurityConfig {
             .csrfTokenRepository(CookieCsrfTokenRepository.withHttpOnlyFalse())
             .csrfTokenRequestHandler(new SpaCsrfTokenRequestHandler()))
         .addFilterAfter(new CsrfCookieFilter(), BasicAuthenticationFilter.class)
-        .authorizeHttpRequests(auth -> auth.anyRequest().permitAll())
+        .authorizeHttpRequests(auth -> auth
+            .requestMatchers(antMatcher("/actuator/metrics"), antMatcher("/actuator/metrics/**")).hasRole("ADMIN")
+            .requestMatchers(antMatcher("/actuator/prometheus"))
+            .access(new MetricsScrapeAuthorizationManager(metricsScrapeToken))
+            .anyRequest().permitAll())
         .logout(logout -> logout.logoutRequestMatcher(new AntPathRequestMatcher("/logout")).logoutSuccessUrl("/"));
     return http.build();
   }
@@ -133,17 +138,14 @@ public class SecurityConfig {
   /**
    * This method checks if the given email belongs to an admin user either from a
    * predefined
-   * list or by querying the user repository.
+   * list or from the user repository; see AdminRoleResolver for how the
+   * answers are cached.
    * 
    * @param email email address of the user
    * @return whether the user with the given email is an admin
    */
   public boolean getAdmin(String email) {
-    if (adminEmails.contains(email)) {
-      return true;
-    }
-    Optional<User> u = userRepository.findByEmail(email);
-    return u.isPresent() && u.get().getAdmin();
+    return adminRoleResolver.isAdmin(email);
   }
 }
 
@@ -195,4 +197,38 @@ final class CsrfCookieFilter extends OncePerRequestFilter {
     csrfToken.getToken();
     filterChain.doFilter(request, response);
   }
-}
\ No newline at end of file
+}
+
+/**
+ * Lets admins, and a Prometheus server presenting the bearer token configured as
+ * app.metrics.scrape-token, read the Prometheus scrape endpoint.  When no token is
+ * configured only admins can read it.
+ */
+final class MetricsScrapeAuthorizationManager implements AuthorizationManager<RequestAuthorizationContext> {
+  private static final String BEARER = "Bearer ";
+
+  private final byte[] token;
+
+  MetricsScrapeAuthorizationManager(String token) {
+    this.token = token.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public AuthorizationDecision check(Supplier<Authentication> authentication, RequestAuthorizationContext context) {
+    return new AuthorizationDecision(isAdmin(authentication.get()) || hasToken(context.getRequest()));
+  }
+
+  private static boolean isAdmin(Authentication authentication) {
+    return authentication != null && authentication.getAuthorities().stream()
+        .anyMatch(authority -> "ROLE_ADMIN".equals(authority.getAuthority()));
+  }
+
+  private boolean hasToken(HttpServletRequest request) {
+    String header = request.getHeader("Authorization");
+    if (token.length == 0 || header == null || !header.startsWith(BEARER)) {
+      return false;
+    }
+    byte[] presented = header.substring(BEARER.length()).getBytes(StandardCharsets.UTF_8);
+    return MessageDigest.isEqual(token, presented);
+  }
+}
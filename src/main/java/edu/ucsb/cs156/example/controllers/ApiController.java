@@ -1,16 +1,64 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.entities.Versioned;
+import edu.ucsb.cs156.example.errors.BulkLimitExceededException;
+import edu.ucsb.cs156.example.errors.ChangesExpiredException;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.InvalidCursorException;
+import edu.ucsb.cs156.example.errors.InvalidFieldsException;
+import edu.ucsb.cs156.example.errors.InvalidFilterException;
+import edu.ucsb.cs156.example.errors.InvalidPatchException;
+import edu.ucsb.cs156.example.errors.PreconditionFailedException;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import edu.ucsb.cs156.example.models.BulkResult;
 import edu.ucsb.cs156.example.models.CurrentUser;
+import edu.ucsb.cs156.example.models.Delta;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.models.LookupResult;
+import edu.ucsb.cs156.example.services.BulkWriteService;
+import edu.ucsb.cs156.example.services.ChangeFeedService;
+import edu.ucsb.cs156.example.services.ChangeLogService;
 import edu.ucsb.cs156.example.services.CurrentUserService;
+import edu.ucsb.cs156.example.services.FilterService;
+import edu.ucsb.cs156.example.services.JsonResponseCache;
+import edu.ucsb.cs156.example.services.JsonStreamingService;
+import edu.ucsb.cs156.example.services.LookupService;
+import edu.ucsb.cs156.example.services.PatchService;
+import edu.ucsb.cs156.example.services.ProjectionService;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
 
 /**
  * This is an abstract class that provides common functionality for all API controllers.
@@ -18,9 +66,76 @@ import java.util.Map;
 
 @Slf4j
 public abstract class ApiController {
+  /**
+   * Default number of rows returned by the keyset-paginated /page endpoints.
+   */
+  protected static final String DEFAULT_PAGE_LIMIT = "50";
+
+  /**
+   * Largest number of rows a client may request from a /page endpoint.
+   */
+  protected static final int MAX_PAGE_LIMIT = 1000;
+
+  /**
+   * Largest number of elements a client may send to a /bulk endpoint.
+   */
+  protected static final int MAX_BULK_SIZE = 1000;
+
+  /**
+   * Largest number of ids a client may send to a /lookup endpoint.
+   */
+  protected static final int MAX_LOOKUP_SIZE = 10000;
+
+  /**
+   * Description of the filter parameter of the /page endpoints; see FilterService.
+   */
+  protected static final String FILTER_DESCRIPTION = "only the rows matching all of these conditions, each "
+      + "field<op>value where op is =, !=, <, <=, >, >= or ~ (contains, ignoring case), e.g. stars>=4";
+
+  /**
+   * Description of the sort parameter of the /page endpoints; see FilterService.
+   */
+  protected static final String SORT_DESCRIPTION = "the fields to sort by, each descending if it starts with -, "
+      + "e.g. -stars,dateReviewed; ties are broken by the id";
+
+  private static final Long NO_VERSION = -1L;
+
   @Autowired
   private CurrentUserService currentUserService;
 
+  @Autowired
+  private JsonStreamingService jsonStreamingService;
+
+  @Autowired
+  private JsonResponseCache jsonResponseCache;
+
+  @Autowired
+  private TableVersionService tableVersionService;
+
+  @Autowired
+  private ChangeLogService changeLogService;
+
+  @Autowired
+  private ChangeFeedService changeFeedService;
+
+  @Autowired
+  private BulkWriteService bulkWriteService;
+
+  @Autowired
+  private PatchService patchService;
+
+  @Autowired
+  private LookupService lookupService;
+
+  @Autowired
+  private ProjectionService projectionService;
+
+  @Autowired
+  private FilterService filterService;
+
+  @Autowired
+  private ObjectMapper mapper;
+
   /**
    * This method returns the current user.
    * @return the current user
@@ -38,6 +153,553 @@ public abstract class ApiController {
     return Map.of("message", message);
   }
 
+  /**
+   * This method clamps a client supplied page limit to the range 1..MAX_PAGE_LIMIT.
+   * @param limit the requested limit
+   * @return the page size to use
+   */
+  protected int pageSize(int limit) {
+    return Math.max(1, Math.min(limit, MAX_PAGE_LIMIT));
+  }
+
+  /**
+   * This method decodes a cursor for a table keyed by a numeric id.
+   * @param cursor the cursor from the previous page, or null for the first page
+   * @return the id of the last row already returned (0 for the first page)
+   */
+  protected long longCursor(String cursor) {
+    if (cursor == null) {
+      return 0L;
+    }
+    try {
+      return Long.parseLong(decodeCursor(cursor));
+    } catch (NumberFormatException e) {
+      throw new InvalidCursorException(cursor);
+    }
+  }
+
+  /**
+   * This method decodes a cursor for a table keyed by a string code.
+   * @param cursor the cursor from the previous page, or null for the first page
+   * @return the code of the last row already returned ("" for the first page)
+   */
+  protected String stringCursor(String cursor) {
+    if (cursor == null) {
+      return "";
+    }
+    return decodeCursor(cursor);
+  }
+
+  /**
+   * This method builds a page from rows fetched with a limit of pageSize + 1;
+   * the extra row, if present, only tells us that there is a next page.
+   * @param rows rows in key order, at most pageSize + 1 of them
+   * @param pageSize the number of rows to return
+   * @param keyOf function returning the key of a row
+   * @return the page
+   */
+  protected <T> KeysetPage<T> keysetPage(List<T> rows, int pageSize, Function<T, Object> keyOf) {
+    if (rows.size() <= pageSize) {
+      return new KeysetPage<>(rows, rows.size(), null);
+    }
+    List<T> content = rows.subList(0, pageSize);
+    return new KeysetPage<>(content, pageSize, encodeCursor(keyOf.apply(content.get(pageSize - 1)).toString()));
+  }
+
+  /**
+   * This method reads one page of the rows of a table that match a filter, in the requested order,
+   * with one query.  The cursor of each page holds the sort values of its last row, and the next
+   * page starts right after them.
+   * @param entity the entity class mapped to the table
+   * @param repository the repository for the table
+   * @param filter the conditions the rows must match, or null for all rows
+   * @param sort the fields to sort by, each descending if it starts with -, or null for id order
+   * @param cursor the cursor from the previous page, or null for the first page
+   * @param pageSize the number of rows to return
+   * @return the page
+   */
+  protected <T> KeysetPage<T> filteredPage(Class<T> entity, JpaSpecificationExecutor<T> repository,
+      List<String> filter, List<String> sort, String cursor, int pageSize) {
+    Sort order = filterService.sort(entity, sort == null ? List.of() : sort);
+    ScrollPosition position = cursor == null ? ScrollPosition.keyset()
+        : filterService.position(entity, order, decodeCursor(cursor));
+    Window<T> window = filterService.scroll(entity, repository, filter == null ? List.of() : filter, order,
+        position, pageSize);
+    String nextCursor = window.hasNext()
+        ? encodeCursor(filterService.cursor(window.positionAt(window.size() - 1)))
+        : null;
+    return new KeysetPage<>(window.getContent(), window.size(), nextCursor);
+  }
+
+  /**
+   * This method reads a filtered page like filteredPage(entity, repository, filter, sort, cursor,
+   * pageSize), and if the client asked for only some fields, returns only those (and the id and
+   * version) of each row.
+   * @param entity the entity class mapped to the table
+   * @param repository the repository for the table
+   * @param filter the conditions the rows must match, or null for all rows
+   * @param sort the fields to sort by, each descending if it starts with -, or null for id order
+   * @param fields the fields the client asked for, or null for all of them
+   * @param cursor the cursor from the previous page, or null for the first page
+   * @param pageSize the number of rows to return
+   * @return the page
+   */
+  protected <T> KeysetPage<?> filteredPage(Class<T> entity, JpaSpecificationExecutor<T> repository,
+      List<String> filter, List<String> sort, List<String> fields, String cursor, int pageSize) {
+    List<String> columns = fields == null ? null : projectionService.columns(entity, fields);
+    KeysetPage<T> page = filteredPage(entity, repository, filter, sort, cursor, pageSize);
+    if (columns == null) {
+      return page;
+    }
+    return new KeysetPage<>(projectionService.project(page.getContent(), columns), page.getSize(),
+        page.getNextCursor());
+  }
+
+  /**
+   * This method streams rows to the response as a JSON array, one row at a time,
+   * instead of building the whole list (and the whole JSON string) in memory.
+   * @param rows supplies the stream of rows, e.g. a repository streamAllBy method
+   * @param response the response to write to
+   * @throws IOException if the response cannot be written
+   */
+  protected <T> void writeJsonArray(Supplier<Stream<T>> rows, HttpServletResponse response) throws IOException {
+    jsonStreamingService.writeJsonArray(rows, response);
+  }
+
+  /**
+   * This method writes all rows of a table to the response as a JSON array, reusing the JSON
+   * written for the previous request unless the table has changed since (see rowCreated).
+   * The response's ETag, without its quotes, is the version to pass to changesSince next time.
+   * @param entity the entity class mapped to the table
+   * @param rows reads the rows, e.g. a repository findAll method
+   * @param request the request being answered
+   * @param response the response to write to
+   * @throws IOException if the response cannot be written
+   */
+  protected void writeCachedJsonArray(Class<?> entity, Supplier<?> rows,
+      HttpServletRequest request, HttpServletResponse response) throws IOException {
+    jsonResponseCache.write(entity, rows, request, response);
+  }
+
+  /**
+   * This method writes all rows of a table to the response as a JSON array like
+   * writeCachedJsonArray(entity, rows, request, response), but if the client asked for only some
+   * fields, only those columns (and the id and version) are read and written.
+   * @param entity the entity class mapped to the table
+   * @param fields the fields the client asked for, or null for all of them
+   * @param rows reads the full rows, e.g. a repository findAll method
+   * @param request the request being answered
+   * @param response the response to write to
+   * @throws IOException if the response cannot be written
+   */
+  protected void writeCachedJsonArray(Class<?> entity, List<String> fields, Supplier<?> rows,
+      HttpServletRequest request, HttpServletResponse response) throws IOException {
+    if (fields == null) {
+      writeCachedJsonArray(entity, rows, request, response);
+      return;
+    }
+    List<String> columns = projectionService.columns(entity, fields);
+    jsonResponseCache.write(entity, String.join(",", columns),
+        () -> projectionService.findAll(entity, columns), request, response);
+  }
+
+  /**
+   * This method reads a page of only some fields (and the id and version) of the rows of a table
+   * keyed by a numeric id.
+   * @param entity the entity class mapped to the table
+   * @param fields the fields the client asked for
+   * @param after the id of the last row already returned, as decoded by longCursor
+   * @param pageSize the number of rows to return
+   * @return the page, each row a map from field name to value
+   */
+  protected KeysetPage<Map<String, Object>> projectedPage(Class<?> entity, List<String> fields, long after,
+      int pageSize) {
+    List<String> columns = projectionService.columns(entity, fields);
+    return keysetPage(projectionService.findAfter(entity, columns, after, pageSize + 1), pageSize,
+        row -> row.get("id"));
+  }
+
+  /**
+   * This method reads only some fields (and the id and version) of one row, and checks it against
+   * the request's If-None-Match like findRow.
+   * @param entity the entity class mapped to the table
+   * @param id the id of the row
+   * @param fields the fields the client asked for
+   * @param request the request being answered
+   * @return the row as a map from field name to value, or null if the client's copy is current
+   */
+  protected Map<String, Object> projectedRow(Class<? extends Versioned> entity, Object id, List<String> fields,
+      ServletWebRequest request) {
+    List<String> columns = projectionService.columns(entity, fields);
+    return findRow(entity, id, request, () -> projectionService.findById(entity, columns, id),
+        row -> (Long) row.get("version"));
+  }
+
+  /**
+   * This method reads the rows with the given ids, in as few queries as the database allows.
+   * @param repository the repository for the table
+   * @param ids the ids of the rows to read
+   * @param idOf function returning the id of a row
+   * @return the rows found, in the order of their ids in the request, and the ids not found
+   */
+  protected <T, ID> LookupResult<T> lookup(JpaRepository<T, ID> repository, List<ID> ids, Function<T, ID> idOf) {
+    if (ids.size() > MAX_LOOKUP_SIZE) {
+      throw new BulkLimitExceededException(ids.size(), MAX_LOOKUP_SIZE);
+    }
+    return lookupService.findAll(repository, ids, idOf);
+  }
+
+  /**
+   * This method reads the rows of a table created, updated or deleted since a version, so that a
+   * client that already has the rows of that version can catch up without reading them all again.
+   * Rows saved are read whole, with one query per thousand; rows deleted are sent by id only.
+   * If nothing has changed, nothing is read.
+   * @param entity the entity class mapped to the table
+   * @param repository the repository for the table
+   * @param since the version the client last read the table at, e.g. the ETag of the /all list
+   * @param idOf function returning the id of a row
+   * @return the rows saved and the ids deleted since the version, and the version they bring the
+   *     client up to
+   * @throws ChangesExpiredException if the changes since the version are no longer known, or it
+   *     is not a version of this table
+   */
+  @SuppressWarnings("unchecked")
+  protected <T, ID> Delta<T> changesSince(Class<T> entity, JpaRepository<T, ID> repository, String since,
+      Function<T, ID> idOf) {
+    ChangeLogService.Changes changes = changeLogService.since(entity, tableVersionService.version(entity, since))
+        .orElseThrow(() -> new ChangesExpiredException(entity, since));
+    List<Object> deleted = new ArrayList<>(changes.deleted());
+    List<T> changed = List.of();
+    if (!changes.saved().isEmpty()) {
+      // a row saved since, but missing now, was deleted after the changes were read
+      LookupResult<T> rows = lookupService.findAll(repository, (List<ID>) changes.saved(), idOf);
+      changed = rows.getFound();
+      deleted.addAll(rows.getNotFound());
+    }
+    return new Delta<>(changed, deleted, tableVersionService.token(entity, changes.version()));
+  }
+
+  /**
+   * This method opens a stream of Server-Sent Events, one per row created, updated or deleted in
+   * a table from now on, so that a client can keep a table up to date without polling it.  The
+   * events only name the rows; the client reads them itself, e.g. with changesSince.
+   * @param entity the entity class mapped to the table
+   * @param lastEventId the Last-Event-ID header of a client that is reconnecting, or null; it is
+   *     first sent the events it missed, or a reset event if they are no longer known
+   * @return the stream
+   */
+  protected SseEmitter changeFeed(Class<?> entity, String lastEventId) {
+    return changeFeedService.subscribe(entity, lastEventId);
+  }
+
+  /**
+   * This method tags the response with the table's version as its ETag, and checks it against the
+   * request's If-None-Match.  Call it before reading any rows; if it returns true the response is
+   * already 304 Not Modified and the endpoint should return null.
+   * @param entity the entity class mapped to the table
+   * @param request the request being answered
+   * @return true if the client's copy is current
+   */
+  protected boolean notModified(Class<?> entity, ServletWebRequest request) {
+    request.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+    return request.checkNotModified(tableVersionService.etag(entity));
+  }
+
+  /**
+   * This method reads one row for a GET by id.  The response's ETag names both the row's version
+   * and the table's; the same ETag may be sent back in If-Match to update the row.  If the
+   * request's If-None-Match names the table's current version, no row of the table has been
+   * written since, and the response is 304 Not Modified without reading the row.  Otherwise the
+   * row is read, and the response is still 304 (with a new ETag) if the row is at the version
+   * named.
+   * @param entity the entity class mapped to the table
+   * @param id the id of the row
+   * @param request the request being answered
+   * @param find reads the row, e.g. a repository findById method
+   * @return the row, or null if the response is already 304 Not Modified
+   */
+  protected <T extends Versioned> T findRow(Class<T> entity, Object id, ServletWebRequest request,
+      Supplier<Optional<T>> find) {
+    return findRow(entity, id, request, find, Versioned::getVersion);
+  }
+
+  private <R> R findRow(Class<?> entity, Object id, ServletWebRequest request, Supplier<Optional<R>> find,
+      ToLongFunction<R> versionOf) {
+    request.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+    // the table's version is read before the row, so a write racing with the read leaves the tag behind
+    String table = tableVersionService.token(entity);
+    String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+    String known = ifNoneMatch == null ? null : ifNoneMatch.trim();
+    if (known != null && table.equals(tableOf(known)) && request.checkNotModified(known)) {
+      return null;
+    }
+    R row = find.get().orElseThrow(() -> new EntityNotFoundException(entity, id));
+    long version = versionOf.applyAsLong(row);
+    if (known != null && Long.valueOf(version).equals(rowOf(known)) && request.checkNotModified(known)) {
+      request.getResponse().setHeader(HttpHeaders.ETAG, etag(version, table));
+      return null;
+    }
+    request.getResponse().setHeader(HttpHeaders.ETAG, etag(version, table));
+    return row;
+  }
+
+  /**
+   * This method records that a row was inserted into a table.  Every endpoint that writes to a
+   * table must either call it, after the write is committed, or write through one of the methods
+   * below, which record their own writes.
+   * @param entity the entity class mapped to the table
+   * @param id the id of the new row
+   */
+  protected void rowCreated(Class<?> entity, Object id) {
+    changeLogService.record(entity, ChangeLogService.Kind.CREATED, List.of(id));
+  }
+
+  /**
+   * This method inserts rows whose ids come from the table's sequence, in one transaction.
+   * Elements that lack one of the required fields, or can't be read as a row, are skipped
+   * with status 400.
+   * @param entity the entity class mapped to the table
+   * @param incoming the new rows as sent; any ids in them are ignored
+   * @param required the fields every new row must have, the same ones /post requires
+   * @param idOf function returning the id of a row
+   * @return the id given to each row
+   */
+  protected <T> BulkResult bulkCreate(Class<T> entity, List<ObjectNode> incoming, List<String> required,
+      Function<T, ?> idOf) {
+    checkBulkSize(incoming);
+    incoming.stream().filter(Objects::nonNull).forEach(element -> element.remove("id"));
+    return bulkWritten(entity, bulkWriteService.createAll(rows(entity, incoming, required), idOf),
+        ChangeLogService.Kind.CREATED);
+  }
+
+  /**
+   * This method inserts rows keyed by a code, in one transaction; rows whose code is
+   * already taken are skipped, and so are elements that lack one of the required fields
+   * or can't be read as a row.
+   * @param entity the entity class mapped to the table
+   * @param repository the repository for the table
+   * @param incoming the new rows as sent
+   * @param required the fields every new row must have, the same ones /post requires
+   * @param idOf function returning the code of a row
+   * @return the code and status of each row
+   */
+  protected <T, ID> BulkResult bulkCreate(Class<T> entity, JpaRepository<T, ID> repository,
+      List<ObjectNode> incoming, List<String> required, Function<T, ID> idOf) {
+    checkBulkSize(incoming);
+    return bulkWritten(entity, bulkWriteService.createAll(repository, rows(entity, incoming, required), idOf),
+        ChangeLogService.Kind.CREATED);
+  }
+
+  /**
+   * This method updates existing rows, matched by id, in one transaction.
+   * @param entity the entity class mapped to the table
+   * @param repository the repository for the table
+   * @param rows the new contents of the rows
+   * @param idOf function returning the id of a row
+   * @param update copies the fields that may change from its second argument onto its first
+   * @return the id and status of each row
+   */
+  protected <T, ID> BulkResult bulkUpdate(Class<T> entity, JpaRepository<T, ID> repository, List<T> rows,
+      Function<T, ID> idOf, BiConsumer<T, T> update) {
+    checkBulkSize(rows);
+    return bulkWritten(entity, bulkWriteService.updateAll(repository, rows, idOf, update), ChangeLogService.Kind.UPDATED);
+  }
+
+  /**
+   * This method deletes the rows with the given ids, in one transaction.
+   * @param entity the entity class mapped to the table
+   * @param repository the repository for the table
+   * @param ids the ids of the rows to delete
+   * @param idOf function returning the id of a row
+   * @return the status of each id
+   */
+  protected <T, ID> BulkResult bulkDelete(Class<T> entity, JpaRepository<T, ID> repository, List<ID> ids,
+      Function<T, ID> idOf) {
+    checkBulkSize(ids);
+    return bulkWritten(entity, bulkWriteService.deleteAll(repository, ids, idOf), ChangeLogService.Kind.DELETED);
+  }
+
+  /**
+   * This method overwrites one row without reading it first.  If the request has an If-Match
+   * header, write is given the version it names and must only update the row if it is still at
+   * that version, and the new version is sent as the ETag and in the body; otherwise write is given
+   * null, updates the row whatever its version, and as the new version is not known it is left out
+   * of the body and no ETag is sent.
+   * @param entity the entity class mapped to the table
+   * @param repository the repository for the table
+   * @param id the id of the row to update
+   * @param incoming the new contents of the row, with its id set
+   * @param request the request being answered
+   * @param write updates the row, e.g. a repository updateById or updateByIdAndVersion method,
+   *     and returns the number of rows updated
+   * @return the row as updated, without its version if the request had no If-Match header
+   */
+  protected <T extends Versioned, ID> Object updateRow(Class<T> entity, JpaRepository<T, ID> repository, ID id,
+      T incoming, ServletWebRequest request, Function<Long, Integer> write) {
+    Long version = ifMatch(request);
+    long table = tableVersionService.version(entity);
+    written(entity, repository, id, version, write.apply(version));
+    changeLogService.record(entity, ChangeLogService.Kind.UPDATED, List.of(id));
+    if (version == null) {
+      // the client's copy of the version is not the row's, so it must not be echoed back
+      ObjectNode row = mapper.valueToTree(incoming);
+      row.remove("version");
+      return row;
+    }
+    incoming.setVersion(version + 1);
+    request.getResponse().setHeader(HttpHeaders.ETAG, etag(version + 1, tableVersionService.token(entity, table)));
+    return incoming;
+  }
+
+  /**
+   * This method deletes one row without reading it first.  If the request has an If-Match header,
+   * delete is given the version it names and must only delete the row if it is still at that
+   * version; otherwise delete is given null.
+   * @param entity the entity class mapped to the table
+   * @param repository the repository for the table
+   * @param id the id of the row to delete
+   * @param request the request being answered
+   * @param delete deletes the row, e.g. a repository removeById or removeByIdAndVersion method,
+   *     and returns the number of rows deleted
+   */
+  protected <T, ID> void deleteRow(Class<T> entity, JpaRepository<T, ID> repository, ID id,
+      ServletWebRequest request, Function<Long, Integer> delete) {
+    Long version = ifMatch(request);
+    written(entity, repository, id, version, delete.apply(version));
+    changeLogService.record(entity, ChangeLogService.Kind.DELETED, List.of(id));
+  }
+
+  /**
+   * This method changes some fields of one row.  If the patch leaves every field as it was,
+   * nothing is written and the table's version (and so its ETag) stays the same.  If the request
+   * has an If-Match header, the row must still be at the version it names.
+   * @param entity the entity class mapped to the table
+   * @param repository the repository for the table
+   * @param id the id of the row to patch
+   * @param patch the fields to change, with their new values
+   * @param request the request being answered
+   * @return the row after the patch, whose version is also sent as the ETag
+   */
+  protected <T extends Versioned, ID> T patch(Class<T> entity, JpaRepository<T, ID> repository, ID id,
+      ObjectNode patch, ServletWebRequest request) {
+    long table = tableVersionService.version(entity);
+    PatchService.Patched<T> patched = patchService.patch(repository, id, patch, ifMatch(request))
+        .orElseThrow(() -> new EntityNotFoundException(entity, id));
+    if (patched.changed()) {
+      changeLogService.record(entity, ChangeLogService.Kind.UPDATED, List.of(id));
+    }
+    request.getResponse().setHeader(HttpHeaders.ETAG,
+        etag(patched.row().getVersion(), tableVersionService.token(entity, table)));
+    return patched.row();
+  }
+
+  /**
+   * This method returns the version named by the request's If-Match header, i.e. the ETag of the
+   * row as the client last read it.
+   * @param request the request being answered
+   * @return the version, null if the request has no If-Match (or If-Match: *), or -1, which no
+   *     row is ever at, if the header is not an ETag sent by findRow, updateRow or patch
+   */
+  protected static Long ifMatch(ServletWebRequest request) {
+    String ifMatch = request.getHeader(HttpHeaders.IF_MATCH);
+    if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+      return null;
+    }
+    Long version = rowOf(ifMatch.trim());
+    return version == null ? NO_VERSION : version;
+  }
+
+  // the ETag of one row: its version, then the version of its table when it was read
+  private static String etag(long version, String table) {
+    return "\"" + version + "." + table + "\"";
+  }
+
+  // the row version named by an ETag from etag(long, String), or a bare "version", or null
+  private static Long rowOf(String tag) {
+    String value = unquote(tag);
+    if (value == null) {
+      return null;
+    }
+    int dot = value.indexOf('.');
+    try {
+      return Long.parseLong(dot < 0 ? value : value.substring(0, dot));
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  // the table version named by an ETag from etag(long, String), or null
+  private static String tableOf(String tag) {
+    String value = unquote(tag);
+    int dot = value == null ? -1 : value.indexOf('.');
+    return dot < 0 ? null : value.substring(dot + 1);
+  }
+
+  private static String unquote(String tag) {
+    String value = tag.startsWith("W/") ? tag.substring(2) : tag;
+    if (value.length() < 2 || !value.startsWith("\"") || !value.endsWith("\"")) {
+      return null;
+    }
+    return value.substring(1, value.length() - 1);
+  }
+
+  private <T, ID> void written(Class<T> entity, JpaRepository<T, ID> repository, ID id, Long version, int rows) {
+    if (rows == 0) {
+      // a conditional write also misses a row that is there at another version
+      if (version != null && repository.existsById(id)) {
+        throw new PreconditionFailedException(entity, id);
+      }
+      throw new EntityNotFoundException(entity, id);
+    }
+  }
+
+  private static void checkBulkSize(List<?> elements) {
+    if (elements.size() > MAX_BULK_SIZE) {
+      throw new BulkLimitExceededException(elements.size(), MAX_BULK_SIZE);
+    }
+  }
+
+  /**
+   * This method reads the elements of a /bulk request as rows.
+   * @return the rows, with null for each element that lacks a required field or is not a row
+   */
+  private <T> List<T> rows(Class<T> entity, List<ObjectNode> incoming, List<String> required) {
+    List<T> rows = new ArrayList<>(incoming.size());
+    for (ObjectNode element : incoming) {
+      if (element == null || !required.stream().allMatch(element::hasNonNull)) {
+        rows.add(null);
+        continue;
+      }
+      try {
+        rows.add(mapper.treeToValue(element, entity));
+      } catch (JsonProcessingException | IllegalArgumentException e) {
+        rows.add(null);
+      }
+    }
+    return rows;
+  }
+
+  private BulkResult bulkWritten(Class<?> entity, BulkResult result, ChangeLogService.Kind kind) {
+    if (result.getSucceeded() > 0) {
+      List<Object> ids = result.getItems().stream()
+          .filter(item -> item.getStatus() < 300).map(BulkResult.Item::getId).toList();
+      changeLogService.record(entity, kind, ids);
+    }
+    return result;
+  }
+
+  private static String encodeCursor(String key) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String decodeCursor(String cursor) {
+    try {
+      return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+    } catch (IllegalArgumentException e) {
+      throw new InvalidCursorException(cursor);
+    }
+  }
+
   /**
    * This method handles the EntityNotFoundException.
    * @param e the exception
@@ -51,4 +713,49 @@ public abstract class ApiController {
       "message", e.getMessage()
     );
   }
+
+  /**
+   * This method handles the InvalidCursorException, BulkLimitExceededException,
+   * InvalidPatchException, InvalidFieldsException and InvalidFilterException.
+   * @param e the exception
+   * @return a map with the type and message of the exception
+   */
+  @ExceptionHandler({ InvalidCursorException.class, BulkLimitExceededException.class,
+      InvalidPatchException.class, InvalidFieldsException.class, InvalidFilterException.class })
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  public Object handleBadRequestException(Throwable e) {
+    return Map.of(
+      "type", e.getClass().getSimpleName(),
+      "message", e.getMessage()
+    );
+  }
+
+  /**
+   * This method handles the ChangesExpiredException: the client has to read all rows again.
+   * @param e the exception
+   * @return a map with the type and message of the exception
+   */
+  @ExceptionHandler({ ChangesExpiredException.class })
+  @ResponseStatus(HttpStatus.GONE)
+  public Object handleGoneException(Throwable e) {
+    return Map.of(
+      "type", e.getClass().getSimpleName(),
+      "message", e.getMessage()
+    );
+  }
+
+  /**
+   * This method handles the PreconditionFailedException, and the OptimisticLockingFailureException
+   * thrown when Hibernate finds that a row it is writing was changed by someone else.
+   * @param e the exception
+   * @return a map with the type and message of the exception
+   */
+  @ExceptionHandler({ PreconditionFailedException.class, OptimisticLockingFailureException.class })
+  @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+  public Object handlePreconditionFailedException(Throwable e) {
+    return Map.of(
+      "type", e.getClass().getSimpleName(),
+      "message", e.getMessage()
+    );
+  }
 }
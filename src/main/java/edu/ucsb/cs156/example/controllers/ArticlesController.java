@@ -2,7 +2,10 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.Articles;
 import edu.ucsb.cs156.example.entities.UCSBDate;
-import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.BulkResult;
+import edu.ucsb.cs156.example.models.Delta;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.models.LookupResult;
 import edu.ucsb.cs156.example.repositories.ArticlesRepository;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -11,22 +14,34 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import jakarta.validation.Valid;
 
+import java.util.List;
+
 import java.time.LocalDateTime;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.MediaType;
+import java.io.IOException;
 
 @Tag(name = "Articles")
 @RequestMapping("/api/articles")
@@ -39,21 +54,95 @@ public class ArticlesController extends ApiController {
 
     @Operation(summary= "List all articles")
     @PreAuthorize("hasRole('ROLE_USER')")
-    @GetMapping("/all")
-    public Iterable<Articles> allArticles() {
-        Iterable<Articles> articles = articlesRepository.findAll();
-        return articles;
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_JSON_VALUE)
+    public void allArticles(
+            @Parameter(name="fields", description="only these fields of each row, e.g. title,url,dateAdded; all fields if left out") @RequestParam(required = false) List<String> fields,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        writeCachedJsonArray(Articles.class, fields, articlesRepository::findAll, request, response);
+    }
+
+    @Operation(summary= "Stream all articles as a JSON array")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public void streamArticles(HttpServletResponse response) throws IOException {
+        writeJsonArray(articlesRepository::streamAllBy, response);
+    }
+
+    @Operation(summary= "List articles one page at a time")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/page")
+    public KeysetPage<?> pageArticles(
+            @Parameter(name="limit") @RequestParam(defaultValue = DEFAULT_PAGE_LIMIT) int limit,
+            @Parameter(name="cursor") @RequestParam(required = false) String cursor,
+            @Parameter(name="fields", description="only these fields of each row, e.g. title,url,dateAdded; all fields if left out") @RequestParam(required = false) List<String> fields,
+            @Parameter(name="filter", description=FILTER_DESCRIPTION) @RequestParam(required = false) List<String> filter,
+            @Parameter(name="sort", description=SORT_DESCRIPTION) @RequestParam(required = false) List<String> sort) {
+        int pageSize = pageSize(limit);
+        if (filter != null || sort != null) {
+            return filteredPage(Articles.class, articlesRepository, filter, sort, fields, cursor, pageSize);
+        }
+        if (fields != null) {
+            return projectedPage(Articles.class, fields, longCursor(cursor), pageSize);
+        }
+        List<Articles> articles = articlesRepository.findByIdGreaterThanOrderByIdAsc(
+                longCursor(cursor), Limit.of(pageSize + 1));
+        return keysetPage(articles, pageSize, Articles::getId);
     }
 
     @Operation(summary= "Get a single article")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public Articles getById(
-            @Parameter(name="id") @RequestParam Long id) {
-        Articles articles = articlesRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(Articles.class, id));
+    public Object getById(
+            @Parameter(name="id") @RequestParam Long id,
+            @Parameter(name="fields", description="only these fields of the row, e.g. title,url,dateAdded; all fields if left out") @RequestParam(required = false) List<String> fields,
+            ServletWebRequest request) {
+        if (fields != null) {
+            return projectedRow(Articles.class, id, fields, request);
+        }
+        return findRow(Articles.class, id, request, () -> articlesRepository.findById(id));
+    }
 
-        return articles;
+    /**
+     * Get several articles by id, with one query per thousand ids
+     * 
+     * @param ids the ids of the articles to get
+     * @return the articles found, in the order of their ids in the request, and the ids not found
+     */
+    @Operation(summary = "Get several articles by id")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @PostMapping("/lookup")
+    public LookupResult<Articles> lookupArticles(@RequestBody List<Long> ids) {
+        return lookup(articlesRepository, ids, Articles::getId);
+    }
+
+    /**
+     * Get the articles created, updated or deleted since a version, so that a client that already
+     * has them can catch up without reading them all again
+     * 
+     * @param since the version the client last read the articles at, e.g. the ETag of /all
+     * @return the articles created or updated, the ids of those deleted, and the version to ask from next time
+     */
+    @Operation(summary = "Get the articles changed since a version")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/changes")
+    public Delta<Articles> changedArticles(
+            @Parameter(name="since", description="the version returned by the last call, or the ETag of /all; 410 Gone if it is too old or not a version of this table") @RequestParam String since) {
+        return changesSince(Articles.class, articlesRepository, since, Articles::getId);
+    }
+
+    /**
+     * Stream an event for each of the articles created, updated or deleted from now on, so that a
+     * client can keep them up to date without polling /all
+     * 
+     * @param lastEventId the id of the last event a reconnecting client was sent
+     * @return a stream of Server-Sent Events named created, updated or deleted, whose data is the id
+     */
+    @Operation(summary = "Stream the changes to the articles")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter changeEventsArticles(
+            @Parameter(name="Last-Event-ID", description="sent by the browser when it reconnects; a reset event means the articles must be read again") @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return changeFeed(Articles.class, lastEventId);
     }
 
     @Operation(summary= "Post new articles")
@@ -80,6 +169,7 @@ public class ArticlesController extends ApiController {
         articles.setDateAdded(dateAdded);
 
         Articles savedArticles = articlesRepository.save(articles);
+        rowCreated(Articles.class, savedArticles.getId());
 
         return savedArticles;
     }
@@ -88,32 +178,92 @@ public class ArticlesController extends ApiController {
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @DeleteMapping("")
     public Object deleteArticles(
-            @Parameter(name="id") @RequestParam Long id) {
-        Articles articles = articlesRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(Articles.class, id));
-
-        articlesRepository.delete(articles);
+            @Parameter(name="id") @RequestParam Long id,
+            ServletWebRequest request) {
+        deleteRow(Articles.class, articlesRepository, id, request,
+                version -> version == null ? articlesRepository.removeById(id)
+                        : articlesRepository.removeByIdAndVersion(id, version));
         return genericMessage("Articles with id %s deleted".formatted(id));
     }
 
     @Operation(summary= "Update a single article")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PutMapping("")
-    public Articles updateArticles(
+    public Object updateArticles(
             @Parameter(name="id") @RequestParam Long id,
-            @RequestBody @Valid Articles incoming) {
+            @RequestBody @Valid Articles incoming,
+            ServletWebRequest request) {
+
+        incoming.setId(id);
+        return updateRow(Articles.class, articlesRepository, id, incoming, request,
+                version -> version == null ? articlesRepository.updateById(id, incoming)
+                        : articlesRepository.updateByIdAndVersion(id, version, incoming));
+    }
 
-        Articles articles = articlesRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(Articles.class, id));
+    /**
+     * Update some fields of a single article.  Fields left out of the body keep their values;
+     * if nothing changes, nothing is written.
+     * @param id id of the article to update
+     * @param changes the fields to change, with their new values
+     * @param request the request; with If-Match, the patch only happens if the row is still at that version
+     * @return the updated article
+     */
+    @Operation(summary= "Update some fields of a single article")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PatchMapping("")
+    public Articles patchArticles(
+            @Parameter(name="id") @RequestParam Long id,
+            @RequestBody ObjectNode changes,
+            ServletWebRequest request) {
+        return patch(Articles.class, articlesRepository, id, changes, request);
+    }
+
+    /**
+     * Create several articles in one transaction
+     * 
+     * @param incoming the new articles; their ids are ignored
+     * @return the id given to each article (400 if it lacks a field /post requires)
+     */
+    @Operation(summary= "Create several articles")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/bulk")
+    public BulkResult postArticlesBulk(@RequestBody List<ObjectNode> incoming) {
+        return bulkCreate(Articles.class, incoming,
+                List.of("title", "url", "explanation", "email", "dateAdded"), Articles::getId);
+    }
 
+    /**
+     * Update several articles, matched by id, in one transaction
+     * 
+     * @param incoming the new contents of the articles
+     * @return the status of each article (404 if there is no article with its id)
+     */
+    @Operation(summary= "Update several articles")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PutMapping("/bulk")
+    public BulkResult updateArticlesBulk(@RequestBody List<Articles> incoming) {
+        return bulkUpdate(Articles.class, articlesRepository, incoming, Articles::getId,
+                ArticlesController::update);
+    }
+
+    /**
+     * Delete several articles in one transaction
+     * 
+     * @param ids the ids of the articles to delete
+     * @return the status of each id (404 if there is no article with it)
+     */
+    @Operation(summary= "Delete several articles")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/bulk")
+    public BulkResult deleteArticlesBulk(@RequestBody List<Long> ids) {
+        return bulkDelete(Articles.class, articlesRepository, ids, Articles::getId);
+    }
+
+    private static void update(Articles articles, Articles incoming) {
         articles.setTitle(incoming.getTitle());
         articles.setUrl(incoming.getUrl());
         articles.setExplanation(incoming.getExplanation());
         articles.setEmail(incoming.getEmail());
         articles.setDateAdded(incoming.getDateAdded());
-
-        articlesRepository.save(articles);
-
-        return articles;
     }
 }
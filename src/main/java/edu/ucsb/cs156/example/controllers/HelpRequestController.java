@@ -1,7 +1,10 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.HelpRequest;
-import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.BulkResult;
+import edu.ucsb.cs156.example.models.Delta;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.models.LookupResult;
 import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -10,22 +13,34 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import jakarta.validation.Valid;
 
+import java.util.List;
+
 import java.time.LocalDateTime;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.MediaType;
+import java.io.IOException;
 
 @Tag(name = "HelpRequest")
 @RequestMapping("/api/helprequests")
@@ -38,21 +53,95 @@ public class HelpRequestController extends ApiController {
 
     @Operation(summary= "list all help requests")
     @PreAuthorize("hasRole('ROLE_USER')")
-    @GetMapping("/all")
-    public Iterable<HelpRequest> allHelpRequests() {
-        Iterable<HelpRequest> helpRequests = helpRequestRepository.findAll();
-        return helpRequests;
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_JSON_VALUE)
+    public void allHelpRequests(
+            @Parameter(name="fields", description="only these fields of each row, e.g. teamId,requestTime,solved; all fields if left out") @RequestParam(required = false) List<String> fields,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        writeCachedJsonArray(HelpRequest.class, fields, helpRequestRepository::findAll, request, response);
+    }
+
+    @Operation(summary= "stream all help requests as a JSON array")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public void streamHelpRequests(HttpServletResponse response) throws IOException {
+        writeJsonArray(helpRequestRepository::streamAllBy, response);
+    }
+
+    @Operation(summary= "list help requests one page at a time")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/page")
+    public KeysetPage<?> pageHelpRequests(
+            @Parameter(name="limit") @RequestParam(defaultValue = DEFAULT_PAGE_LIMIT) int limit,
+            @Parameter(name="cursor") @RequestParam(required = false) String cursor,
+            @Parameter(name="fields", description="only these fields of each row, e.g. teamId,requestTime,solved; all fields if left out") @RequestParam(required = false) List<String> fields,
+            @Parameter(name="filter", description=FILTER_DESCRIPTION) @RequestParam(required = false) List<String> filter,
+            @Parameter(name="sort", description=SORT_DESCRIPTION) @RequestParam(required = false) List<String> sort) {
+        int pageSize = pageSize(limit);
+        if (filter != null || sort != null) {
+            return filteredPage(HelpRequest.class, helpRequestRepository, filter, sort, fields, cursor, pageSize);
+        }
+        if (fields != null) {
+            return projectedPage(HelpRequest.class, fields, longCursor(cursor), pageSize);
+        }
+        List<HelpRequest> helpRequests = helpRequestRepository.findByIdGreaterThanOrderByIdAsc(
+                longCursor(cursor), Limit.of(pageSize + 1));
+        return keysetPage(helpRequests, pageSize, HelpRequest::getId);
     }
 
     @Operation(summary = "Get a single help request")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public HelpRequest getById(
-            @Parameter(name = "id") @RequestParam Long id) {
-        HelpRequest helpRequest = helpRequestRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(HelpRequest.class, id));
+    public Object getById(
+            @Parameter(name = "id") @RequestParam Long id,
+            @Parameter(name="fields", description="only these fields of the row, e.g. teamId,requestTime,solved; all fields if left out") @RequestParam(required = false) List<String> fields,
+            ServletWebRequest request) {
+        if (fields != null) {
+            return projectedRow(HelpRequest.class, id, fields, request);
+        }
+        return findRow(HelpRequest.class, id, request, () -> helpRequestRepository.findById(id));
+    }
+
+    /**
+     * Get several help requests by id, with one query per thousand ids
+     * 
+     * @param ids the ids of the help requests to get
+     * @return the help requests found, in the order of their ids in the request, and the ids not found
+     */
+    @Operation(summary = "Get several help requests by id")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @PostMapping("/lookup")
+    public LookupResult<HelpRequest> lookupHelpRequests(@RequestBody List<Long> ids) {
+        return lookup(helpRequestRepository, ids, HelpRequest::getId);
+    }
+
+    /**
+     * Get the help requests created, updated or deleted since a version, so that a client that already
+     * has them can catch up without reading them all again
+     * 
+     * @param since the version the client last read the help requests at, e.g. the ETag of /all
+     * @return the help requests created or updated, the ids of those deleted, and the version to ask from next time
+     */
+    @Operation(summary = "Get the help requests changed since a version")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/changes")
+    public Delta<HelpRequest> changedHelpRequests(
+            @Parameter(name="since", description="the version returned by the last call, or the ETag of /all; 410 Gone if it is too old or not a version of this table") @RequestParam String since) {
+        return changesSince(HelpRequest.class, helpRequestRepository, since, HelpRequest::getId);
+    }
 
-        return helpRequest;
+    /**
+     * Stream an event for each of the help requests created, updated or deleted from now on, so that a
+     * client can keep them up to date without polling /all
+     * 
+     * @param lastEventId the id of the last event a reconnecting client was sent
+     * @return a stream of Server-Sent Events named created, updated or deleted, whose data is the id
+     */
+    @Operation(summary = "Stream the changes to the help requests")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter changeEventsHelpRequests(
+            @Parameter(name="Last-Event-ID", description="sent by the browser when it reconnects; a reset event means the help requests must be read again") @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return changeFeed(HelpRequest.class, lastEventId);
     }
 
 
@@ -82,6 +171,7 @@ public class HelpRequestController extends ApiController {
         helpRequest.setSolved(solved);
 
         HelpRequest savedHelpRequest = helpRequestRepository.save(helpRequest);
+        rowCreated(HelpRequest.class, savedHelpRequest.getId());
 
         return savedHelpRequest;
     }
@@ -89,17 +179,18 @@ public class HelpRequestController extends ApiController {
     /**
      * Deletes a restaurant. Accessible only to users with the role "ROLE_ADMIN".
      * @param id id of the restaurant to delete
+     * @param request the request; with If-Match, the delete only happens if the row is still at that version
      * @return a message indicating that the restaurant was deleted
      */
     @Operation(summary = "Delete a HelpRequest")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @DeleteMapping("")
     public Object deleteHelpRequest(
-            @Parameter(name = "id") @RequestParam Long id) {
-        HelpRequest helpRequest = helpRequestRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(HelpRequest.class, id));
-
-        helpRequestRepository.delete(helpRequest);
+            @Parameter(name = "id") @RequestParam Long id,
+            ServletWebRequest request) {
+        deleteRow(HelpRequest.class, helpRequestRepository, id, request,
+                version -> version == null ? helpRequestRepository.removeById(id)
+                        : helpRequestRepository.removeByIdAndVersion(id, version));
         return genericMessage("Help Request with id %s deleted".formatted(id));
     }
 
@@ -107,28 +198,88 @@ public class HelpRequestController extends ApiController {
      * Update a single restaurant. Accessible only to users with the role "ROLE_ADMIN".
      * @param id id of the restaurant to update
      * @param incoming the new restaurant contents
+     * @param request the request; with If-Match, the update only happens if the row is still at that version
      * @return the updated restaurant object
      */
     @Operation(summary = "Update a single Help Request")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PutMapping("")
-    public HelpRequest updateHelpRequest(
+    public Object updateHelpRequest(
             @Parameter(name = "id") @RequestParam Long id,
-            @RequestBody @Valid HelpRequest incoming) {
+            @RequestBody @Valid HelpRequest incoming,
+            ServletWebRequest request) {
 
-        HelpRequest helpRequest = helpRequestRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(HelpRequest.class, id));
+        incoming.setId(id);
+        return updateRow(HelpRequest.class, helpRequestRepository, id, incoming, request,
+                version -> version == null ? helpRequestRepository.updateById(id, incoming)
+                        : helpRequestRepository.updateByIdAndVersion(id, version, incoming));
+    }
+
+    /**
+     * Update some fields of a single help request.  Fields left out of the body keep their values;
+     * if nothing changes, nothing is written.
+     * @param id id of the help request to update
+     * @param changes the fields to change, with their new values
+     * @param request the request; with If-Match, the patch only happens if the row is still at that version
+     * @return the updated help request
+     */
+    @Operation(summary = "Update some fields of a single help request")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PatchMapping("")
+    public HelpRequest patchHelpRequest(
+            @Parameter(name = "id") @RequestParam Long id,
+            @RequestBody ObjectNode changes,
+            ServletWebRequest request) {
+        return patch(HelpRequest.class, helpRequestRepository, id, changes, request);
+    }
+
+    /**
+     * Create several help requests in one transaction
+     * 
+     * @param incoming the new help requests; their ids are ignored
+     * @return the id given to each help request (400 if it lacks a field /post requires)
+     */
+    @Operation(summary= "Create several help requests")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/bulk")
+    public BulkResult postHelpRequests(@RequestBody List<ObjectNode> incoming) {
+        return bulkCreate(HelpRequest.class, incoming,
+                List.of("requesterEmail", "teamId", "tableOrBreakoutRoom", "requestTime", "explanation", "solved"), HelpRequest::getId);
+    }
 
+    /**
+     * Update several help requests, matched by id, in one transaction
+     * 
+     * @param incoming the new contents of the help requests
+     * @return the status of each help request (404 if there is no help request with its id)
+     */
+    @Operation(summary= "Update several help requests")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PutMapping("/bulk")
+    public BulkResult updateHelpRequests(@RequestBody List<HelpRequest> incoming) {
+        return bulkUpdate(HelpRequest.class, helpRequestRepository, incoming, HelpRequest::getId,
+                HelpRequestController::update);
+    }
+
+    /**
+     * Delete several help requests in one transaction
+     * 
+     * @param ids the ids of the help requests to delete
+     * @return the status of each id (404 if there is no help request with it)
+     */
+    @Operation(summary= "Delete several help requests")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/bulk")
+    public BulkResult deleteHelpRequests(@RequestBody List<Long> ids) {
+        return bulkDelete(HelpRequest.class, helpRequestRepository, ids, HelpRequest::getId);
+    }
+
+    private static void update(HelpRequest helpRequest, HelpRequest incoming) {
         helpRequest.setRequesterEmail(incoming.getRequesterEmail());
         helpRequest.setTeamId(incoming.getTeamId());
         helpRequest.setTableOrBreakoutRoom(incoming.getTableOrBreakoutRoom());
         helpRequest.setRequestTime(incoming.getRequestTime());
         helpRequest.setExplanation(incoming.getExplanation());
         helpRequest.setSolved(incoming.getSolved());
-
-        helpRequestRepository.save(helpRequest);
-
-        return helpRequest;
     }
 }
-    
\ No newline at end of file
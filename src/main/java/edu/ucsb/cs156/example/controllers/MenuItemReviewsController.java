@@ -1,7 +1,10 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.MenuItemReviews;
-import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.BulkResult;
+import edu.ucsb.cs156.example.models.Delta;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.models.LookupResult;
 import edu.ucsb.cs156.example.repositories.MenuItemsReviewsRepository;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -9,22 +12,34 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import jakarta.validation.Valid;
 
+import java.util.List;
+
 import java.time.LocalDateTime;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.MediaType;
+import java.io.IOException;
 
 
 @Tag(name = "MenuItemReviews")
@@ -40,14 +55,52 @@ public class MenuItemReviewsController extends ApiController {
     /**
      * List all MenuItemReviews
      * 
-     * @return an iterable of MenuItemReviews
+     * @param request the request being answered
+     * @param response the response the JSON array is written to
+     * @throws IOException if the response cannot be written
      */
     @Operation(summary= "List all menu item reviews")
     @PreAuthorize("hasRole('ROLE_USER')")
-    @GetMapping("/all")
-    public Iterable<MenuItemReviews> allMenuItemReviews() {
-        Iterable<MenuItemReviews> reviews = menuItemsReviewsRepository.findAll();
-        return reviews;
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_JSON_VALUE)
+    public void allMenuItemReviews(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        writeCachedJsonArray(MenuItemReviews.class, menuItemsReviewsRepository::findAll, request, response);
+    }
+
+    /**
+     * Stream all MenuItemReviews rows as a JSON array, without holding them all in memory
+     * 
+     * @param response the response the JSON array is written to
+     * @throws IOException if the response cannot be written
+     */
+    @Operation(summary= "Stream all menu item reviews as a JSON array")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public void streamMenuItemReviews(HttpServletResponse response) throws IOException {
+        writeJsonArray(menuItemsReviewsRepository::streamAllBy, response);
+    }
+
+    /**
+     * List MenuItemReviews rows one page at a time, using keyset pagination on id
+     * 
+     * @param limit  maximum number of rows to return (at most {@value #MAX_PAGE_LIMIT})
+     * @param cursor the nextCursor of the previous page; omit it to get the first page
+     * @return a page of MenuItemReviews
+     */
+    @Operation(summary= "List menu item reviews one page at a time")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/page")
+    public KeysetPage<MenuItemReviews> pageMenuItemReviews(
+            @Parameter(name="limit") @RequestParam(defaultValue = DEFAULT_PAGE_LIMIT) int limit,
+            @Parameter(name="cursor") @RequestParam(required = false) String cursor,
+            @Parameter(name="filter", description=FILTER_DESCRIPTION) @RequestParam(required = false) List<String> filter,
+            @Parameter(name="sort", description=SORT_DESCRIPTION) @RequestParam(required = false) List<String> sort) {
+        int pageSize = pageSize(limit);
+        if (filter != null || sort != null) {
+            return filteredPage(MenuItemReviews.class, menuItemsReviewsRepository, filter, sort, cursor, pageSize);
+        }
+        List<MenuItemReviews> reviews = menuItemsReviewsRepository.findByIdGreaterThanOrderByIdAsc(
+                longCursor(cursor), Limit.of(pageSize + 1));
+        return keysetPage(reviews, pageSize, MenuItemReviews::getId);
     }
 
     @Operation(summary= "Create a new menu item review")
@@ -76,6 +129,7 @@ public class MenuItemReviewsController extends ApiController {
         menuItemReview.setComments(comments);
 
         MenuItemReviews savedMenuItemReview = menuItemsReviewsRepository.save(menuItemReview);
+        rowCreated(MenuItemReviews.class, savedMenuItemReview.getId());
 
         return savedMenuItemReview;
     }
@@ -86,11 +140,52 @@ public class MenuItemReviewsController extends ApiController {
 
     //Get a single menu item review by id
     public MenuItemReviews getById(
-            @Parameter(name="id") @RequestParam Long id) {
-        MenuItemReviews menuItemReview = menuItemsReviewsRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(MenuItemReviews.class, id));
+            @Parameter(name="id") @RequestParam Long id,
+            ServletWebRequest request) {
+        return findRow(MenuItemReviews.class, id, request, () -> menuItemsReviewsRepository.findById(id));
+    }
 
-        return menuItemReview;
+    /**
+     * Get several menu item reviews by id, with one query per thousand ids
+     * 
+     * @param ids the ids of the menu item reviews to get
+     * @return the menu item reviews found, in the order of their ids in the request, and the ids not found
+     */
+    @Operation(summary = "Get several menu item reviews by id")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @PostMapping("/lookup")
+    public LookupResult<MenuItemReviews> lookupMenuItemReviews(@RequestBody List<Long> ids) {
+        return lookup(menuItemsReviewsRepository, ids, MenuItemReviews::getId);
+    }
+
+    /**
+     * Get the menu item reviews created, updated or deleted since a version, so that a client that already
+     * has them can catch up without reading them all again
+     * 
+     * @param since the version the client last read the menu item reviews at, e.g. the ETag of /all
+     * @return the menu item reviews created or updated, the ids of those deleted, and the version to ask from next time
+     */
+    @Operation(summary = "Get the menu item reviews changed since a version")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/changes")
+    public Delta<MenuItemReviews> changedMenuItemReviews(
+            @Parameter(name="since", description="the version returned by the last call, or the ETag of /all; 410 Gone if it is too old or not a version of this table") @RequestParam String since) {
+        return changesSince(MenuItemReviews.class, menuItemsReviewsRepository, since, MenuItemReviews::getId);
+    }
+
+    /**
+     * Stream an event for each of the menu item reviews created, updated or deleted from now on, so that a
+     * client can keep them up to date without polling /all
+     * 
+     * @param lastEventId the id of the last event a reconnecting client was sent
+     * @return a stream of Server-Sent Events named created, updated or deleted, whose data is the id
+     */
+    @Operation(summary = "Stream the changes to the menu item reviews")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter changeEventsMenuItemReviews(
+            @Parameter(name="Last-Event-ID", description="sent by the browser when it reconnects; a reset event means the menu item reviews must be read again") @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return changeFeed(MenuItemReviews.class, lastEventId);
     }
 
     @Operation(summary="Delete a menu item review by id")
@@ -100,11 +195,11 @@ public class MenuItemReviewsController extends ApiController {
     //Delete a menu item review by id(not itemId)
 
     public Object deleteMenuItemReview(
-            @Parameter(name="id") @RequestParam Long id) {
-        MenuItemReviews menuItemReview = menuItemsReviewsRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(MenuItemReviews.class, id));
-
-        menuItemsReviewsRepository.delete(menuItemReview);
+            @Parameter(name="id") @RequestParam Long id,
+            ServletWebRequest request) {
+        deleteRow(MenuItemReviews.class, menuItemsReviewsRepository, id, request,
+                version -> version == null ? menuItemsReviewsRepository.removeById(id)
+                        : menuItemsReviewsRepository.removeByIdAndVersion(id, version));
         return genericMessage("MenuItemReview with id %s deleted".formatted(id));
     }
 
@@ -113,21 +208,81 @@ public class MenuItemReviewsController extends ApiController {
     @PutMapping("")
 
     //Update a single menu item review by id
-    public MenuItemReviews updateMenuItemReview(
+    public Object updateMenuItemReview(
+            @Parameter(name="id") @RequestParam Long id,
+            @RequestBody @Valid MenuItemReviews incoming,
+            ServletWebRequest request) {
+
+        incoming.setId(id);
+        return updateRow(MenuItemReviews.class, menuItemsReviewsRepository, id, incoming, request,
+                version -> version == null ? menuItemsReviewsRepository.updateById(id, incoming)
+                        : menuItemsReviewsRepository.updateByIdAndVersion(id, version, incoming));
+    }
+
+    /**
+     * Update some fields of a single menu item review.  Fields left out of the body keep their values;
+     * if nothing changes, nothing is written.
+     * @param id id of the menu item review to update
+     * @param changes the fields to change, with their new values
+     * @param request the request; with If-Match, the patch only happens if the row is still at that version
+     * @return the updated menu item review
+     */
+    @Operation(summary= "Update some fields of a single menu item review")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @PatchMapping("")
+    public MenuItemReviews patchMenuItemReview(
             @Parameter(name="id") @RequestParam Long id,
-            @RequestBody @Valid MenuItemReviews incoming) {
+            @RequestBody ObjectNode changes,
+            ServletWebRequest request) {
+        return patch(MenuItemReviews.class, menuItemsReviewsRepository, id, changes, request);
+    }
+
+    /**
+     * Create several reviews in one transaction
+     * 
+     * @param incoming the new reviews; their ids are ignored
+     * @return the id given to each review (400 if it lacks a field /post requires)
+     */
+    @Operation(summary= "Create several reviews")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/bulk")
+    public BulkResult postMenuItemReviews(@RequestBody List<ObjectNode> incoming) {
+        return bulkCreate(MenuItemReviews.class, incoming,
+                List.of("itemId", "reviewerEmail", "stars", "dateReviewed", "comments"), MenuItemReviews::getId);
+    }
+
+    /**
+     * Update several reviews, matched by id, in one transaction
+     * 
+     * @param incoming the new contents of the reviews
+     * @return the status of each review (404 if there is no review with its id)
+     */
+    @Operation(summary= "Update several reviews")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PutMapping("/bulk")
+    public BulkResult updateMenuItemReviews(@RequestBody List<MenuItemReviews> incoming) {
+        return bulkUpdate(MenuItemReviews.class, menuItemsReviewsRepository, incoming, MenuItemReviews::getId,
+                MenuItemReviewsController::update);
+    }
 
-        MenuItemReviews menuItemReview = menuItemsReviewsRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(MenuItemReviews.class, id));
+    /**
+     * Delete several reviews in one transaction
+     * 
+     * @param ids the ids of the reviews to delete
+     * @return the status of each id (404 if there is no review with it)
+     */
+    @Operation(summary= "Delete several reviews")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/bulk")
+    public BulkResult deleteMenuItemReviews(@RequestBody List<Long> ids) {
+        return bulkDelete(MenuItemReviews.class, menuItemsReviewsRepository, ids, MenuItemReviews::getId);
+    }
 
+    private static void update(MenuItemReviews menuItemReview, MenuItemReviews incoming) {
         menuItemReview.setItemId(incoming.getItemId());
         menuItemReview.setReviewerEmail(incoming.getReviewerEmail());
         menuItemReview.setStars(incoming.getStars());
         menuItemReview.setDateReviewed(incoming.getDateReviewed());
         menuItemReview.setComments(incoming.getComments());
-
-        menuItemsReviewsRepository.save(menuItemReview);
-
-        return menuItemReview;
     }
 }
@@ -1,6 +1,9 @@
 package edu.ucsb.cs156.example.controllers;
 
-import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.BulkResult;
+import edu.ucsb.cs156.example.models.Delta;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.models.LookupResult;
 import edu.ucsb.cs156.example.repositories.RecommendationRequestRepository;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -9,24 +12,36 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import jakarta.validation.Valid;
 
+import java.util.List;
+
 import edu.ucsb.cs156.example.entities.RecommendationRequest;
 
 import java.time.LocalDateTime;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.MediaType;
+import java.io.IOException;
 @Tag(name = "recommendationRequests")
 @RequestMapping("/api/recommendationrequests")
 @RestController
@@ -37,10 +52,39 @@ public class RecommendationRequestsController extends ApiController {
 
     @Operation(summary= "List all recommendation requests")
     @PreAuthorize("hasRole('ROLE_USER')")
-    @GetMapping("/all")
-    public Iterable<RecommendationRequest> allRecommendationRequests() {
-        Iterable<RecommendationRequest> reqs = recommendationRequestRepository.findAll();
-        return reqs;
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_JSON_VALUE)
+    public void allRecommendationRequests(
+            @Parameter(name="fields", description="only these fields of each row, e.g. requesterEmail,dateNeeded,done; all fields if left out") @RequestParam(required = false) List<String> fields,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        writeCachedJsonArray(RecommendationRequest.class, fields, recommendationRequestRepository::findAll, request, response);
+    }
+
+    @Operation(summary= "Stream all recommendation requests as a JSON array")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public void streamRecommendationRequests(HttpServletResponse response) throws IOException {
+        writeJsonArray(recommendationRequestRepository::streamAllBy, response);
+    }
+
+    @Operation(summary= "List recommendation requests one page at a time")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/page")
+    public KeysetPage<?> pageRecommendationRequests(
+            @Parameter(name="limit") @RequestParam(defaultValue = DEFAULT_PAGE_LIMIT) int limit,
+            @Parameter(name="cursor") @RequestParam(required = false) String cursor,
+            @Parameter(name="fields", description="only these fields of each row, e.g. requesterEmail,dateNeeded,done; all fields if left out") @RequestParam(required = false) List<String> fields,
+            @Parameter(name="filter", description=FILTER_DESCRIPTION) @RequestParam(required = false) List<String> filter,
+            @Parameter(name="sort", description=SORT_DESCRIPTION) @RequestParam(required = false) List<String> sort) {
+        int pageSize = pageSize(limit);
+        if (filter != null || sort != null) {
+            return filteredPage(RecommendationRequest.class, recommendationRequestRepository, filter, sort, fields, cursor, pageSize);
+        }
+        if (fields != null) {
+            return projectedPage(RecommendationRequest.class, fields, longCursor(cursor), pageSize);
+        }
+        List<RecommendationRequest> reqs = recommendationRequestRepository.findByIdGreaterThanOrderByIdAsc(
+                longCursor(cursor), Limit.of(pageSize + 1));
+        return keysetPage(reqs, pageSize, RecommendationRequest::getId);
     }
 
     @Operation(summary= "Create a new recommendation request")
@@ -80,6 +124,7 @@ public class RecommendationRequestsController extends ApiController {
         req.setDateNeeded(dateNeeded);
         req.setDone(doneBool);
         RecommendationRequest savedReq = recommendationRequestRepository.save(req);
+        rowCreated(RecommendationRequest.class, savedReq.getId());
 
         return savedReq;
     }
@@ -88,34 +133,82 @@ public class RecommendationRequestsController extends ApiController {
      * Get a single request by id
      * 
      * @param id the id of the request
+     * @param fields only these fields of the request (and its id and version), or null for all of them
+     * @param request the request, whose If-None-Match is checked against the row version
      * @return a RecommendationRequest
      */
     @Operation(summary= "Get a single recommendation request")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public RecommendationRequest getById(
-            @Parameter(name="id") @RequestParam Long id) {
-        RecommendationRequest req = recommendationRequestRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(RecommendationRequest.class, id));
+    public Object getById(
+            @Parameter(name="id") @RequestParam Long id,
+            @Parameter(name="fields", description="only these fields of the row, e.g. requesterEmail,dateNeeded,done; all fields if left out") @RequestParam(required = false) List<String> fields,
+            ServletWebRequest request) {
+        if (fields != null) {
+            return projectedRow(RecommendationRequest.class, id, fields, request);
+        }
+        return findRow(RecommendationRequest.class, id, request, () -> recommendationRequestRepository.findById(id));
+    }
 
-        return req;
+    /**
+     * Get several recommendation requests by id, with one query per thousand ids
+     * 
+     * @param ids the ids of the recommendation requests to get
+     * @return the recommendation requests found, in the order of their ids in the request, and the ids not found
+     */
+    @Operation(summary = "Get several recommendation requests by id")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @PostMapping("/lookup")
+    public LookupResult<RecommendationRequest> lookupRecommendationRequests(@RequestBody List<Long> ids) {
+        return lookup(recommendationRequestRepository, ids, RecommendationRequest::getId);
+    }
+
+    /**
+     * Get the recommendation requests created, updated or deleted since a version, so that a client that already
+     * has them can catch up without reading them all again
+     * 
+     * @param since the version the client last read the recommendation requests at, e.g. the ETag of /all
+     * @return the recommendation requests created or updated, the ids of those deleted, and the version to ask from next time
+     */
+    @Operation(summary = "Get the recommendation requests changed since a version")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/changes")
+    public Delta<RecommendationRequest> changedRecommendationRequests(
+            @Parameter(name="since", description="the version returned by the last call, or the ETag of /all; 410 Gone if it is too old or not a version of this table") @RequestParam String since) {
+        return changesSince(RecommendationRequest.class, recommendationRequestRepository, since, RecommendationRequest::getId);
+    }
+
+    /**
+     * Stream an event for each of the recommendation requests created, updated or deleted from now on, so that a
+     * client can keep them up to date without polling /all
+     * 
+     * @param lastEventId the id of the last event a reconnecting client was sent
+     * @return a stream of Server-Sent Events named created, updated or deleted, whose data is the id
+     */
+    @Operation(summary = "Stream the changes to the recommendation requests")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter changeEventsRecommendationRequests(
+            @Parameter(name="Last-Event-ID", description="sent by the browser when it reconnects; a reset event means the recommendation requests must be read again") @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return changeFeed(RecommendationRequest.class, lastEventId);
     }
 
     /**
      * Delete a RecommendationRequest
      * 
      * @param id the id of the req
+     * @param request the request; with If-Match, the delete only happens if the row is still at that version
      * @return a message indicating the req was deleted
      */
     @Operation(summary= "Delete a RecommendationRequest")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @DeleteMapping("")
     public Object deleteRecommendationRequest(
-            @Parameter(name="id") @RequestParam Long id) {
-        RecommendationRequest req = recommendationRequestRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(RecommendationRequest.class, id));
-
-        recommendationRequestRepository.delete(req);
+            @Parameter(name="id") @RequestParam Long id,
+            ServletWebRequest request) {
+        deleteRow(RecommendationRequest.class, recommendationRequestRepository, id, request,
+                version -> version == null ? recommendationRequestRepository.removeById(id)
+                        : recommendationRequestRepository.removeByIdAndVersion(id, version));
         return genericMessage("RecommendationRequest with id %s deleted".formatted(id));
     }
 
@@ -124,28 +217,88 @@ public class RecommendationRequestsController extends ApiController {
      * 
      * @param id       id of the req to update
      * @param incoming the new req
+     * @param request the request; with If-Match, the update only happens if the row is still at that version
      * @return the updated req object
      */
     @Operation(summary= "Update a single RecommendationRequest")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PutMapping("")
-    public RecommendationRequest updateRecommendationRequest(
+    public Object updateRecommendationRequest(
             @Parameter(name="id") @RequestParam Long id,
-            @RequestBody @Valid RecommendationRequest incoming) {
+            @RequestBody @Valid RecommendationRequest incoming,
+            ServletWebRequest request) {
 
-        RecommendationRequest req = recommendationRequestRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(RecommendationRequest.class, id));
+        incoming.setId(id);
+        return updateRow(RecommendationRequest.class, recommendationRequestRepository, id, incoming, request,
+                version -> version == null ? recommendationRequestRepository.updateById(id, incoming)
+                        : recommendationRequestRepository.updateByIdAndVersion(id, version, incoming));
+    }
+
+    /**
+     * Update some fields of a single recommendation request.  Fields left out of the body keep their values;
+     * if nothing changes, nothing is written.
+     * @param id id of the recommendation request to update
+     * @param changes the fields to change, with their new values
+     * @param request the request; with If-Match, the patch only happens if the row is still at that version
+     * @return the updated recommendation request
+     */
+    @Operation(summary= "Update some fields of a single recommendation request")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PatchMapping("")
+    public RecommendationRequest patchRecommendationRequest(
+            @Parameter(name="id") @RequestParam Long id,
+            @RequestBody ObjectNode changes,
+            ServletWebRequest request) {
+        return patch(RecommendationRequest.class, recommendationRequestRepository, id, changes, request);
+    }
 
+    /**
+     * Create several recommendation requests in one transaction
+     * 
+     * @param incoming the new recommendation requests; their ids are ignored
+     * @return the id given to each recommendation request (400 if it lacks a field /post requires)
+     */
+    @Operation(summary= "Create several recommendation requests")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/bulk")
+    public BulkResult postRecommendationRequests(@RequestBody List<ObjectNode> incoming) {
+        return bulkCreate(RecommendationRequest.class, incoming,
+                List.of("requesterEmail", "professorEmail", "explanation", "dateRequested", "dateNeeded", "done"), RecommendationRequest::getId);
+    }
+
+    /**
+     * Update several recommendation requests, matched by id, in one transaction
+     * 
+     * @param incoming the new contents of the recommendation requests
+     * @return the status of each recommendation request (404 if there is no recommendation request with its id)
+     */
+    @Operation(summary= "Update several recommendation requests")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PutMapping("/bulk")
+    public BulkResult updateRecommendationRequests(@RequestBody List<RecommendationRequest> incoming) {
+        return bulkUpdate(RecommendationRequest.class, recommendationRequestRepository, incoming, RecommendationRequest::getId,
+                RecommendationRequestsController::update);
+    }
+
+    /**
+     * Delete several recommendation requests in one transaction
+     * 
+     * @param ids the ids of the recommendation requests to delete
+     * @return the status of each id (404 if there is no recommendation request with it)
+     */
+    @Operation(summary= "Delete several recommendation requests")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/bulk")
+    public BulkResult deleteRecommendationRequests(@RequestBody List<Long> ids) {
+        return bulkDelete(RecommendationRequest.class, recommendationRequestRepository, ids, RecommendationRequest::getId);
+    }
+
+    private static void update(RecommendationRequest req, RecommendationRequest incoming) {
         req.setDateNeeded(incoming.getDateNeeded());
         req.setDateRequested(incoming.getDateRequested());
         req.setDone(incoming.getDone());
         req.setProfessorEmail(incoming.getProfessorEmail());
         req.setRequesterEmail(incoming.getRequesterEmail());
         req.setExplanation(incoming.getExplanation());
-
-        recommendationRequestRepository.save(req);
-
-        return req;
     }
-    
 }
@@ -1,26 +1,42 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.Restaurant;
-import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.BulkResult;
+import edu.ucsb.cs156.example.models.Delta;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.models.LookupResult;
 import edu.ucsb.cs156.example.repositories.RestaurantRepository;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
 
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import jakarta.validation.Valid;
 
+import java.util.List;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.MediaType;
+import java.io.IOException;
+
 /**
  * This is a REST controller for Restaurants
  */
@@ -35,30 +51,110 @@ public class RestaurantsController extends ApiController {
 
     /**
      * This method returns a list of all restaurants.
-     * @return a list of all restaurants
+     * @param request the request being answered
+     * @param response the response the JSON array is written to
+     * @throws IOException if the response cannot be written
      */
     @Operation(summary = "List all restaurants")
     @PreAuthorize("hasRole('ROLE_USER')")
-    @GetMapping("/all")
-    public Iterable<Restaurant> allRestaurants() {
-        Iterable<Restaurant> restaurants = restaurantRepository.findAll();
-        return restaurants;
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_JSON_VALUE)
+    public void allRestaurants(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        writeCachedJsonArray(Restaurant.class, restaurantRepository::findAll, request, response);
+    }
+
+    /**
+     * Stream all Restaurant rows as a JSON array, without holding them all in memory
+     * 
+     * @param response the response the JSON array is written to
+     * @throws IOException if the response cannot be written
+     */
+    @Operation(summary = "Stream all restaurants as a JSON array")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public void streamRestaurants(HttpServletResponse response) throws IOException {
+        writeJsonArray(restaurantRepository::streamAllBy, response);
+    }
+
+    /**
+     * List Restaurant rows one page at a time, using keyset pagination on id
+     * 
+     * @param limit  maximum number of rows to return (at most {@value #MAX_PAGE_LIMIT})
+     * @param cursor the nextCursor of the previous page; omit it to get the first page
+     * @return a page of Restaurant
+     */
+    @Operation(summary = "List restaurants one page at a time")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/page")
+    public KeysetPage<Restaurant> pageRestaurants(
+            @Parameter(name="limit") @RequestParam(defaultValue = DEFAULT_PAGE_LIMIT) int limit,
+            @Parameter(name="cursor") @RequestParam(required = false) String cursor,
+            @Parameter(name="filter", description=FILTER_DESCRIPTION) @RequestParam(required = false) List<String> filter,
+            @Parameter(name="sort", description=SORT_DESCRIPTION) @RequestParam(required = false) List<String> sort) {
+        int pageSize = pageSize(limit);
+        if (filter != null || sort != null) {
+            return filteredPage(Restaurant.class, restaurantRepository, filter, sort, cursor, pageSize);
+        }
+        List<Restaurant> restaurants = restaurantRepository.findByIdGreaterThanOrderByIdAsc(
+                longCursor(cursor), Limit.of(pageSize + 1));
+        return keysetPage(restaurants, pageSize, Restaurant::getId);
     }
 
     /**
      * This method returns a single restaurant.
      * @param id id of the restaurant to get
+     * @param request the request, whose If-None-Match is checked against the row version
      * @return a single restaurant
      */
     @Operation(summary = "Get a single restaurant")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
     public Restaurant getById(
-            @Parameter(name = "id") @RequestParam Long id) {
-        Restaurant restaurant = restaurantRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(Restaurant.class, id));
+            @Parameter(name = "id") @RequestParam Long id,
+            ServletWebRequest request) {
+        return findRow(Restaurant.class, id, request, () -> restaurantRepository.findById(id));
+    }
 
-        return restaurant;
+    /**
+     * Get several restaurants by id, with one query per thousand ids
+     * 
+     * @param ids the ids of the restaurants to get
+     * @return the restaurants found, in the order of their ids in the request, and the ids not found
+     */
+    @Operation(summary = "Get several restaurants by id")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @PostMapping("/lookup")
+    public LookupResult<Restaurant> lookupRestaurants(@RequestBody List<Long> ids) {
+        return lookup(restaurantRepository, ids, Restaurant::getId);
+    }
+
+    /**
+     * Get the restaurants created, updated or deleted since a version, so that a client that already
+     * has them can catch up without reading them all again
+     * 
+     * @param since the version the client last read the restaurants at, e.g. the ETag of /all
+     * @return the restaurants created or updated, the ids of those deleted, and the version to ask from next time
+     */
+    @Operation(summary = "Get the restaurants changed since a version")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/changes")
+    public Delta<Restaurant> changedRestaurants(
+            @Parameter(name="since", description="the version returned by the last call, or the ETag of /all; 410 Gone if it is too old or not a version of this table") @RequestParam String since) {
+        return changesSince(Restaurant.class, restaurantRepository, since, Restaurant::getId);
+    }
+
+    /**
+     * Stream an event for each of the restaurants created, updated or deleted from now on, so that a
+     * client can keep them up to date without polling /all
+     * 
+     * @param lastEventId the id of the last event a reconnecting client was sent
+     * @return a stream of Server-Sent Events named created, updated or deleted, whose data is the id
+     */
+    @Operation(summary = "Stream the changes to the restaurants")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter changeEventsRestaurants(
+            @Parameter(name="Last-Event-ID", description="sent by the browser when it reconnects; a reset event means the restaurants must be read again") @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return changeFeed(Restaurant.class, lastEventId);
     }
 
     /**
@@ -79,23 +175,26 @@ public class RestaurantsController extends ApiController {
         restaurant.setDescription(description);
         
         Restaurant savedrestaurant = restaurantRepository.save(restaurant);
+        
+        rowCreated(Restaurant.class, savedrestaurant.getId());
         return savedrestaurant;
     }
 
     /**
      * Deletes a restaurant. Accessible only to users with the role "ROLE_ADMIN".
      * @param id id of the restaurant to delete
+     * @param request the request; with If-Match, the delete only happens if the row is still at that version
      * @return a message indicating that the restaurant was deleted
      */
     @Operation(summary = "Delete a Restaurant")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @DeleteMapping("")
     public Object deleteRestaurant(
-            @Parameter(name = "id") @RequestParam Long id) {
-        Restaurant restaurant = restaurantRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(Restaurant.class, id));
-
-        restaurantRepository.delete(restaurant);
+            @Parameter(name = "id") @RequestParam Long id,
+            ServletWebRequest request) {
+        deleteRow(Restaurant.class, restaurantRepository, id, request,
+                version -> version == null ? restaurantRepository.removeById(id)
+                        : restaurantRepository.removeByIdAndVersion(id, version));
         return genericMessage("Restaurant with id %s deleted".formatted(id));
     }
 
@@ -103,23 +202,84 @@ public class RestaurantsController extends ApiController {
      * Update a single restaurant. Accessible only to users with the role "ROLE_ADMIN".
      * @param id id of the restaurant to update
      * @param incoming the new restaurant contents
+     * @param request the request; with If-Match, the update only happens if the row is still at that version
      * @return the updated restaurant object
      */
     @Operation(summary = "Update a single restaurant")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PutMapping("")
-    public Restaurant updateRestaurant(
+    public Object updateRestaurant(
             @Parameter(name = "id") @RequestParam Long id,
-            @RequestBody @Valid Restaurant incoming) {
+            @RequestBody @Valid Restaurant incoming,
+            ServletWebRequest request) {
 
-        Restaurant restaurant = restaurantRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(Restaurant.class, id));
+        incoming.setId(id);
+        return updateRow(Restaurant.class, restaurantRepository, id, incoming, request,
+                version -> version == null ? restaurantRepository.updateById(id, incoming)
+                        : restaurantRepository.updateByIdAndVersion(id, version, incoming));
+    }
 
-        restaurant.setName(incoming.getName());
-        restaurant.setDescription(incoming.getDescription());
+    /**
+     * Update some fields of a single restaurant.  Fields left out of the body keep their values;
+     * if nothing changes, nothing is written.
+     * @param id id of the restaurant to update
+     * @param changes the fields to change, with their new values
+     * @param request the request; with If-Match, the patch only happens if the row is still at that version
+     * @return the updated restaurant
+     */
+    @Operation(summary = "Update some fields of a single restaurant")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PatchMapping("")
+    public Restaurant patchRestaurant(
+            @Parameter(name = "id") @RequestParam Long id,
+            @RequestBody ObjectNode changes,
+            ServletWebRequest request) {
+        return patch(Restaurant.class, restaurantRepository, id, changes, request);
+    }
 
-        restaurantRepository.save(restaurant);
+    /**
+     * Create several restaurants in one transaction
+     * 
+     * @param incoming the new restaurants; their ids are ignored
+     * @return the id given to each restaurant (400 if it lacks a field /post requires)
+     */
+    @Operation(summary= "Create several restaurants")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/bulk")
+    public BulkResult postRestaurants(@RequestBody List<ObjectNode> incoming) {
+        return bulkCreate(Restaurant.class, incoming,
+                List.of("name", "description"), Restaurant::getId);
+    }
 
-        return restaurant;
+    /**
+     * Update several restaurants, matched by id, in one transaction
+     * 
+     * @param incoming the new contents of the restaurants
+     * @return the status of each restaurant (404 if there is no restaurant with its id)
+     */
+    @Operation(summary= "Update several restaurants")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PutMapping("/bulk")
+    public BulkResult updateRestaurants(@RequestBody List<Restaurant> incoming) {
+        return bulkUpdate(Restaurant.class, restaurantRepository, incoming, Restaurant::getId,
+                RestaurantsController::update);
+    }
+
+    /**
+     * Delete several restaurants in one transaction
+     * 
+     * @param ids the ids of the restaurants to delete
+     * @return the status of each id (404 if there is no restaurant with it)
+     */
+    @Operation(summary= "Delete several restaurants")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/bulk")
+    public BulkResult deleteRestaurants(@RequestBody List<Long> ids) {
+        return bulkDelete(Restaurant.class, restaurantRepository, ids, Restaurant::getId);
+    }
+
+    private static void update(Restaurant restaurant, Restaurant incoming) {
+        restaurant.setName(incoming.getName());
+        restaurant.setDescription(incoming.getDescription());
     }
-}
\ No newline at end of file
+}
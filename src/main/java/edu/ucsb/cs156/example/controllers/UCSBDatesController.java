@@ -1,7 +1,10 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.UCSBDate;
-import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.BulkResult;
+import edu.ucsb.cs156.example.models.Delta;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.models.LookupResult;
 import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -10,22 +13,34 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import jakarta.validation.Valid;
 
+import java.util.List;
+
 import java.time.LocalDateTime;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.MediaType;
+import java.io.IOException;
 
 /**
  * This is a REST controller for UCSBDates
@@ -43,31 +58,111 @@ public class UCSBDatesController extends ApiController {
     /**
      * List all UCSB dates
      * 
-     * @return an iterable of UCSBDate
+     * @param request the request being answered
+     * @param response the response the JSON array is written to
+     * @throws IOException if the response cannot be written
      */
     @Operation(summary= "List all ucsb dates")
     @PreAuthorize("hasRole('ROLE_USER')")
-    @GetMapping("/all")
-    public Iterable<UCSBDate> allUCSBDates() {
-        Iterable<UCSBDate> dates = ucsbDateRepository.findAll();
-        return dates;
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_JSON_VALUE)
+    public void allUCSBDates(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        writeCachedJsonArray(UCSBDate.class, ucsbDateRepository::findAll, request, response);
+    }
+
+    /**
+     * Stream all UCSBDate rows as a JSON array, without holding them all in memory
+     * 
+     * @param response the response the JSON array is written to
+     * @throws IOException if the response cannot be written
+     */
+    @Operation(summary= "Stream all ucsb dates as a JSON array")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public void streamUCSBDates(HttpServletResponse response) throws IOException {
+        writeJsonArray(ucsbDateRepository::streamAllBy, response);
+    }
+
+    /**
+     * List UCSBDate rows one page at a time, using keyset pagination on id
+     * 
+     * @param limit  maximum number of rows to return (at most {@value #MAX_PAGE_LIMIT})
+     * @param cursor the nextCursor of the previous page; omit it to get the first page
+     * @return a page of UCSBDate
+     */
+    @Operation(summary= "List ucsb dates one page at a time")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/page")
+    public KeysetPage<UCSBDate> pageUCSBDates(
+            @Parameter(name="limit") @RequestParam(defaultValue = DEFAULT_PAGE_LIMIT) int limit,
+            @Parameter(name="cursor") @RequestParam(required = false) String cursor,
+            @Parameter(name="filter", description=FILTER_DESCRIPTION) @RequestParam(required = false) List<String> filter,
+            @Parameter(name="sort", description=SORT_DESCRIPTION) @RequestParam(required = false) List<String> sort) {
+        int pageSize = pageSize(limit);
+        if (filter != null || sort != null) {
+            return filteredPage(UCSBDate.class, ucsbDateRepository, filter, sort, cursor, pageSize);
+        }
+        List<UCSBDate> dates = ucsbDateRepository.findByIdGreaterThanOrderByIdAsc(
+                longCursor(cursor), Limit.of(pageSize + 1));
+        return keysetPage(dates, pageSize, UCSBDate::getId);
     }
 
     /**
      * Get a single date by id
      * 
      * @param id the id of the date
+     * @param request the request, whose If-None-Match is checked against the row version
      * @return a UCSBDate
      */
     @Operation(summary= "Get a single date")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
     public UCSBDate getById(
-            @Parameter(name="id") @RequestParam Long id) {
-        UCSBDate ucsbDate = ucsbDateRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
+            @Parameter(name="id") @RequestParam Long id,
+            ServletWebRequest request) {
+        return findRow(UCSBDate.class, id, request, () -> ucsbDateRepository.findById(id));
+    }
 
-        return ucsbDate;
+    /**
+     * Get several dates by id, with one query per thousand ids
+     * 
+     * @param ids the ids of the dates to get
+     * @return the dates found, in the order of their ids in the request, and the ids not found
+     */
+    @Operation(summary = "Get several dates by id")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @PostMapping("/lookup")
+    public LookupResult<UCSBDate> lookupUCSBDates(@RequestBody List<Long> ids) {
+        return lookup(ucsbDateRepository, ids, UCSBDate::getId);
+    }
+
+    /**
+     * Get the dates created, updated or deleted since a version, so that a client that already
+     * has them can catch up without reading them all again
+     * 
+     * @param since the version the client last read the dates at, e.g. the ETag of /all
+     * @return the dates created or updated, the ids of those deleted, and the version to ask from next time
+     */
+    @Operation(summary = "Get the dates changed since a version")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/changes")
+    public Delta<UCSBDate> changedUCSBDates(
+            @Parameter(name="since", description="the version returned by the last call, or the ETag of /all; 410 Gone if it is too old or not a version of this table") @RequestParam String since) {
+        return changesSince(UCSBDate.class, ucsbDateRepository, since, UCSBDate::getId);
+    }
+
+    /**
+     * Stream an event for each of the dates created, updated or deleted from now on, so that a
+     * client can keep them up to date without polling /all
+     * 
+     * @param lastEventId the id of the last event a reconnecting client was sent
+     * @return a stream of Server-Sent Events named created, updated or deleted, whose data is the id
+     */
+    @Operation(summary = "Stream the changes to the dates")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter changeEventsUCSBDates(
+            @Parameter(name="Last-Event-ID", description="sent by the browser when it reconnects; a reset event means the dates must be read again") @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return changeFeed(UCSBDate.class, lastEventId);
     }
 
     /**
@@ -98,6 +193,7 @@ public class UCSBDatesController extends ApiController {
         ucsbDate.setLocalDateTime(localDateTime);
 
         UCSBDate savedUcsbDate = ucsbDateRepository.save(ucsbDate);
+        rowCreated(UCSBDate.class, savedUcsbDate.getId());
 
         return savedUcsbDate;
     }
@@ -106,17 +202,18 @@ public class UCSBDatesController extends ApiController {
      * Delete a UCSBDate
      * 
      * @param id the id of the date to delete
+     * @param request the request; with If-Match, the delete only happens if the row is still at that version
      * @return a message indicating the date was deleted
      */
     @Operation(summary= "Delete a UCSBDate")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @DeleteMapping("")
     public Object deleteUCSBDate(
-            @Parameter(name="id") @RequestParam Long id) {
-        UCSBDate ucsbDate = ucsbDateRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
-
-        ucsbDateRepository.delete(ucsbDate);
+            @Parameter(name="id") @RequestParam Long id,
+            ServletWebRequest request) {
+        deleteRow(UCSBDate.class, ucsbDateRepository, id, request,
+                version -> version == null ? ucsbDateRepository.removeById(id)
+                        : ucsbDateRepository.removeByIdAndVersion(id, version));
         return genericMessage("UCSBDate with id %s deleted".formatted(id));
     }
 
@@ -125,24 +222,85 @@ public class UCSBDatesController extends ApiController {
      * 
      * @param id       id of the date to update
      * @param incoming the new date
+     * @param request the request; with If-Match, the update only happens if the row is still at that version
      * @return the updated date object
      */
     @Operation(summary= "Update a single date")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PutMapping("")
-    public UCSBDate updateUCSBDate(
+    public Object updateUCSBDate(
             @Parameter(name="id") @RequestParam Long id,
-            @RequestBody @Valid UCSBDate incoming) {
+            @RequestBody @Valid UCSBDate incoming,
+            ServletWebRequest request) {
+
+        incoming.setId(id);
+        return updateRow(UCSBDate.class, ucsbDateRepository, id, incoming, request,
+                version -> version == null ? ucsbDateRepository.updateById(id, incoming)
+                        : ucsbDateRepository.updateByIdAndVersion(id, version, incoming));
+    }
+
+    /**
+     * Update some fields of a single date.  Fields left out of the body keep their values;
+     * if nothing changes, nothing is written.
+     * @param id id of the date to update
+     * @param changes the fields to change, with their new values
+     * @param request the request; with If-Match, the patch only happens if the row is still at that version
+     * @return the updated date
+     */
+    @Operation(summary= "Update some fields of a single date")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PatchMapping("")
+    public UCSBDate patchUCSBDate(
+            @Parameter(name="id") @RequestParam Long id,
+            @RequestBody ObjectNode changes,
+            ServletWebRequest request) {
+        return patch(UCSBDate.class, ucsbDateRepository, id, changes, request);
+    }
+
+    /**
+     * Create several dates in one transaction
+     * 
+     * @param incoming the new dates; their ids are ignored
+     * @return the id given to each date (400 if it lacks a field /post requires)
+     */
+    @Operation(summary= "Create several dates")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/bulk")
+    public BulkResult postUCSBDates(@RequestBody List<ObjectNode> incoming) {
+        return bulkCreate(UCSBDate.class, incoming,
+                List.of("quarterYYYYQ", "name", "localDateTime"), UCSBDate::getId);
+    }
 
-        UCSBDate ucsbDate = ucsbDateRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
+    /**
+     * Update several dates, matched by id, in one transaction
+     * 
+     * @param incoming the new contents of the dates
+     * @return the status of each date (404 if there is no date with its id)
+     */
+    @Operation(summary= "Update several dates")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PutMapping("/bulk")
+    public BulkResult updateUCSBDates(@RequestBody List<UCSBDate> incoming) {
+        return bulkUpdate(UCSBDate.class, ucsbDateRepository, incoming, UCSBDate::getId,
+                UCSBDatesController::update);
+    }
 
+    /**
+     * Delete several dates in one transaction
+     * 
+     * @param ids the ids of the dates to delete
+     * @return the status of each id (404 if there is no date with it)
+     */
+    @Operation(summary= "Delete several dates")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/bulk")
+    public BulkResult deleteUCSBDates(@RequestBody List<Long> ids) {
+        return bulkDelete(UCSBDate.class, ucsbDateRepository, ids, UCSBDate::getId);
+    }
+
+    private static void update(UCSBDate ucsbDate, UCSBDate incoming) {
         ucsbDate.setQuarterYYYYQ(incoming.getQuarterYYYYQ());
         ucsbDate.setName(incoming.getName());
         ucsbDate.setLocalDateTime(incoming.getLocalDateTime());
-
-        ucsbDateRepository.save(ucsbDate);
-
-        return ucsbDate;
     }
 }
@@ -1,7 +1,10 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
-import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.BulkResult;
+import edu.ucsb.cs156.example.models.Delta;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.models.LookupResult;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -9,19 +12,32 @@ import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
 
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import jakarta.validation.Valid;
 
+import java.util.List;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.MediaType;
+import java.io.IOException;
+
 /**
  * This is a REST controller for UCSBDiningCommons
  */
@@ -37,30 +53,110 @@ public class UCSBDiningCommonsController extends ApiController {
 
     /**
      * THis method returns a list of all ucsbdiningcommons.
-     * @return a list of all ucsbdiningcommons
+     * @param request the request being answered
+     * @param response the response the JSON array is written to
+     * @throws IOException if the response cannot be written
      */
     @Operation(summary= "List all ucsb dining commons")
     @PreAuthorize("hasRole('ROLE_USER')")
-    @GetMapping("/all")
-    public Iterable<UCSBDiningCommons> allCommonss() {
-        Iterable<UCSBDiningCommons> commons = ucsbDiningCommonsRepository.findAll();
-        return commons;
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_JSON_VALUE)
+    public void allCommonss(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        writeCachedJsonArray(UCSBDiningCommons.class, ucsbDiningCommonsRepository::findAll, request, response);
+    }
+
+    /**
+     * Stream all UCSBDiningCommons rows as a JSON array, without holding them all in memory
+     * 
+     * @param response the response the JSON array is written to
+     * @throws IOException if the response cannot be written
+     */
+    @Operation(summary= "Stream all ucsb dining commons as a JSON array")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public void streamCommons(HttpServletResponse response) throws IOException {
+        writeJsonArray(ucsbDiningCommonsRepository::streamAllBy, response);
+    }
+
+    /**
+     * List UCSBDiningCommons rows one page at a time, using keyset pagination on code
+     * 
+     * @param limit  maximum number of rows to return (at most {@value #MAX_PAGE_LIMIT})
+     * @param cursor the nextCursor of the previous page; omit it to get the first page
+     * @return a page of UCSBDiningCommons
+     */
+    @Operation(summary= "List ucsb dining commons one page at a time")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/page")
+    public KeysetPage<UCSBDiningCommons> pageCommons(
+            @Parameter(name="limit") @RequestParam(defaultValue = DEFAULT_PAGE_LIMIT) int limit,
+            @Parameter(name="cursor") @RequestParam(required = false) String cursor,
+            @Parameter(name="filter", description=FILTER_DESCRIPTION) @RequestParam(required = false) List<String> filter,
+            @Parameter(name="sort", description=SORT_DESCRIPTION) @RequestParam(required = false) List<String> sort) {
+        int pageSize = pageSize(limit);
+        if (filter != null || sort != null) {
+            return filteredPage(UCSBDiningCommons.class, ucsbDiningCommonsRepository, filter, sort, cursor, pageSize);
+        }
+        List<UCSBDiningCommons> commons = ucsbDiningCommonsRepository.findByCodeGreaterThanOrderByCodeAsc(
+                stringCursor(cursor), Limit.of(pageSize + 1));
+        return keysetPage(commons, pageSize, UCSBDiningCommons::getCode);
     }
 
     /**
      * This method returns a single diningcommons.
      * @param code code of the diningcommons
+     * @param request the request, whose If-None-Match is checked against the row version
      * @return a single diningcommons
      */
     @Operation(summary= "Get a single commons")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
     public UCSBDiningCommons getById(
-            @Parameter(name="code") @RequestParam String code) {
-        UCSBDiningCommons commons = ucsbDiningCommonsRepository.findById(code)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
+            @Parameter(name="code") @RequestParam String code,
+            ServletWebRequest request) {
+        return findRow(UCSBDiningCommons.class, code, request, () -> ucsbDiningCommonsRepository.findById(code));
+    }
 
-        return commons;
+    /**
+     * Get several dining commons by code, with one query per thousand codes
+     * 
+     * @param codes the codes of the dining commons to get
+     * @return the dining commons found, in the order of their codes in the request, and the codes not found
+     */
+    @Operation(summary = "Get several dining commons by code")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @PostMapping("/lookup")
+    public LookupResult<UCSBDiningCommons> lookupCommons(@RequestBody List<String> codes) {
+        return lookup(ucsbDiningCommonsRepository, codes, UCSBDiningCommons::getCode);
+    }
+
+    /**
+     * Get the dining commons created, updated or deleted since a version, so that a client that already
+     * has them can catch up without reading them all again
+     * 
+     * @param since the version the client last read the dining commons at, e.g. the ETag of /all
+     * @return the dining commons created or updated, the codes of those deleted, and the version to ask from next time
+     */
+    @Operation(summary = "Get the dining commons changed since a version")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/changes")
+    public Delta<UCSBDiningCommons> changedCommons(
+            @Parameter(name="since", description="the version returned by the last call, or the ETag of /all; 410 Gone if it is too old or not a version of this table") @RequestParam String since) {
+        return changesSince(UCSBDiningCommons.class, ucsbDiningCommonsRepository, since, UCSBDiningCommons::getCode);
+    }
+
+    /**
+     * Stream an event for each of the dining commons created, updated or deleted from now on, so that a
+     * client can keep them up to date without polling /all
+     * 
+     * @param lastEventId the id of the last event a reconnecting client was sent
+     * @return a stream of Server-Sent Events named created, updated or deleted, whose data is the id
+     */
+    @Operation(summary = "Stream the changes to the dining commons")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter changeEventsCommons(
+            @Parameter(name="Last-Event-ID", description="sent by the browser when it reconnects; a reset event means the dining commons must be read again") @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return changeFeed(UCSBDiningCommons.class, lastEventId);
     }
 
     /**
@@ -98,6 +194,7 @@ public class UCSBDiningCommonsController extends ApiController {
         commons.setLongitude(longitude);
 
         UCSBDiningCommons savedCommons = ucsbDiningCommonsRepository.save(commons);
+        rowCreated(UCSBDiningCommons.class, savedCommons.getCode());
 
         return savedCommons;
     }
@@ -105,17 +202,18 @@ public class UCSBDiningCommonsController extends ApiController {
     /**
      * Delete a diningcommons. Accessible only to users with the role "ROLE_ADMIN".
      * @param code code of the commons
+     * @param request the request; with If-Match, the delete only happens if the row is still at that version
      * @return a message indiciating the commons was deleted
      */
     @Operation(summary= "Delete a UCSBDiningCommons")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @DeleteMapping("")
     public Object deleteCommons(
-            @Parameter(name="code") @RequestParam String code) {
-        UCSBDiningCommons commons = ucsbDiningCommonsRepository.findById(code)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
-
-        ucsbDiningCommonsRepository.delete(commons);
+            @Parameter(name="code") @RequestParam String code,
+            ServletWebRequest request) {
+        deleteRow(UCSBDiningCommons.class, ucsbDiningCommonsRepository, code, request,
+                version -> version == null ? ucsbDiningCommonsRepository.removeByCode(code)
+                        : ucsbDiningCommonsRepository.removeByCodeAndVersion(code, version));
         return genericMessage("UCSBDiningCommons with id %s deleted".formatted(code));
     }
 
@@ -123,28 +221,88 @@ public class UCSBDiningCommonsController extends ApiController {
      * Update a single diningcommons. Accessible only to users with the role "ROLE_ADMIN".
      * @param code code of the diningcommons
      * @param incoming the new commons contents
+     * @param request the request; with If-Match, the update only happens if the row is still at that version
      * @return the updated commons object
      */
     @Operation(summary= "Update a single commons")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PutMapping("")
-    public UCSBDiningCommons updateCommons(
+    public Object updateCommons(
             @Parameter(name="code") @RequestParam String code,
-            @RequestBody @Valid UCSBDiningCommons incoming) {
+            @RequestBody @Valid UCSBDiningCommons incoming,
+            ServletWebRequest request) {
+
+        incoming.setCode(code);
+        return updateRow(UCSBDiningCommons.class, ucsbDiningCommonsRepository, code, incoming, request,
+                version -> version == null ? ucsbDiningCommonsRepository.updateByCode(code, incoming)
+                        : ucsbDiningCommonsRepository.updateByCodeAndVersion(code, version, incoming));
+    }
+
+    /**
+     * Update some fields of a single commons.  Fields left out of the body keep their values;
+     * if nothing changes, nothing is written.
+     * @param code code of the commons to update
+     * @param changes the fields to change, with their new values
+     * @param request the request; with If-Match, the patch only happens if the row is still at that version
+     * @return the updated commons
+     */
+    @Operation(summary= "Update some fields of a single commons")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PatchMapping("")
+    public UCSBDiningCommons patchCommons(
+            @Parameter(name="code") @RequestParam String code,
+            @RequestBody ObjectNode changes,
+            ServletWebRequest request) {
+        return patch(UCSBDiningCommons.class, ucsbDiningCommonsRepository, code, changes, request);
+    }
+
+    /**
+     * Create several commons in one transaction
+     * 
+     * @param incoming the new commons
+     * @return the status of each commons (409 if its code is already taken, 400 if it lacks a field /post requires)
+     */
+    @Operation(summary= "Create several commons")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/bulk")
+    public BulkResult postCommonsBulk(@RequestBody List<ObjectNode> incoming) {
+        return bulkCreate(UCSBDiningCommons.class, ucsbDiningCommonsRepository, incoming,
+                List.of("code", "name", "hasSackMeal", "hasTakeOutMeal", "hasDiningCam", "latitude", "longitude"), UCSBDiningCommons::getCode);
+    }
 
-        UCSBDiningCommons commons = ucsbDiningCommonsRepository.findById(code)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
+    /**
+     * Update several commons, matched by code, in one transaction
+     * 
+     * @param incoming the new contents of the commons
+     * @return the status of each commons (404 if there is no commons with its code)
+     */
+    @Operation(summary= "Update several commons")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PutMapping("/bulk")
+    public BulkResult updateCommonsBulk(@RequestBody List<UCSBDiningCommons> incoming) {
+        return bulkUpdate(UCSBDiningCommons.class, ucsbDiningCommonsRepository, incoming, UCSBDiningCommons::getCode,
+                UCSBDiningCommonsController::update);
+    }
 
+    /**
+     * Delete several commons in one transaction
+     * 
+     * @param codes the codes of the commons to delete
+     * @return the status of each code (404 if there is no commons with it)
+     */
+    @Operation(summary= "Delete several commons")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/bulk")
+    public BulkResult deleteCommonsBulk(@RequestBody List<String> codes) {
+        return bulkDelete(UCSBDiningCommons.class, ucsbDiningCommonsRepository, codes, UCSBDiningCommons::getCode);
+    }
 
-        commons.setName(incoming.getName());  
+    private static void update(UCSBDiningCommons commons, UCSBDiningCommons incoming) {
+        commons.setName(incoming.getName());
         commons.setHasSackMeal(incoming.getHasSackMeal());
         commons.setHasTakeOutMeal(incoming.getHasTakeOutMeal());
         commons.setHasDiningCam(incoming.getHasDiningCam());
         commons.setLatitude(incoming.getLatitude());
         commons.setLongitude(incoming.getLongitude());
-
-        ucsbDiningCommonsRepository.save(commons);
-
-        return commons;
     }
 }
@@ -1,7 +1,10 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
-import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.BulkResult;
+import edu.ucsb.cs156.example.models.Delta;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.models.LookupResult;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -10,20 +13,32 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import jakarta.validation.Valid;
 
+import java.util.List;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.MediaType;
+import java.io.IOException;
+
 /**
  * This is a REST controller for UCSBDiningCommonsMenuItem
  */
@@ -40,31 +55,111 @@ public class UCSBDiningCommonsMenuItemController extends ApiController {
     /**
      * List all UCSB dining commons menu items
      * 
-     * @return an iterable of UCSBDiningCommonsMenuItem
+     * @param request the request being answered
+     * @param response the response the JSON array is written to
+     * @throws IOException if the response cannot be written
      */
     @Operation(summary= "List all ucsb dining commons menu items")
     @PreAuthorize("hasRole('ROLE_USER')")
-    @GetMapping("/all")
-    public Iterable<UCSBDiningCommonsMenuItem> allUCSBDiningCommonsMenuItem() {
-        Iterable<UCSBDiningCommonsMenuItem> items = ucsbDiningCommonsMenuItemRepository.findAll();
-        return items;
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_JSON_VALUE)
+    public void allUCSBDiningCommonsMenuItem(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        writeCachedJsonArray(UCSBDiningCommonsMenuItem.class, ucsbDiningCommonsMenuItemRepository::findAll, request, response);
+    }
+
+    /**
+     * Stream all UCSBDiningCommonsMenuItem rows as a JSON array, without holding them all in memory
+     * 
+     * @param response the response the JSON array is written to
+     * @throws IOException if the response cannot be written
+     */
+    @Operation(summary= "Stream all ucsb dining commons menu items as a JSON array")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public void streamUCSBDiningCommonsMenuItem(HttpServletResponse response) throws IOException {
+        writeJsonArray(ucsbDiningCommonsMenuItemRepository::streamAllBy, response);
+    }
+
+    /**
+     * List UCSBDiningCommonsMenuItem rows one page at a time, using keyset pagination on id
+     * 
+     * @param limit  maximum number of rows to return (at most {@value #MAX_PAGE_LIMIT})
+     * @param cursor the nextCursor of the previous page; omit it to get the first page
+     * @return a page of UCSBDiningCommonsMenuItem
+     */
+    @Operation(summary= "List ucsb dining commons menu items one page at a time")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/page")
+    public KeysetPage<UCSBDiningCommonsMenuItem> pageUCSBDiningCommonsMenuItem(
+            @Parameter(name="limit") @RequestParam(defaultValue = DEFAULT_PAGE_LIMIT) int limit,
+            @Parameter(name="cursor") @RequestParam(required = false) String cursor,
+            @Parameter(name="filter", description=FILTER_DESCRIPTION) @RequestParam(required = false) List<String> filter,
+            @Parameter(name="sort", description=SORT_DESCRIPTION) @RequestParam(required = false) List<String> sort) {
+        int pageSize = pageSize(limit);
+        if (filter != null || sort != null) {
+            return filteredPage(UCSBDiningCommonsMenuItem.class, ucsbDiningCommonsMenuItemRepository, filter, sort, cursor, pageSize);
+        }
+        List<UCSBDiningCommonsMenuItem> items = ucsbDiningCommonsMenuItemRepository.findByIdGreaterThanOrderByIdAsc(
+                longCursor(cursor), Limit.of(pageSize + 1));
+        return keysetPage(items, pageSize, UCSBDiningCommonsMenuItem::getId);
     }
 
     /**
      * Get a single menu item by id
      * 
      * @param id the id of the menu item
+     * @param request the request, whose If-None-Match is checked against the row version
      * @return a UCSBDiningCommonsMenuItem
      */
     @Operation(summary= "Get a menu item by id")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
     public UCSBDiningCommonsMenuItem getById(
-            @Parameter(name="id") @RequestParam Long id) {
-        UCSBDiningCommonsMenuItem ucsbDiningCommonsMenuItem = ucsbDiningCommonsMenuItemRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id));
+            @Parameter(name="id") @RequestParam Long id,
+            ServletWebRequest request) {
+        return findRow(UCSBDiningCommonsMenuItem.class, id, request, () -> ucsbDiningCommonsMenuItemRepository.findById(id));
+    }
 
-        return ucsbDiningCommonsMenuItem;
+    /**
+     * Get several menu items by id, with one query per thousand ids
+     * 
+     * @param ids the ids of the menu items to get
+     * @return the menu items found, in the order of their ids in the request, and the ids not found
+     */
+    @Operation(summary = "Get several menu items by id")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @PostMapping("/lookup")
+    public LookupResult<UCSBDiningCommonsMenuItem> lookupUCSBDiningCommonsMenuItems(@RequestBody List<Long> ids) {
+        return lookup(ucsbDiningCommonsMenuItemRepository, ids, UCSBDiningCommonsMenuItem::getId);
+    }
+
+    /**
+     * Get the menu items created, updated or deleted since a version, so that a client that already
+     * has them can catch up without reading them all again
+     * 
+     * @param since the version the client last read the menu items at, e.g. the ETag of /all
+     * @return the menu items created or updated, the ids of those deleted, and the version to ask from next time
+     */
+    @Operation(summary = "Get the menu items changed since a version")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/changes")
+    public Delta<UCSBDiningCommonsMenuItem> changedUCSBDiningCommonsMenuItems(
+            @Parameter(name="since", description="the version returned by the last call, or the ETag of /all; 410 Gone if it is too old or not a version of this table") @RequestParam String since) {
+        return changesSince(UCSBDiningCommonsMenuItem.class, ucsbDiningCommonsMenuItemRepository, since, UCSBDiningCommonsMenuItem::getId);
+    }
+
+    /**
+     * Stream an event for each of the menu items created, updated or deleted from now on, so that a
+     * client can keep them up to date without polling /all
+     * 
+     * @param lastEventId the id of the last event a reconnecting client was sent
+     * @return a stream of Server-Sent Events named created, updated or deleted, whose data is the id
+     */
+    @Operation(summary = "Stream the changes to the menu items")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter changeEventsUCSBDiningCommonsMenuItems(
+            @Parameter(name="Last-Event-ID", description="sent by the browser when it reconnects; a reset event means the menu items must be read again") @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return changeFeed(UCSBDiningCommonsMenuItem.class, lastEventId);
     }
 
     /**
@@ -93,6 +188,7 @@ public class UCSBDiningCommonsMenuItemController extends ApiController {
         menuItem.setStation(station); 
 
         UCSBDiningCommonsMenuItem savedMenuItem = ucsbDiningCommonsMenuItemRepository.save(menuItem);
+        rowCreated(UCSBDiningCommonsMenuItem.class, savedMenuItem.getId());
 
         return savedMenuItem;
     }
@@ -101,17 +197,18 @@ public class UCSBDiningCommonsMenuItemController extends ApiController {
      * Delete a UCSBDiningCommonsMenuItem
      * 
      * @param id the id of the menu item to delete
+     * @param request the request; with If-Match, the delete only happens if the row is still at that version
      * @return a message indicating the menu item was deleted
      */
     @Operation(summary= "Delete a UCSBDiningCommonsMenuItem")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @DeleteMapping("")
     public Object deleteUCSBDiningCommonsMenuItem(
-            @Parameter(name="id") @RequestParam Long id) {
-        UCSBDiningCommonsMenuItem ucsbDiningCommonsMenuItem = ucsbDiningCommonsMenuItemRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id));
- 
-        ucsbDiningCommonsMenuItemRepository.delete(ucsbDiningCommonsMenuItem);
+            @Parameter(name="id") @RequestParam Long id,
+            ServletWebRequest request) {
+        deleteRow(UCSBDiningCommonsMenuItem.class, ucsbDiningCommonsMenuItemRepository, id, request,
+                version -> version == null ? ucsbDiningCommonsMenuItemRepository.removeById(id)
+                        : ucsbDiningCommonsMenuItemRepository.removeByIdAndVersion(id, version));
         return genericMessage("UCSBDiningCommonsMenuItem with id %s deleted".formatted(id));
     }
 
@@ -120,24 +217,85 @@ public class UCSBDiningCommonsMenuItemController extends ApiController {
      * 
      * @param id        id of the menu item to update
      * @param incoming  the new menu item
+     * @param request the request; with If-Match, the update only happens if the row is still at that version
      * @return          the updated menu item object
      */
     @Operation(summary= "Update a menu item")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PutMapping("")
-    public UCSBDiningCommonsMenuItem updateUCSBDiningCommonsMenuItem(
+    public Object updateUCSBDiningCommonsMenuItem(
             @Parameter(name="id") @RequestParam Long id,
-            @RequestBody @Valid UCSBDiningCommonsMenuItem incoming) {
+            @RequestBody @Valid UCSBDiningCommonsMenuItem incoming,
+            ServletWebRequest request) {
+
+        incoming.setId(id);
+        return updateRow(UCSBDiningCommonsMenuItem.class, ucsbDiningCommonsMenuItemRepository, id, incoming, request,
+                version -> version == null ? ucsbDiningCommonsMenuItemRepository.updateById(id, incoming)
+                        : ucsbDiningCommonsMenuItemRepository.updateByIdAndVersion(id, version, incoming));
+    }
 
-        UCSBDiningCommonsMenuItem ucsbDiningCommonsMenuItem = ucsbDiningCommonsMenuItemRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id));
+    /**
+     * Update some fields of a single menu item.  Fields left out of the body keep their values;
+     * if nothing changes, nothing is written.
+     * @param id id of the menu item to update
+     * @param changes the fields to change, with their new values
+     * @param request the request; with If-Match, the patch only happens if the row is still at that version
+     * @return the updated menu item
+     */
+    @Operation(summary= "Update some fields of a single menu item")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PatchMapping("")
+    public UCSBDiningCommonsMenuItem patchUCSBDiningCommonsMenuItem(
+            @Parameter(name="id") @RequestParam Long id,
+            @RequestBody ObjectNode changes,
+            ServletWebRequest request) {
+        return patch(UCSBDiningCommonsMenuItem.class, ucsbDiningCommonsMenuItemRepository, id, changes, request);
+    }
+
+    /**
+     * Create several menu items in one transaction
+     * 
+     * @param incoming the new menu items; their ids are ignored
+     * @return the id given to each menu item (400 if it lacks a field /post requires)
+     */
+    @Operation(summary= "Create several menu items")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/bulk")
+    public BulkResult postUCSBDiningCommonsMenuItems(@RequestBody List<ObjectNode> incoming) {
+        return bulkCreate(UCSBDiningCommonsMenuItem.class, incoming,
+                List.of("diningCommonsCode", "name", "station"), UCSBDiningCommonsMenuItem::getId);
+    }
 
+    /**
+     * Update several menu items, matched by id, in one transaction
+     * 
+     * @param incoming the new contents of the menu items
+     * @return the status of each menu item (404 if there is no menu item with its id)
+     */
+    @Operation(summary= "Update several menu items")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PutMapping("/bulk")
+    public BulkResult updateUCSBDiningCommonsMenuItems(@RequestBody List<UCSBDiningCommonsMenuItem> incoming) {
+        return bulkUpdate(UCSBDiningCommonsMenuItem.class, ucsbDiningCommonsMenuItemRepository, incoming, UCSBDiningCommonsMenuItem::getId,
+                UCSBDiningCommonsMenuItemController::update);
+    }
+
+    /**
+     * Delete several menu items in one transaction
+     * 
+     * @param ids the ids of the menu items to delete
+     * @return the status of each id (404 if there is no menu item with it)
+     */
+    @Operation(summary= "Delete several menu items")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/bulk")
+    public BulkResult deleteUCSBDiningCommonsMenuItems(@RequestBody List<Long> ids) {
+        return bulkDelete(UCSBDiningCommonsMenuItem.class, ucsbDiningCommonsMenuItemRepository, ids, UCSBDiningCommonsMenuItem::getId);
+    }
+
+    private static void update(UCSBDiningCommonsMenuItem ucsbDiningCommonsMenuItem, UCSBDiningCommonsMenuItem incoming) {
         ucsbDiningCommonsMenuItem.setDiningCommonsCode(incoming.getDiningCommonsCode());
         ucsbDiningCommonsMenuItem.setName(incoming.getName());
         ucsbDiningCommonsMenuItem.setStation(incoming.getStation());
-
-        ucsbDiningCommonsMenuItemRepository.save(ucsbDiningCommonsMenuItem);
-
-        return ucsbDiningCommonsMenuItem;
     }
 }
@@ -1,7 +1,10 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.UCSBOrganizations;
-import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.BulkResult;
+import edu.ucsb.cs156.example.models.Delta;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.models.LookupResult;
 import edu.ucsb.cs156.example.repositories.UCSBOrganizationsRepository;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -9,19 +12,32 @@ import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
 
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import jakarta.validation.Valid;
 
+import java.util.List;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.MediaType;
+import java.io.IOException;
+
 /**
  * This is a REST controller for UCSBOrganizations
  */
@@ -37,30 +53,110 @@ public class UCSBOrganizationsController extends ApiController {
 
     /**
      * THis method returns a list of all ucsborganizations.
-     * @return a list of all ucsborganizations
+     * @param request the request being answered
+     * @param response the response the JSON array is written to
+     * @throws IOException if the response cannot be written
      */
     @Operation(summary= "List all ucsb organizations")
     @PreAuthorize("hasRole('ROLE_USER')")
-    @GetMapping("/all")
-    public Iterable<UCSBOrganizations> allOrganizations() {
-        Iterable<UCSBOrganizations> organizations = ucsbOrganizationsRepository.findAll();
-        return organizations;
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_JSON_VALUE)
+    public void allOrganizations(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        writeCachedJsonArray(UCSBOrganizations.class, ucsbOrganizationsRepository::findAll, request, response);
+    }
+
+    /**
+     * Stream all UCSBOrganizations rows as a JSON array, without holding them all in memory
+     * 
+     * @param response the response the JSON array is written to
+     * @throws IOException if the response cannot be written
+     */
+    @Operation(summary= "Stream all ucsb organizations as a JSON array")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/all/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public void streamOrganizations(HttpServletResponse response) throws IOException {
+        writeJsonArray(ucsbOrganizationsRepository::streamAllBy, response);
+    }
+
+    /**
+     * List UCSBOrganizations rows one page at a time, using keyset pagination on orgcode
+     * 
+     * @param limit  maximum number of rows to return (at most {@value #MAX_PAGE_LIMIT})
+     * @param cursor the nextCursor of the previous page; omit it to get the first page
+     * @return a page of UCSBOrganizations
+     */
+    @Operation(summary= "List ucsb organizations one page at a time")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/page")
+    public KeysetPage<UCSBOrganizations> pageOrganizations(
+            @Parameter(name="limit") @RequestParam(defaultValue = DEFAULT_PAGE_LIMIT) int limit,
+            @Parameter(name="cursor") @RequestParam(required = false) String cursor,
+            @Parameter(name="filter", description=FILTER_DESCRIPTION) @RequestParam(required = false) List<String> filter,
+            @Parameter(name="sort", description=SORT_DESCRIPTION) @RequestParam(required = false) List<String> sort) {
+        int pageSize = pageSize(limit);
+        if (filter != null || sort != null) {
+            return filteredPage(UCSBOrganizations.class, ucsbOrganizationsRepository, filter, sort, cursor, pageSize);
+        }
+        List<UCSBOrganizations> organizations = ucsbOrganizationsRepository.findByOrgcodeGreaterThanOrderByOrgcodeAsc(
+                stringCursor(cursor), Limit.of(pageSize + 1));
+        return keysetPage(organizations, pageSize, UCSBOrganizations::getOrgcode);
     }
 
     /**
      * This method returns a single UCSBOrganizations.
      * @param orgcode orgcode of the UCSBOrganizations
+     * @param request the request, whose If-None-Match is checked against the row version
      * @return a single UCSBOrganizations
      */
     @Operation(summary= "Get a single organization")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
     public UCSBOrganizations getById(
-            @Parameter(name="orgcode") @RequestParam String orgcode) {
-        UCSBOrganizations organizations = ucsbOrganizationsRepository.findById(orgcode)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBOrganizations.class, orgcode));
+            @Parameter(name="orgcode") @RequestParam String orgcode,
+            ServletWebRequest request) {
+        return findRow(UCSBOrganizations.class, orgcode, request, () -> ucsbOrganizationsRepository.findById(orgcode));
+    }
 
-        return organizations;
+    /**
+     * Get several organizations by orgcode, with one query per thousand orgcodes
+     * 
+     * @param orgcodes the orgcodes of the organizations to get
+     * @return the organizations found, in the order of their orgcodes in the request, and the orgcodes not found
+     */
+    @Operation(summary = "Get several organizations by orgcode")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @PostMapping("/lookup")
+    public LookupResult<UCSBOrganizations> lookupOrganizations(@RequestBody List<String> orgcodes) {
+        return lookup(ucsbOrganizationsRepository, orgcodes, UCSBOrganizations::getOrgcode);
+    }
+
+    /**
+     * Get the organizations created, updated or deleted since a version, so that a client that already
+     * has them can catch up without reading them all again
+     * 
+     * @param since the version the client last read the organizations at, e.g. the ETag of /all
+     * @return the organizations created or updated, the orgcodes of those deleted, and the version to ask from next time
+     */
+    @Operation(summary = "Get the organizations changed since a version")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/changes")
+    public Delta<UCSBOrganizations> changedOrganizations(
+            @Parameter(name="since", description="the version returned by the last call, or the ETag of /all; 410 Gone if it is too old or not a version of this table") @RequestParam String since) {
+        return changesSince(UCSBOrganizations.class, ucsbOrganizationsRepository, since, UCSBOrganizations::getOrgcode);
+    }
+
+    /**
+     * Stream an event for each of the organizations created, updated or deleted from now on, so that a
+     * client can keep them up to date without polling /all
+     * 
+     * @param lastEventId the id of the last event a reconnecting client was sent
+     * @return a stream of Server-Sent Events named created, updated or deleted, whose data is the id
+     */
+    @Operation(summary = "Stream the changes to the organizations")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter changeEventsOrganizations(
+            @Parameter(name="Last-Event-ID", description="sent by the browser when it reconnects; a reset event means the organizations must be read again") @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return changeFeed(UCSBOrganizations.class, lastEventId);
     }
 
     /**
@@ -87,49 +183,111 @@ public class UCSBOrganizationsController extends ApiController {
         organizations.setInactive(inactive);
 
         UCSBOrganizations saveOrganizations = ucsbOrganizationsRepository.save(organizations);
+        rowCreated(UCSBOrganizations.class, saveOrganizations.getOrgcode());
 
         return saveOrganizations;
     }
     /**
      * Delete a diningcommons. Accessible only to users with the role "ROLE_ADMIN".
      * @param orgcode code of the commons
+     * @param request the request; with If-Match, the delete only happens if the row is still at that version
      * @return a message indiciating the commons was deleted
      */
     @Operation(summary= "Delete a UCSBOrganizations")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @DeleteMapping("")
     public Object deleteOrganizations(
-            @Parameter(name="orgcode") @RequestParam String orgcode) {
-        UCSBOrganizations organization = ucsbOrganizationsRepository.findById(orgcode)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBOrganizations.class, orgcode));
-
-        ucsbOrganizationsRepository.delete(organization);
+            @Parameter(name="orgcode") @RequestParam String orgcode,
+            ServletWebRequest request) {
+        deleteRow(UCSBOrganizations.class, ucsbOrganizationsRepository, orgcode, request,
+                version -> version == null ? ucsbOrganizationsRepository.removeByOrgcode(orgcode)
+                        : ucsbOrganizationsRepository.removeByOrgcodeAndVersion(orgcode, version));
         return genericMessage("UCSBOrganizations with id %s deleted".formatted(orgcode));
     }
     /**
      * Update a single diningcommons. Accessible only to users with the role "ROLE_ADMIN".
      * @param orgcode code of the diningcommons
      * @param incoming the new commons contents
+     * @param request the request; with If-Match, the update only happens if the row is still at that version
      * @return the updated commons object
      */
     @Operation(summary= "Update a single organization")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PutMapping("")
-    public UCSBOrganizations updateOrganizations(
+    public Object updateOrganizations(
             @Parameter(name="orgcode") @RequestParam String orgcode,
-            @RequestBody @Valid UCSBOrganizations incoming) {
+            @RequestBody @Valid UCSBOrganizations incoming,
+            ServletWebRequest request) {
+
+        incoming.setOrgcode(orgcode);
+        return updateRow(UCSBOrganizations.class, ucsbOrganizationsRepository, orgcode, incoming, request,
+                version -> version == null ? ucsbOrganizationsRepository.updateByOrgcode(orgcode, incoming)
+                        : ucsbOrganizationsRepository.updateByOrgcodeAndVersion(orgcode, version, incoming));
+    }
+
+    /**
+     * Update some fields of a single organization.  Fields left out of the body keep their values;
+     * if nothing changes, nothing is written.
+     * @param orgcode orgcode of the organization to update
+     * @param changes the fields to change, with their new values
+     * @param request the request; with If-Match, the patch only happens if the row is still at that version
+     * @return the updated organization
+     */
+    @Operation(summary= "Update some fields of a single organization")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PatchMapping("")
+    public UCSBOrganizations patchOrganizations(
+            @Parameter(name="orgcode") @RequestParam String orgcode,
+            @RequestBody ObjectNode changes,
+            ServletWebRequest request) {
+        return patch(UCSBOrganizations.class, ucsbOrganizationsRepository, orgcode, changes, request);
+    }
+
+    /**
+     * Create several organizations in one transaction
+     * 
+     * @param incoming the new organizations
+     * @return the status of each organization (409 if its orgcode is already taken, 400 if it lacks a field /post requires)
+     */
+    @Operation(summary= "Create several organizations")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/bulk")
+    public BulkResult postOrganizationsBulk(@RequestBody List<ObjectNode> incoming) {
+        return bulkCreate(UCSBOrganizations.class, ucsbOrganizationsRepository, incoming,
+                List.of("orgcode", "orgTranslationShort", "orgTranslation", "inactive"), UCSBOrganizations::getOrgcode);
+    }
 
-        UCSBOrganizations organizations = ucsbOrganizationsRepository.findById(orgcode)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBOrganizations.class, orgcode));
+    /**
+     * Update several organizations, matched by orgcode, in one transaction
+     * 
+     * @param incoming the new contents of the organizations
+     * @return the status of each organization (404 if there is no organization with its orgcode)
+     */
+    @Operation(summary= "Update several organizations")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PutMapping("/bulk")
+    public BulkResult updateOrganizationsBulk(@RequestBody List<UCSBOrganizations> incoming) {
+        return bulkUpdate(UCSBOrganizations.class, ucsbOrganizationsRepository, incoming, UCSBOrganizations::getOrgcode,
+                UCSBOrganizationsController::update);
+    }
 
+    /**
+     * Delete several organizations in one transaction
+     * 
+     * @param orgcodes the orgcodes of the organizations to delete
+     * @return the status of each orgcode (404 if there is no organization with it)
+     */
+    @Operation(summary= "Delete several organizations")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/bulk")
+    public BulkResult deleteOrganizationsBulk(@RequestBody List<String> orgcodes) {
+        return bulkDelete(UCSBOrganizations.class, ucsbOrganizationsRepository, orgcodes, UCSBOrganizations::getOrgcode);
+    }
 
-        organizations.setOrgcode(incoming.getOrgcode());  
+    private static void update(UCSBOrganizations organizations, UCSBOrganizations incoming) {
+        organizations.setOrgcode(incoming.getOrgcode());
         organizations.setOrgTranslationShort(incoming.getOrgTranslationShort());
         organizations.setOrgTranslation(incoming.getOrgTranslation());
         organizations.setInactive(incoming.getInactive());
-
-        ucsbOrganizationsRepository.save(organizations);
-
-        return organizations;
     }
 }
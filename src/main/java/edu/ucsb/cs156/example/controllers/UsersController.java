@@ -1,19 +1,18 @@
 package edu.ucsb.cs156.example.controllers;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import edu.ucsb.cs156.example.entities.User;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
 
 /**
  * This is a REST controller for getting information about the users.
@@ -28,21 +27,17 @@ public class UsersController extends ApiController {
     @Autowired
     UserRepository userRepository;
 
-    @Autowired
-    ObjectMapper mapper;
-
     /**
      * This method returns a list of all users.  Accessible only to users with the role "ROLE_ADMIN".
-     * @return a list of all users
-     * @throws JsonProcessingException if there is an error processing the JSON
+     * The users are streamed to the response one at a time rather than serialized into a single string.
+     * @param response the response the JSON array of users is written to
+     * @throws IOException if the response cannot be written
      */
     @Operation(summary= "Get a list of all users")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
-    @GetMapping("")
-    public ResponseEntity<String> users()
-            throws JsonProcessingException {
-        Iterable<User> users = userRepository.findAll();
-        String body = mapper.writeValueAsString(users);
-        return ResponseEntity.ok().body(body);
+    @GetMapping(value = "", produces = MediaType.APPLICATION_JSON_VALUE)
+    public void users(HttpServletResponse response)
+            throws IOException {
+        writeJsonArray(userRepository::streamAllBy, response);
     }
-}
\ No newline at end of file
+}
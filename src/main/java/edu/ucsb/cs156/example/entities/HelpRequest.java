@@ -4,6 +4,8 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -20,9 +22,10 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @Builder
 @Entity(name = "helprequest")
-public class HelpRequest {
+public class HelpRequest implements Versioned {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "helprequest_seq")
+  @SequenceGenerator(name = "helprequest_seq", sequenceName = "HELPREQUEST_SEQ", allocationSize = 50)
   private long id;
 
   private String requesterEmail;
@@ -32,5 +35,6 @@ public class HelpRequest {
   private String explanation;
   private boolean solved;
 
-
+  @Version
+  private long version;
 }
\ No newline at end of file
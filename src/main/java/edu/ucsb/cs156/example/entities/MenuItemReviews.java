@@ -4,6 +4,8 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -22,9 +24,10 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @Builder
 @Entity(name = "menuitemreviews")
-public class MenuItemReviews {
+public class MenuItemReviews implements Versioned {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "menuitemreviews_seq")
+    @SequenceGenerator(name = "menuitemreviews_seq", sequenceName = "MENUITEMREVIEWS_SEQ", allocationSize = 50)
 
     private long id;
     private long itemId;
@@ -32,5 +35,7 @@ public class MenuItemReviews {
     private int stars;
     private LocalDateTime dateReviewed;
     private String comments;
-}
 
+    @Version
+    private long version;
+}
@@ -4,6 +4,8 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -15,9 +17,10 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @Builder
 @Entity(name = "recommendationRequests")
-public class RecommendationRequest {
+public class RecommendationRequest implements Versioned {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "recommendation_requests_seq")
+    @SequenceGenerator(name = "recommendation_requests_seq", sequenceName = "RECOMMENDATION_REQUESTS_SEQ", allocationSize = 50)
     private long id;
 
     private String requesterEmail;
@@ -26,4 +29,7 @@ public class RecommendationRequest {
     private LocalDateTime dateRequested;
     private LocalDateTime dateNeeded;
     private boolean done;
+
+    @Version
+    private long version;
 }
@@ -4,6 +4,8 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -18,11 +20,15 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @Builder
 @Entity(name = "restaurants")
-public class Restaurant {
+public class Restaurant implements Versioned {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "restaurants_seq")
+  @SequenceGenerator(name = "restaurants_seq", sequenceName = "RESTAURANTS_SEQ", allocationSize = 50)
   private long id;
 
   private String name;
   private String description;
+
+  @Version
+  private long version;
 }
\ No newline at end of file
@@ -1,16 +1,22 @@
 package edu.ucsb.cs156.example.entities;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 /** 
  * This is a JPA entity that represents a UCSBDiningCommons
  * 
- * A UCSBDiningCommons is a dining commons at UCSB
+ * A UCSBDiningCommons is a dining commons at UCSB.  Rows are kept in the
+ * second-level cache; see SecondLevelCacheConfig.
  */
 
 @Data
@@ -18,7 +24,9 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @Builder
 @Entity(name = "ucsbdiningcommons")
-public class UCSBDiningCommons {
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "ucsbdiningcommons")
+public class UCSBDiningCommons implements Versioned {
   @Id
   private String code;
   private String name;
@@ -27,4 +35,7 @@ public class UCSBDiningCommons {
   private boolean hasDiningCam;
   private Double latitude;
   private Double longitude;
+
+  @Version
+  private long version;
 }
\ No newline at end of file
@@ -1,25 +1,37 @@
 package edu.ucsb.cs156.example.entities;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
 @Entity(name = "ucsbdiningcommonsmenuitem")
-public class UCSBDiningCommonsMenuItem {
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "ucsbdiningcommonsmenuitem")
+public class UCSBDiningCommonsMenuItem implements Versioned {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ucsbdiningcommonsmenuitem_seq")
+    @SequenceGenerator(name = "ucsbdiningcommonsmenuitem_seq", sequenceName = "UCSBDININGCOMMONSMENUITEM_SEQ", allocationSize = 50)
     private long id;
 
     private String diningCommonsCode;
     private String name;
     private String station;
+
+    @Version
+    private long version;
 }
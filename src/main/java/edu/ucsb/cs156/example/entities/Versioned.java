@@ -0,0 +1,18 @@
+package edu.ucsb.cs156.example.entities;
+
+/**
+ * This is an interface for entities with a JPA @Version column.  The version starts at 0 and goes
+ * up by one with every update of the row; it is sent to clients as the row's ETag and checked
+ * against the If-Match header of a PUT, PATCH or DELETE.
+ */
+public interface Versioned {
+  /**
+   * @return the version of the row
+   */
+  long getVersion();
+
+  /**
+   * @param version the version of the row
+   */
+  void setVersion(long version);
+}
@@ -0,0 +1,17 @@
+package edu.ucsb.cs156.example.errors;
+
+/**
+ * This is an error class for a custom RuntimeException in Java that is used to indicate
+ * that a bulk request has more elements than one request may carry.
+ */
+public class BulkLimitExceededException extends RuntimeException {
+  /**
+   * Constructor for the exception
+   * 
+   * @param size the number of elements in the request
+   * @param max the largest number allowed
+   */
+  public BulkLimitExceededException(int size, int max) {
+    super("Bulk request has %d elements; at most %d are allowed".formatted(size, max));
+  }
+}
@@ -0,0 +1,19 @@
+package edu.ucsb.cs156.example.errors;
+
+/**
+ * This is an error class for a custom RuntimeException in Java that is used to indicate
+ * that the changes to a table since the version a client names are no longer known (or the
+ * version is from before a restart), so the client has to read the whole table again.
+ */
+public class ChangesExpiredException extends RuntimeException {
+  /**
+   * Constructor for the exception
+   *
+   * @param entityType The class of the entity mapped to the table, e.g. HelpRequest.class
+   * @param since the version the client asked for the changes since
+   */
+  public ChangesExpiredException(Class<?> entityType, String since) {
+    super("The changes to %s since version %s are no longer known; read all rows again"
+      .formatted(entityType.getSimpleName(), since));
+  }
+}
@@ -0,0 +1,19 @@
+package edu.ucsb.cs156.example.errors;
+
+import java.util.Collection;
+
+/**
+ * This is an error class for a custom RuntimeException in Java that is used to indicate
+ * that the fields parameter of a request names fields the entity doesn't have.
+ */
+public class InvalidFieldsException extends RuntimeException {
+  /**
+   * Constructor for the exception
+   *
+   * @param entity the entity class that was asked for
+   * @param unknown the requested fields that entity doesn't have
+   */
+  public InvalidFieldsException(Class<?> entity, Collection<String> unknown) {
+    super("%s has no field(s) %s".formatted(entity.getSimpleName(), String.join(", ", unknown)));
+  }
+}
@@ -0,0 +1,17 @@
+package edu.ucsb.cs156.example.errors;
+
+/**
+ * This is an error class for a custom RuntimeException in Java that is used to indicate
+ * that the filter or sort parameter of a listing request can't be applied to the table,
+ * e.g. it names a field the entity doesn't have, or a value has the wrong type.
+ */
+public class InvalidFilterException extends RuntimeException {
+  /**
+   * Constructor for the exception
+   *
+   * @param reason what is wrong with the filter or sort
+   */
+  public InvalidFilterException(String reason) {
+    super("Invalid filter or sort: " + reason);
+  }
+}
@@ -0,0 +1,16 @@
+package edu.ucsb.cs156.example.errors;
+
+/**
+ * This is an error class for a custom RuntimeException in Java that is used to indicate
+ * that the body of a PATCH request can't be applied to the row, e.g. a field has the wrong type.
+ */
+public class InvalidPatchException extends RuntimeException {
+  /**
+   * Constructor for the exception
+   *
+   * @param reason what is wrong with the patch
+   */
+  public InvalidPatchException(String reason) {
+    super("Invalid patch: " + reason);
+  }
+}
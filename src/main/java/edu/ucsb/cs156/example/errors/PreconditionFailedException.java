@@ -0,0 +1,19 @@
+package edu.ucsb.cs156.example.errors;
+
+/**
+ * This is an error class for a custom RuntimeException in Java that is used to indicate
+ * that a conditional write (one with an If-Match header) was refused because the row
+ * has been changed since the client read it.
+ */
+public class PreconditionFailedException extends RuntimeException {
+  /**
+   * Constructor for the exception
+   *
+   * @param entityType The class of the entity that was changed, e.g. HelpRequest.class
+   * @param id the id of the row
+   */
+  public PreconditionFailedException(Class<?> entityType, Object id) {
+    super("%s with id %s has been changed since it was read"
+      .formatted(entityType.getSimpleName(), id.toString()));
+  }
+}
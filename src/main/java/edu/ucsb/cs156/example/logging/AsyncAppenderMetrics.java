@@ -0,0 +1,59 @@
+package edu.ucsb.cs156.example.logging;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * This publishes, for every BoundedAsyncAppender in the logback configuration, the number of
+ * dropped events (logging.async.dropped) and the number of queued events (logging.async.queued),
+ * tagged with the appender's name.
+ */
+@Component
+public class AsyncAppenderMetrics implements MeterBinder {
+
+  LoggerContext loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    for (BoundedAsyncAppender appender : boundedAsyncAppenders()) {
+      FunctionCounter.builder("logging.async.dropped", appender, BoundedAsyncAppender::getDroppedCount)
+          .tag("appender", appender.getName())
+          .description("log events dropped because the appender's queue was full")
+          .register(registry);
+      Gauge.builder("logging.async.queued", appender, BoundedAsyncAppender::getNumberOfElementsInQueue)
+          .tag("appender", appender.getName())
+          .description("log events waiting to be written")
+          .register(registry);
+    }
+  }
+
+  /**
+   * This method finds the BoundedAsyncAppenders attached to any logger.
+   * @return the appenders, each once
+   */
+  Set<BoundedAsyncAppender> boundedAsyncAppenders() {
+    Set<BoundedAsyncAppender> found = new LinkedHashSet<>();
+    for (Logger logger : loggerContext.getLoggerList()) {
+      Iterator<Appender<ILoggingEvent>> it = logger.iteratorForAppenders();
+      while (it.hasNext()) {
+        if (it.next() instanceof BoundedAsyncAppender appender) {
+          found.add(appender);
+        }
+      }
+    }
+    return found;
+  }
+}
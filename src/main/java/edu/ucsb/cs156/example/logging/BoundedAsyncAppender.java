@@ -0,0 +1,185 @@
+package edu.ucsb.cs156.example.logging;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import ch.qos.logback.core.spi.AppenderAttachable;
+import ch.qos.logback.core.spi.AppenderAttachableImpl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This is a logback appender that hands events to its child appenders on a background thread.
+ * 
+ * Unlike logback's AsyncAppender it never blocks and never silently discards: when its bounded
+ * queue is full the event is dropped and counted (see getDroppedCount), whatever its level.
+ * 
+ * The message itself is formatted on the background thread, so the arguments of a log call must
+ * not be changed after the call (Strings and other immutable values are fine).
+ * 
+ * Configure it in logback-spring.xml with a queueSize and one or more appender-refs.
+ */
+public class BoundedAsyncAppender extends UnsynchronizedAppenderBase<ILoggingEvent>
+    implements AppenderAttachable<ILoggingEvent> {
+
+  /**
+   * Queue size used when none is configured.
+   */
+  public static final int DEFAULT_QUEUE_SIZE = 1024;
+
+  private final AppenderAttachableImpl<ILoggingEvent> appenders = new AppenderAttachableImpl<>();
+  private final LongAdder dropped = new LongAdder();
+  private int queueSize = DEFAULT_QUEUE_SIZE;
+  private long maxFlushTime = 1000;
+  private BlockingQueue<ILoggingEvent> queue;
+  private Thread worker;
+
+  @Override
+  public void start() {
+    if (isStarted()) {
+      return;
+    }
+    if (queueSize < 1) {
+      addError("Invalid queue size [" + queueSize + "]");
+      return;
+    }
+    queue = new ArrayBlockingQueue<>(queueSize);
+    worker = new Thread(this::drain, "BoundedAsyncAppender-" + getName());
+    worker.setDaemon(true);
+    super.start();
+    worker.start();
+  }
+
+  @Override
+  public void stop() {
+    if (!isStarted()) {
+      return;
+    }
+    super.stop();
+    worker.interrupt();
+    try {
+      worker.join(maxFlushTime);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (worker.isAlive()) {
+      addWarn("Worker thread did not finish within " + maxFlushTime + " ms; " + queue.size() + " events may be lost");
+    }
+  }
+
+  @Override
+  protected void append(ILoggingEvent event) {
+    // these must be captured on the logging thread
+    event.getThreadName();
+    event.getMDCPropertyMap();
+    if (!queue.offer(event)) {
+      dropped.increment();
+    }
+  }
+
+  private void drain() {
+    try {
+      while (isStarted()) {
+        write(queue.take());
+      }
+    } catch (InterruptedException e) {
+      // stop() was called; fall through and flush what is left
+    }
+    List<ILoggingEvent> remaining = new ArrayList<>();
+    queue.drainTo(remaining);
+    remaining.forEach(this::write);
+  }
+
+  private void write(ILoggingEvent event) {
+    try {
+      appenders.appendLoopOnAppenders(event);
+    } catch (RuntimeException e) {
+      // a child appender that throws must not end the worker, or every later event would be queued and dropped
+      addError("Child appender failed to write an event", e);
+    }
+  }
+
+  /**
+   * This method returns the number of events dropped because the queue was full.
+   * @return the number of dropped events
+   */
+  public long getDroppedCount() {
+    return dropped.sum();
+  }
+
+  /**
+   * This method returns the number of events waiting to be written.
+   * @return the number of queued events
+   */
+  public int getNumberOfElementsInQueue() {
+    return queue == null ? 0 : queue.size();
+  }
+
+  /**
+   * @return the maximum number of events that can wait to be written
+   */
+  public int getQueueSize() {
+    return queueSize;
+  }
+
+  /**
+   * @param queueSize the maximum number of events that can wait to be written
+   */
+  public void setQueueSize(int queueSize) {
+    this.queueSize = queueSize;
+  }
+
+  /**
+   * @return how long stop() waits for queued events to be written, in milliseconds
+   */
+  public long getMaxFlushTime() {
+    return maxFlushTime;
+  }
+
+  /**
+   * @param maxFlushTime how long stop() waits for queued events to be written, in milliseconds
+   */
+  public void setMaxFlushTime(long maxFlushTime) {
+    this.maxFlushTime = maxFlushTime;
+  }
+
+  @Override
+  public void addAppender(Appender<ILoggingEvent> newAppender) {
+    appenders.addAppender(newAppender);
+  }
+
+  @Override
+  public Iterator<Appender<ILoggingEvent>> iteratorForAppenders() {
+    return appenders.iteratorForAppenders();
+  }
+
+  @Override
+  public Appender<ILoggingEvent> getAppender(String name) {
+    return appenders.getAppender(name);
+  }
+
+  @Override
+  public boolean isAttached(Appender<ILoggingEvent> appender) {
+    return appenders.isAttached(appender);
+  }
+
+  @Override
+  public void detachAndStopAllAppenders() {
+    appenders.detachAndStopAllAppenders();
+  }
+
+  @Override
+  public boolean detachAppender(Appender<ILoggingEvent> appender) {
+    return appenders.detachAppender(appender);
+  }
+
+  @Override
+  public boolean detachAppender(String name) {
+    return appenders.detachAppender(name);
+  }
+}
@@ -0,0 +1,38 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+import java.util.List;
+
+/**
+ * This is a model class that represents the outcome of a bulk create, update or delete.
+ * 
+ * There is one item per element of the request, in the same order, with the id of the row
+ * and an HTTP status for it: 201 created, 200 updated or deleted, 404 no row with that id,
+ * 409 a row with that id already exists.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class BulkResult {
+  private int succeeded;
+  private int failed;
+  private List<Item> items;
+
+  /**
+   * This is the outcome for one element of a bulk request.
+   */
+  @Data
+  @AllArgsConstructor
+  @NoArgsConstructor(access = AccessLevel.PROTECTED)
+  public static class Item {
+    private Object id;
+    private int status;
+  }
+}
@@ -0,0 +1,24 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.AccessLevel;
+
+import java.util.List;
+
+/**
+ * This is a model class that represents the rows of a table written since a version.
+ *
+ * The rows created or updated are sent whole; the rows deleted only by id.  The version is the
+ * one to send as since next time (it is also the ETag of the /all list, without its quotes).
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class Delta<T> {
+  private List<T> changed;
+  private List<Object> deleted;
+  private String version;
+}
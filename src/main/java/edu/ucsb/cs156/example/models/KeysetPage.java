@@ -0,0 +1,26 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+import java.util.List;
+
+/**
+ * This is a model class that represents one page of a keyset-paginated listing.
+ * 
+ * The nextCursor is an opaque token that encodes the key of the last row on this page.
+ * Pass it back as the cursor parameter to get the next page; it is null on the last page.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class KeysetPage<T> {
+  private List<T> content;
+  private int size;
+  private String nextCursor;
+}
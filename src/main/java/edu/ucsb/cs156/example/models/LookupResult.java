@@ -0,0 +1,23 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.AccessLevel;
+
+import java.util.List;
+
+/**
+ * This is a model class that represents the rows returned for a list of ids.
+ *
+ * The rows found are in the order their ids first appear in the request; ids with no row
+ * are listed separately, in the same order.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class LookupResult<T> {
+  private List<T> found;
+  private List<Object> notFound;
+}
@@ -2,10 +2,88 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.Articles;
 
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import edu.ucsb.cs156.example.services.JsonStreamingService;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
-public interface ArticlesRepository extends CrudRepository<Articles, Long> {
-    
+public interface ArticlesRepository extends JpaRepository<Articles, Long>, JpaSpecificationExecutor<Articles> {
+  /**
+   * This method returns the next page of Articles entities in id order, for keyset pagination.
+   * @param id id of the last row already returned; only rows after it are returned
+   * @param limit maximum number of rows to return
+   * @return up to limit Articles entities with an id greater than the given one
+   */
+  List<Articles> findByIdGreaterThanOrderByIdAsc(long id, Limit limit);
+
+  /**
+   * This method returns all Articles entities as a stream, fetched from the database in batches.
+   * The caller must consume and close the stream inside a transaction.
+   * @return a stream of all Articles entities
+   */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = JsonStreamingService.FETCH_SIZE))
+  Stream<Articles> streamAllBy();
+
+  /**
+   * This method overwrites an article with the fields of incoming, in one UPDATE statement,
+   * without reading the row first, and bumps its version.
+   * @param id id of the row to update
+   * @param incoming the new contents of the row; its id and version are ignored
+   * @return the number of rows updated, 0 if there is no row with the id
+   */
+  @Modifying
+  @Transactional
+  @Query("update articles a set a.title = :#{#incoming.title}, a.url = :#{#incoming.url}, "
+      + "a.explanation = :#{#incoming.explanation}, a.email = :#{#incoming.email}, "
+      + "a.dateAdded = :#{#incoming.dateAdded}, "
+      + "a.version = a.version + 1 where a.id = :id")
+  int updateById(long id, Articles incoming);
+
+  /**
+   * This method overwrites an article like updateById, but only if the row is still at the given
+   * version, i.e. nobody has changed it since the client read it.
+   * @param id id of the row to update
+   * @param version the version the client read
+   * @param incoming the new contents of the row; its id and version are ignored
+   * @return the number of rows updated, 0 if there is no row with the id at that version
+   */
+  @Modifying
+  @Transactional
+  @Query("update articles a set a.title = :#{#incoming.title}, a.url = :#{#incoming.url}, "
+      + "a.explanation = :#{#incoming.explanation}, a.email = :#{#incoming.email}, "
+      + "a.dateAdded = :#{#incoming.dateAdded}, "
+      + "a.version = a.version + 1 where a.id = :id and a.version = :version")
+  int updateByIdAndVersion(long id, long version, Articles incoming);
+
+  /**
+   * This method deletes an article in one DELETE statement, without reading the row first.
+   * @param id id of the row to delete
+   * @return the number of rows deleted, 0 if there is no row with the id
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from articles a where a.id = :id")
+  int removeById(long id);
+
+  /**
+   * This method deletes an article like removeById, but only if the row is still at the given version.
+   * @param id id of the row to delete
+   * @param version the version the client read
+   * @return the number of rows deleted, 0 if there is no row with the id at that version
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from articles a where a.id = :id and a.version = :version")
+  int removeByIdAndVersion(long id, long version);
 }
@@ -2,10 +2,97 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.HelpRequest;
 
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import edu.ucsb.cs156.example.services.JsonStreamingService;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
-public interface HelpRequestRepository extends CrudRepository<HelpRequest, Long>{
+public interface HelpRequestRepository extends JpaRepository<HelpRequest, Long>, JpaSpecificationExecutor<HelpRequest>{
+  /**
+   * This method returns the help requests that are not solved yet, oldest first.
+   * Served by the HELPREQUEST_UNSOLVED_IDX index.
+   * @return all unsolved HelpRequest entities in request time order
+   */
+  List<HelpRequest> findBySolvedFalseOrderByRequestTimeAsc();
+
+  /**
+   * This method returns the next page of HelpRequest entities in id order, for keyset pagination.
+   * @param id id of the last row already returned; only rows after it are returned
+   * @param limit maximum number of rows to return
+   * @return up to limit HelpRequest entities with an id greater than the given one
+   */
+  List<HelpRequest> findByIdGreaterThanOrderByIdAsc(long id, Limit limit);
+
+  /**
+   * This method returns all HelpRequest entities as a stream, fetched from the database in batches.
+   * The caller must consume and close the stream inside a transaction.
+   * @return a stream of all HelpRequest entities
+   */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = JsonStreamingService.FETCH_SIZE))
+  Stream<HelpRequest> streamAllBy();
+
+  /**
+   * This method overwrites a help request with the fields of incoming, in one UPDATE statement,
+   * without reading the row first, and bumps its version.
+   * @param id id of the row to update
+   * @param incoming the new contents of the row; its id and version are ignored
+   * @return the number of rows updated, 0 if there is no row with the id
+   */
+  @Modifying
+  @Transactional
+  @Query("update helprequest h set h.requesterEmail = :#{#incoming.requesterEmail}, "
+      + "h.teamId = :#{#incoming.teamId}, h.tableOrBreakoutRoom = :#{#incoming.tableOrBreakoutRoom}, "
+      + "h.requestTime = :#{#incoming.requestTime}, h.explanation = :#{#incoming.explanation}, "
+      + "h.solved = :#{#incoming.solved}, "
+      + "h.version = h.version + 1 where h.id = :id")
+  int updateById(long id, HelpRequest incoming);
+
+  /**
+   * This method overwrites a help request like updateById, but only if the row is still at the given
+   * version, i.e. nobody has changed it since the client read it.
+   * @param id id of the row to update
+   * @param version the version the client read
+   * @param incoming the new contents of the row; its id and version are ignored
+   * @return the number of rows updated, 0 if there is no row with the id at that version
+   */
+  @Modifying
+  @Transactional
+  @Query("update helprequest h set h.requesterEmail = :#{#incoming.requesterEmail}, "
+      + "h.teamId = :#{#incoming.teamId}, h.tableOrBreakoutRoom = :#{#incoming.tableOrBreakoutRoom}, "
+      + "h.requestTime = :#{#incoming.requestTime}, h.explanation = :#{#incoming.explanation}, "
+      + "h.solved = :#{#incoming.solved}, "
+      + "h.version = h.version + 1 where h.id = :id and h.version = :version")
+  int updateByIdAndVersion(long id, long version, HelpRequest incoming);
+
+  /**
+   * This method deletes a help request in one DELETE statement, without reading the row first.
+   * @param id id of the row to delete
+   * @return the number of rows deleted, 0 if there is no row with the id
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from helprequest h where h.id = :id")
+  int removeById(long id);
 
-}
\ No newline at end of file
+  /**
+   * This method deletes a help request like removeById, but only if the row is still at the given version.
+   * @param id id of the row to delete
+   * @param version the version the client read
+   * @return the number of rows deleted, 0 if there is no row with the id at that version
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from helprequest h where h.id = :id and h.version = :version")
+  int removeByIdAndVersion(long id, long version);
+}
@@ -1,11 +1,96 @@
 package edu.ucsb.cs156.example.repositories;
 
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import edu.ucsb.cs156.example.services.JsonStreamingService;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.stream.Stream;
 import edu.ucsb.cs156.example.entities.MenuItemReviews;
 
 @Repository
-public interface MenuItemsReviewsRepository extends CrudRepository<MenuItemReviews, Long> {
-    
-}
+public interface MenuItemsReviewsRepository extends JpaRepository<MenuItemReviews, Long>, JpaSpecificationExecutor<MenuItemReviews> {
+  /**
+   * This method returns the reviews of one menu item.
+   * Served by the MENUITEMREVIEWS_ITEM_IDX index.
+   * @param itemId id of the menu item
+   * @return all MenuItemReviews entities for the item
+   */
+  List<MenuItemReviews> findByItemId(long itemId);
+
+  /**
+   * This method returns the next page of MenuItemReviews entities in id order, for keyset pagination.
+   * @param id id of the last row already returned; only rows after it are returned
+   * @param limit maximum number of rows to return
+   * @return up to limit MenuItemReviews entities with an id greater than the given one
+   */
+  List<MenuItemReviews> findByIdGreaterThanOrderByIdAsc(long id, Limit limit);
+
+  /**
+   * This method returns all MenuItemReviews entities as a stream, fetched from the database in batches.
+   * The caller must consume and close the stream inside a transaction.
+   * @return a stream of all MenuItemReviews entities
+   */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = JsonStreamingService.FETCH_SIZE))
+  Stream<MenuItemReviews> streamAllBy();
 
+  /**
+   * This method overwrites a review with the fields of incoming, in one UPDATE statement,
+   * without reading the row first, and bumps its version.
+   * @param id id of the row to update
+   * @param incoming the new contents of the row; its id and version are ignored
+   * @return the number of rows updated, 0 if there is no row with the id
+   */
+  @Modifying
+  @Transactional
+  @Query("update menuitemreviews r set r.itemId = :#{#incoming.itemId}, "
+      + "r.reviewerEmail = :#{#incoming.reviewerEmail}, r.stars = :#{#incoming.stars}, "
+      + "r.dateReviewed = :#{#incoming.dateReviewed}, r.comments = :#{#incoming.comments}, "
+      + "r.version = r.version + 1 where r.id = :id")
+  int updateById(long id, MenuItemReviews incoming);
+
+  /**
+   * This method overwrites a review like updateById, but only if the row is still at the given
+   * version, i.e. nobody has changed it since the client read it.
+   * @param id id of the row to update
+   * @param version the version the client read
+   * @param incoming the new contents of the row; its id and version are ignored
+   * @return the number of rows updated, 0 if there is no row with the id at that version
+   */
+  @Modifying
+  @Transactional
+  @Query("update menuitemreviews r set r.itemId = :#{#incoming.itemId}, "
+      + "r.reviewerEmail = :#{#incoming.reviewerEmail}, r.stars = :#{#incoming.stars}, "
+      + "r.dateReviewed = :#{#incoming.dateReviewed}, r.comments = :#{#incoming.comments}, "
+      + "r.version = r.version + 1 where r.id = :id and r.version = :version")
+  int updateByIdAndVersion(long id, long version, MenuItemReviews incoming);
+
+  /**
+   * This method deletes a review in one DELETE statement, without reading the row first.
+   * @param id id of the row to delete
+   * @return the number of rows deleted, 0 if there is no row with the id
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from menuitemreviews r where r.id = :id")
+  int removeById(long id);
+
+  /**
+   * This method deletes a review like removeById, but only if the row is still at the given version.
+   * @param id id of the row to delete
+   * @param version the version the client read
+   * @return the number of rows deleted, 0 if there is no row with the id at that version
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from menuitemreviews r where r.id = :id and r.version = :version")
+  int removeByIdAndVersion(long id, long version);
+}
@@ -2,10 +2,97 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.RecommendationRequest;
 
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import edu.ucsb.cs156.example.services.JsonStreamingService;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
-public interface RecommendationRequestRepository extends CrudRepository<RecommendationRequest, Long> {
-    
+public interface RecommendationRequestRepository extends JpaRepository<RecommendationRequest, Long>, JpaSpecificationExecutor<RecommendationRequest> {
+  /**
+   * This method returns the recommendation requests that are not done yet, soonest needed first.
+   * Served by the RECOMMENDATION_REQUESTS_NOT_DONE_IDX index.
+   * @return all RecommendationRequest entities not done, in date needed order
+   */
+  List<RecommendationRequest> findByDoneFalseOrderByDateNeededAsc();
+
+  /**
+   * This method returns the next page of RecommendationRequest entities in id order, for keyset pagination.
+   * @param id id of the last row already returned; only rows after it are returned
+   * @param limit maximum number of rows to return
+   * @return up to limit RecommendationRequest entities with an id greater than the given one
+   */
+  List<RecommendationRequest> findByIdGreaterThanOrderByIdAsc(long id, Limit limit);
+
+  /**
+   * This method returns all RecommendationRequest entities as a stream, fetched from the database in batches.
+   * The caller must consume and close the stream inside a transaction.
+   * @return a stream of all RecommendationRequest entities
+   */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = JsonStreamingService.FETCH_SIZE))
+  Stream<RecommendationRequest> streamAllBy();
+
+  /**
+   * This method overwrites a recommendation request with the fields of incoming, in one UPDATE statement,
+   * without reading the row first, and bumps its version.
+   * @param id id of the row to update
+   * @param incoming the new contents of the row; its id and version are ignored
+   * @return the number of rows updated, 0 if there is no row with the id
+   */
+  @Modifying
+  @Transactional
+  @Query("update recommendationRequests r set r.dateNeeded = :#{#incoming.dateNeeded}, "
+      + "r.dateRequested = :#{#incoming.dateRequested}, r.done = :#{#incoming.done}, "
+      + "r.professorEmail = :#{#incoming.professorEmail}, r.requesterEmail = :#{#incoming.requesterEmail}, "
+      + "r.explanation = :#{#incoming.explanation}, "
+      + "r.version = r.version + 1 where r.id = :id")
+  int updateById(long id, RecommendationRequest incoming);
+
+  /**
+   * This method overwrites a recommendation request like updateById, but only if the row is still at the given
+   * version, i.e. nobody has changed it since the client read it.
+   * @param id id of the row to update
+   * @param version the version the client read
+   * @param incoming the new contents of the row; its id and version are ignored
+   * @return the number of rows updated, 0 if there is no row with the id at that version
+   */
+  @Modifying
+  @Transactional
+  @Query("update recommendationRequests r set r.dateNeeded = :#{#incoming.dateNeeded}, "
+      + "r.dateRequested = :#{#incoming.dateRequested}, r.done = :#{#incoming.done}, "
+      + "r.professorEmail = :#{#incoming.professorEmail}, r.requesterEmail = :#{#incoming.requesterEmail}, "
+      + "r.explanation = :#{#incoming.explanation}, "
+      + "r.version = r.version + 1 where r.id = :id and r.version = :version")
+  int updateByIdAndVersion(long id, long version, RecommendationRequest incoming);
+
+  /**
+   * This method deletes a recommendation request in one DELETE statement, without reading the row first.
+   * @param id id of the row to delete
+   * @return the number of rows deleted, 0 if there is no row with the id
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from recommendationRequests r where r.id = :id")
+  int removeById(long id);
+
+  /**
+   * This method deletes a recommendation request like removeById, but only if the row is still at the given version.
+   * @param id id of the row to delete
+   * @param version the version the client read
+   * @return the number of rows deleted, 0 if there is no row with the id at that version
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from recommendationRequests r where r.id = :id and r.version = :version")
+  int removeByIdAndVersion(long id, long version);
 }
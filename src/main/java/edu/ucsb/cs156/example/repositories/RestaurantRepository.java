@@ -2,12 +2,87 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.Restaurant;
 
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import edu.ucsb.cs156.example.services.JsonStreamingService;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * The RestaurantRepository is a repository for Restaurant entities
  */
 @Repository
-public interface RestaurantRepository extends CrudRepository<Restaurant, Long> {
+public interface RestaurantRepository extends JpaRepository<Restaurant, Long>, JpaSpecificationExecutor<Restaurant> {
+  /**
+   * This method returns the next page of Restaurant entities in id order, for keyset pagination.
+   * @param id id of the last row already returned; only rows after it are returned
+   * @param limit maximum number of rows to return
+   * @return up to limit Restaurant entities with an id greater than the given one
+   */
+  List<Restaurant> findByIdGreaterThanOrderByIdAsc(long id, Limit limit);
+
+  /**
+   * This method returns all Restaurant entities as a stream, fetched from the database in batches.
+   * The caller must consume and close the stream inside a transaction.
+   * @return a stream of all Restaurant entities
+   */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = JsonStreamingService.FETCH_SIZE))
+  Stream<Restaurant> streamAllBy();
+
+  /**
+   * This method overwrites a restaurant with the fields of incoming, in one UPDATE statement,
+   * without reading the row first, and bumps its version.
+   * @param id id of the row to update
+   * @param incoming the new contents of the row; its id and version are ignored
+   * @return the number of rows updated, 0 if there is no row with the id
+   */
+  @Modifying
+  @Transactional
+  @Query("update restaurants r set r.name = :#{#incoming.name}, r.description = :#{#incoming.description}, "
+      + "r.version = r.version + 1 where r.id = :id")
+  int updateById(long id, Restaurant incoming);
+
+  /**
+   * This method overwrites a restaurant like updateById, but only if the row is still at the given
+   * version, i.e. nobody has changed it since the client read it.
+   * @param id id of the row to update
+   * @param version the version the client read
+   * @param incoming the new contents of the row; its id and version are ignored
+   * @return the number of rows updated, 0 if there is no row with the id at that version
+   */
+  @Modifying
+  @Transactional
+  @Query("update restaurants r set r.name = :#{#incoming.name}, r.description = :#{#incoming.description}, "
+      + "r.version = r.version + 1 where r.id = :id and r.version = :version")
+  int updateByIdAndVersion(long id, long version, Restaurant incoming);
+
+  /**
+   * This method deletes a restaurant in one DELETE statement, without reading the row first.
+   * @param id id of the row to delete
+   * @return the number of rows deleted, 0 if there is no row with the id
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from restaurants r where r.id = :id")
+  int removeById(long id);
+
+  /**
+   * This method deletes a restaurant like removeById, but only if the row is still at the given version.
+   * @param id id of the row to delete
+   * @param version the version the client read
+   * @return the number of rows deleted, 0 if there is no row with the id at that version
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from restaurants r where r.id = :id and r.version = :version")
+  int removeByIdAndVersion(long id, long version);
 }
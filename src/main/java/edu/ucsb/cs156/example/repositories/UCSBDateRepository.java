@@ -2,19 +2,97 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.UCSBDate;
 
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import edu.ucsb.cs156.example.services.JsonStreamingService;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * The UCSBDateRepository is a repository for UCSBDate entities.
  */
 
 @Repository
-public interface UCSBDateRepository extends CrudRepository<UCSBDate, Long> {
+public interface UCSBDateRepository extends JpaRepository<UCSBDate, Long>, JpaSpecificationExecutor<UCSBDate> {
   /**
    * This method returns all UCSBDate entities with a given quarterYYYYQ.
    * @param quarterYYYYQ quarter in the format YYYYQ (e.g. 20241 for Winter 2024, 20242 for Spring 2024, 20243 for Summer 2024, 20244 for Fall 2024)
    * @return all UCSBDate entities with a given quarterYYYYQ
    */
   Iterable<UCSBDate> findAllByQuarterYYYYQ(String quarterYYYYQ);
-}
\ No newline at end of file
+
+  /**
+   * This method returns the next page of UCSBDate entities in id order, for keyset pagination.
+   * @param id id of the last row already returned; only rows after it are returned
+   * @param limit maximum number of rows to return
+   * @return up to limit UCSBDate entities with an id greater than the given one
+   */
+  List<UCSBDate> findByIdGreaterThanOrderByIdAsc(long id, Limit limit);
+
+  /**
+   * This method returns all UCSBDate entities as a stream, fetched from the database in batches.
+   * The caller must consume and close the stream inside a transaction.
+   * @return a stream of all UCSBDate entities
+   */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = JsonStreamingService.FETCH_SIZE))
+  Stream<UCSBDate> streamAllBy();
+
+  /**
+   * This method overwrites a date with the fields of incoming, in one UPDATE statement,
+   * without reading the row first, and bumps its version.
+   * @param id id of the row to update
+   * @param incoming the new contents of the row; its id and version are ignored
+   * @return the number of rows updated, 0 if there is no row with the id
+   */
+  @Modifying
+  @Transactional
+  @Query("update ucsbdates d set d.quarterYYYYQ = :#{#incoming.quarterYYYYQ}, d.name = :#{#incoming.name}, "
+      + "d.localDateTime = :#{#incoming.localDateTime}, "
+      + "d.version = d.version + 1 where d.id = :id")
+  int updateById(long id, UCSBDate incoming);
+
+  /**
+   * This method overwrites a date like updateById, but only if the row is still at the given
+   * version, i.e. nobody has changed it since the client read it.
+   * @param id id of the row to update
+   * @param version the version the client read
+   * @param incoming the new contents of the row; its id and version are ignored
+   * @return the number of rows updated, 0 if there is no row with the id at that version
+   */
+  @Modifying
+  @Transactional
+  @Query("update ucsbdates d set d.quarterYYYYQ = :#{#incoming.quarterYYYYQ}, d.name = :#{#incoming.name}, "
+      + "d.localDateTime = :#{#incoming.localDateTime}, "
+      + "d.version = d.version + 1 where d.id = :id and d.version = :version")
+  int updateByIdAndVersion(long id, long version, UCSBDate incoming);
+
+  /**
+   * This method deletes a date in one DELETE statement, without reading the row first.
+   * @param id id of the row to delete
+   * @return the number of rows deleted, 0 if there is no row with the id
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from ucsbdates d where d.id = :id")
+  int removeById(long id);
+
+  /**
+   * This method deletes a date like removeById, but only if the row is still at the given version.
+   * @param id id of the row to delete
+   * @param version the version the client read
+   * @return the number of rows deleted, 0 if there is no row with the id at that version
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from ucsbdates d where d.id = :id and d.version = :version")
+  int removeByIdAndVersion(long id, long version);
+}
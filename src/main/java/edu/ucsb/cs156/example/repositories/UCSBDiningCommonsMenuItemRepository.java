@@ -2,10 +2,108 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
 
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import edu.ucsb.cs156.example.services.JsonStreamingService;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
-public interface UCSBDiningCommonsMenuItemRepository extends CrudRepository<UCSBDiningCommonsMenuItem, Long>{
+public interface UCSBDiningCommonsMenuItemRepository extends JpaRepository<UCSBDiningCommonsMenuItem, Long>, JpaSpecificationExecutor<UCSBDiningCommonsMenuItem>{
+  /**
+   * This method returns the menu items served at one station of a dining commons.
+   * Served by the UCSBDININGCOMMONSMENUITEM_STATION_IDX index.
+   * @param diningCommonsCode code of the dining commons
+   * @param station name of the station
+   * @return all UCSBDiningCommonsMenuItem entities at the station
+   */
+  List<UCSBDiningCommonsMenuItem> findByDiningCommonsCodeAndStation(String diningCommonsCode, String station);
+
+  /**
+   * This method returns the next page of UCSBDiningCommonsMenuItem entities in id order, for keyset pagination.
+   * The result is kept in the query cache.
+   * @param id id of the last row already returned; only rows after it are returned
+   * @param limit maximum number of rows to return
+   * @return up to limit UCSBDiningCommonsMenuItem entities with an id greater than the given one
+   */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+  List<UCSBDiningCommonsMenuItem> findByIdGreaterThanOrderByIdAsc(long id, Limit limit);
+
+  /**
+   * This method returns all UCSBDiningCommonsMenuItem entities.  The result is kept in the query cache,
+   * and the entities in the second-level cache, until one of them is written.
+   * @return all UCSBDiningCommonsMenuItem entities
+   */
+  @Override
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+  List<UCSBDiningCommonsMenuItem> findAll();
+
+  /**
+   * This method returns all UCSBDiningCommonsMenuItem entities as a stream, fetched from the database in batches.
+   * The caller must consume and close the stream inside a transaction.
+   * @return a stream of all UCSBDiningCommonsMenuItem entities
+   */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = JsonStreamingService.FETCH_SIZE))
+  Stream<UCSBDiningCommonsMenuItem> streamAllBy();
+
+  /**
+   * This method overwrites a menu item with the fields of incoming, in one UPDATE statement,
+   * without reading the row first, and bumps its version.
+   * Hibernate empties the ucsbdiningcommonsmenuitem cache region afterwards.
+   * @param id id of the row to update
+   * @param incoming the new contents of the row; its id and version are ignored
+   * @return the number of rows updated, 0 if there is no row with the id
+   */
+  @Modifying
+  @Transactional
+  @Query("update ucsbdiningcommonsmenuitem m set m.diningCommonsCode = :#{#incoming.diningCommonsCode}, "
+      + "m.name = :#{#incoming.name}, m.station = :#{#incoming.station}, "
+      + "m.version = m.version + 1 where m.id = :id")
+  int updateById(long id, UCSBDiningCommonsMenuItem incoming);
+
+  /**
+   * This method overwrites a menu item like updateById, but only if the row is still at the given
+   * version, i.e. nobody has changed it since the client read it.
+   * @param id id of the row to update
+   * @param version the version the client read
+   * @param incoming the new contents of the row; its id and version are ignored
+   * @return the number of rows updated, 0 if there is no row with the id at that version
+   */
+  @Modifying
+  @Transactional
+  @Query("update ucsbdiningcommonsmenuitem m set m.diningCommonsCode = :#{#incoming.diningCommonsCode}, "
+      + "m.name = :#{#incoming.name}, m.station = :#{#incoming.station}, "
+      + "m.version = m.version + 1 where m.id = :id and m.version = :version")
+  int updateByIdAndVersion(long id, long version, UCSBDiningCommonsMenuItem incoming);
+
+  /**
+   * This method deletes a menu item in one DELETE statement, without reading the row first.
+   * Hibernate empties the ucsbdiningcommonsmenuitem cache region afterwards.
+   * @param id id of the row to delete
+   * @return the number of rows deleted, 0 if there is no row with the id
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from ucsbdiningcommonsmenuitem m where m.id = :id")
+  int removeById(long id);
 
+  /**
+   * This method deletes a menu item like removeById, but only if the row is still at the given version.
+   * @param id id of the row to delete
+   * @param version the version the client read
+   * @return the number of rows deleted, 0 if there is no row with the id at that version
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from ucsbdiningcommonsmenuitem m where m.id = :id and m.version = :version")
+  int removeByIdAndVersion(long id, long version);
 }
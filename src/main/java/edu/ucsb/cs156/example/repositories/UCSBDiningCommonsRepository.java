@@ -2,14 +2,106 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
 
-import org.springframework.beans.propertyeditors.StringArrayPropertyEditor;
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import edu.ucsb.cs156.example.services.JsonStreamingService;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * The UCSBDiningCommonsRepository is a repository for UCSBDiningCommons entities
  */
 @Repository
-public interface UCSBDiningCommonsRepository extends CrudRepository<UCSBDiningCommons, String> {
- 
-}
\ No newline at end of file
+public interface UCSBDiningCommonsRepository extends JpaRepository<UCSBDiningCommons, String>, JpaSpecificationExecutor<UCSBDiningCommons> {
+  /**
+   * This method returns the next page of UCSBDiningCommons entities in code order, for keyset pagination.
+   * The result is kept in the query cache.
+   * @param code code of the last row already returned; only rows after it are returned
+   * @param limit maximum number of rows to return
+   * @return up to limit UCSBDiningCommons entities with a code greater than the given one
+   */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+  List<UCSBDiningCommons> findByCodeGreaterThanOrderByCodeAsc(String code, Limit limit);
+
+  /**
+   * This method returns all UCSBDiningCommons entities.  The result is kept in the query cache,
+   * and the entities in the second-level cache, until one of them is written.
+   * @return all UCSBDiningCommons entities
+   */
+  @Override
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+  List<UCSBDiningCommons> findAll();
+
+  /**
+   * This method returns all UCSBDiningCommons entities as a stream, fetched from the database in batches.
+   * The caller must consume and close the stream inside a transaction.
+   * @return a stream of all UCSBDiningCommons entities
+   */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = JsonStreamingService.FETCH_SIZE))
+  Stream<UCSBDiningCommons> streamAllBy();
+
+  /**
+   * This method overwrites a dining commons with the fields of incoming, in one UPDATE statement,
+   * without reading the row first, and bumps its version.
+   * Hibernate empties the ucsbdiningcommons cache region afterwards.
+   * @param code code of the row to update
+   * @param incoming the new contents of the row; its code and version are ignored
+   * @return the number of rows updated, 0 if there is no row with the code
+   */
+  @Modifying
+  @Transactional
+  @Query("update ucsbdiningcommons c set c.name = :#{#incoming.name}, "
+      + "c.hasSackMeal = :#{#incoming.hasSackMeal}, c.hasTakeOutMeal = :#{#incoming.hasTakeOutMeal}, "
+      + "c.hasDiningCam = :#{#incoming.hasDiningCam}, c.latitude = :#{#incoming.latitude}, "
+      + "c.longitude = :#{#incoming.longitude}, "
+      + "c.version = c.version + 1 where c.code = :code")
+  int updateByCode(String code, UCSBDiningCommons incoming);
+
+  /**
+   * This method overwrites a dining commons like updateByCode, but only if the row is still at the given
+   * version, i.e. nobody has changed it since the client read it.
+   * @param code code of the row to update
+   * @param version the version the client read
+   * @param incoming the new contents of the row; its code and version are ignored
+   * @return the number of rows updated, 0 if there is no row with the code at that version
+   */
+  @Modifying
+  @Transactional
+  @Query("update ucsbdiningcommons c set c.name = :#{#incoming.name}, "
+      + "c.hasSackMeal = :#{#incoming.hasSackMeal}, c.hasTakeOutMeal = :#{#incoming.hasTakeOutMeal}, "
+      + "c.hasDiningCam = :#{#incoming.hasDiningCam}, c.latitude = :#{#incoming.latitude}, "
+      + "c.longitude = :#{#incoming.longitude}, "
+      + "c.version = c.version + 1 where c.code = :code and c.version = :version")
+  int updateByCodeAndVersion(String code, long version, UCSBDiningCommons incoming);
+
+  /**
+   * This method deletes a dining commons in one DELETE statement, without reading the row first.
+   * Hibernate empties the ucsbdiningcommons cache region afterwards.
+   * @param code code of the row to delete
+   * @return the number of rows deleted, 0 if there is no row with the code
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from ucsbdiningcommons c where c.code = :code")
+  int removeByCode(String code);
+
+  /**
+   * This method deletes a dining commons like removeByCode, but only if the row is still at the given version.
+   * @param code code of the row to delete
+   * @param version the version the client read
+   * @return the number of rows deleted, 0 if there is no row with the code at that version
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from ucsbdiningcommons c where c.code = :code and c.version = :version")
+  int removeByCodeAndVersion(String code, long version);
+}
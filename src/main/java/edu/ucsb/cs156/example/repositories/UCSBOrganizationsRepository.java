@@ -2,14 +2,102 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.UCSBOrganizations;
 
-import org.springframework.beans.propertyeditors.StringArrayPropertyEditor;
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import edu.ucsb.cs156.example.services.JsonStreamingService;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * The UCSBOrganizationsRepository is a repository for UCSBOrganizations entities
  */
 @Repository
-public interface UCSBOrganizationsRepository extends CrudRepository<UCSBOrganizations, String> {
- 
-}
\ No newline at end of file
+public interface UCSBOrganizationsRepository extends JpaRepository<UCSBOrganizations, String>, JpaSpecificationExecutor<UCSBOrganizations> {
+  /**
+   * This method returns the next page of UCSBOrganizations entities in orgcode order, for keyset pagination.
+   * The result is kept in the query cache.
+   * @param orgcode orgcode of the last row already returned; only rows after it are returned
+   * @param limit maximum number of rows to return
+   * @return up to limit UCSBOrganizations entities with an orgcode greater than the given one
+   */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+  List<UCSBOrganizations> findByOrgcodeGreaterThanOrderByOrgcodeAsc(String orgcode, Limit limit);
+
+  /**
+   * This method returns all UCSBOrganizations entities.  The result is kept in the query cache,
+   * and the entities in the second-level cache, until one of them is written.
+   * @return all UCSBOrganizations entities
+   */
+  @Override
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+  List<UCSBOrganizations> findAll();
+
+  /**
+   * This method returns all UCSBOrganizations entities as a stream, fetched from the database in batches.
+   * The caller must consume and close the stream inside a transaction.
+   * @return a stream of all UCSBOrganizations entities
+   */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = JsonStreamingService.FETCH_SIZE))
+  Stream<UCSBOrganizations> streamAllBy();
+
+  /**
+   * This method overwrites an organization with the fields of incoming, in one UPDATE statement,
+   * without reading the row first, and bumps its version.
+   * Hibernate empties the ucsborganizations cache region afterwards.
+   * @param orgcode orgcode of the row to update
+   * @param incoming the new contents of the row; its orgcode and version are ignored
+   * @return the number of rows updated, 0 if there is no row with the orgcode
+   */
+  @Modifying
+  @Transactional
+  @Query("update ucsborganizations o set o.orgTranslationShort = :#{#incoming.orgTranslationShort}, "
+      + "o.orgTranslation = :#{#incoming.orgTranslation}, o.inactive = :#{#incoming.inactive}, "
+      + "o.version = o.version + 1 where o.orgcode = :orgcode")
+  int updateByOrgcode(String orgcode, UCSBOrganizations incoming);
+
+  /**
+   * This method overwrites an organization like updateByOrgcode, but only if the row is still at the given
+   * version, i.e. nobody has changed it since the client read it.
+   * @param orgcode orgcode of the row to update
+   * @param version the version the client read
+   * @param incoming the new contents of the row; its orgcode and version are ignored
+   * @return the number of rows updated, 0 if there is no row with the orgcode at that version
+   */
+  @Modifying
+  @Transactional
+  @Query("update ucsborganizations o set o.orgTranslationShort = :#{#incoming.orgTranslationShort}, "
+      + "o.orgTranslation = :#{#incoming.orgTranslation}, o.inactive = :#{#incoming.inactive}, "
+      + "o.version = o.version + 1 where o.orgcode = :orgcode and o.version = :version")
+  int updateByOrgcodeAndVersion(String orgcode, long version, UCSBOrganizations incoming);
+
+  /**
+   * This method deletes an organization in one DELETE statement, without reading the row first.
+   * Hibernate empties the ucsborganizations cache region afterwards.
+   * @param orgcode orgcode of the row to delete
+   * @return the number of rows deleted, 0 if there is no row with the orgcode
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from ucsborganizations o where o.orgcode = :orgcode")
+  int removeByOrgcode(String orgcode);
+
+  /**
+   * This method deletes an organization like removeByOrgcode, but only if the row is still at the given version.
+   * @param orgcode orgcode of the row to delete
+   * @param version the version the client read
+   * @return the number of rows deleted, 0 if there is no row with the orgcode at that version
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from ucsborganizations o where o.orgcode = :orgcode and o.version = :version")
+  int removeByOrgcodeAndVersion(String orgcode, long version);
+}
@@ -2,19 +2,35 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.User;
 import org.springframework.data.repository.CrudRepository;
+import edu.ucsb.cs156.example.services.JsonStreamingService;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * The UserRepository is a repository for User entities.
+ * 
+ * Logins should use upsertByEmail (from UserUpsertRepository) rather than
+ * findByEmail followed by save.
  */
 @Repository
-public interface UserRepository extends CrudRepository<User, Long> {
+public interface UserRepository extends CrudRepository<User, Long>, UserUpsertRepository {
   /**
    * This method returns a User entity with a given email.
    * @param email email address of the user
    * @return Optional of User (empty if not found)
    */
   Optional<User> findByEmail(String email);
+
+  /**
+   * This method returns all User entities as a stream, fetched from the database in batches.
+   * The caller must consume and close the stream inside a transaction.
+   * @return a stream of all User entities
+   */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = JsonStreamingService.FETCH_SIZE))
+  Stream<User> streamAllBy();
 }
@@ -0,0 +1,22 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.User;
+
+/**
+ * The UserUpsertRepository adds an atomic insert-or-update of users by email
+ * to the UserRepository.
+ */
+public interface UserUpsertRepository {
+  /**
+   * This method inserts a user, or, if a user with the same email already exists,
+   * returns the existing user.  An existing user is promoted to admin in the same
+   * statement if the given user has admin set; their other columns are left as they are.
+   * 
+   * The insert is a single statement, so two concurrent first logins of the same user
+   * cannot create two rows, and an existing user who is not being promoted is not written.
+   * 
+   * @param user the user to insert (the id is ignored)
+   * @return the user as stored in the database
+   */
+  User upsertByEmail(User user);
+}
@@ -0,0 +1,122 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.User;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+
+import java.util.List;
+
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * This is the implementation of UserUpsertRepository.  Spring Data finds it by name
+ * and adds its methods to the UserRepository.
+ * 
+ * Postgres uses INSERT ... ON CONFLICT; H2 uses MERGE ... USING, wrapped in FINAL TABLE
+ * so that, like RETURNING, the row comes back from the same statement.  Both rely on
+ * the unique constraint on users.email (changeset Users-2).
+ * 
+ * An existing row is only updated when the user is being promoted, so most logins write
+ * nothing.  The Postgres statement then returns the row as it was; FINAL TABLE has no such
+ * option, so on H2 (and on Postgres, if a concurrent login inserted the row after the
+ * statement began) the row is read with a second statement.
+ * 
+ * The statement is picked when the repository is created, so that any other database
+ * fails at startup rather than on the first login.
+ */
+public class UserUpsertRepositoryImpl implements UserUpsertRepository {
+
+  static final String POSTGRES_UPSERT = """
+      WITH upserted AS (
+        INSERT INTO users (email, google_sub, picture_url, full_name, given_name, family_name,
+                           email_verified, locale, hosted_domain, admin)
+        VALUES (:email, :googleSub, :pictureUrl, :fullName, :givenName, :familyName,
+                :emailVerified, :locale, :hostedDomain, :admin)
+        ON CONFLICT (email) DO UPDATE SET admin = users.admin OR EXCLUDED.admin
+          WHERE EXCLUDED.admin AND NOT users.admin
+        RETURNING *
+      )
+      SELECT * FROM upserted
+      UNION ALL
+      SELECT * FROM users WHERE email = :email AND NOT EXISTS (SELECT 1 FROM upserted)
+      """;
+
+  static final String H2_UPSERT = """
+      SELECT * FROM FINAL TABLE (
+        MERGE INTO users u
+        USING (VALUES (CAST(:email AS VARCHAR(255)), CAST(:googleSub AS VARCHAR(255)),
+                       CAST(:pictureUrl AS VARCHAR(255)), CAST(:fullName AS VARCHAR(255)),
+                       CAST(:givenName AS VARCHAR(255)), CAST(:familyName AS VARCHAR(255)),
+                       CAST(:emailVerified AS BOOLEAN), CAST(:locale AS VARCHAR(255)),
+                       CAST(:hostedDomain AS VARCHAR(255)), CAST(:admin AS BOOLEAN)))
+          AS s (email, google_sub, picture_url, full_name, given_name, family_name,
+                email_verified, locale, hosted_domain, admin)
+        ON u.email = s.email
+        WHEN MATCHED AND s.admin AND NOT u.admin THEN UPDATE SET admin = u.admin OR s.admin
+        WHEN NOT MATCHED THEN INSERT (email, google_sub, picture_url, full_name, given_name, family_name,
+                                      email_verified, locale, hosted_domain, admin)
+          VALUES (s.email, s.google_sub, s.picture_url, s.full_name, s.given_name, s.family_name,
+                  s.email_verified, s.locale, s.hosted_domain, s.admin)
+      )
+      """;
+
+  static final String SELECT_BY_EMAIL = "SELECT * FROM users WHERE email = :email";
+
+  @PersistenceContext
+  EntityManager entityManager;
+
+  /**
+   * The upsert statement for the database in use.
+   */
+  String upsertSql;
+
+  @Override
+  @Transactional
+  @SuppressWarnings("unchecked")
+  public User upsertByEmail(User user) {
+    Query query = entityManager.createNativeQuery(upsertSql, User.class)
+        .setParameter("email", user.getEmail())
+        .setParameter("googleSub", user.getGoogleSub())
+        .setParameter("pictureUrl", user.getPictureUrl())
+        .setParameter("fullName", user.getFullName())
+        .setParameter("givenName", user.getGivenName())
+        .setParameter("familyName", user.getFamilyName())
+        .setParameter("emailVerified", user.getEmailVerified())
+        .setParameter("locale", user.getLocale())
+        .setParameter("hostedDomain", user.getHostedDomain())
+        .setParameter("admin", user.getAdmin());
+    List<User> rows = query.getResultList();
+    if (rows.isEmpty()) {
+      // the row was already there and was not updated, so the upsert returned nothing
+      rows = entityManager.createNativeQuery(SELECT_BY_EMAIL, User.class)
+          .setParameter("email", user.getEmail())
+          .getResultList();
+    }
+    return rows.get(0);
+  }
+
+  /**
+   * This method picks the upsert statement for the database in use.
+   * @throws IllegalStateException if there is no upsert statement for the database
+   */
+  @PostConstruct
+  void chooseUpsertSql() {
+    Dialect dialect = entityManager.getEntityManagerFactory()
+        .unwrap(SessionFactoryImplementor.class)
+        .getJdbcServices()
+        .getDialect();
+    if (dialect instanceof PostgreSQLDialect) {
+      upsertSql = POSTGRES_UPSERT;
+    } else if (dialect instanceof H2Dialect) {
+      upsertSql = H2_UPSERT;
+    } else {
+      throw new IllegalStateException("No user upsert statement for " + dialect.getClass().getSimpleName());
+    }
+  }
+}
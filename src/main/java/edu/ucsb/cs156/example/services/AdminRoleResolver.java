@@ -0,0 +1,128 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * This is a service that decides whether an email belongs to an admin.
+ * 
+ * An email is an admin if it is listed in app.admin.emails, or if the users table
+ * has the admin flag set for it.  The configured list is held in a hash set, and the
+ * flags read from the database are cached for app.admin.cache.ttl, for at most
+ * app.admin.cache.max-size emails.  Cached flags are invalidated when the user row
+ * changes (see UserCacheInvalidator).
+ */
+
+@Slf4j
+@Service("adminRoleResolver")
+public class AdminRoleResolver {
+
+  /**
+   * A cached admin flag and the time (in System.nanoTime units) it expires.
+   * @param admin whether the user is an admin
+   * @param expiresAt when the flag must be read from the database again
+   */
+  record Entry(boolean admin, long expiresAt) {
+  }
+
+  private final Set<String> adminEmails;
+  private final UserRepository userRepository;
+  private final long ttlNanos;
+  private final int maxSize;
+
+  private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+  private final AtomicLong invalidations = new AtomicLong();
+
+  LongSupplier clock = System::nanoTime;
+
+  /**
+   * Create the resolver.
+   * @param adminEmails the emails listed in app.admin.emails
+   * @param userRepository repository used to read the admin flag of other users
+   * @param ttl how long an admin flag read from the database is trusted
+   * @param maxSize the maximum number of emails whose flag is cached
+   */
+  @Autowired
+  public AdminRoleResolver(
+      @Value("${app.admin.emails}") List<String> adminEmails,
+      UserRepository userRepository,
+      @Value("${app.admin.cache.ttl:60s}") Duration ttl,
+      @Value("${app.admin.cache.max-size:10000}") int maxSize) {
+    this.adminEmails = Set.copyOf(adminEmails);
+    this.userRepository = userRepository;
+    this.ttlNanos = ttl.toNanos();
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * This method checks if the given email belongs to an admin user, either from the
+   * configured list or from the admin flag in the users table.
+   * 
+   * @param email email address of the user
+   * @return whether the user with the given email is an admin
+   */
+  public boolean isAdmin(String email) {
+    if (adminEmails.contains(email)) {
+      return true;
+    }
+    long now = clock.getAsLong();
+    Entry entry = cache.get(email);
+    if (entry != null && now - entry.expiresAt() < 0) {
+      return entry.admin();
+    }
+
+    // if the user row changes while we are reading it, don't cache what we read
+    long seen = invalidations.get();
+    boolean admin = userRepository.findByEmail(email).map(User::getAdmin).orElse(false);
+    if (seen == invalidations.get()) {
+      put(email, new Entry(admin, now + ttlNanos));
+    }
+    return admin;
+  }
+
+  /**
+   * This method forgets the cached admin flag for an email, e.g. because the user row changed.
+   * @param email the email of the user that changed
+   */
+  public void invalidate(String email) {
+    if (email == null) {
+      return;
+    }
+    invalidations.incrementAndGet();
+    cache.remove(email);
+    log.debug("invalidated admin flag for {}", email);
+  }
+
+  /**
+   * This method returns the number of emails whose admin flag is currently cached.
+   * @return the number of cached flags
+   */
+  public int size() {
+    return cache.size();
+  }
+
+  private void put(String email, Entry entry) {
+    if (cache.size() >= maxSize) {
+      long now = clock.getAsLong();
+      cache.values().removeIf(e -> now - e.expiresAt() >= 0);
+    }
+    if (cache.size() >= maxSize) {
+      // nothing had expired; make room by dropping arbitrary entries
+      cache.keySet().stream().limit(cache.size() - maxSize + 1L).toList().forEach(cache::remove);
+    }
+    cache.put(email, entry);
+  }
+}
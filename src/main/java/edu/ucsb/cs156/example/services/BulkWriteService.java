@@ -0,0 +1,155 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.models.BulkResult;
+
+import jakarta.persistence.EntityManager;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * This is a service that creates, updates or deletes many rows of a table in one transaction.
+ *
+ * Existing rows are read with one findAllById, and the writes are left to Hibernate to flush
+ * at commit, so they go out as JDBC batches (see hibernate.jdbc.batch_size).  Elements that
+ * can't be written (no such row, id already taken) are reported in the result rather than
+ * failing the whole request.
+ */
+
+@Service
+public class BulkWriteService {
+
+  @Autowired
+  EntityManager entityManager;
+
+  /**
+   * This method inserts rows whose ids are generated from the table's sequence.  A null in the
+   * list, standing for an element of the request that is not a valid row, is skipped with
+   * status 400.
+   * @param rows the new rows, with no id set
+   * @param idOf function returning the id of a row
+   * @return the id given to each row, with status 201
+   */
+  @Transactional
+  public <T> BulkResult createAll(List<T> rows, Function<T, ?> idOf) {
+    List<BulkResult.Item> items = new ArrayList<>(rows.size());
+    for (T row : rows) {
+      if (row == null) {
+        items.add(new BulkResult.Item(null, HttpStatus.BAD_REQUEST.value()));
+        continue;
+      }
+      entityManager.persist(row);
+      items.add(new BulkResult.Item(idOf.apply(row), HttpStatus.CREATED.value()));
+    }
+    return result(items);
+  }
+
+  /**
+   * This method inserts rows keyed by a natural key, such as a code.  A row whose key is
+   * already in the table, or earlier in the list, is skipped with status 409; a row without
+   * a key, or a null standing for an element that is not a valid row, is skipped with status 400.
+   * @param repository the repository for the table
+   * @param rows the new rows
+   * @param idOf function returning the key of a row
+   * @return the key and status of each row
+   */
+  @Transactional
+  public <T, ID> BulkResult createAll(JpaRepository<T, ID> repository, List<T> rows, Function<T, ID> idOf) {
+    Set<ID> taken = new HashSet<>();
+    repository.findAllById(ids(rows, idOf)).forEach(row -> taken.add(idOf.apply(row)));
+    List<BulkResult.Item> items = new ArrayList<>(rows.size());
+    for (T row : rows) {
+      ID id = row == null ? null : idOf.apply(row);
+      if (id == null) {
+        items.add(new BulkResult.Item(null, HttpStatus.BAD_REQUEST.value()));
+      } else if (!taken.add(id)) {
+        items.add(new BulkResult.Item(id, HttpStatus.CONFLICT.value()));
+      } else {
+        entityManager.persist(row);
+        items.add(new BulkResult.Item(id, HttpStatus.CREATED.value()));
+      }
+    }
+    return result(items);
+  }
+
+  /**
+   * This method updates existing rows from the ones in the list, matched by id.  Rows whose id
+   * is not in the table get status 404.
+   * @param repository the repository for the table
+   * @param rows the new contents of the rows
+   * @param idOf function returning the id of a row
+   * @param update copies the fields that may change from its second argument onto its first
+   * @return the id and status of each row
+   */
+  @Transactional
+  public <T, ID> BulkResult updateAll(JpaRepository<T, ID> repository, List<T> rows, Function<T, ID> idOf,
+      BiConsumer<T, T> update) {
+    Map<ID, T> existing = byId(repository.findAllById(ids(rows, idOf)), idOf);
+    List<BulkResult.Item> items = new ArrayList<>(rows.size());
+    for (T incoming : rows) {
+      ID id = idOf.apply(incoming);
+      T row = id == null ? null : existing.get(id);
+      if (row == null) {
+        items.add(new BulkResult.Item(id, HttpStatus.NOT_FOUND.value()));
+      } else {
+        update.accept(row, incoming);
+        items.add(new BulkResult.Item(id, HttpStatus.OK.value()));
+      }
+    }
+    return result(items);
+  }
+
+  /**
+   * This method deletes the rows with the given ids.  Ids that are not in the table (or that
+   * appear twice) get status 404.
+   * @param repository the repository for the table
+   * @param ids the ids of the rows to delete
+   * @param idOf function returning the id of a row
+   * @return the status of each id
+   */
+  @Transactional
+  public <T, ID> BulkResult deleteAll(JpaRepository<T, ID> repository, List<ID> ids, Function<T, ID> idOf) {
+    Map<ID, T> existing = byId(repository.findAllById(ids(ids, Function.identity())), idOf);
+    List<T> deleted = new ArrayList<>();
+    List<BulkResult.Item> items = new ArrayList<>(ids.size());
+    for (ID id : ids) {
+      T row = id == null ? null : existing.remove(id);
+      if (row == null) {
+        items.add(new BulkResult.Item(id, HttpStatus.NOT_FOUND.value()));
+      } else {
+        deleted.add(row);
+        items.add(new BulkResult.Item(id, HttpStatus.OK.value()));
+      }
+    }
+    repository.deleteAll(deleted);
+    return result(items);
+  }
+
+  private static <T, ID> List<ID> ids(List<T> rows, Function<T, ID> idOf) {
+    return rows.stream().filter(Objects::nonNull).map(idOf).filter(Objects::nonNull).distinct().toList();
+  }
+
+  private static <T, ID> Map<ID, T> byId(List<T> rows, Function<T, ID> idOf) {
+    Map<ID, T> byId = new HashMap<>();
+    rows.forEach(row -> byId.put(idOf.apply(row), row));
+    return byId;
+  }
+
+  private static BulkResult result(List<BulkResult.Item> items) {
+    int succeeded = (int) items.stream().filter(item -> item.getStatus() < 300).count();
+    return new BulkResult(succeeded, items.size() - succeeded, items);
+  }
+}
@@ -0,0 +1,356 @@
+package edu.ucsb.cs156.example.services;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * This is a service that pushes the writes recorded by ChangeLogService to clients as
+ * Server-Sent Events, for the /events endpoints.
+ *
+ * There is one event per row written, named created, updated or deleted, whose data is the id
+ * of the row, e.g. {"id":7}; clients read the rows themselves (with /lookup, or /changes for
+ * everything since the version they have).  The last event of each write has the table's
+ * version as its id, so a client that reconnects with Last-Event-ID is first sent the events it
+ * missed, from the change log.  If the log no longer goes back that far, the client is sent a
+ * reset event instead, and has to read the whole table again.  So is every open stream of a table
+ * whose rows were written without being logged (see ChangeLogService.forget).
+ *
+ * An open stream holds no thread.  The events of each write are rendered once, and queued for
+ * each subscriber in a buffer of bufferSize writes.  A subscriber with events waiting is given a
+ * thread of its own to send them, for as long as that takes, so a client that stops reading only
+ * holds up itself; threads are only kept while a stream is being written to.  A subscriber is
+ * disconnected, and may reconnect and resume, if its buffer fills, or if one of its writes takes
+ * longer than writeTimeout (the write itself goes on until the server's connection timeout, as a
+ * blocked servlet write cannot be interrupted).  An idle stream is sent a comment every heartbeat,
+ * so that proxies keep it open and a dead one is noticed.
+ */
+
+@Service
+public class ChangeFeedService implements MeterBinder {
+
+  private final Map<Class<?>, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+  private final LongAdder evicted = new LongAdder();
+  private final Set<DataWithMediaType> heartbeat = SseEmitter.event().comment("").build();
+
+  private final ChangeLogService changeLogService;
+  private final TableVersionService tableVersionService;
+  private final ObjectMapper mapper;
+  private final Executor sender;
+  private final int bufferSize;
+  private final Duration timeout;
+  private final long writeTimeoutNanos;
+  private ScheduledExecutorService heartbeats;
+
+  /**
+   * Create the service.
+   * @param changeLogService source of the writes
+   * @param tableVersionService source of the table versions used as event ids
+   * @param mapper the object mapper used for all other responses
+   * @param bufferSize most writes waiting to be sent to one subscriber
+   * @param maxSenders most streams being written to at once; the others wait for a thread
+   * @param timeout how long a stream stays open; clients reconnect after it
+   * @param writeTimeout how long one write to a stream may take before it is disconnected
+   * @param heartbeat how often an idle stream is sent a comment
+   */
+  @Autowired
+  public ChangeFeedService(
+      ChangeLogService changeLogService,
+      TableVersionService tableVersionService,
+      ObjectMapper mapper,
+      @Value("${app.change-feed.buffer-size:256}") int bufferSize,
+      @Value("${app.change-feed.max-senders:256}") int maxSenders,
+      @Value("${app.change-feed.timeout:30m}") Duration timeout,
+      @Value("${app.change-feed.write-timeout:10s}") Duration writeTimeout,
+      @Value("${app.change-feed.heartbeat:25s}") Duration heartbeat) {
+    this(changeLogService, tableVersionService, mapper,
+        new ThreadPoolExecutor(0, maxSenders, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(),
+            daemonThreads("change-feed-")),
+        bufferSize, timeout, writeTimeout);
+    heartbeats = Executors.newSingleThreadScheduledExecutor(daemonThreads("change-feed-heartbeat-"));
+    heartbeats.scheduleWithFixedDelay(this::heartbeat, heartbeat.toMillis(), heartbeat.toMillis(),
+        TimeUnit.MILLISECONDS);
+    long tick = Math.max(writeTimeout.toMillis() / 4, 100L);
+    heartbeats.scheduleWithFixedDelay(this::tick, tick, tick, TimeUnit.MILLISECONDS);
+  }
+
+  ChangeFeedService(ChangeLogService changeLogService, TableVersionService tableVersionService,
+      ObjectMapper mapper, Executor sender, int bufferSize, Duration timeout, Duration writeTimeout) {
+    this.changeLogService = changeLogService;
+    this.tableVersionService = tableVersionService;
+    this.mapper = mapper;
+    this.sender = sender;
+    this.bufferSize = bufferSize;
+    this.timeout = timeout;
+    this.writeTimeoutNanos = writeTimeout.toNanos();
+    changeLogService.addListener(new ChangeLogService.Listener() {
+      @Override
+      public void recorded(Class<?> entity, List<ChangeLogService.Change> changes) {
+        publish(entity, changes);
+      }
+
+      @Override
+      public void forgotten(Class<?> entity, long version) {
+        publish(entity, reset(entity, version));
+      }
+    });
+  }
+
+  /**
+   * This method opens a stream of the writes to a table.
+   * @param entity the entity class mapped to the table
+   * @param lastEventId the Last-Event-ID header of a client that is reconnecting, or null
+   * @return the stream, to be returned by the endpoint
+   */
+  public SseEmitter subscribe(Class<?> entity, String lastEventId) {
+    return subscribe(entity, lastEventId, new SseEmitter(timeout.toMillis()));
+  }
+
+  SseEmitter subscribe(Class<?> entity, String lastEventId, SseEmitter emitter) {
+    Subscriber subscriber = new Subscriber(entity, emitter);
+    emitter.onCompletion(subscriber::closed);
+    emitter.onTimeout(subscriber::closed);
+    emitter.onError(e -> subscriber.closed());
+    Long since = lastEventId == null ? null : tableVersionService.version(entity, lastEventId);
+    changeLogService.replay(entity, since, (version, missed) -> {
+      // no write can be recorded during replay, so the subscriber misses none
+      subscribers.computeIfAbsent(entity, e -> ConcurrentHashMap.newKeySet()).add(subscriber);
+      if (missed.isEmpty()) {
+        subscriber.offer(reset(entity, version));
+      } else if (!missed.get().isEmpty()) {
+        subscriber.offer(events(entity, missed.get()));
+      }
+    });
+    return emitter;
+  }
+
+  /**
+   * This method returns the number of open streams of the writes to a table.
+   * @param entity the entity class mapped to the table
+   * @return the number of subscribers
+   */
+  public int subscribers(Class<?> entity) {
+    Set<Subscriber> table = subscribers.get(entity);
+    return table == null ? 0 : table.size();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("change.feed.subscribers", subscribers,
+        all -> all.values().stream().mapToInt(Set::size).sum())
+        .description("the number of open /events streams")
+        .register(registry);
+    FunctionCounter.builder("change.feed.evictions", evicted, LongAdder::sum)
+        .description("the number of /events streams closed because their client read too slowly")
+        .register(registry);
+  }
+
+  /**
+   * This method sends every subscriber a comment; one whose buffer is full is disconnected.
+   */
+  void heartbeat() {
+    subscribers.values().forEach(table -> table.forEach(subscriber -> subscriber.offer(heartbeat)));
+  }
+
+  /**
+   * This method disconnects every subscriber whose write has taken longer than writeTimeout, and
+   * sends the events of any that were left waiting because every sender was busy.
+   */
+  void tick() {
+    long now = System.nanoTime();
+    subscribers.values().forEach(table -> table.forEach(subscriber -> {
+      long since = subscriber.writingSince;
+      if (since != 0L && now - since > writeTimeoutNanos) {
+        subscriber.evict();
+      } else if (!subscriber.buffer.isEmpty() && subscriber.sending.compareAndSet(false, true)) {
+        subscriber.schedule();
+      }
+    }));
+  }
+
+  /**
+   * This method closes every stream when the app shuts down.
+   */
+  @PreDestroy
+  public void close() {
+    if (heartbeats != null) {
+      heartbeats.shutdownNow();
+    }
+    subscribers.values().forEach(table -> List.copyOf(table).forEach(subscriber -> subscriber.emitter.complete()));
+    if (sender instanceof ExecutorService pool) {
+      pool.shutdown();
+    }
+  }
+
+  // called by ChangeLogService while it holds the table's lock, so it must not wait for anything
+  private void publish(Class<?> entity, List<ChangeLogService.Change> changes) {
+    Set<Subscriber> table = subscribers.get(entity);
+    if (table == null || table.isEmpty() || changes.isEmpty()) {
+      return;
+    }
+    publish(entity, events(entity, changes));
+  }
+
+  private void publish(Class<?> entity, Set<DataWithMediaType> events) {
+    Set<Subscriber> table = subscribers.get(entity);
+    if (table != null) {
+      table.forEach(subscriber -> subscriber.offer(events));
+    }
+  }
+
+  private Set<DataWithMediaType> events(Class<?> entity, List<ChangeLogService.Change> changes) {
+    Set<DataWithMediaType> events = new LinkedHashSet<>();
+    for (int i = 0; i < changes.size(); i++) {
+      ChangeLogService.Change change = changes.get(i);
+      SseEmitter.SseEventBuilder event = SseEmitter.event()
+          .name(change.kind().name().toLowerCase(Locale.ROOT))
+          .data(json(Map.of("id", change.id())));
+      // the id goes on the last event of each write, so a client resumes after whole writes
+      if (i == changes.size() - 1 || changes.get(i + 1).version() != change.version()) {
+        event.id(tableVersionService.token(entity, change.version()));
+      }
+      events.addAll(event.build());
+    }
+    return events;
+  }
+
+  private Set<DataWithMediaType> reset(Class<?> entity, long version) {
+    String token = tableVersionService.token(entity, version);
+    return SseEmitter.event().name("reset").id(token).data(json(Map.of("version", token))).build();
+  }
+
+  private String json(Object data) {
+    try {
+      return mapper.writeValueAsString(data);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static CustomizableThreadFactory daemonThreads(String prefix) {
+    CustomizableThreadFactory threads = new CustomizableThreadFactory(prefix);
+    threads.setDaemon(true);
+    return threads;
+  }
+
+  /**
+   * This is one open stream, with the writes waiting to be sent to it.
+   */
+  private class Subscriber {
+    private final Class<?> entity;
+    private final SseEmitter emitter;
+    private final BlockingQueue<Set<DataWithMediaType>> buffer = new ArrayBlockingQueue<>(bufferSize);
+    private final AtomicBoolean sending = new AtomicBoolean();
+    // when the write in progress started, or 0 if none is
+    private volatile long writingSince;
+    private volatile boolean closed;
+
+    Subscriber(Class<?> entity, SseEmitter emitter) {
+      this.entity = entity;
+      this.emitter = emitter;
+    }
+
+    void offer(Set<DataWithMediaType> events) {
+      if (closed) {
+        return;
+      }
+      if (!buffer.offer(events)) {
+        evict();
+        return;
+      }
+      if (sending.compareAndSet(false, true)) {
+        schedule();
+      }
+    }
+
+    // called only by whoever set sending
+    private void schedule() {
+      try {
+        sender.execute(this::send);
+      } catch (RejectedExecutionException e) {
+        // every sender is busy; tick() tries again
+        sending.set(false);
+      }
+    }
+
+    private void send() {
+      try {
+        Set<DataWithMediaType> events;
+        while (!closed && (events = buffer.poll()) != null) {
+          writingSince = System.nanoTime();
+          emitter.send(events);
+          writingSince = 0L;
+        }
+      } catch (IOException | IllegalStateException e) {
+        // the client has gone, or the stream has already been completed
+        closed();
+      } finally {
+        writingSince = 0L;
+      }
+      if (closed) {
+        // sending stays set, so nothing is sent after this
+        emitter.complete();
+        return;
+      }
+      sending.set(false);
+      if (!buffer.isEmpty() && sending.compareAndSet(false, true)) {
+        schedule();
+      }
+    }
+
+    // the client reads too slowly, or has gone away without closing the connection
+    void evict() {
+      if (closed) {
+        return;
+      }
+      evicted.increment();
+      closed();
+      buffer.clear();
+      // a sender that is writing completes the stream when its write returns
+      if (sending.compareAndSet(false, true)) {
+        emitter.complete();
+      }
+    }
+
+    void closed() {
+      closed = true;
+      Set<Subscriber> table = subscribers.get(entity);
+      if (table != null) {
+        table.remove(this);
+      }
+    }
+  }
+}
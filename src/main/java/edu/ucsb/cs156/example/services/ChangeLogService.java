@@ -0,0 +1,211 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * This is a service that remembers which rows of each table were written at which version, for
+ * the /changes endpoints (delta sync): a client that has read a table at some version asks only
+ * for the rows saved or deleted since, instead of reading the whole table again.
+ *
+ * Every write recorded here bumps the table's TableVersionService version, and each row it saved
+ * or deleted is logged at the new version; a deleted row is kept as a tombstone with only its id.
+ * Only the last capacity changes of each table are kept.  Like the versions, the log is kept in
+ * memory and only sees writes made through this instance of the app, so a client whose version
+ * is older than the log, or from before a restart, has to read the whole table again.
+ *
+ * Listeners (see ChangeFeedService) are told of each write as it is recorded.
+ */
+
+@Service
+public class ChangeLogService {
+
+  /**
+   * This is what a write did to a row.
+   */
+  public enum Kind {
+    CREATED, UPDATED, DELETED
+  }
+
+  /**
+   * This is one row written at a version of its table.
+   * @param version the version of the table the write made
+   * @param id the id of the row
+   * @param kind whether the row was created, updated or deleted
+   */
+  public record Change(long version, Object id, Kind kind) {
+  }
+
+  /**
+   * These are the rows written since a version, each only once, as of its latest write.
+   * @param saved ids of the rows created or updated, in the order they were last written
+   * @param deleted ids of the rows deleted, in the order they were deleted
+   * @param version the version of the table these changes bring a client up to
+   */
+  public record Changes(List<Object> saved, List<Object> deleted, long version) {
+  }
+
+  /**
+   * This is told of each write to a table, in the order they are recorded.  It is called while
+   * the table's log is locked, so it must not block.
+   */
+  @FunctionalInterface
+  public interface Listener {
+    void recorded(Class<?> entity, List<Change> changes);
+
+    /**
+     * This is told that rows of a table were written without being logged (see forget).
+     * @param entity the entity class mapped to the table
+     * @param version the new version of the table
+     */
+    default void forgotten(Class<?> entity, long version) {
+    }
+  }
+
+  private static class Log {
+    private final Deque<Change> changes = new ArrayDeque<>();
+    // the latest version whose changes are no longer all in changes
+    private long forgotten = 0L;
+  }
+
+  private final Map<Class<?>, Log> logs = new ConcurrentHashMap<>();
+  private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+  private final TableVersionService tableVersionService;
+  private final int capacity;
+
+  /**
+   * Create the service.
+   * @param tableVersionService source of the table versions
+   * @param capacity most changes kept per table
+   */
+  @Autowired
+  public ChangeLogService(
+      TableVersionService tableVersionService,
+      @Value("${app.change-log.capacity:10000}") int capacity) {
+    this.tableVersionService = tableVersionService;
+    this.capacity = capacity;
+  }
+
+  /**
+   * This method records that rows of a table were written, and bumps the table's version.  Call
+   * it after the write is committed, so that a reader that sees the new version also sees the
+   * new rows.
+   * @param entity the entity class mapped to the table
+   * @param kind whether the rows were created, updated or deleted
+   * @param ids ids of the rows written
+   * @return the new version of the table
+   */
+  public long record(Class<?> entity, Kind kind, Collection<?> ids) {
+    Log log = logs.computeIfAbsent(entity, e -> new Log());
+    synchronized (log) {
+      long version = tableVersionService.changed(entity);
+      List<Change> changes = ids.stream().map(id -> new Change(version, id, kind)).toList();
+      log.changes.addAll(changes);
+      while (log.changes.size() > capacity) {
+        log.forgotten = log.changes.removeFirst().version();
+      }
+      listeners.forEach(listener -> listener.recorded(entity, changes));
+      return version;
+    }
+  }
+
+  /**
+   * This method records that rows of a table were written without saying which, e.g. by a bulk
+   * load: it bumps the table's version and forgets its log, so that every client has to read the
+   * whole table again.
+   * @param entity the entity class mapped to the table
+   * @return the new version of the table
+   */
+  public long forget(Class<?> entity) {
+    Log log = logs.computeIfAbsent(entity, e -> new Log());
+    synchronized (log) {
+      long version = tableVersionService.changed(entity);
+      log.changes.clear();
+      log.forgotten = version;
+      listeners.forEach(listener -> listener.forgotten(entity, version));
+      return version;
+    }
+  }
+
+  /**
+   * This method adds a listener told of every write recorded from now on.
+   * @param listener the listener
+   */
+  public void addListener(Listener listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * This method passes the changes to a table since a version to a callback, while no other
+   * write to the table can be recorded; a listener added to the table by the callback is then
+   * told of every later write, and misses none.
+   * @param entity the entity class mapped to the table
+   * @param since the version the client last saw, or null for none
+   * @param callback given the current version, and every change since, in the order recorded
+   *     (none if since is null), or empty if they are no longer all in the log, or since is not a
+   *     version of the table
+   */
+  public void replay(Class<?> entity, Long since, BiConsumer<Long, Optional<List<Change>>> callback) {
+    Log log = logs.computeIfAbsent(entity, e -> new Log());
+    synchronized (log) {
+      long version = tableVersionService.version(entity);
+      if (since == null) {
+        callback.accept(version, Optional.of(List.of()));
+      } else if (since < log.forgotten || since > version) {
+        callback.accept(version, Optional.empty());
+      } else {
+        callback.accept(version, Optional.of(
+            log.changes.stream().filter(change -> change.version() > since).toList()));
+      }
+    }
+  }
+
+  /**
+   * This method returns the rows of a table written since a version.  A row written several
+   * times is listed once, as saved or deleted by its latest write.
+   * @param entity the entity class mapped to the table
+   * @param since the version the client last read the table at
+   * @return the changes, or empty if they are no longer all in the log, or since is not a
+   *     version of the table
+   */
+  public Optional<Changes> since(Class<?> entity, long since) {
+    Log log = logs.computeIfAbsent(entity, e -> new Log());
+    synchronized (log) {
+      long version = tableVersionService.version(entity);
+      if (since < log.forgotten || since > version) {
+        return Optional.empty();
+      }
+      // newest first, so the first change seen for a row is its latest
+      Map<Object, Kind> latest = new LinkedHashMap<>();
+      Iterator<Change> changes = log.changes.descendingIterator();
+      while (changes.hasNext()) {
+        Change change = changes.next();
+        if (change.version() <= since) {
+          break;
+        }
+        latest.putIfAbsent(change.id(), change.kind());
+      }
+      List<Object> saved = new ArrayList<>();
+      List<Object> deleted = new ArrayList<>();
+      latest.forEach((id, kind) -> (kind == Kind.DELETED ? deleted : saved).add(id));
+      Collections.reverse(saved);
+      Collections.reverse(deleted);
+      return Optional.of(new Changes(saved, deleted, version));
+    }
+  }
+}
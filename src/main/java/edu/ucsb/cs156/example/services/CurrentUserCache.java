@@ -0,0 +1,128 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.User;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * This is a per-session cache of the User resolved for the logged in user.
+ * 
+ * The User is stored in the HTTP session together with a generation number for its email.
+ * Invalidating an email bumps its generation, so every session holding an older copy of
+ * that user reloads it on its next request.
+ * 
+ * Hits, misses and invalidations are published as the standard cache.gets and
+ * cache.evictions metrics, tagged with cache=currentUser.
+ */
+
+@Slf4j
+@Component
+public class CurrentUserCache implements MeterBinder {
+
+  /**
+   * Name of the session attribute the cached user is stored under.
+   */
+  public static final String SESSION_ATTRIBUTE = CurrentUserCache.class.getName() + ".USER";
+
+  /**
+   * Value of the cache tag on the metrics published by this cache.
+   */
+  public static final String CACHE_NAME = "currentUser";
+
+  /**
+   * This is the value stored in the session.
+   * @param email the email the user was loaded for
+   * @param generation the generation of that email when the user was loaded
+   * @param user the user
+   */
+  record Entry(String email, long generation, User user) {
+  }
+
+  private final Map<String, Long> generations = new ConcurrentHashMap<>();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder invalidations = new LongAdder();
+
+  /**
+   * This method returns the cached user for the current session, calling the loader
+   * only if the session has no copy, has a copy for a different email, or has a copy
+   * that has been invalidated since it was loaded.  Outside of a web request nothing
+   * is cached and the loader is always called.
+   * 
+   * @param email the email of the logged in user
+   * @param loader loads (and if necessary creates) the user from the database
+   * @return the user
+   */
+  public User get(String email, Supplier<User> loader) {
+    RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+    if (attributes == null || email == null) {
+      misses.increment();
+      return loader.get();
+    }
+
+    // read the generation before loading, so that an invalidation that races
+    // with the load leaves the entry stale rather than hiding the change
+    long generation = generations.getOrDefault(email, 0L);
+    Object cached = attributes.getAttribute(SESSION_ATTRIBUTE, RequestAttributes.SCOPE_SESSION);
+    if (cached instanceof Entry entry && entry.email().equals(email) && entry.generation() == generation) {
+      hits.increment();
+      return entry.user();
+    }
+
+    misses.increment();
+    User user = loader.get();
+    attributes.setAttribute(SESSION_ATTRIBUTE, new Entry(email, generation, user), RequestAttributes.SCOPE_SESSION);
+    return user;
+  }
+
+  /**
+   * This method invalidates every cached copy of the user with the given email,
+   * e.g. because their admin flag or profile changed.
+   * @param email the email of the user that changed
+   */
+  public void invalidate(String email) {
+    if (email == null) {
+      return;
+    }
+    generations.merge(email, 1L, Long::sum);
+    invalidations.increment();
+    log.debug("invalidated cached user {}", email);
+  }
+
+  /**
+   * This method returns the fraction of lookups that were served from the cache.
+   * @return the hit ratio, or 0 if there have been no lookups
+   */
+  public double hitRatio() {
+    long h = hits.sum();
+    long total = h + misses.sum();
+    return total == 0 ? 0.0 : (double) h / total;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder("cache.gets", hits, LongAdder::sum)
+        .tags("cache", CACHE_NAME, "result", "hit")
+        .description("the number of times the current user was found in the session")
+        .register(registry);
+    FunctionCounter.builder("cache.gets", misses, LongAdder::sum)
+        .tags("cache", CACHE_NAME, "result", "miss")
+        .description("the number of times the current user was loaded from the database")
+        .register(registry);
+    FunctionCounter.builder("cache.evictions", invalidations, LongAdder::sum)
+        .tags("cache", CACHE_NAME)
+        .description("the number of times a user was invalidated")
+        .register(registry);
+  }
+}
@@ -8,11 +8,11 @@ import lombok.extern.slf4j.Slf4j;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContext;
@@ -37,6 +37,9 @@ public class CurrentUserServiceImpl extends CurrentUserService {
   @Autowired
   GrantedAuthoritiesService grantedAuthoritiesService;
 
+  @Autowired
+  CurrentUserCache currentUserCache;
+
   @Value("${app.admin.emails}")
   final private List<String> adminEmails = new ArrayList<String>();
 
@@ -49,7 +52,7 @@ public class CurrentUserServiceImpl extends CurrentUserService {
       .user(this.getUser())
       .roles(this.getRoles())
       .build();
-    log.info("getCurrentUser returns {}",cu);
+    log.debug("getCurrentUser returns {}",cu);
     return cu;
   }
 
@@ -57,7 +60,8 @@ public class CurrentUserServiceImpl extends CurrentUserService {
    * This method obtains the current user that is logged in with OAuth2, if any.
    * The parameters are automatically injected by Spring.
    * 
-   * This method also has a side effect of storing the user in the database if they are not already there.
+   * This method also has a side effect of storing the user in the database if they are not already there,
+   * and of promoting them to admin if they are listed in app.admin.emails.
    * 
    * @param securityContext the security context (provided by Spring)
    * @param authentication the authentication token (provided by Spring)
@@ -77,17 +81,7 @@ public class CurrentUserServiceImpl extends CurrentUserService {
     String hostedDomain = oAuthUser.getAttribute("hd");
 
     java.util.Map<java.lang.String,java.lang.Object> attrs = oAuthUser.getAttributes();
-    log.info("attrs={}",attrs);
-
-    Optional<User> ou = userRepository.findByEmail(email);
-    if (ou.isPresent()) {
-      User u = ou.get();
-      if (adminEmails.contains(email) && !u.getAdmin()) {
-        u.setAdmin(true);
-        userRepository.save(u);
-      }
-      return u;
-    }
+    log.debug("attrs={}",attrs);
 
     User u = User.builder()
         .googleSub(googleSub)
@@ -101,20 +95,33 @@ public class CurrentUserServiceImpl extends CurrentUserService {
         .hostedDomain(hostedDomain)
         .admin(adminEmails.contains(email))
         .build();
-    userRepository.save(u);
-    return u;
+
+    // One statement inserts the user or promotes the existing one; it never touches
+    // the caches, which is fine because app.admin.emails (the only source of
+    // promotions here) is fixed for the life of the process.
+    try {
+      return userRepository.upsertByEmail(u);
+    } catch (DataIntegrityViolationException e) {
+      // H2 only: a concurrent login inserted the same email first; now it is an update
+      log.debug("retrying upsert of {}", email);
+      return userRepository.upsertByEmail(u);
+    }
   }
 
   /**
    * This method returns the current user as a User object.
+   * 
+   * The user is cached in the session, so after the first request of a session
+   * this does not touch the database until the user's row changes.
    * @return the current user
    */
   public User getUser() {
     SecurityContext securityContext = SecurityContextHolder.getContext();
     Authentication authentication = securityContext.getAuthentication();
 
-    if (authentication instanceof OAuth2AuthenticationToken) {
-      return getOAuth2AuthenticatedUser(securityContext, authentication);
+    if (authentication instanceof OAuth2AuthenticationToken token) {
+      String email = token.getPrincipal().getAttribute("email");
+      return currentUserCache.get(email, () -> getOAuth2AuthenticatedUser(securityContext, authentication));
     }
     return null;
   }
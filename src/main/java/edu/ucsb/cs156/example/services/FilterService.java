@@ -0,0 +1,305 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.errors.InvalidCursorException;
+import edu.ucsb.cs156.example.errors.InvalidFilterException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.convert.ConversionException;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This is a service that reads one page of the rows of a table that match a filter, in a
+ * requested order, for the filter and sort parameters of the /page endpoints.
+ *
+ * A filter is a list of conditions of the form field&lt;op&gt;value, e.g. stars&gt;=4 or
+ * solved=false, all of which a row must match.  The operators are =, !=, &lt;, &lt;=, &gt;, &gt;=
+ * and ~, which matches text fields containing the value, ignoring case.  A sort is a list of
+ * fields, each descending if it starts with -; the id is always added last, so that the order is
+ * the same on every request.
+ *
+ * The conditions and order become the WHERE and ORDER BY of one query, so the database can use
+ * its indexes (except for ~, which has to look at every row).  Pages are read by keyset: a page
+ * starts after the sort values of the last row of the previous one, rather than at an offset,
+ * so later pages cost no more than the first.  A null sorts after every value of its field, as
+ * in PostgreSQL's own order (so descending, nulls come first), and a page that starts after a
+ * null looks for the rest of the nulls before moving on, so no row is skipped or repeated.
+ */
+
+@Service
+public class FilterService {
+
+  private static final Pattern CONDITION = Pattern.compile("(\\w+)(!=|>=|<=|=|>|<|~)(.*)");
+
+  @Autowired
+  ObjectMapper mapper;
+
+  /**
+   * This method reads the rows after a position that match a filter, in the given order.
+   * @param entity the entity class mapped to the table
+   * @param repository the repository for the table
+   * @param filter the conditions the rows must match
+   * @param sort the order of the rows, as returned by sort
+   * @param position where the page starts, ScrollPosition.keyset() for the first page
+   * @param limit maximum number of rows to read
+   * @return the rows, and whether there are more after them
+   * @throws InvalidFilterException if the filter can't be applied to the table
+   */
+  @Transactional(readOnly = true)
+  public <T> Window<T> scroll(Class<T> entity, JpaSpecificationExecutor<T> repository, List<String> filter,
+      Sort sort, ScrollPosition position, int limit) {
+    Specification<T> specification = specification(entity, filter)
+        .and(after(entity, sort, ((KeysetScrollPosition) position).getKeys()))
+        .and(orderedBy(entity, sort));
+    return repository.findBy(specification, query -> window(query.limit(limit + 1).all(), sort, limit));
+  }
+
+  /**
+   * This method turns a filter into a specification of the rows that match all of its conditions.
+   * @param entity the entity class mapped to the table
+   * @param filter the conditions
+   * @return the specification
+   * @throws InvalidFilterException if the filter can't be applied to the table
+   */
+  public <T> Specification<T> specification(Class<T> entity, List<String> filter) {
+    List<Specification<T>> conditions = new ArrayList<>();
+    for (String condition : filter) {
+      if (!condition.isBlank()) {
+        conditions.add(condition(entity, condition.trim()));
+      }
+    }
+    return Specification.allOf(conditions);
+  }
+
+  /**
+   * This method turns a sort parameter into the order of the rows, ending with the id.
+   * @param entity the entity class mapped to the table
+   * @param sort the fields to sort by, each descending if it starts with -
+   * @return the order
+   * @throws InvalidFilterException if the entity doesn't have one of the fields
+   */
+  public Sort sort(Class<?> entity, List<String> sort) {
+    String id = PatchService.idField(entity).getName();
+    List<Sort.Order> orders = new ArrayList<>();
+    List<String> names = new ArrayList<>();
+    for (String key : sort) {
+      String trimmed = key.trim();
+      if (trimmed.isEmpty()) {
+        continue;
+      }
+      boolean descending = trimmed.startsWith("-");
+      String name = descending ? trimmed.substring(1) : trimmed;
+      field(entity, name);
+      if (!names.contains(name)) {
+        names.add(name);
+        orders.add(descending ? Sort.Order.desc(name) : Sort.Order.asc(name));
+      }
+    }
+    if (!names.contains(id)) {
+      orders.add(Sort.Order.asc(id));
+    }
+    return Sort.by(orders);
+  }
+
+  /**
+   * This method writes the position after a row as the text of a cursor.
+   * @param position the position, e.g. Window.positionAt
+   * @return the sort values of the row, as a JSON object
+   */
+  public String cursor(ScrollPosition position) {
+    try {
+      return mapper.writeValueAsString(((KeysetScrollPosition) position).getKeys());
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * This method reads back a position written by cursor.
+   * @param entity the entity class mapped to the table
+   * @param sort the order of the rows, as returned by sort
+   * @param cursor the text of the cursor
+   * @return the position after the row the cursor was written for
+   * @throws InvalidCursorException if the cursor wasn't written for a page in this order
+   */
+  public ScrollPosition position(Class<?> entity, Sort sort, String cursor) {
+    JsonNode keys;
+    try {
+      keys = mapper.readTree(cursor);
+    } catch (JsonProcessingException e) {
+      throw new InvalidCursorException(cursor);
+    }
+    if (keys == null || !keys.isObject() || keys.size() != sort.toList().size()) {
+      throw new InvalidCursorException(cursor);
+    }
+    Map<String, Object> values = new LinkedHashMap<>();
+    for (Sort.Order order : sort) {
+      JsonNode key = keys.get(order.getProperty());
+      if (key == null || !key.isValueNode()) {
+        throw new InvalidCursorException(cursor);
+      }
+      try {
+        values.put(order.getProperty(), key.isNull() ? null : value(entity, order.getProperty(), key.asText()));
+      } catch (InvalidFilterException e) {
+        throw new InvalidCursorException(cursor);
+      }
+    }
+    return ScrollPosition.forward(values);
+  }
+
+  /**
+   * The rows that come after the row with the given sort values, in the order of orderedBy: those
+   * past it in one field and equal to it in all the fields before.  Spring Data's own keyset
+   * scroll compares nulls with = and &lt;, which are never true, and so skips the rows after a null.
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private static <T> Specification<T> after(Class<T> entity, Sort sort, Map<String, Object> keys) {
+    if (keys.isEmpty()) {
+      return null;
+    }
+    return (root, query, builder) -> {
+      List<Predicate> past = new ArrayList<>();
+      List<Predicate> equal = new ArrayList<>();
+      for (Sort.Order order : sort) {
+        Path path = root.get(order.getProperty());
+        Comparable key = (Comparable) keys.get(order.getProperty());
+        Predicate beyond;
+        if (key == null) {
+          beyond = order.isAscending() ? null : builder.isNotNull(path);
+        } else if (order.isAscending()) {
+          beyond = nullable(entity, order.getProperty())
+              ? builder.or(builder.greaterThan(path, key), builder.isNull(path))
+              : builder.greaterThan(path, key);
+        } else {
+          beyond = builder.lessThan(path, key);
+        }
+        if (beyond != null) {
+          List<Predicate> conditions = new ArrayList<>(equal);
+          conditions.add(beyond);
+          past.add(builder.and(conditions.toArray(Predicate[]::new)));
+        }
+        equal.add(key == null ? builder.isNull(path) : builder.equal(path, key));
+      }
+      return builder.or(past.toArray(Predicate[]::new));
+    };
+  }
+
+  /**
+   * The order of the rows, with the nulls of each field after its values (first when descending).
+   * It's set here rather than by sortBy, because a Sort's null handling is left out of the query.
+   */
+  private static <T> Specification<T> orderedBy(Class<T> entity, Sort sort) {
+    return (root, query, builder) -> {
+      HibernateCriteriaBuilder hibernate = (HibernateCriteriaBuilder) builder;
+      List<Order> orders = new ArrayList<>();
+      for (Sort.Order order : sort) {
+        Path<?> path = root.get(order.getProperty());
+        orders.add(order.isAscending() ? hibernate.asc(path, false) : hibernate.desc(path, true));
+      }
+      query.orderBy(orders);
+      return null;
+    };
+  }
+
+  private static <T> Window<T> window(List<T> rows, Sort sort, int limit) {
+    List<T> content = rows.size() > limit ? rows.subList(0, limit) : rows;
+    return Window.from(content, i -> {
+      BeanWrapper row = PropertyAccessorFactory.forBeanPropertyAccess(content.get(i));
+      Map<String, Object> keys = new LinkedHashMap<>();
+      for (Sort.Order order : sort) {
+        keys.put(order.getProperty(), row.getPropertyValue(order.getProperty()));
+      }
+      return ScrollPosition.forward(keys);
+    }, rows.size() > limit);
+  }
+
+  private static boolean nullable(Class<?> entity, String name) {
+    return !field(entity, name).getType().isPrimitive();
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private <T> Specification<T> condition(Class<T> entity, String condition) {
+    Matcher matcher = CONDITION.matcher(condition);
+    if (!matcher.matches()) {
+      throw new InvalidFilterException("%s is not of the form field<op>value".formatted(condition));
+    }
+    String name = matcher.group(1);
+    String operator = matcher.group(2);
+    String text = matcher.group(3);
+    Field field = field(entity, name);
+    if (operator.equals("~")) {
+      if (field.getType() != String.class) {
+        throw new InvalidFilterException("%s is not text, so it can't be matched with ~".formatted(name));
+      }
+      String pattern = "%" + text.toLowerCase(Locale.ROOT).replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+      return (root, query, builder) -> builder.like(builder.lower(root.get(name)), pattern, '\\');
+    }
+    Comparable value = (Comparable) value(entity, name, text);
+    return (root, query, builder) -> switch (operator) {
+      case "=" -> builder.equal(root.get(name), value);
+      case "!=" -> builder.notEqual(root.get(name), value);
+      case "<" -> builder.lessThan(root.get(name), value);
+      case "<=" -> builder.lessThanOrEqualTo(root.get(name), value);
+      case ">" -> builder.greaterThan(root.get(name), value);
+      default -> builder.greaterThanOrEqualTo(root.get(name), value);
+    };
+  }
+
+  private static Object value(Class<?> entity, String name, String text) {
+    Class<?> type = field(entity, name).getType();
+    Object value = null;
+    try {
+      value = type == LocalDateTime.class ? LocalDateTime.parse(text)
+          : DefaultConversionService.getSharedInstance().convert(text, type);
+    } catch (DateTimeParseException | ConversionException e) {
+      // reported below
+    }
+    if (value == null) {
+      throw new InvalidFilterException("%s is not a valid value for %s".formatted(text, name));
+    }
+    return value;
+  }
+
+  private static Field field(Class<?> entity, String name) {
+    try {
+      Field field = entity.getDeclaredField(name);
+      if (!Modifier.isStatic(field.getModifiers())) {
+        return field;
+      }
+    } catch (NoSuchFieldException e) {
+      // reported below
+    }
+    throw new InvalidFilterException("%s has no field %s".formatted(entity.getSimpleName(), name));
+  }
+}
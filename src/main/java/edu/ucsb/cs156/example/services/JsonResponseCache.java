@@ -0,0 +1,267 @@
+package edu.ucsb.cs156.example.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This is a cache of the JSON written by the /all endpoints.
+ *
+ * For each table it keeps the serialized list, and a gzip compressed copy, tagged with the
+ * TableVersionService version of the table it was read at.  While the version is unchanged,
+ * a request is answered by copying the cached bytes to the response, without querying the
+ * database or running Jackson.  Lists longer than app.json-cache.max-bytes are not kept.
+ *
+ * A list of only some of the fields of each row (see ProjectionService) is cached separately
+ * from the full rows, under the names of its fields.
+ *
+ * Each response carries the table version as a strong ETag, and a request whose If-None-Match
+ * names the current version is answered 304 Not Modified before the cache is even looked at.
+ *
+ * Hits and misses are published as the standard cache.gets metric, tagged with cache=jsonResponses;
+ * 304 responses are counted as result=notModified.
+ */
+
+@Slf4j
+@Service
+public class JsonResponseCache implements MeterBinder {
+
+  /**
+   * Value of the cache tag on the metrics published by this cache.
+   */
+  public static final String CACHE_NAME = "jsonResponses";
+
+  /**
+   * Lists shorter than this many bytes are always sent uncompressed, since gzip would save
+   * less than the headers it adds.
+   */
+  static final int GZIP_MIN_BYTES = 1024;
+
+  /**
+   * Cache-Control sent with every list: browsers may keep it, but must check its ETag before reuse.
+   */
+  static final String REVALIDATE = "private, no-cache";
+
+  /**
+   * The serialized rows of one table.
+   * @param version the version of the table the rows were read at
+   * @param json the rows as a JSON array
+   * @param gzip json, compressed, or null if it is not worth compressing
+   */
+  record Entry(long version, byte[] json, byte[] gzip) {
+  }
+
+  /**
+   * What an entry holds.
+   * @param entity the entity class mapped to the table
+   * @param fields the fields of each row, comma separated, or "" for all of them
+   */
+  record Key(Class<?> entity, String fields) {
+  }
+
+  private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder notModified = new LongAdder();
+
+  private final ObjectMapper mapper;
+  private final TableVersionService tableVersionService;
+  private final int maxBytes;
+  private final boolean gzip;
+
+  /**
+   * Create the cache.
+   * @param mapper the object mapper used for all other responses
+   * @param tableVersionService source of the table versions
+   * @param maxBytes largest list, in uncompressed bytes, that is kept
+   * @param gzip whether to send compressed lists to clients that accept gzip
+   */
+  @Autowired
+  public JsonResponseCache(
+      ObjectMapper mapper,
+      TableVersionService tableVersionService,
+      @Value("${app.json-cache.max-bytes:1048576}") int maxBytes,
+      @Value("${app.json-cache.gzip:true}") boolean gzip) {
+    this.mapper = mapper;
+    this.tableVersionService = tableVersionService;
+    this.maxBytes = maxBytes;
+    this.gzip = gzip;
+  }
+
+  /**
+   * This method writes the rows of a table to the response as a JSON array, from the cache
+   * if the table has not changed since they were cached, and otherwise from the loader.
+   *
+   * The response carries the table version as its ETag.  If the request's If-None-Match already
+   * names that ETag, the response is 304 Not Modified and neither the cache nor the loader is used.
+   *
+   * @param entity the entity class mapped to the table
+   * @param loader reads the rows, e.g. a repository findAll method
+   * @param request the request, whose Accept-Encoding decides whether gzip is sent
+   * @param response the response to write to
+   * @throws IOException if the response cannot be written
+   */
+  public void write(Class<?> entity, Supplier<?> loader, HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    write(entity, "", loader, request, response);
+  }
+
+  /**
+   * This method writes some of the fields of the rows of a table to the response as a JSON array,
+   * like write(entity, loader, request, response), caching them apart from the full rows.
+   *
+   * @param entity the entity class mapped to the table
+   * @param fields the fields the loader reads, comma separated
+   * @param loader reads the rows, e.g. ProjectionService findAll
+   * @param request the request, whose Accept-Encoding decides whether gzip is sent
+   * @param response the response to write to
+   * @throws IOException if the response cannot be written
+   */
+  public void write(Class<?> entity, String fields, Supplier<?> loader, HttpServletRequest request,
+      HttpServletResponse response) throws IOException {
+    // read the version before the rows, so that a write that races with the load
+    // leaves the entry (and the ETag) stale rather than hiding the change
+    long version = tableVersionService.version(entity);
+    String etag = tableVersionService.etag(entity, version);
+    response.setHeader(HttpHeaders.CACHE_CONTROL, REVALIDATE);
+    String matched = matchingEtag(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag, gzipEtag(etag));
+    if (matched != null) {
+      notModified.increment();
+      if (gzip) {
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+      }
+      response.setHeader(HttpHeaders.ETAG, matched);
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+
+    Entry entry = get(new Key(entity, fields), version, loader);
+    byte[] body = entry.json();
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    if (entry.gzip() != null) {
+      response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+      if (acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+        response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        body = entry.gzip();
+        etag = gzipEtag(etag);
+      }
+    }
+    response.setHeader(HttpHeaders.ETAG, etag);
+    response.setContentLength(body.length);
+    response.getOutputStream().write(body);
+  }
+
+  Entry get(Class<?> entity, Supplier<?> loader) throws IOException {
+    return get(new Key(entity, ""), tableVersionService.version(entity), loader);
+  }
+
+  private Entry get(Key key, long version, Supplier<?> loader) throws IOException {
+    Entry entry = entries.get(key);
+    if (entry != null && entry.version() == version) {
+      hits.increment();
+      return entry;
+    }
+
+    misses.increment();
+    byte[] json = mapper.writeValueAsBytes(loader.get());
+    entry = new Entry(version, json, gzip && json.length >= GZIP_MIN_BYTES ? gzip(json) : null);
+    if (json.length <= maxBytes) {
+      entries.merge(key, entry, (old, loaded) -> loaded.version() >= old.version() ? loaded : old);
+    } else {
+      log.debug("{} rows are {} bytes of JSON, too many to cache", key.entity().getSimpleName(), json.length);
+    }
+    return entry;
+  }
+
+  /**
+   * The gzip compressed list is a different representation from the plain one, so it gets
+   * its own strong ETag.
+   */
+  static String gzipEtag(String etag) {
+    return etag.substring(0, etag.length() - 1) + "-gzip\"";
+  }
+
+  /**
+   * This method finds which of our ETags, if any, an If-None-Match header names.  As RFC 9110
+   * requires for If-None-Match, weak tags in the header are compared as if they were strong.
+   * @param ifNoneMatch the If-None-Match header, or null
+   * @param etags the ETags of the current representations
+   * @return the ETag named, or null if none is
+   */
+  static String matchingEtag(String ifNoneMatch, String... etags) {
+    if (ifNoneMatch == null) {
+      return null;
+    }
+    for (String tag : ifNoneMatch.split(",")) {
+      tag = tag.trim();
+      if (tag.equals("*")) {
+        return etags[0];
+      }
+      if (tag.startsWith("W/")) {
+        tag = tag.substring(2);
+      }
+      for (String etag : etags) {
+        if (etag.equals(tag)) {
+          return etag;
+        }
+      }
+    }
+    return null;
+  }
+
+  static boolean acceptsGzip(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+    for (String coding : acceptEncoding.split(",")) {
+      String[] parts = coding.trim().split(";");
+      if (parts[0].trim().equalsIgnoreCase("gzip")) {
+        return parts.length == 1 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+      }
+    }
+    return false;
+  }
+
+  private static byte[] gzip(byte[] json) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(json.length / 4);
+    try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+      out.write(json);
+    }
+    return bytes.toByteArray();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder("cache.gets", hits, LongAdder::sum)
+        .tags("cache", CACHE_NAME, "result", "hit")
+        .description("the number of /all responses written from cached JSON")
+        .register(registry);
+    FunctionCounter.builder("cache.gets", misses, LongAdder::sum)
+        .tags("cache", CACHE_NAME, "result", "miss")
+        .description("the number of /all responses that had to be read and serialized")
+        .register(registry);
+    FunctionCounter.builder("cache.gets", notModified, LongAdder::sum)
+        .tags("cache", CACHE_NAME, "result", "notModified")
+        .description("the number of /all requests answered 304 Not Modified")
+        .register(registry);
+  }
+}
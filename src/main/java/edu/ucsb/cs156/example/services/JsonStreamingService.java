@@ -0,0 +1,74 @@
+package edu.ucsb.cs156.example.services;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.persistence.EntityManager;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * This is a service that writes rows from a JPA Stream to an HTTP response as a JSON array.
+ * 
+ * Each row is serialized straight to the servlet output stream and then detached from the
+ * persistence context, so memory use does not grow with the number of rows, and the first
+ * bytes reach the client as soon as the servlet's output buffer fills.
+ */
+
+@Slf4j
+@Service
+public class JsonStreamingService {
+
+  /**
+   * Number of rows the JDBC driver fetches per round trip for the streaming queries.
+   * Repositories use this in a fetch size query hint.
+   */
+  public static final String FETCH_SIZE = "500";
+
+  @Autowired
+  ObjectMapper mapper;
+
+  @Autowired
+  EntityManager entityManager;
+
+  /**
+   * This method writes every row of the stream to the response as one JSON array.
+   * The stream is opened and consumed inside a read-only transaction, which some
+   * JDBC drivers (e.g. Postgres) need in order to use a server side cursor.
+   * 
+   * @param rows supplies the stream of rows, e.g. a repository streamAllBy method
+   * @param response the response to write to
+   * @throws IOException if the response cannot be written
+   */
+  @Transactional(readOnly = true)
+  public <T> void writeJsonArray(Supplier<Stream<T>> rows, HttpServletResponse response) throws IOException {
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    response.setCharacterEncoding("UTF-8");
+    long count = 0;
+    try (Stream<T> stream = rows.get();
+        JsonGenerator generator = mapper.getFactory()
+            .createGenerator(response.getOutputStream(), JsonEncoding.UTF8)) {
+      generator.writeStartArray();
+      Iterator<T> iterator = stream.iterator();
+      while (iterator.hasNext()) {
+        T row = iterator.next();
+        generator.writeObject(row);
+        entityManager.detach(row);
+        count++;
+      }
+      generator.writeEndArray();
+    }
+    log.debug("writeJsonArray wrote {} rows", count);
+  }
+}
@@ -0,0 +1,60 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.models.LookupResult;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * This is a service that reads the rows with a list of ids.
+ *
+ * The ids are read with findAllById, which is one SELECT ... WHERE id IN (...), in chunks of
+ * CHUNK_SIZE ids so that a long list doesn't make a statement with more parameters than the
+ * database allows.  (hibernate.query.in_clause_parameter_padding rounds each chunk up to a power
+ * of two, so lists of different lengths still share a few cached statements.)
+ */
+
+@Service
+public class LookupService {
+
+  /**
+   * Largest number of ids in one IN list.
+   */
+  public static final int CHUNK_SIZE = 1000;
+
+  /**
+   * This method reads the rows with the given ids, all in one read-only transaction.
+   * @param repository the repository for the table
+   * @param ids the ids to look up; nulls are ignored, and an id that appears twice is returned once
+   * @param idOf function returning the id of a row
+   * @return the rows found, in request order, and the ids that have no row
+   */
+  @Transactional(readOnly = true)
+  public <T, ID> LookupResult<T> findAll(JpaRepository<T, ID> repository, List<ID> ids, Function<T, ID> idOf) {
+    List<ID> distinct = ids.stream().filter(Objects::nonNull).distinct().toList();
+    Map<ID, T> byId = new HashMap<>();
+    for (int from = 0; from < distinct.size(); from += CHUNK_SIZE) {
+      List<ID> chunk = distinct.subList(from, Math.min(from + CHUNK_SIZE, distinct.size()));
+      repository.findAllById(chunk).forEach(row -> byId.put(idOf.apply(row), row));
+    }
+    List<T> found = new ArrayList<>(byId.size());
+    List<Object> notFound = new ArrayList<>();
+    for (ID id : distinct) {
+      T row = byId.get(id);
+      if (row == null) {
+        notFound.add(id);
+      } else {
+        found.add(row);
+      }
+    }
+    return new LookupResult<>(found, notFound);
+  }
+}
@@ -0,0 +1,155 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.Versioned;
+import edu.ucsb.cs156.example.errors.InvalidPatchException;
+import edu.ucsb.cs156.example.errors.PreconditionFailedException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Id;
+import jakarta.persistence.Query;
+
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * This is a service that applies a partial update (the body of a PATCH request) to one row.
+ *
+ * Only the fields present in the patch are changed.  If none of them differ from the values
+ * already in the row, nothing is written; otherwise one UPDATE sets just the columns that changed
+ * and bumps the row's version.  The UPDATE only matches the row at the version that was read, so a
+ * patch never overwrites a change made in between.
+ * (The entities are not @DynamicUpdate, which would do the same at flush, because Hibernate
+ * doesn't batch dynamic updates and the /bulk endpoints rely on batching.)
+ */
+
+@Service
+public class PatchService {
+
+  @Autowired
+  ObjectMapper mapper;
+
+  @Autowired
+  EntityManager entityManager;
+
+  /**
+   * The row after a patch was applied to it.
+   * @param row the row
+   * @param changed whether any of its fields changed
+   */
+  public record Patched<T>(T row, boolean changed) {
+  }
+
+  /**
+   * This method applies a patch to the row with the given id.  Fields of the patch that are the
+   * row's id or version are ignored.
+   * @param repository the repository for the table
+   * @param id the id of the row to patch
+   * @param patch the fields to change, with their new values
+   * @param version the version the row must be at, or null to patch whatever version it is at
+   * @return the patched row, or empty if there is no row with the id
+   * @throws InvalidPatchException if the patch has a field the row doesn't have, or a value of
+   *     the wrong type
+   * @throws PreconditionFailedException if the row is not at the given version, or is changed
+   *     by someone else before the patch is written
+   */
+  @Transactional
+  public <T extends Versioned, ID> Optional<Patched<T>> patch(JpaRepository<T, ID> repository, ID id,
+      ObjectNode patch, Long version) {
+    Optional<T> found = repository.findById(id);
+    if (found.isEmpty()) {
+      return Optional.empty();
+    }
+    T row = found.get();
+    if (version != null && row.getVersion() != version) {
+      throw new PreconditionFailedException(row.getClass(), id);
+    }
+    // the row is changed below, but written by update(), not when the session is flushed
+    entityManager.detach(row);
+    Field idField = idField(row.getClass());
+    ObjectNode changes = patch.deepCopy();
+    changes.remove(idField.getName());
+    changes.remove("version");
+
+    JsonNode before = mapper.valueToTree(row);
+    for (Iterator<String> names = changes.fieldNames(); names.hasNext();) {
+      String name = names.next();
+      if (!before.has(name)) {
+        throw new InvalidPatchException("no field named " + name);
+      }
+    }
+    try {
+      mapper.readerForUpdating(row).readValue(changes);
+    } catch (JsonProcessingException e) {
+      throw new InvalidPatchException(e.getOriginalMessage());
+    } catch (IOException e) {
+      throw new InvalidPatchException(e.getMessage());
+    }
+    JsonNode after = mapper.valueToTree(row);
+
+    List<String> changed = new ArrayList<>();
+    for (Iterator<String> names = after.fieldNames(); names.hasNext();) {
+      String name = names.next();
+      if (!Objects.equals(before.get(name), after.get(name))) {
+        changed.add(name);
+      }
+    }
+    if (changed.isEmpty()) {
+      return Optional.of(new Patched<>(row, false));
+    }
+    if (update(row, idField.getName(), id, changed) == 0) {
+      throw new PreconditionFailedException(row.getClass(), id);
+    }
+    row.setVersion(row.getVersion() + 1);
+    return Optional.of(new Patched<>(row, true));
+  }
+
+  /**
+   * This method writes the changed fields of a row with one JPQL UPDATE, if the row is still at
+   * the version it was read at.
+   * @return the number of rows updated
+   */
+  private int update(Versioned row, String idName, Object id, List<String> changed) {
+    StringBuilder jpql = new StringBuilder("update ")
+        .append(row.getClass().getAnnotation(Entity.class).name()).append(" e set ");
+    for (int i = 0; i < changed.size(); i++) {
+      jpql.append(i == 0 ? "" : ", ").append("e.").append(changed.get(i)).append(" = :").append(changed.get(i));
+    }
+    jpql.append(", e.version = e.version + 1 where e.").append(idName).append(" = :id and e.version = :version");
+
+    BeanWrapper fields = PropertyAccessorFactory.forBeanPropertyAccess(row);
+    Query update = entityManager.createQuery(jpql.toString());
+    for (String name : changed) {
+      update.setParameter(name, fields.getPropertyValue(name));
+    }
+    update.setParameter("id", id);
+    update.setParameter("version", row.getVersion());
+    return update.executeUpdate();
+  }
+
+  static Field idField(Class<?> type) {
+    for (Field field : type.getDeclaredFields()) {
+      if (field.isAnnotationPresent(Id.class)) {
+        return field;
+      }
+    }
+    throw new IllegalArgumentException(type.getName() + " has no @Id field");
+  }
+}
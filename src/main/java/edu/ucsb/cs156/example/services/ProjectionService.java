@@ -0,0 +1,151 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.Versioned;
+import edu.ucsb.cs156.example.errors.InvalidFieldsException;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * This is a service that reads only some of the columns of a table (a sparse fieldset), for the
+ * fields parameter of the listing endpoints.
+ *
+ * The fields are the select list of a JPQL query, so the columns left out are neither read from
+ * the database nor serialized.  Each row comes back as a map from field name to value, with the
+ * fields in the order the entity declares them.  The id and version are always included: the id
+ * is the row's key and page cursor, and the version is its ETag.
+ */
+
+@Service
+public class ProjectionService {
+
+  @Autowired
+  EntityManager entityManager;
+
+  /**
+   * This method checks the requested fields against the entity and returns the fields to select.
+   * @param entity the entity class mapped to the table
+   * @param fields the fields the client asked for
+   * @return the requested fields, plus the id and version, in the order the entity declares them
+   * @throws InvalidFieldsException if the entity doesn't have some of the fields
+   */
+  public List<String> columns(Class<?> entity, List<String> fields) {
+    List<String> declared = new ArrayList<>();
+    for (Field field : entity.getDeclaredFields()) {
+      if (!Modifier.isStatic(field.getModifiers())) {
+        declared.add(field.getName());
+      }
+    }
+    List<String> unknown = fields.stream().filter(field -> !declared.contains(field)).distinct().toList();
+    if (!unknown.isEmpty()) {
+      throw new InvalidFieldsException(entity, unknown);
+    }
+    String id = PatchService.idField(entity).getName();
+    boolean versioned = Versioned.class.isAssignableFrom(entity);
+    return declared.stream()
+        .filter(name -> name.equals(id) || (versioned && name.equals("version")) || fields.contains(name))
+        .toList();
+  }
+
+  /**
+   * This method reads the given columns of every row of a table, in id order.
+   * @param entity the entity class mapped to the table
+   * @param columns the fields to read, as returned by columns
+   * @return one map per row
+   */
+  @Transactional(readOnly = true)
+  public List<Map<String, Object>> findAll(Class<?> entity, List<String> columns) {
+    return rows(columns, select(entity, columns, "order by e.%s").getResultList());
+  }
+
+  /**
+   * This method reads the given columns of the rows after a key, in key order, for keyset pagination.
+   * @param entity the entity class mapped to the table
+   * @param columns the fields to read, as returned by columns
+   * @param after key of the last row already returned; only rows after it are read
+   * @param limit maximum number of rows to read
+   * @return one map per row
+   */
+  @Transactional(readOnly = true)
+  public List<Map<String, Object>> findAfter(Class<?> entity, List<String> columns, Object after, int limit) {
+    TypedQuery<Object[]> query = select(entity, columns, "where e.%1$s > :id order by e.%1$s");
+    query.setParameter("id", after);
+    query.setMaxResults(limit);
+    return rows(columns, query.getResultList());
+  }
+
+  /**
+   * This method reads the given columns of one row.
+   * @param entity the entity class mapped to the table
+   * @param columns the fields to read, as returned by columns
+   * @param id the id of the row
+   * @return the row, or empty if there is no row with the id
+   */
+  @Transactional(readOnly = true)
+  public Optional<Map<String, Object>> findById(Class<?> entity, List<String> columns, Object id) {
+    TypedQuery<Object[]> query = select(entity, columns, "where e.%s = :id");
+    query.setParameter("id", id);
+    return rows(columns, query.getResultList()).stream().findFirst();
+  }
+
+  /**
+   * This method keeps only the given columns of rows that were read whole, for lists whose query
+   * can't select just those columns (e.g. a filtered page, see FilterService).  Only the JSON
+   * gets smaller.
+   * @param rows the rows
+   * @param columns the fields to keep, as returned by columns
+   * @return one map per row
+   */
+  public List<Map<String, Object>> project(List<?> rows, List<String> columns) {
+    List<Map<String, Object>> projected = new ArrayList<>(rows.size());
+    for (Object row : rows) {
+      BeanWrapper fields = PropertyAccessorFactory.forBeanPropertyAccess(row);
+      Map<String, Object> values = new LinkedHashMap<>();
+      for (String column : columns) {
+        values.put(column, fields.getPropertyValue(column));
+      }
+      projected.add(values);
+    }
+    return projected;
+  }
+
+  /**
+   * This method starts a query for the given columns; %s in the rest of the query stands for the id.
+   */
+  private TypedQuery<Object[]> select(Class<?> entity, List<String> columns, String rest) {
+    StringBuilder jpql = new StringBuilder("select ");
+    for (int i = 0; i < columns.size(); i++) {
+      jpql.append(i == 0 ? "" : ", ").append("e.").append(columns.get(i));
+    }
+    jpql.append(" from ").append(entity.getAnnotation(Entity.class).name()).append(" e ")
+        .append(rest.formatted(PatchService.idField(entity).getName()));
+    return entityManager.createQuery(jpql.toString(), Object[].class);
+  }
+
+  private static List<Map<String, Object>> rows(List<String> columns, List<Object[]> results) {
+    List<Map<String, Object>> rows = new ArrayList<>(results.size());
+    for (Object[] result : results) {
+      Map<String, Object> row = new LinkedHashMap<>();
+      for (int i = 0; i < columns.size(); i++) {
+        row.put(columns.get(i), result[i]);
+      }
+      rows.add(row);
+    }
+    return rows;
+  }
+}
@@ -0,0 +1,162 @@
+package edu.ucsb.cs156.example.services;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * This is a service that keeps a version number for each table behind the /api controllers.
+ *
+ * Controllers record every create, update or delete after it has committed (through
+ * ChangeLogService, which calls changed() and remembers which rows were written); anything
+ * derived from the rows of a table (e.g. the JSON cached by JsonResponseCache) is current for as
+ * long as the version it was computed at is.  Versions are kept in memory, so they start over
+ * when the app restarts, and they only see writes made through this instance of the app.  So
+ * that writes made some other way (by another instance, or straight to the database) are not
+ * hidden for good, a table's version is also bumped once it is max-age old, and whatever was
+ * derived from the rows is then read again.
+ *
+ * The same versions are sent to clients as ETags (see etag()).  Each ETag also carries the table,
+ * and a random epoch chosen when the app starts, so a tag handed out for another table, before a
+ * restart, or by another instance, never matches a version counted here.
+ */
+
+@Service
+public class TableVersionService {
+
+  private static class Version {
+    private final AtomicLong value = new AtomicLong();
+    // System.nanoTime() when value was last bumped (or first asked for)
+    private final AtomicLong bumpedAt;
+
+    Version(long now) {
+      bumpedAt = new AtomicLong(now);
+    }
+  }
+
+  private final Map<Class<?>, Version> versions = new ConcurrentHashMap<>();
+  private final String epoch = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+  private final long maxAgeNanos;
+  private final LongSupplier nanoTime;
+
+  /**
+   * Create the service.
+   * @param maxAge how long a version lasts without a write through this instance
+   */
+  @Autowired
+  public TableVersionService(@Value("${app.table-version.max-age:1m}") Duration maxAge) {
+    this(maxAge, System::nanoTime);
+  }
+
+  TableVersionService() {
+    this(Duration.ofMinutes(1));
+  }
+
+  TableVersionService(Duration maxAge, LongSupplier nanoTime) {
+    this.maxAgeNanos = maxAge.toNanos();
+    this.nanoTime = nanoTime;
+  }
+
+  /**
+   * This method returns the current version of a table, first bumping it if it is max-age old.
+   * @param entity the entity class mapped to the table
+   * @return the version, 0 until the table is first changed
+   */
+  public long version(Class<?> entity) {
+    long now = nanoTime.getAsLong();
+    Version version = versions.computeIfAbsent(entity, e -> new Version(now));
+    long bumpedAt = version.bumpedAt.get();
+    if (now - bumpedAt >= maxAgeNanos && version.bumpedAt.compareAndSet(bumpedAt, now)) {
+      return version.value.incrementAndGet();
+    }
+    return version.value.get();
+  }
+
+  /**
+   * This method records that rows of a table were created, updated or deleted.
+   * Call it after the change is committed, so that a reader that sees the new version
+   * also sees the new rows.
+   * @param entity the entity class mapped to the table
+   * @return the new version
+   */
+  public long changed(Class<?> entity) {
+    long now = nanoTime.getAsLong();
+    Version version = versions.computeIfAbsent(entity, e -> new Version(now));
+    version.bumpedAt.set(now);
+    return version.value.incrementAndGet();
+  }
+
+  /**
+   * This method returns a strong ETag for the current version of a table.
+   * @param entity the entity class mapped to the table
+   * @return the ETag, including its quotes
+   */
+  public String etag(Class<?> entity) {
+    return etag(entity, version(entity));
+  }
+
+  /**
+   * This method returns a strong ETag for a given version of a table.
+   * @param entity the entity class mapped to the table
+   * @param version a version returned by version()
+   * @return the ETag, including its quotes
+   */
+  public String etag(Class<?> entity, long version) {
+    return "\"" + token(entity, version) + "\"";
+  }
+
+  /**
+   * This method returns the current version of a table as sent to clients.
+   * @param entity the entity class mapped to the table
+   * @return the version, with the epoch and the table
+   */
+  public String token(Class<?> entity) {
+    return token(entity, version(entity));
+  }
+
+  /**
+   * This method returns a version of a table as sent to clients: its ETag without the quotes.
+   * @param entity the entity class mapped to the table
+   * @param version a version returned by version()
+   * @return the version, with the epoch and the table
+   */
+  public String token(Class<?> entity, long version) {
+    return prefix(entity) + version;
+  }
+
+  /**
+   * This method reads back a version of a table sent to clients by token() or etag().
+   * @param entity the entity class mapped to the table
+   * @param token the version, with or without the quotes of an ETag
+   * @return the version, or -1 if the token was not handed out for this table by this instance
+   *     since it started
+   */
+  public long version(Class<?> entity, String token) {
+    String tag = token.trim();
+    if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+      tag = tag.substring(1, tag.length() - 1);
+    }
+    String prefix = prefix(entity);
+    if (!tag.startsWith(prefix)) {
+      return -1L;
+    }
+    try {
+      return Long.parseLong(tag.substring(prefix.length()));
+    } catch (NumberFormatException e) {
+      return -1L;
+    }
+  }
+
+  // e.g. k3x9q2-helprequest-, so that a version of one table is never taken for one of another
+  private String prefix(Class<?> entity) {
+    return epoch + "-" + entity.getSimpleName().toLowerCase(Locale.ROOT) + "-";
+  }
+}
@@ -0,0 +1,56 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.User;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * This is a JPA entity listener that invalidates the caches holding User data
+ * (the CurrentUserCache and the admin flags in AdminRoleResolver) whenever a
+ * User row is updated (e.g. promoted to admin) or deleted.
+ * 
+ * The invalidation happens after the transaction commits, so that a cache
+ * cannot reload the old row in between.
+ */
+
+public class UserCacheInvalidator {
+
+  @Autowired
+  CurrentUserCache currentUserCache;
+
+  // lazy because the resolver needs the UserRepository, which is not ready
+  // while Hibernate is creating this listener
+  @Lazy
+  @Autowired
+  AdminRoleResolver adminRoleResolver;
+
+  /**
+   * This method is called by JPA after a User is updated or removed.
+   * @param user the user that changed
+   */
+  @PostUpdate
+  @PostRemove
+  public void userChanged(User user) {
+    String email = user.getEmail();
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          invalidate(email);
+        }
+      });
+    } else {
+      invalidate(email);
+    }
+  }
+
+  private void invalidate(String email) {
+    currentUserCache.invalidate(email);
+    adminRoleResolver.invalidate(email);
+  }
+}
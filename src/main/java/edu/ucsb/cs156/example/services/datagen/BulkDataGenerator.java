@@ -0,0 +1,311 @@
+package edu.ucsb.cs156.example.services.datagen;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import edu.ucsb.cs156.example.entities.Articles;
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.entities.MenuItemReviews;
+import edu.ucsb.cs156.example.entities.RecommendationRequest;
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.entities.UCSBOrganizations;
+import edu.ucsb.cs156.example.services.ChangeLogService;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Fills the tables behind the nine /api resources with synthetic rows, so that endpoints can be
+ * tried against production sized data.  Runs at startup when the datagen profile is active; see
+ * docs/bulk-data.md.
+ *
+ * Rows go in with plain JDBC batch inserts, app.datagen.batch-size rows per batch and one
+ * transaction per batch, bypassing JPA.  At app.datagen.scale=1 that is about four million rows;
+ * app.datagen.rows.TABLE overrides the count for one table.  Rows are added to whatever is already
+ * there.  Since the controllers don't see these writes, each table filled is then marked as written
+ * (ChangeLogService.forget), so cached lists and ETags are read again and /changes and /events
+ * clients start over.
+ */
+@Slf4j
+@Service
+@Profile("datagen")
+public class BulkDataGenerator implements ApplicationRunner {
+
+  /**
+   * Number of rows of each table at app.datagen.scale=1, in the order they are generated.
+   */
+  public static final Map<String, Long> ROWS_AT_SCALE_1 = rowsAtScale1();
+
+  private static final Map<String, Class<?>> ENTITIES = Map.of(
+      "ucsbdiningcommons", UCSBDiningCommons.class,
+      "ucsbdiningcommonsmenuitem", UCSBDiningCommonsMenuItem.class,
+      "menuitemreviews", MenuItemReviews.class,
+      "ucsbdates", UCSBDate.class,
+      "ucsborganizations", UCSBOrganizations.class,
+      "restaurants", Restaurant.class,
+      "articles", Articles.class,
+      "helprequest", HelpRequest.class,
+      "recommendationrequests", RecommendationRequest.class);
+
+  private static final int STUDENTS = 30000;
+
+  private static final String[] COMMONS = { "Carrillo", "De La Guerra", "Ortega", "Portola" };
+  private static final String[] STATIONS = { "Entrees", "Grill (Cafe)", "Salad Bar", "Pizza", "Deli", "Desserts",
+      "Soups", "Vegan Corner", "Breakfast", "International" };
+  private static final String[] DISHES = { "Tofu Banh Mi Sandwich (v)", "Chicken Caesar Salad", "Bibimbap Bowl",
+      "Cheese Pizza (vgt)", "Pepperoni Pizza", "Black Bean Burger (vgt)", "Chicken Tikka Masala", "Pad Thai (v)",
+      "Carne Asada Tacos", "Clam Chowder", "Mac and Cheese (vgt)", "Pancakes (vgt)", "Chocolate Chip Cookie (vgt)" };
+  private static final String[] COMMENTS = { "Great!", "Too salty.", "Cold by the time I sat down.",
+      "Would order again.", "Portion was small.", "Best thing on the menu this week.", "Needed more sauce.",
+      "The pasta was overcooked but the sauce made up for it." };
+  private static final String[] EVENTS = { "First day of classes", "Last day of classes", "Finals week begins",
+      "Pass 1 begins", "Pass 2 begins", "Pass 3 begins", "Drop deadline", "Grades due", "Commencement" };
+  private static final String[] PROBLEMS = { "Dokku deployment fails", "Tests pass locally but not on CI",
+      "Merge conflict in package-lock.json", "OAuth login redirects to localhost", "Jacoco coverage below 100%",
+      "Storybook won't build", "Mutation tests time out", "Can't connect to the database" };
+  private static final String[] PROGRAMS = { "PhD program", "MS program", "BS/MS program", "Internship",
+      "Scholarship", "Research assistant position" };
+  private static final String[] PROFESSORS = { "phtcon@ucsb.edu", "richert@ucsb.edu", "ziad@ucsb.edu",
+      "cgaucho@ucsb.edu", "ldelplaya@ucsb.edu" };
+  private static final String[] CUISINES = { "Mexican", "Pizza", "Indian", "Thai", "Smoothies", "Burgers", "Sushi",
+      "Coffee", "Mediterranean", "Vietnamese" };
+  private static final String[] TOPICS = { "Spring Boot", "React", "PostgreSQL", "testing", "Git", "Java records",
+      "accessibility", "caching", "OAuth", "Docker" };
+
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+  private final Environment environment;
+  private final ChangeLogService changeLogService;
+  private final double scale;
+  private final int batchSize;
+  private final long seed;
+
+  /**
+   * Create the generator.
+   * @param jdbcTemplate used for the inserts
+   * @param transactionTemplate one transaction per batch
+   * @param environment where app.datagen.rows.TABLE is looked up
+   * @param changeLogService told of each table filled
+   * @param scale multiplies ROWS_AT_SCALE_1
+   * @param batchSize rows per batch insert
+   * @param seed seed for the random values, so runs are repeatable
+   */
+  public BulkDataGenerator(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+      Environment environment, ChangeLogService changeLogService,
+      @Value("${app.datagen.scale:1.0}") double scale,
+      @Value("${app.datagen.batch-size:1000}") int batchSize,
+      @Value("${app.datagen.seed:42}") long seed) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = transactionTemplate;
+    this.environment = environment;
+    this.changeLogService = changeLogService;
+    this.scale = scale;
+    this.batchSize = batchSize;
+    this.seed = seed;
+  }
+
+  private static Map<String, Long> rowsAtScale1() {
+    Map<String, Long> rows = new LinkedHashMap<>();
+    rows.put("ucsbdiningcommons", 50L);
+    rows.put("ucsbdiningcommonsmenuitem", 100_000L);
+    rows.put("menuitemreviews", 2_000_000L);
+    rows.put("ucsbdates", 100_000L);
+    rows.put("ucsborganizations", 2_000L);
+    rows.put("restaurants", 20_000L);
+    rows.put("articles", 500_000L);
+    rows.put("helprequest", 1_000_000L);
+    rows.put("recommendationrequests", 500_000L);
+    return rows;
+  }
+
+  @Override
+  public void run(ApplicationArguments args) {
+    generate();
+  }
+
+  /**
+   * Add rows to every table.
+   * @return the number of rows added to each table
+   */
+  public Map<String, Long> generate() {
+    Distributions random = new Distributions(seed);
+    Map<String, Long> added = new LinkedHashMap<>();
+    added.put("ucsbdiningcommons", ucsbDiningCommons(random));
+    added.put("ucsbdiningcommonsmenuitem", ucsbDiningCommonsMenuItems(random));
+    added.put("menuitemreviews", menuItemReviews(random));
+    added.put("ucsbdates", ucsbDates(random));
+    added.put("ucsborganizations", ucsbOrganizations(random));
+    added.put("restaurants", restaurants(random));
+    added.put("articles", articles(random));
+    added.put("helprequest", helpRequests(random));
+    added.put("recommendationrequests", recommendationRequests(random));
+    return added;
+  }
+
+  /**
+   * Number of rows to add to a table.
+   * @param table key of ROWS_AT_SCALE_1
+   * @return app.datagen.rows.TABLE if set, otherwise ROWS_AT_SCALE_1 times app.datagen.scale
+   */
+  long rows(String table) {
+    return environment.getProperty("app.datagen.rows." + table, Long.class,
+        Math.round(ROWS_AT_SCALE_1.get(table) * scale));
+  }
+
+  /**
+   * Makes the parameters of the n-th row added to a table (n counts from 1).
+   */
+  @FunctionalInterface
+  interface RowMaker {
+    Object[] row(long n);
+  }
+
+  private long insert(String table, String sql, RowMaker maker) {
+    long rows = rows(table);
+    long start = System.nanoTime();
+    List<Object[]> batch = new ArrayList<>(batchSize);
+    for (long n = 1; n <= rows; n++) {
+      batch.add(maker.row(n));
+      if (batch.size() == batchSize || n == rows) {
+        List<Object[]> full = batch;
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(sql, full));
+        batch = new ArrayList<>(batchSize);
+      }
+    }
+    if (rows > 0) {
+      changeLogService.forget(ENTITIES.get(table));
+    }
+    double seconds = Math.max(1e-9, (System.nanoTime() - start) / 1e9);
+    log.info("{}: added {} rows in {} s ({} rows/s)", table, rows, "%.1f".formatted(seconds),
+        Math.round(rows / seconds));
+    return rows;
+  }
+
+  private long count(String table) {
+    return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+  }
+
+  private long ucsbDiningCommons(Distributions random) {
+    long existing = count("ucsbdiningcommons");
+    return insert("ucsbdiningcommons",
+        "INSERT INTO ucsbdiningcommons (code, name, has_sack_meal, has_take_out_meal, has_dining_cam, latitude, longitude) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?)",
+        n -> {
+          long k = existing + n;
+          return new Object[] { "dc" + k, COMMONS[(int) (k % COMMONS.length)] + " " + k, random.chance(0.7),
+              random.chance(0.5), random.chance(0.8), random.uniform(34.405, 34.420),
+              random.uniform(-119.870, -119.840) };
+        });
+  }
+
+  private long ucsbDiningCommonsMenuItems(Distributions random) {
+    List<String> commons = jdbcTemplate.queryForList("SELECT code FROM ucsbdiningcommons ORDER BY code", String.class);
+    if (commons.isEmpty()) {
+      commons = List.of("carrillo");
+    }
+    List<String> codes = commons;
+    return insert("ucsbdiningcommonsmenuitem",
+        "INSERT INTO ucsbdiningcommonsmenuitem (dining_commons_code, name, station) VALUES (?, ?, ?)",
+        n -> new Object[] { codes.get((int) random.skewed(codes.size()) - 1), random.pick(DISHES),
+            STATIONS[(int) random.skewed(STATIONS.length) - 1] });
+  }
+
+  private long menuItemReviews(Distributions random) {
+    Map<String, Object> ids = jdbcTemplate.queryForMap(
+        "SELECT COALESCE(MIN(id), 1) AS lo, COALESCE(MAX(id), 1) AS hi FROM ucsbdiningcommonsmenuitem");
+    long lo = ((Number) ids.get("lo")).longValue();
+    long items = ((Number) ids.get("hi")).longValue() - lo + 1;
+    return insert("menuitemreviews",
+        "INSERT INTO menuitemreviews (item_id, reviewer_email, stars, date_reviewed, comments) VALUES (?, ?, ?, ?, ?)",
+        n -> new Object[] { lo + random.skewed(items) - 1, Distributions.email(random.skewed(STUDENTS)),
+            1 + random.weighted(5, 8, 15, 32, 40), random.timestamp(), comment(random) });
+  }
+
+  private static String comment(Distributions random) {
+    return switch (random.weighted(3, 5, 2)) {
+      case 0 -> "";
+      case 1 -> random.pick(COMMENTS);
+      default -> random.pick(COMMENTS) + " " + random.pick(COMMENTS);
+    };
+  }
+
+  private long ucsbDates(Distributions random) {
+    return insert("ucsbdates",
+        "INSERT INTO ucsbdates (quarteryyyyq, name, local_date_time) VALUES (?, ?, ?)",
+        n -> {
+          Timestamp when = random.timestamp();
+          int month = when.toLocalDateTime().getMonthValue();
+          int quarter = month <= 3 ? 1 : month <= 6 ? 2 : month <= 9 ? 3 : 4;
+          return new Object[] { "%d%d".formatted(when.toLocalDateTime().getYear(), quarter), random.pick(EVENTS),
+              when };
+        });
+  }
+
+  private long ucsbOrganizations(Distributions random) {
+    long existing = count("ucsborganizations");
+    return insert("ucsborganizations",
+        "INSERT INTO ucsborganizations (orgcode, org_translation_short, org_translation, inactive) VALUES (?, ?, ?, ?)",
+        n -> {
+          long k = existing + n;
+          String topic = random.pick(TOPICS);
+          return new Object[] { "ORG" + k, (topic + " club " + k).toUpperCase(),
+              "Association for " + topic + " " + k, random.chance(0.15) };
+        });
+  }
+
+  private long restaurants(Distributions random) {
+    return insert("restaurants",
+        "INSERT INTO restaurants (name, description) VALUES (?, ?)",
+        n -> {
+          String cuisine = CUISINES[(int) random.skewed(CUISINES.length) - 1];
+          return new Object[] { "%s %s #%d".formatted(Distributions.FAMILY_NAMES[random.uniform(
+              Distributions.FAMILY_NAMES.length)], cuisine, n), cuisine };
+        });
+  }
+
+  private long articles(Distributions random) {
+    return insert("articles",
+        "INSERT INTO articles (title, url, explanation, email, date_added) VALUES (?, ?, ?, ?, ?)",
+        n -> {
+          String topic = random.pick(TOPICS);
+          return new Object[] { "Getting started with " + topic + " (part " + (1 + random.uniform(5)) + ")",
+              "https://example.org/articles/" + seed + "/" + n, "A good introduction to " + topic,
+              Distributions.email(random.skewed(STUDENTS)), random.timestamp() };
+        });
+  }
+
+  private long helpRequests(Distributions random) {
+    return insert("helprequest",
+        "INSERT INTO helprequest (requester_email, team_id, table_or_breakout_room, request_time, explanation, solved) "
+            + "VALUES (?, ?, ?, ?, ?, ?)",
+        n -> new Object[] { Distributions.email(random.skewed(STUDENTS)),
+            "s%d-%s-%d".formatted(22 + random.uniform(4), random.pick("5pm", "6pm", "7pm"), 1 + random.uniform(4)),
+            Integer.toString(1 + random.uniform(15)), random.timestamp(), random.pick(PROBLEMS),
+            random.chance(0.95) });
+  }
+
+  private long recommendationRequests(Distributions random) {
+    return insert("recommendationrequests",
+        "INSERT INTO recommendation_requests (requester_email, professor_email, explanation, date_requested, "
+            + "date_needed, done) VALUES (?, ?, ?, ?, ?, ?)",
+        n -> {
+          Timestamp requested = random.timestamp();
+          return new Object[] { Distributions.email(random.skewed(STUDENTS)),
+              PROFESSORS[(int) random.skewed(PROFESSORS.length) - 1], random.pick(PROGRAMS), requested,
+              random.daysAfter(requested, 60), random.chance(0.8) };
+        });
+  }
+}
@@ -0,0 +1,106 @@
+package edu.ucsb.cs156.example.services.datagen;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.SplittableRandom;
+
+/**
+ * Random values shaped like the ones real users produce, for BulkDataGenerator.
+ *
+ * Not thread safe; each generator run makes its own, from a seed, so runs are repeatable.
+ */
+final class Distributions {
+  static final String[] GIVEN_NAMES = { "chris", "lauren", "pat", "sam", "alex", "jordan", "taylor", "morgan",
+      "casey", "jamie", "riley", "avery", "quinn", "devon", "emerson", "harper", "rowan", "skyler", "reese", "kai" };
+  static final String[] FAMILY_NAMES = { "gaucho", "nguyen", "garcia", "smith", "kim", "patel", "lopez", "chen",
+      "johnson", "martinez", "wang", "brown", "davis", "rodriguez", "lee", "wilson", "anderson", "thomas" };
+
+  private static final LocalDateTime START = LocalDateTime.of(2021, 9, 20, 0, 0);
+  private static final long MINUTES = ChronoUnit.MINUTES.between(START, LocalDateTime.of(2025, 6, 13, 0, 0));
+
+  private final SplittableRandom random;
+
+  Distributions(long seed) {
+    random = new SplittableRandom(seed);
+  }
+
+  /**
+   * A number from 1 to n where k comes up with probability roughly proportional to 1/k, the
+   * way a few menu items, students or dining commons account for most of the activity.
+   * @param n largest value
+   * @return a value from 1 to n
+   */
+  long skewed(long n) {
+    return Math.min(n, (long) Math.pow(n + 1, random.nextDouble()));
+  }
+
+  /**
+   * An index into weights, picked with probability proportional to its weight.
+   * @param weights relative weights
+   * @return an index into weights
+   */
+  int weighted(int... weights) {
+    int total = 0;
+    for (int weight : weights) {
+      total += weight;
+    }
+    int r = random.nextInt(total);
+    int i = 0;
+    while (r >= weights[i]) {
+      r -= weights[i++];
+    }
+    return i;
+  }
+
+  int uniform(int bound) {
+    return random.nextInt(bound);
+  }
+
+  double uniform(double from, double to) {
+    return random.nextDouble(from, to);
+  }
+
+  boolean chance(double probability) {
+    return random.nextDouble() < probability;
+  }
+
+  String pick(String... choices) {
+    return choices[random.nextInt(choices.length)];
+  }
+
+  /**
+   * The email of the k-th member of a population, e.g. lauren.kim3@ucsb.edu.
+   * @param k which member, 1 or more
+   * @return an email that is the same for the same k
+   */
+  static String email(long k) {
+    long n = k - 1;
+    String given = GIVEN_NAMES[(int) (n % GIVEN_NAMES.length)];
+    n /= GIVEN_NAMES.length;
+    String family = FAMILY_NAMES[(int) (n % FAMILY_NAMES.length)];
+    n /= FAMILY_NAMES.length;
+    return n == 0 ? "%s.%s@ucsb.edu".formatted(given, family) : "%s.%s%d@ucsb.edu".formatted(given, family, n);
+  }
+
+  /**
+   * A time between fall 2021 and spring 2025, mostly during the day.
+   * @return the time
+   */
+  Timestamp timestamp() {
+    LocalDateTime day = START.plusMinutes(random.nextLong(MINUTES)).truncatedTo(ChronoUnit.DAYS);
+    // triangular, peaking mid afternoon
+    int minuteOfDay = 8 * 60 + random.nextInt(7 * 60) + random.nextInt(7 * 60);
+    return Timestamp.valueOf(day.plusMinutes(minuteOfDay));
+  }
+
+  /**
+   * A time some days after the given one.
+   * @param after the earlier time
+   * @param maxDays the most days after
+   * @return the time
+   */
+  Timestamp daysAfter(Timestamp after, int maxDays) {
+    return Timestamp.valueOf(after.toLocalDateTime().plusDays(1 + random.nextInt(maxDays)));
+  }
+}
@@ -2,6 +2,7 @@ package edu.ucsb.cs156.example;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -13,6 +14,7 @@ import edu.ucsb.cs156.example.services.CurrentUserService;
 import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
 import edu.ucsb.cs156.example.services.wiremock.WiremockService;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
+import jakarta.persistence.EntityManager;
 import org.springframework.test.web.servlet.MvcResult;
 
 import java.io.UnsupportedEncodingException;
@@ -36,8 +38,18 @@ public abstract class ControllerTestCase {
   @MockBean
   WiremockService mockWiremockService;
 
+  @MockBean
+  public EntityManager entityManager;
+
   protected Map<String, Object> responseToJson(MvcResult result) throws UnsupportedEncodingException, JsonProcessingException {
     String responseString = result.getResponse().getContentAsString();
     return mapper.readValue(responseString, Map.class);
   }
+
+  /** The JSON of a row as a PUT without If-Match returns it: the version is left out. */
+  protected String withoutVersion(Object row) throws JsonProcessingException {
+    ObjectNode json = mapper.valueToTree(row);
+    json.remove("version");
+    return mapper.writeValueAsString(json);
+  }
 }
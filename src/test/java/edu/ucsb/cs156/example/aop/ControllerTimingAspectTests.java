@@ -0,0 +1,112 @@
+package edu.ucsb.cs156.example.aop;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Method;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.controllers.UCSBDatesController;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+class ControllerTimingAspectTests {
+
+  private PrometheusMeterRegistry registry;
+  private ControllerTimingAspect aspect;
+
+  @BeforeEach
+  void setup() {
+    registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+    aspect = new ControllerTimingAspect(registry);
+  }
+
+  private ProceedingJoinPoint joinPoint(Method method) {
+    MethodSignature signature = mock(MethodSignature.class);
+    when(signature.getMethod()).thenReturn(method);
+    ProceedingJoinPoint joinPoint = mock(ProceedingJoinPoint.class);
+    when(joinPoint.getSignature()).thenReturn(signature);
+    return joinPoint;
+  }
+
+  @Test
+  void successful_calls_are_recorded_on_one_timer_per_method() throws Throwable {
+    // arrange
+    Method method = UCSBDatesController.class.getMethod("allUCSBDates", HttpServletRequest.class,
+        HttpServletResponse.class);
+    ProceedingJoinPoint joinPoint = joinPoint(method);
+    when(joinPoint.proceed()).thenReturn("result");
+
+    // act
+    Object first = aspect.timeControllers(joinPoint);
+    Object second = aspect.timeControllers(joinPoint);
+
+    // assert
+    assertEquals("result", first);
+    assertEquals("result", second);
+    Timer timer = registry.get(ControllerTimingAspect.TIMER_NAME)
+        .tags("controller", "UCSBDatesController", "method", "allUCSBDates", "exception", "none",
+            "uri", "/api/ucsbdates/all")
+        .timer();
+    assertEquals(2, timer.count());
+    assertTrue(registry.scrape().contains("app_controller_method_seconds_bucket{controller=\"UCSBDatesController\","
+        + "exception=\"none\",method=\"allUCSBDates\",uri=\"/api/ucsbdates/all\",le=\"0.001\"}"));
+    assertEquals(1, registry.find(ControllerTimingAspect.TIMER_NAME).timers().size());
+  }
+
+  @Test
+  void failed_calls_are_tagged_with_the_exception_and_rethrown() throws Throwable {
+    // arrange
+    Method method = UCSBDatesController.class.getMethod("getById", Long.class, ServletWebRequest.class);
+    ProceedingJoinPoint joinPoint = joinPoint(method);
+    EntityNotFoundException exception = new EntityNotFoundException(UCSBDate.class, 7L);
+    when(joinPoint.proceed()).thenThrow(exception);
+
+    // act
+    EntityNotFoundException thrown = assertThrows(EntityNotFoundException.class,
+        () -> aspect.timeControllers(joinPoint));
+    assertThrows(EntityNotFoundException.class, () -> aspect.timeControllers(joinPoint));
+
+    // assert
+    assertSame(exception, thrown);
+    Timer timer = registry.get(ControllerTimingAspect.TIMER_NAME)
+        .tags("controller", "UCSBDatesController", "method", "getById",
+            "exception", "EntityNotFoundException", "uri", "/api/ucsbdates")
+        .timer();
+    assertEquals(2, timer.count());
+    assertEquals(1, registry.find(ControllerTimingAspect.TIMER_NAME).timers().size());
+  }
+
+  @Test
+  void methods_mapped_to_different_paths_get_different_timers() throws Throwable {
+    // arrange
+    ProceedingJoinPoint list = joinPoint(UCSBDatesController.class.getMethod("streamUCSBDates",
+        HttpServletResponse.class));
+    ProceedingJoinPoint events = joinPoint(UCSBDatesController.class.getMethod("changeEventsUCSBDates",
+        String.class));
+
+    // act
+    aspect.timeControllers(list);
+    aspect.timeControllers(events);
+
+    // assert
+    assertEquals(1, registry.get(ControllerTimingAspect.TIMER_NAME)
+        .tags("uri", "/api/ucsbdates/all/stream").timer().count());
+    assertEquals(1, registry.get(ControllerTimingAspect.TIMER_NAME)
+        .tags("uri", "/api/ucsbdates/events").timer().count());
+  }
+}
@@ -0,0 +1,123 @@
+package edu.ucsb.cs156.example.aop;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import edu.ucsb.cs156.example.controllers.FrontendProxyController;
+import edu.ucsb.cs156.example.controllers.UCSBDatesController;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+class LoggingAspectTests {
+
+  private Logger logger;
+  private Level originalLevel;
+  private ListAppender<ILoggingEvent> appender;
+
+  @BeforeEach
+  void setup() {
+    logger = (Logger) LoggerFactory.getLogger(LoggingAspect.class);
+    originalLevel = logger.getLevel();
+    logger.setLevel(Level.INFO);
+    appender = new ListAppender<>();
+    appender.start();
+    logger.addAppender(appender);
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/ucsbdates/all");
+    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+  }
+
+  @AfterEach
+  void teardown() {
+    logger.detachAppender(appender);
+    logger.setLevel(originalLevel);
+    RequestContextHolder.resetRequestAttributes();
+  }
+
+  private JoinPoint joinPoint(Class<?> controller, String methodName, Class<?>... parameterTypes) throws Exception {
+    Method method = controller.getMethod(methodName, parameterTypes);
+    MethodSignature signature = mock(MethodSignature.class);
+    when(signature.getMethod()).thenReturn(method);
+    when(signature.getDeclaringTypeName()).thenReturn(controller.getName());
+    JoinPoint joinPoint = mock(JoinPoint.class);
+    when(joinPoint.getSignature()).thenReturn(signature);
+    return joinPoint;
+  }
+
+  private JoinPoint allUCSBDates() throws Exception {
+    return joinPoint(UCSBDatesController.class, "allUCSBDates", HttpServletRequest.class, HttpServletResponse.class);
+  }
+
+  @Test
+  void test_controller_calls_are_logged_in_the_same_format_as_before() throws Exception {
+    LoggingAspect aspect = new LoggingAspect(List.of(FrontendProxyController.class.getName()), 1.0);
+    JoinPoint joinPoint = allUCSBDates();
+
+    aspect.logControllers(joinPoint);
+    aspect.logControllers(joinPoint);
+
+    assertEquals(2, appender.list.size());
+    assertEquals("===== GET /api/ucsbdates/all handled by allUCSBDates in "
+        + "edu.ucsb.cs156.example.controllers.UCSBDatesController",
+        appender.list.get(0).getFormattedMessage());
+  }
+
+  @Test
+  void test_stoplisted_controllers_are_not_logged() throws Exception {
+    LoggingAspect aspect = new LoggingAspect(List.of(UCSBDatesController.class.getName()), 1.0);
+
+    aspect.logControllers(allUCSBDates());
+
+    assertEquals(0, appender.list.size());
+  }
+
+  @Test
+  void test_sample_rate_zero_logs_nothing_and_a_fraction_logs_some() throws Exception {
+    JoinPoint joinPoint = allUCSBDates();
+    LoggingAspect none = new LoggingAspect(List.of(), 0.0);
+    LoggingAspect half = new LoggingAspect(List.of(), 0.5);
+
+    for (int i = 0; i < 1000; i++) {
+      none.logControllers(joinPoint);
+    }
+    assertEquals(0, appender.list.size());
+
+    for (int i = 0; i < 1000; i++) {
+      half.logControllers(joinPoint);
+    }
+    int logged = appender.list.size();
+    assertEquals(true, logged > 350 && logged < 650, "logged " + logged + " of 1000");
+  }
+
+  @Test
+  void test_nothing_is_logged_outside_a_request_or_when_info_is_off() throws Exception {
+    LoggingAspect aspect = new LoggingAspect(List.of(), 1.0);
+    JoinPoint joinPoint = allUCSBDates();
+
+    RequestContextHolder.resetRequestAttributes();
+    aspect.logControllers(joinPoint);
+    RequestContextHolder.setRequestAttributes(
+        new ServletRequestAttributes(new MockHttpServletRequest("GET", "/api/ucsbdates/all")));
+    logger.setLevel(Level.WARN);
+    aspect.logControllers(joinPoint);
+
+    assertEquals(0, appender.list.size());
+  }
+}
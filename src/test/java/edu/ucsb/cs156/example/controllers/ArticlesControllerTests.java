@@ -25,10 +25,31 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 import java.time.LocalDateTime;
 
 import java.util.Optional;
-
+import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
+import edu.ucsb.cs156.example.models.BulkResult;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.models.Delta;
+import edu.ucsb.cs156.example.services.ChangeLogService;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import edu.ucsb.cs156.example.models.LookupResult;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+import static org.hamcrest.Matchers.startsWith;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -43,6 +64,12 @@ public class ArticlesControllerTests extends ControllerTestCase {
         @MockBean
         UserRepository userRepository;
 
+        @Autowired
+        ChangeLogService changeLogService;
+
+        @Autowired
+        TableVersionService tableVersionService;
+
         // Authorization tests for /api/articles/admin/all
 
         @Test
@@ -218,7 +245,7 @@ public class ArticlesControllerTests extends ControllerTestCase {
                                 .dateAdded(ldt1)
                                 .build();
 
-                when(articlesRepository.findById(eq(15L))).thenReturn(Optional.of(articles1));
+                when(articlesRepository.removeById(eq(15L))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -227,8 +254,7 @@ public class ArticlesControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(articlesRepository, times(1)).findById(15L);
-                verify(articlesRepository, times(1)).delete(any());
+                verify(articlesRepository, times(1)).removeById(15L);
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Articles with id 15 deleted", json.get("message"));
@@ -240,7 +266,7 @@ public class ArticlesControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(articlesRepository.findById(eq(15L))).thenReturn(Optional.empty());
+                when(articlesRepository.removeById(eq(15L))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -249,7 +275,7 @@ public class ArticlesControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(articlesRepository, times(1)).findById(15L);
+                verify(articlesRepository, times(1)).removeById(15L);
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Articles with id 15 not found", json.get("message"));
         }
@@ -279,8 +305,9 @@ public class ArticlesControllerTests extends ControllerTestCase {
                                 .build();
 
                 String requestBody = mapper.writeValueAsString(articlesEdited);
+                articlesEdited.setId(67L);
 
-                when(articlesRepository.findById(eq(67L))).thenReturn(Optional.of(articlesOrig));
+                when(articlesRepository.updateById(eq(67L), eq(articlesEdited))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -292,10 +319,11 @@ public class ArticlesControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(articlesRepository, times(1)).findById(67L);
-                verify(articlesRepository, times(1)).save(articlesEdited); // should be saved with correct user
+                verify(articlesRepository, times(1)).updateById(eq(67L), any());
+                verify(articlesRepository, never()).findById(any()); // the new version is not known, so no ETag is sent
+                assertEquals(null, response.getResponse().getHeader("ETag"));
                 String responseString = response.getResponse().getContentAsString();
-                assertEquals(requestBody, responseString);
+                assertEquals(withoutVersion(articlesEdited), responseString);
         }
 
         @WithMockUser(roles = { "ADMIN", "USER" })
@@ -315,7 +343,7 @@ public class ArticlesControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(articlesEdited);
 
-                when(articlesRepository.findById(eq(67L))).thenReturn(Optional.empty());
+                when(articlesRepository.updateById(eq(67L), any())).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -327,9 +355,613 @@ public class ArticlesControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(articlesRepository, times(1)).findById(67L);
+                verify(articlesRepository, times(1)).updateById(eq(67L), any());
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Articles with id 67 not found", json.get("message"));
 
         }
+
+        // Tests for /api/articles/page
+
+        @Test
+        public void logged_out_users_cannot_get_page() throws Exception {
+                mockMvc.perform(get("/api/articles/page"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_first_page_of_articles() throws Exception {
+                // arrange
+
+                Articles row1 = Articles.builder()
+                                .id(1L)
+                                .title("title1")
+                                .url("https://example.org/1")
+                                .explanation("explanation1")
+                                .email("author1@ucsb.edu")
+                                .dateAdded(LocalDateTime.parse("2022-01-01T00:00:00"))
+                                .build();
+                Articles row2 = Articles.builder()
+                                .id(2L)
+                                .title("title2")
+                                .url("https://example.org/2")
+                                .explanation("explanation2")
+                                .email("author2@ucsb.edu")
+                                .dateAdded(LocalDateTime.parse("2022-01-02T00:00:00"))
+                                .build();
+                Articles row3 = Articles.builder()
+                                .id(3L)
+                                .title("title3")
+                                .url("https://example.org/3")
+                                .explanation("explanation3")
+                                .email("author3@ucsb.edu")
+                                .dateAdded(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+
+                when(articlesRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(Limit.of(3))))
+                                .thenReturn(Arrays.asList(row1, row2, row3));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/articles/page?limit=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(articlesRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(Limit.of(3)));
+                String nextCursor = Base64.getUrlEncoder().withoutPadding()
+                                .encodeToString("2".getBytes(StandardCharsets.UTF_8));
+                String expectedJson = mapper.writeValueAsString(
+                                new KeysetPage<>(Arrays.asList(row1, row2), 2, nextCursor));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_last_page_of_articles_using_cursor() throws Exception {
+                // arrange
+
+                Articles row3 = Articles.builder()
+                                .id(3L)
+                                .title("title3")
+                                .url("https://example.org/3")
+                                .explanation("explanation3")
+                                .email("author3@ucsb.edu")
+                                .dateAdded(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+
+                String cursor = Base64.getUrlEncoder().withoutPadding()
+                                .encodeToString("2".getBytes(StandardCharsets.UTF_8));
+                when(articlesRepository.findByIdGreaterThanOrderByIdAsc(eq(2L), eq(Limit.of(51))))
+                                .thenReturn(Arrays.asList(row3));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/articles/page?cursor=" + cursor))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(articlesRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(2L), eq(Limit.of(51)));
+                String expectedJson = mapper.writeValueAsString(
+                                new KeysetPage<>(Arrays.asList(row3), 1, null));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // Tests for /api/articles/all/stream
+
+        @Test
+        public void logged_out_users_cannot_get_all_stream() throws Exception {
+                mockMvc.perform(get("/api/articles/all/stream"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_stream_all_articles() throws Exception {
+                // arrange
+
+                Articles row1 = Articles.builder()
+                                .id(1L)
+                                .title("title1")
+                                .url("https://example.org/1")
+                                .explanation("explanation1")
+                                .email("author1@ucsb.edu")
+                                .dateAdded(LocalDateTime.parse("2022-01-01T00:00:00"))
+                                .build();
+                Articles row2 = Articles.builder()
+                                .id(2L)
+                                .title("title2")
+                                .url("https://example.org/2")
+                                .explanation("explanation2")
+                                .email("author2@ucsb.edu")
+                                .dateAdded(LocalDateTime.parse("2022-01-02T00:00:00"))
+                                .build();
+
+                List<Articles> expected = Arrays.asList(row1, row2);
+                when(articlesRepository.streamAllBy()).thenReturn(expected.stream());
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/articles/all/stream"))
+                                .andExpect(status().isOk())
+                                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                                .andReturn();
+
+                // assert
+                verify(articlesRepository, times(1)).streamAllBy();
+                verify(entityManager, times(2)).detach(any(Articles.class));
+                String expectedJson = mapper.writeValueAsString(expected);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // Tests for the /api/articles/bulk endpoints
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_post_bulk() throws Exception {
+                mockMvc.perform(post("/api/articles/bulk").contentType(MediaType.APPLICATION_JSON).content("[]").with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_post_several_articles() throws Exception {
+                // arrange
+                Articles first = Articles.builder().id(7L).title("Intro").url("https://a.example").explanation("first").email("a@ucsb.edu").dateAdded(LocalDateTime.parse("2022-01-03T00:00:00")).build();
+                Articles second = Articles.builder().title("Outro").url("https://b.example").explanation("second").email("b@ucsb.edu").dateAdded(LocalDateTime.parse("2023-01-03T00:00:00")).build();
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/articles/bulk")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(mapper.writeValueAsString(List.of(first, second)))
+                                        .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert: ids sent by the client are ignored
+                first.setId(0);
+                verify(entityManager, times(1)).persist(first);
+                verify(entityManager, times(1)).persist(second);
+                BulkResult expected = new BulkResult(2, 0,
+                                List.of(new BulkResult.Item(0L, 201), new BulkResult.Item(0L, 201)));
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_update_several_articles_and_missing_ones_are_reported() throws Exception {
+                // arrange
+                Articles orig = Articles.builder().id(7L).title("Intro").url("https://a.example").explanation("first").email("a@ucsb.edu").dateAdded(LocalDateTime.parse("2022-01-03T00:00:00")).build();
+                Articles edited = Articles.builder().id(7L).title("Outro").url("https://b.example").explanation("second").email("b@ucsb.edu").dateAdded(LocalDateTime.parse("2023-01-03T00:00:00")).build();
+                Articles missing = Articles.builder().id(8L).title("Outro").url("https://b.example").explanation("second").email("b@ucsb.edu").dateAdded(LocalDateTime.parse("2023-01-03T00:00:00")).build();
+                when(articlesRepository.findAllById(eq(List.of(7L, 8L)))).thenReturn(List.of(orig));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/articles/bulk")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(mapper.writeValueAsString(List.of(edited, missing)))
+                                        .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                assertEquals(edited, orig);
+                BulkResult expected = new BulkResult(1, 1,
+                                List.of(new BulkResult.Item(7L, 200), new BulkResult.Item(8L, 404)));
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_delete_several_articles_and_missing_ones_are_reported() throws Exception {
+                // arrange
+                Articles row = Articles.builder().id(7L).title("Intro").url("https://a.example").explanation("first").email("a@ucsb.edu").dateAdded(LocalDateTime.parse("2022-01-03T00:00:00")).build();
+                when(articlesRepository.findAllById(eq(List.of(7L, 8L)))).thenReturn(List.of(row));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                delete("/api/articles/bulk")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(mapper.writeValueAsString(List.of(7L, 8L)))
+                                        .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(articlesRepository, times(1)).deleteAll(List.of(row));
+                BulkResult expected = new BulkResult(1, 1,
+                                List.of(new BulkResult.Item(7L, 200), new BulkResult.Item(8L, 404)));
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        // Tests for PATCH /api/articles
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_patch_one_field_of_an_article() throws Exception {
+                // arrange
+                Articles row = Articles.builder().id(7L).title("Intro").url("https://a.example").explanation("first").email("a@ucsb.edu").dateAdded(LocalDateTime.parse("2022-01-03T00:00:00")).build();
+                Articles expected = Articles.builder().id(7L).title("Intro").url("https://a.example").explanation("first").email("a@ucsb.edu").dateAdded(LocalDateTime.parse("2022-01-03T00:00:00")).build();
+                expected.setTitle("Outro");
+                expected.setVersion(1);
+                when(articlesRepository.findById(eq(7L))).thenReturn(Optional.of(row));
+                Query update = mock(Query.class);
+                when(entityManager.createQuery("update articles e set e.title = :title, e.version = e.version + 1 "
+                        + "where e.id = :id and e.version = :version")).thenReturn(update);
+                when(update.executeUpdate()).thenReturn(1);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/articles?id=7")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content("{\"id\": 99, \"title\": \"Outro\"}")
+                                        .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(update, times(1)).setParameter("id", 7L);
+                verify(update, times(1)).executeUpdate(); // the id in the body is ignored
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void patching_an_article_without_changing_anything_writes_nothing() throws Exception {
+                // arrange
+                Articles row = Articles.builder().id(7L).title("Intro").url("https://a.example").explanation("first").email("a@ucsb.edu").dateAdded(LocalDateTime.parse("2022-01-03T00:00:00")).build();
+                when(articlesRepository.findById(eq(7L))).thenReturn(Optional.of(row));
+                String unchanged = "{\"title\": " + mapper.valueToTree(row).get("title") + "}";
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/articles?id=7")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(unchanged)
+                                        .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(entityManager, never()).createQuery(anyString());
+                assertEquals(mapper.writeValueAsString(row), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_cannot_patch_an_article_that_does_not_exist() throws Exception {
+                // arrange
+                when(articlesRepository.findById(eq(7L))).thenReturn(Optional.empty());
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/articles?id=7")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content("{\"title\": \"Outro\"}")
+                                        .with(csrf()))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                verify(entityManager, never()).createQuery(anyString());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Articles with id 7 not found", json.get("message"));
+        }
+
+        // Tests for If-Match on PUT, PATCH and DELETE /api/articles
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_edit_an_article_at_the_version_they_read() throws Exception {
+                // arrange
+                Articles edited = Articles.builder().id(7L).title("Intro").build();
+                when(articlesRepository.updateByIdAndVersion(eq(7L), eq(3L), any())).thenReturn(1);
+                String table = tableVersionService.token(Articles.class);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                        put("/api/articles?id=7")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .header("If-Match", "\"3\"")
+                            .content(mapper.writeValueAsString(edited))
+                            .with(csrf()))
+                        .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(articlesRepository, never()).updateById(anyLong(), any());
+                verify(articlesRepository, never()).findById(any()); // the new version is known without reading the row
+                edited.setVersion(4);
+                assertEquals("\"4." + table + "\"", response.getResponse().getHeader("ETag"));
+                assertEquals(mapper.writeValueAsString(edited), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_cannot_edit_an_article_changed_since_they_read_it() throws Exception {
+                // arrange
+                Articles edited = Articles.builder().id(7L).title("Intro").build();
+                when(articlesRepository.updateByIdAndVersion(eq(7L), eq(3L), any())).thenReturn(0);
+                when(articlesRepository.existsById(eq(7L))).thenReturn(true);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                        put("/api/articles?id=7")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .header("If-Match", "\"3\"")
+                            .content(mapper.writeValueAsString(edited))
+                            .with(csrf()))
+                        .andExpect(status().isPreconditionFailed()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("PreconditionFailedException", json.get("type"));
+                assertEquals("Articles with id 7 has been changed since it was read", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_cannot_delete_an_article_changed_since_they_read_it() throws Exception {
+                // arrange
+                when(articlesRepository.removeByIdAndVersion(eq(7L), eq(3L))).thenReturn(0);
+                when(articlesRepository.existsById(eq(7L))).thenReturn(true);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                        delete("/api/articles?id=7")
+                            .header("If-Match", "\"3\"")
+                            .with(csrf()))
+                        .andExpect(status().isPreconditionFailed()).andReturn();
+
+                // assert
+                verify(articlesRepository, never()).removeById(anyLong());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Articles with id 7 has been changed since it was read", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_cannot_patch_an_article_changed_since_they_read_it() throws Exception {
+                // arrange
+                Articles row = Articles.builder().id(7L).title("Intro").version(4).build();
+                when(articlesRepository.findById(eq(7L))).thenReturn(Optional.of(row));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                        patch("/api/articles?id=7")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .header("If-Match", "\"3\"")
+                            .content("{}")
+                            .with(csrf()))
+                        .andExpect(status().isPreconditionFailed()).andReturn();
+
+                // assert
+                verify(entityManager, never()).createQuery(anyString());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Articles with id 7 has been changed since it was read", json.get("message"));
+        }
+
+        // Tests for POST /api/articles/lookup
+
+        @Test
+        public void logged_out_users_cannot_lookup_articles() throws Exception {
+                mockMvc.perform(post("/api/articles/lookup")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("[3, 1, 2, 3]")
+                                .with(csrf()))
+                        .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_lookup_articles_in_request_order() throws Exception {
+                // arrange
+                Articles first = Articles.builder().id(1L).title("Intro").build();
+                Articles third = Articles.builder().id(3L).title("Intro").build();
+                when(articlesRepository.findAllById(eq(List.of(3L, 1L, 2L)))).thenReturn(List.of(first, third));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                        post("/api/articles/lookup")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("[3, 1, 2, 3]")
+                            .with(csrf()))
+                        .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(articlesRepository, times(1)).findAllById(any());
+                LookupResult<Articles> expected = new LookupResult<>(List.of(third, first), List.of(2L));
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        // Tests for fields= on GET /api/articles/all, /api/articles/page and /api/articles?id=
+
+        @SuppressWarnings("unchecked")
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_some_fields_of_all_articles() throws Exception {
+                // arrange
+                TypedQuery<Object[]> query = mock(TypedQuery.class);
+                when(entityManager.createQuery("select e.id, e.title, e.version from articles e order by e.id", Object[].class))
+                                .thenReturn(query);
+                when(query.getResultList()).thenReturn(List.<Object[]>of(new Object[] { 1L, "Intro", 0L }, new Object[] { 2L, "Outro", 3L }));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/articles/all?fields=title"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(articlesRepository, never()).findAll();
+                assertEquals("[{\"id\":1,\"title\":\"Intro\",\"version\":0},{\"id\":2,\"title\":\"Outro\",\"version\":3}]",
+                                response.getResponse().getContentAsString());
+        }
+
+        @SuppressWarnings("unchecked")
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_a_page_of_some_fields_of_articles() throws Exception {
+                // arrange
+                TypedQuery<Object[]> query = mock(TypedQuery.class);
+                when(entityManager.createQuery("select e.id, e.title, e.version from articles e where e.id > :id order by e.id", Object[].class))
+                                .thenReturn(query);
+                when(query.getResultList()).thenReturn(List.<Object[]>of(new Object[] { 1L, "Intro", 0L }, new Object[] { 2L, "Outro", 3L }));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/articles/page?limit=1&fields=title"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(query, times(1)).setParameter("id", 0L);
+                verify(query, times(1)).setMaxResults(2);
+                Map<String, Object> json = responseToJson(response);
+                assertEquals(List.of(Map.of("id", 1, "title", "Intro", "version", 0)), json.get("content"));
+                assertEquals("MQ", json.get("nextCursor")); // "1", base64 encoded
+        }
+
+        @SuppressWarnings("unchecked")
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_some_fields_of_article_by_id() throws Exception {
+                // arrange
+                TypedQuery<Object[]> query = mock(TypedQuery.class);
+                when(entityManager.createQuery("select e.id, e.title, e.version from articles e where e.id = :id", Object[].class))
+                                .thenReturn(query);
+                when(query.getResultList()).thenReturn(List.<Object[]>of(new Object[] { 7L, "Intro", 3L }));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/articles?id=7&fields=title"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", startsWith("\"3."))).andReturn();
+
+                // assert
+                verify(query, times(1)).setParameter("id", 7L);
+                verify(articlesRepository, never()).findById(anyLong());
+                assertEquals("{\"id\":7,\"title\":\"Intro\",\"version\":3}", response.getResponse().getContentAsString());
+        }
+
+        @SuppressWarnings("unchecked")
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_404_for_some_fields_of_a_missing_article() throws Exception {
+                // arrange
+                TypedQuery<Object[]> query = mock(TypedQuery.class);
+                when(entityManager.createQuery("select e.id, e.title, e.version from articles e where e.id = :id", Object[].class))
+                                .thenReturn(query);
+                when(query.getResultList()).thenReturn(List.of());
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/articles?id=7&fields=title"))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Articles with id 7 not found", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void asking_for_a_field_articles_do_not_have_is_a_bad_request() throws Exception {
+                // act
+                MvcResult response = mockMvc.perform(get("/api/articles/all?fields=title,stars"))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(entityManager, never()).createQuery(anyString(), eq(Object[].class));
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Articles has no field(s) stars", json.get("message"));
+        }
+
+        // Tests for filter= and sort= on GET /api/articles/page
+
+        @SuppressWarnings("unchecked")
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_a_filtered_sorted_page_of_articles() throws Exception {
+                // arrange
+                Articles first = Articles.builder().id(1L).title("Intro to Java").build();
+                Articles second = Articles.builder().id(2L).title("Intro to Spring").build();
+                Window<Articles> window = Window.from(List.of(first, second),
+                                i -> ScrollPosition.forward(Map.of("id", 2L)), true);
+                when(articlesRepository.findBy(any(Specification.class), any())).thenReturn(window);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/articles/page?limit=2&filter=title~intro&sort=-dateAdded"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(articlesRepository, times(1)).findBy(any(Specification.class), any());
+                verify(articlesRepository, never()).findByIdGreaterThanOrderByIdAsc(anyLong(), any());
+                String nextCursor = Base64.getUrlEncoder().withoutPadding()
+                                .encodeToString("{\"id\":2}".getBytes(StandardCharsets.UTF_8));
+                KeysetPage<Articles> expected = new KeysetPage<>(List.of(first, second), 2, nextCursor);
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @SuppressWarnings("unchecked")
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void filtering_articles_on_a_field_they_do_not_have_is_a_bad_request() throws Exception {
+                // act
+                MvcResult response = mockMvc.perform(get("/api/articles/page?filter=rating>=4"))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(articlesRepository, never()).findBy(any(Specification.class), any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Invalid filter or sort: Articles has no field rating", json.get("message"));
+        }
+
+        // Tests for GET /api/articles/changes
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_the_articles_changed_since_a_version() throws Exception {
+                // arrange: one row saved and one deleted since the version
+                String since = tableVersionService.token(Articles.class);
+                changeLogService.record(Articles.class, ChangeLogService.Kind.CREATED, List.of(1L, 2L));
+                changeLogService.record(Articles.class, ChangeLogService.Kind.DELETED, List.of(2L));
+                Articles first = Articles.builder().id(1L).title("Intro to Java").build();
+                when(articlesRepository.findAllById(eq(List.of(1L)))).thenReturn(List.of(first));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/articles/changes?since=" + since))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(articlesRepository, times(1)).findAllById(any());
+                Delta<Articles> expected = new Delta<>(List.of(first), List.of(2L),
+                                tableVersionService.token(Articles.class));
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void articles_changes_since_a_version_from_before_a_restart_are_gone() throws Exception {
+                // act
+                MvcResult response = mockMvc.perform(get("/api/articles/changes?since=stale-3"))
+                                .andExpect(status().isGone()).andReturn();
+
+                // assert
+                verify(articlesRepository, never()).findAllById(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("The changes to Articles since version stale-3 are no longer known; read all rows again",
+                                json.get("message"));
+        }
+
+        // Tests for GET /api/articles/events
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_is_sent_an_event_for_each_article_written() throws Exception {
+                // arrange
+                MvcResult response = mockMvc.perform(get("/api/articles/events"))
+                                .andExpect(request().asyncStarted()).andReturn();
+
+                // act
+                long version = changeLogService.record(Articles.class, ChangeLogService.Kind.UPDATED, List.of(7L));
+
+                // assert: the event is sent by another thread
+                String event = "event:updated\ndata:{\"id\":7}\nid:" + tableVersionService.token(Articles.class, version) + "\n\n";
+                long deadline = System.currentTimeMillis() + 5000;
+                while (!response.getResponse().getContentAsString().contains(event) && System.currentTimeMillis() < deadline) {
+                        Thread.sleep(1);
+                }
+                assertEquals("text/event-stream", response.getResponse().getContentType());
+                assertEquals(event, response.getResponse().getContentAsString());
+        }
 }
@@ -29,10 +29,31 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 import java.time.LocalDateTime;
 
 import java.util.Optional;
-
+import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
+import edu.ucsb.cs156.example.models.BulkResult;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.models.Delta;
+import edu.ucsb.cs156.example.services.ChangeLogService;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import edu.ucsb.cs156.example.models.LookupResult;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+import static org.hamcrest.Matchers.startsWith;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -46,6 +67,12 @@ public class HelpRequestControllerTests extends ControllerTestCase{
     @MockBean
     UserRepository userRepository;
 
+    @Autowired
+    ChangeLogService changeLogService;
+
+    @Autowired
+    TableVersionService tableVersionService;
+
     @Test
     public void logged_out_users_cannot_get_all() throws Exception {
         mockMvc.perform(get("/api/helprequests/all"))
@@ -218,7 +245,7 @@ public class HelpRequestControllerTests extends ControllerTestCase{
                                 .solved(true)
                                 .build(); 
 
-            when(helpRequestRepository.findById(eq(15L))).thenReturn(Optional.of(helpRequest1));
+            when(helpRequestRepository.removeById(eq(15L))).thenReturn(1);
 
             // act
             MvcResult response = mockMvc.perform(
@@ -227,8 +254,7 @@ public class HelpRequestControllerTests extends ControllerTestCase{
                             .andExpect(status().isOk()).andReturn();
 
             // assert
-            verify(helpRequestRepository, times(1)).findById(15L);
-            verify(helpRequestRepository, times(1)).delete(any());
+            verify(helpRequestRepository, times(1)).removeById(15L);
 
             Map<String, Object> json = responseToJson(response);
             assertEquals("Help Request with id 15 deleted", json.get("message"));
@@ -240,7 +266,7 @@ public class HelpRequestControllerTests extends ControllerTestCase{
                     throws Exception {
             // arrange
 
-            when(helpRequestRepository.findById(eq(15L))).thenReturn(Optional.empty());
+            when(helpRequestRepository.removeById(eq(15L))).thenReturn(0);
 
             // act
             MvcResult response = mockMvc.perform(
@@ -249,7 +275,7 @@ public class HelpRequestControllerTests extends ControllerTestCase{
                             .andExpect(status().isNotFound()).andReturn();
 
             // assert
-            verify(helpRequestRepository, times(1)).findById(15L);
+            verify(helpRequestRepository, times(1)).removeById(15L);
             Map<String, Object> json = responseToJson(response);
             assertEquals("HelpRequest with id 15 not found", json.get("message"));
     }
@@ -281,8 +307,9 @@ public class HelpRequestControllerTests extends ControllerTestCase{
                                     .build(); 
 
             String requestBody = mapper.writeValueAsString(helpRequestEdited);
+            helpRequestEdited.setId(67L);
 
-            when(helpRequestRepository.findById(eq(67L))).thenReturn(Optional.of(helpReuqestOrig));
+            when(helpRequestRepository.updateById(eq(67L), eq(helpRequestEdited))).thenReturn(1);
 
             // act
             MvcResult response = mockMvc.perform(
@@ -294,10 +321,11 @@ public class HelpRequestControllerTests extends ControllerTestCase{
                             .andExpect(status().isOk()).andReturn();
 
             // assert
-            verify(helpRequestRepository, times(1)).findById(67L);
-            verify(helpRequestRepository, times(1)).save(helpRequestEdited); // should be saved with correct user
+            verify(helpRequestRepository, times(1)).updateById(eq(67L), any());
+            verify(helpRequestRepository, never()).findById(any()); // the new version is not known, so no ETag is sent
+            assertEquals(null, response.getResponse().getHeader("ETag"));
             String responseString = response.getResponse().getContentAsString();
-            assertEquals(requestBody, responseString);
+                assertEquals(withoutVersion(helpRequestEdited), responseString);
     }
 
     @WithMockUser(roles = { "ADMIN", "USER" })
@@ -318,7 +346,7 @@ public class HelpRequestControllerTests extends ControllerTestCase{
 
             String requestBody = mapper.writeValueAsString(editedHelpRequest);
 
-            when(helpRequestRepository.findById(eq(67L))).thenReturn(Optional.empty());
+            when(helpRequestRepository.updateById(eq(67L), any())).thenReturn(0);
 
             // act
             MvcResult response = mockMvc.perform(
@@ -330,9 +358,619 @@ public class HelpRequestControllerTests extends ControllerTestCase{
                             .andExpect(status().isNotFound()).andReturn();
 
             // assert
-            verify(helpRequestRepository, times(1)).findById(67L);
+            verify(helpRequestRepository, times(1)).updateById(eq(67L), any());
             Map<String, Object> json = responseToJson(response);
             assertEquals("HelpRequest with id 67 not found", json.get("message"));
 
     }
-}
\ No newline at end of file
+
+    // Tests for /api/helprequests/page
+
+    @Test
+    public void logged_out_users_cannot_get_page() throws Exception {
+        mockMvc.perform(get("/api/helprequests/page"))
+                        .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_first_page_of_helprequests() throws Exception {
+        // arrange
+
+        HelpRequest row1 = HelpRequest.builder()
+                        .id(1L)
+                        .requesterEmail("student1@ucsb.edu")
+                        .teamId("team1")
+                        .tableOrBreakoutRoom("table1")
+                        .requestTime(LocalDateTime.parse("2022-01-01T00:00:00"))
+                        .explanation("explanation1")
+                        .solved(false)
+                        .build();
+        HelpRequest row2 = HelpRequest.builder()
+                        .id(2L)
+                        .requesterEmail("student2@ucsb.edu")
+                        .teamId("team2")
+                        .tableOrBreakoutRoom("table2")
+                        .requestTime(LocalDateTime.parse("2022-01-02T00:00:00"))
+                        .explanation("explanation2")
+                        .solved(false)
+                        .build();
+        HelpRequest row3 = HelpRequest.builder()
+                        .id(3L)
+                        .requesterEmail("student3@ucsb.edu")
+                        .teamId("team3")
+                        .tableOrBreakoutRoom("table3")
+                        .requestTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                        .explanation("explanation3")
+                        .solved(false)
+                        .build();
+
+        when(helpRequestRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(Limit.of(3))))
+                        .thenReturn(Arrays.asList(row1, row2, row3));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/helprequests/page?limit=2"))
+                        .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(helpRequestRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(Limit.of(3)));
+        String nextCursor = Base64.getUrlEncoder().withoutPadding()
+                        .encodeToString("2".getBytes(StandardCharsets.UTF_8));
+        String expectedJson = mapper.writeValueAsString(
+                        new KeysetPage<>(Arrays.asList(row1, row2), 2, nextCursor));
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_last_page_of_helprequests_using_cursor() throws Exception {
+        // arrange
+
+        HelpRequest row3 = HelpRequest.builder()
+                        .id(3L)
+                        .requesterEmail("student3@ucsb.edu")
+                        .teamId("team3")
+                        .tableOrBreakoutRoom("table3")
+                        .requestTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                        .explanation("explanation3")
+                        .solved(false)
+                        .build();
+
+        String cursor = Base64.getUrlEncoder().withoutPadding()
+                        .encodeToString("2".getBytes(StandardCharsets.UTF_8));
+        when(helpRequestRepository.findByIdGreaterThanOrderByIdAsc(eq(2L), eq(Limit.of(51))))
+                        .thenReturn(Arrays.asList(row3));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/helprequests/page?cursor=" + cursor))
+                        .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(helpRequestRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(2L), eq(Limit.of(51)));
+        String expectedJson = mapper.writeValueAsString(
+                        new KeysetPage<>(Arrays.asList(row3), 1, null));
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    // Tests for /api/helprequests/all/stream
+
+    @Test
+    public void logged_out_users_cannot_get_all_stream() throws Exception {
+        mockMvc.perform(get("/api/helprequests/all/stream"))
+                        .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_stream_all_helprequests() throws Exception {
+        // arrange
+
+        HelpRequest row1 = HelpRequest.builder()
+                        .id(1L)
+                        .requesterEmail("student1@ucsb.edu")
+                        .teamId("team1")
+                        .tableOrBreakoutRoom("table1")
+                        .requestTime(LocalDateTime.parse("2022-01-01T00:00:00"))
+                        .explanation("explanation1")
+                        .solved(false)
+                        .build();
+        HelpRequest row2 = HelpRequest.builder()
+                        .id(2L)
+                        .requesterEmail("student2@ucsb.edu")
+                        .teamId("team2")
+                        .tableOrBreakoutRoom("table2")
+                        .requestTime(LocalDateTime.parse("2022-01-02T00:00:00"))
+                        .explanation("explanation2")
+                        .solved(false)
+                        .build();
+
+        List<HelpRequest> expected = Arrays.asList(row1, row2);
+        when(helpRequestRepository.streamAllBy()).thenReturn(expected.stream());
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/helprequests/all/stream"))
+                        .andExpect(status().isOk())
+                        .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                        .andReturn();
+
+        // assert
+        verify(helpRequestRepository, times(1)).streamAllBy();
+        verify(entityManager, times(2)).detach(any(HelpRequest.class));
+        String expectedJson = mapper.writeValueAsString(expected);
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    // Tests for the /api/helprequests/bulk endpoints
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_regular_users_cannot_post_bulk() throws Exception {
+        mockMvc.perform(post("/api/helprequests/bulk").contentType(MediaType.APPLICATION_JSON).content("[]").with(csrf()))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_can_post_several_help_requests() throws Exception {
+        // arrange
+        HelpRequest first = HelpRequest.builder().id(7L).requesterEmail("a@ucsb.edu").teamId("s22-5pm-3").tableOrBreakoutRoom("7").requestTime(LocalDateTime.parse("2022-01-03T00:00:00")).explanation("stuck").solved(false).build();
+        HelpRequest second = HelpRequest.builder().requesterEmail("b@ucsb.edu").teamId("s22-6pm-4").tableOrBreakoutRoom("11").requestTime(LocalDateTime.parse("2023-01-03T00:00:00")).explanation("done").solved(true).build();
+
+        // act
+        MvcResult response = mockMvc.perform(
+                post("/api/helprequests/bulk")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(List.of(first, second)))
+                    .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert: ids sent by the client are ignored
+        first.setId(0);
+        verify(entityManager, times(1)).persist(first);
+        verify(entityManager, times(1)).persist(second);
+        BulkResult expected = new BulkResult(2, 0,
+                List.of(new BulkResult.Item(0L, 201), new BulkResult.Item(0L, 201)));
+        assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_can_update_several_help_requests_and_missing_ones_are_reported() throws Exception {
+        // arrange
+        HelpRequest orig = HelpRequest.builder().id(7L).requesterEmail("a@ucsb.edu").teamId("s22-5pm-3").tableOrBreakoutRoom("7").requestTime(LocalDateTime.parse("2022-01-03T00:00:00")).explanation("stuck").solved(false).build();
+        HelpRequest edited = HelpRequest.builder().id(7L).requesterEmail("b@ucsb.edu").teamId("s22-6pm-4").tableOrBreakoutRoom("11").requestTime(LocalDateTime.parse("2023-01-03T00:00:00")).explanation("done").solved(true).build();
+        HelpRequest missing = HelpRequest.builder().id(8L).requesterEmail("b@ucsb.edu").teamId("s22-6pm-4").tableOrBreakoutRoom("11").requestTime(LocalDateTime.parse("2023-01-03T00:00:00")).explanation("done").solved(true).build();
+        when(helpRequestRepository.findAllById(eq(List.of(7L, 8L)))).thenReturn(List.of(orig));
+
+        // act
+        MvcResult response = mockMvc.perform(
+                put("/api/helprequests/bulk")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(List.of(edited, missing)))
+                    .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        assertEquals(edited, orig);
+        BulkResult expected = new BulkResult(1, 1,
+                List.of(new BulkResult.Item(7L, 200), new BulkResult.Item(8L, 404)));
+        assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_can_delete_several_help_requests_and_missing_ones_are_reported() throws Exception {
+        // arrange
+        HelpRequest row = HelpRequest.builder().id(7L).requesterEmail("a@ucsb.edu").teamId("s22-5pm-3").tableOrBreakoutRoom("7").requestTime(LocalDateTime.parse("2022-01-03T00:00:00")).explanation("stuck").solved(false).build();
+        when(helpRequestRepository.findAllById(eq(List.of(7L, 8L)))).thenReturn(List.of(row));
+
+        // act
+        MvcResult response = mockMvc.perform(
+                delete("/api/helprequests/bulk")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(List.of(7L, 8L)))
+                    .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(helpRequestRepository, times(1)).deleteAll(List.of(row));
+        BulkResult expected = new BulkResult(1, 1,
+                List.of(new BulkResult.Item(7L, 200), new BulkResult.Item(8L, 404)));
+        assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+    }
+
+    // Tests for PATCH /api/helprequests
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_can_patch_one_field_of_a_help_request() throws Exception {
+        // arrange
+        HelpRequest row = HelpRequest.builder().id(7L).requesterEmail("a@ucsb.edu").teamId("s22-5pm-3").tableOrBreakoutRoom("7").requestTime(LocalDateTime.parse("2022-01-03T00:00:00")).explanation("stuck").solved(false).build();
+        HelpRequest expected = HelpRequest.builder().id(7L).requesterEmail("a@ucsb.edu").teamId("s22-5pm-3").tableOrBreakoutRoom("7").requestTime(LocalDateTime.parse("2022-01-03T00:00:00")).explanation("stuck").solved(false).build();
+        expected.setSolved(true);
+        expected.setVersion(1);
+        when(helpRequestRepository.findById(eq(7L))).thenReturn(Optional.of(row));
+        Query update = mock(Query.class);
+        when(entityManager.createQuery("update helprequest e set e.solved = :solved, e.version = e.version + 1 "
+                + "where e.id = :id and e.version = :version")).thenReturn(update);
+        when(update.executeUpdate()).thenReturn(1);
+
+        // act
+        MvcResult response = mockMvc.perform(
+                patch("/api/helprequests?id=7")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"id\": 99, \"solved\": true}")
+                    .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(update, times(1)).setParameter("id", 7L);
+        verify(update, times(1)).executeUpdate(); // the id in the body is ignored
+        assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void patching_a_help_request_without_changing_anything_writes_nothing() throws Exception {
+        // arrange
+        HelpRequest row = HelpRequest.builder().id(7L).requesterEmail("a@ucsb.edu").teamId("s22-5pm-3").tableOrBreakoutRoom("7").requestTime(LocalDateTime.parse("2022-01-03T00:00:00")).explanation("stuck").solved(false).build();
+        when(helpRequestRepository.findById(eq(7L))).thenReturn(Optional.of(row));
+        String unchanged = "{\"solved\": " + mapper.valueToTree(row).get("solved") + "}";
+
+        // act
+        MvcResult response = mockMvc.perform(
+                patch("/api/helprequests?id=7")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(unchanged)
+                    .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(entityManager, never()).createQuery(anyString());
+        assertEquals(mapper.writeValueAsString(row), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_cannot_patch_a_help_request_that_does_not_exist() throws Exception {
+        // arrange
+        when(helpRequestRepository.findById(eq(7L))).thenReturn(Optional.empty());
+
+        // act
+        MvcResult response = mockMvc.perform(
+                patch("/api/helprequests?id=7")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"solved\": true}")
+                    .with(csrf()))
+                .andExpect(status().isNotFound()).andReturn();
+
+        // assert
+        verify(entityManager, never()).createQuery(anyString());
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("HelpRequest with id 7 not found", json.get("message"));
+    }
+
+    // Tests for If-Match on PUT, PATCH and DELETE /api/helprequests
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_can_edit_a_help_request_at_the_version_they_read() throws Exception {
+        // arrange
+        HelpRequest edited = HelpRequest.builder().id(7L).teamId("s22-5pm-3").build();
+        when(helpRequestRepository.updateByIdAndVersion(eq(7L), eq(3L), any())).thenReturn(1);
+        String table = tableVersionService.token(HelpRequest.class);
+
+        // act
+        MvcResult response = mockMvc.perform(
+                put("/api/helprequests?id=7")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header("If-Match", "\"3\"")
+                    .content(mapper.writeValueAsString(edited))
+                    .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(helpRequestRepository, never()).updateById(anyLong(), any());
+        verify(helpRequestRepository, never()).findById(any()); // the new version is known without reading the row
+        edited.setVersion(4);
+        assertEquals("\"4." + table + "\"", response.getResponse().getHeader("ETag"));
+        assertEquals(mapper.writeValueAsString(edited), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_cannot_edit_a_help_request_changed_since_they_read_it() throws Exception {
+        // arrange
+        HelpRequest edited = HelpRequest.builder().id(7L).teamId("s22-5pm-3").build();
+        when(helpRequestRepository.updateByIdAndVersion(eq(7L), eq(3L), any())).thenReturn(0);
+        when(helpRequestRepository.existsById(eq(7L))).thenReturn(true);
+
+        // act
+        MvcResult response = mockMvc.perform(
+                put("/api/helprequests?id=7")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header("If-Match", "\"3\"")
+                    .content(mapper.writeValueAsString(edited))
+                    .with(csrf()))
+                .andExpect(status().isPreconditionFailed()).andReturn();
+
+        // assert
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("PreconditionFailedException", json.get("type"));
+        assertEquals("HelpRequest with id 7 has been changed since it was read", json.get("message"));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_cannot_delete_a_help_request_changed_since_they_read_it() throws Exception {
+        // arrange
+        when(helpRequestRepository.removeByIdAndVersion(eq(7L), eq(3L))).thenReturn(0);
+        when(helpRequestRepository.existsById(eq(7L))).thenReturn(true);
+
+        // act
+        MvcResult response = mockMvc.perform(
+                delete("/api/helprequests?id=7")
+                    .header("If-Match", "\"3\"")
+                    .with(csrf()))
+                .andExpect(status().isPreconditionFailed()).andReturn();
+
+        // assert
+        verify(helpRequestRepository, never()).removeById(anyLong());
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("HelpRequest with id 7 has been changed since it was read", json.get("message"));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_cannot_patch_a_help_request_changed_since_they_read_it() throws Exception {
+        // arrange
+        HelpRequest row = HelpRequest.builder().id(7L).teamId("s22-5pm-3").version(4).build();
+        when(helpRequestRepository.findById(eq(7L))).thenReturn(Optional.of(row));
+
+        // act
+        MvcResult response = mockMvc.perform(
+                patch("/api/helprequests?id=7")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header("If-Match", "\"3\"")
+                    .content("{}")
+                    .with(csrf()))
+                .andExpect(status().isPreconditionFailed()).andReturn();
+
+        // assert
+        verify(entityManager, never()).createQuery(anyString());
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("HelpRequest with id 7 has been changed since it was read", json.get("message"));
+    }
+
+    // Tests for POST /api/helprequests/lookup
+
+    @Test
+    public void logged_out_users_cannot_lookup_help_requests() throws Exception {
+        mockMvc.perform(post("/api/helprequests/lookup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[3, 1, 2, 3]")
+                        .with(csrf()))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_lookup_help_requests_in_request_order() throws Exception {
+        // arrange
+        HelpRequest first = HelpRequest.builder().id(1L).teamId("s22-5pm-3").build();
+        HelpRequest third = HelpRequest.builder().id(3L).teamId("s22-5pm-3").build();
+        when(helpRequestRepository.findAllById(eq(List.of(3L, 1L, 2L)))).thenReturn(List.of(first, third));
+
+        // act
+        MvcResult response = mockMvc.perform(
+                post("/api/helprequests/lookup")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("[3, 1, 2, 3]")
+                    .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(helpRequestRepository, times(1)).findAllById(any());
+        LookupResult<HelpRequest> expected = new LookupResult<>(List.of(third, first), List.of(2L));
+        assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+    }
+
+    // Tests for fields= on GET /api/helprequests/all, /api/helprequests/page and /api/helprequests?id=
+
+    @SuppressWarnings("unchecked")
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_some_fields_of_all_help_requests() throws Exception {
+        // arrange
+        TypedQuery<Object[]> query = mock(TypedQuery.class);
+        when(entityManager.createQuery("select e.id, e.teamId, e.version from helprequest e order by e.id", Object[].class))
+                .thenReturn(query);
+        when(query.getResultList()).thenReturn(List.<Object[]>of(new Object[] { 1L, "s22-5pm-3", 0L }, new Object[] { 2L, "s22-6pm-4", 3L }));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/helprequests/all?fields=teamId"))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(helpRequestRepository, never()).findAll();
+        assertEquals("[{\"id\":1,\"teamId\":\"s22-5pm-3\",\"version\":0},{\"id\":2,\"teamId\":\"s22-6pm-4\",\"version\":3}]",
+                response.getResponse().getContentAsString());
+    }
+
+    @SuppressWarnings("unchecked")
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_a_page_of_some_fields_of_help_requests() throws Exception {
+        // arrange
+        TypedQuery<Object[]> query = mock(TypedQuery.class);
+        when(entityManager.createQuery("select e.id, e.teamId, e.version from helprequest e where e.id > :id order by e.id", Object[].class))
+                .thenReturn(query);
+        when(query.getResultList()).thenReturn(List.<Object[]>of(new Object[] { 1L, "s22-5pm-3", 0L }, new Object[] { 2L, "s22-6pm-4", 3L }));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/helprequests/page?limit=1&fields=teamId"))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(query, times(1)).setParameter("id", 0L);
+        verify(query, times(1)).setMaxResults(2);
+        Map<String, Object> json = responseToJson(response);
+        assertEquals(List.of(Map.of("id", 1, "teamId", "s22-5pm-3", "version", 0)), json.get("content"));
+        assertEquals("MQ", json.get("nextCursor")); // "1", base64 encoded
+    }
+
+    @SuppressWarnings("unchecked")
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_some_fields_of_help_request_by_id() throws Exception {
+        // arrange
+        TypedQuery<Object[]> query = mock(TypedQuery.class);
+        when(entityManager.createQuery("select e.id, e.teamId, e.version from helprequest e where e.id = :id", Object[].class))
+                .thenReturn(query);
+        when(query.getResultList()).thenReturn(List.<Object[]>of(new Object[] { 7L, "s22-5pm-3", 3L }));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/helprequests?id=7&fields=teamId"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", startsWith("\"3."))).andReturn();
+
+        // assert
+        verify(query, times(1)).setParameter("id", 7L);
+        verify(helpRequestRepository, never()).findById(anyLong());
+        assertEquals("{\"id\":7,\"teamId\":\"s22-5pm-3\",\"version\":3}", response.getResponse().getContentAsString());
+    }
+
+    @SuppressWarnings("unchecked")
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_gets_404_for_some_fields_of_a_missing_help_request() throws Exception {
+        // arrange
+        TypedQuery<Object[]> query = mock(TypedQuery.class);
+        when(entityManager.createQuery("select e.id, e.teamId, e.version from helprequest e where e.id = :id", Object[].class))
+                .thenReturn(query);
+        when(query.getResultList()).thenReturn(List.of());
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/helprequests?id=7&fields=teamId"))
+                .andExpect(status().isNotFound()).andReturn();
+
+        // assert
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("HelpRequest with id 7 not found", json.get("message"));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void asking_for_a_field_help_requests_do_not_have_is_a_bad_request() throws Exception {
+        // act
+        MvcResult response = mockMvc.perform(get("/api/helprequests/all?fields=teamId,stars"))
+                .andExpect(status().isBadRequest()).andReturn();
+
+        // assert
+        verify(entityManager, never()).createQuery(anyString(), eq(Object[].class));
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("HelpRequest has no field(s) stars", json.get("message"));
+    }
+
+    // Tests for filter= and sort= on GET /api/helprequests/page
+
+    @SuppressWarnings("unchecked")
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_a_filtered_sorted_page_of_help_requests() throws Exception {
+        // arrange
+        HelpRequest first = HelpRequest.builder().id(1L).teamId("s22-5pm-3").solved(false).build();
+        HelpRequest second = HelpRequest.builder().id(2L).teamId("s22-6pm-4").solved(false).build();
+        Window<HelpRequest> window = Window.from(List.of(first, second),
+                i -> ScrollPosition.forward(Map.of("id", 2L)), true);
+        when(helpRequestRepository.findBy(any(Specification.class), any())).thenReturn(window);
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/helprequests/page?limit=2&filter=solved=false&sort=requestTime"))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(helpRequestRepository, times(1)).findBy(any(Specification.class), any());
+        verify(helpRequestRepository, never()).findByIdGreaterThanOrderByIdAsc(anyLong(), any());
+        String nextCursor = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("{\"id\":2}".getBytes(StandardCharsets.UTF_8));
+        KeysetPage<HelpRequest> expected = new KeysetPage<>(List.of(first, second), 2, nextCursor);
+        assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+    }
+
+    @SuppressWarnings("unchecked")
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void filtering_help_requests_on_a_field_they_do_not_have_is_a_bad_request() throws Exception {
+        // act
+        MvcResult response = mockMvc.perform(get("/api/helprequests/page?filter=rating>=4"))
+                .andExpect(status().isBadRequest()).andReturn();
+
+        // assert
+        verify(helpRequestRepository, never()).findBy(any(Specification.class), any());
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("Invalid filter or sort: HelpRequest has no field rating", json.get("message"));
+    }
+
+    // Tests for GET /api/helprequests/changes
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_the_help_requests_changed_since_a_version() throws Exception {
+        // arrange: one row saved and one deleted since the version
+        String since = tableVersionService.token(HelpRequest.class);
+        changeLogService.record(HelpRequest.class, ChangeLogService.Kind.CREATED, List.of(1L, 2L));
+        changeLogService.record(HelpRequest.class, ChangeLogService.Kind.DELETED, List.of(2L));
+        HelpRequest first = HelpRequest.builder().id(1L).teamId("s22-5pm-3").solved(false).build();
+        when(helpRequestRepository.findAllById(eq(List.of(1L)))).thenReturn(List.of(first));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/helprequests/changes?since=" + since))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(helpRequestRepository, times(1)).findAllById(any());
+        Delta<HelpRequest> expected = new Delta<>(List.of(first), List.of(2L),
+                tableVersionService.token(HelpRequest.class));
+        assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void help_requests_changes_since_a_version_from_before_a_restart_are_gone() throws Exception {
+        // act
+        MvcResult response = mockMvc.perform(get("/api/helprequests/changes?since=stale-3"))
+                .andExpect(status().isGone()).andReturn();
+
+        // assert
+        verify(helpRequestRepository, never()).findAllById(any());
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("The changes to HelpRequest since version stale-3 are no longer known; read all rows again",
+                json.get("message"));
+    }
+
+    // Tests for GET /api/helprequests/events
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_is_sent_an_event_for_each_help_request_written() throws Exception {
+        // arrange
+        MvcResult response = mockMvc.perform(get("/api/helprequests/events"))
+                .andExpect(request().asyncStarted()).andReturn();
+
+        // act
+        long version = changeLogService.record(HelpRequest.class, ChangeLogService.Kind.UPDATED, List.of(7L));
+
+        // assert: the event is sent by another thread
+        String event = "event:updated\ndata:{\"id\":7}\nid:" + tableVersionService.token(HelpRequest.class, version) + "\n\n";
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!response.getResponse().getContentAsString().contains(event) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals("text/event-stream", response.getResponse().getContentType());
+        assertEquals(event, response.getResponse().getContentAsString());
+    }
+}
@@ -24,10 +24,29 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 import java.time.LocalDateTime;
 
 import java.util.Optional;
+import jakarta.persistence.Query;
+import edu.ucsb.cs156.example.models.BulkResult;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.models.Delta;
+import edu.ucsb.cs156.example.services.ChangeLogService;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import edu.ucsb.cs156.example.models.LookupResult;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -42,6 +61,12 @@ public class MenuItemReviewsControllerTests extends ControllerTestCase {
     @MockBean
     UserRepository userRepository;
 
+    @Autowired
+    ChangeLogService changeLogService;
+
+    @Autowired
+    TableVersionService tableVersionService;
+
     // Authorization tests for /api/menuitemreviews/all
 
     @Test
@@ -204,7 +229,7 @@ public class MenuItemReviewsControllerTests extends ControllerTestCase {
                                     .comments("Perfect!")
                                     .build();
 
-        when(menuItemsReviewsRepository.findById(eq(15L))).thenReturn(Optional.of(review));
+        when(menuItemsReviewsRepository.removeById(eq(15L))).thenReturn(1);
 
         // act
         MvcResult response = mockMvc.perform(
@@ -213,8 +238,7 @@ public class MenuItemReviewsControllerTests extends ControllerTestCase {
                         .andExpect(status().isOk()).andReturn();
 
         // assert
-        verify(menuItemsReviewsRepository, times(1)).findById(15L);
-        verify(menuItemsReviewsRepository, times(1)).delete(any());
+        verify(menuItemsReviewsRepository, times(1)).removeById(15L);
 
         Map<String, Object> json = responseToJson(response);
         assertEquals("MenuItemReview with id 15 deleted", json.get("message"));
@@ -225,7 +249,7 @@ public class MenuItemReviewsControllerTests extends ControllerTestCase {
     public void admin_tries_to_delete_non_existant_menuitemreview_and_gets_right_error_message()
         throws Exception {
         // arrange
-        when(menuItemsReviewsRepository.findById(eq(15L))).thenReturn(Optional.empty());
+        when(menuItemsReviewsRepository.removeById(eq(15L))).thenReturn(0);
 
         // act
         MvcResult response = mockMvc.perform(
@@ -234,7 +258,7 @@ public class MenuItemReviewsControllerTests extends ControllerTestCase {
                         .andExpect(status().isNotFound()).andReturn();
 
         // assert
-        verify(menuItemsReviewsRepository, times(1)).findById(15L);
+        verify(menuItemsReviewsRepository, times(1)).removeById(15L);
         Map<String, Object> json = responseToJson(response);
         assertEquals("MenuItemReviews with id 15 not found", json.get("message"));
     }
@@ -266,7 +290,7 @@ public class MenuItemReviewsControllerTests extends ControllerTestCase {
 
         String requestBody = mapper.writeValueAsString(editedReview);
 
-        when(menuItemsReviewsRepository.findById(eq(526L))).thenReturn(Optional.of(originalReview));
+        when(menuItemsReviewsRepository.updateById(eq(526L), eq(editedReview))).thenReturn(1);
 
         // act
         MvcResult response = mockMvc.perform(
@@ -278,10 +302,11 @@ public class MenuItemReviewsControllerTests extends ControllerTestCase {
                         .andExpect(status().isOk()).andReturn();
 
         // assert
-        verify(menuItemsReviewsRepository, times(1)).findById(526L);
-        verify(menuItemsReviewsRepository, times(1)).save(editedReview);
+        verify(menuItemsReviewsRepository, times(1)).updateById(eq(526L), any());
+        verify(menuItemsReviewsRepository, never()).findById(any()); // the new version is not known, so no ETag is sent
+        assertEquals(null, response.getResponse().getHeader("ETag"));
         String responseString = response.getResponse().getContentAsString();
-        assertEquals(requestBody, responseString);
+        assertEquals(withoutVersion(editedReview), responseString);
     }
 
     @WithMockUser(roles = { "ADMIN", "USER" })
@@ -300,7 +325,7 @@ public class MenuItemReviewsControllerTests extends ControllerTestCase {
 
         String requestBody = mapper.writeValueAsString(editedReview);
 
-        when(menuItemsReviewsRepository.findById(eq(526L))).thenReturn(Optional.empty());
+        when(menuItemsReviewsRepository.updateById(eq(526L), any())).thenReturn(0);
 
         // act
         MvcResult response = mockMvc.perform(
@@ -312,8 +337,541 @@ public class MenuItemReviewsControllerTests extends ControllerTestCase {
                         .andExpect(status().isNotFound()).andReturn();
 
         // assert
-        verify(menuItemsReviewsRepository, times(1)).findById(526L);
+        verify(menuItemsReviewsRepository, times(1)).updateById(eq(526L), any());
         Map<String, Object> json = responseToJson(response);
         assertEquals("MenuItemReviews with id 526 not found", json.get("message"));
     }
-}
\ No newline at end of file
+
+    // Tests for /api/menuitemreviews/page
+
+    @Test
+    public void logged_out_users_cannot_get_page() throws Exception {
+        mockMvc.perform(get("/api/menuitemreviews/page"))
+                        .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_first_page_of_menuitemreviews() throws Exception {
+        // arrange
+
+        MenuItemReviews row1 = MenuItemReviews.builder()
+                        .id(1L)
+                        .itemId(1L)
+                        .reviewerEmail("reviewer1@ucsb.edu")
+                        .stars(1)
+                        .dateReviewed(LocalDateTime.parse("2022-01-01T00:00:00"))
+                        .comments("comments1")
+                        .build();
+        MenuItemReviews row2 = MenuItemReviews.builder()
+                        .id(2L)
+                        .itemId(2L)
+                        .reviewerEmail("reviewer2@ucsb.edu")
+                        .stars(2)
+                        .dateReviewed(LocalDateTime.parse("2022-01-02T00:00:00"))
+                        .comments("comments2")
+                        .build();
+        MenuItemReviews row3 = MenuItemReviews.builder()
+                        .id(3L)
+                        .itemId(3L)
+                        .reviewerEmail("reviewer3@ucsb.edu")
+                        .stars(3)
+                        .dateReviewed(LocalDateTime.parse("2022-01-03T00:00:00"))
+                        .comments("comments3")
+                        .build();
+
+        when(menuItemsReviewsRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(Limit.of(3))))
+                        .thenReturn(Arrays.asList(row1, row2, row3));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/menuitemreviews/page?limit=2"))
+                        .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(menuItemsReviewsRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(Limit.of(3)));
+        String nextCursor = Base64.getUrlEncoder().withoutPadding()
+                        .encodeToString("2".getBytes(StandardCharsets.UTF_8));
+        String expectedJson = mapper.writeValueAsString(
+                        new KeysetPage<>(Arrays.asList(row1, row2), 2, nextCursor));
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_last_page_of_menuitemreviews_using_cursor() throws Exception {
+        // arrange
+
+        MenuItemReviews row3 = MenuItemReviews.builder()
+                        .id(3L)
+                        .itemId(3L)
+                        .reviewerEmail("reviewer3@ucsb.edu")
+                        .stars(3)
+                        .dateReviewed(LocalDateTime.parse("2022-01-03T00:00:00"))
+                        .comments("comments3")
+                        .build();
+
+        String cursor = Base64.getUrlEncoder().withoutPadding()
+                        .encodeToString("2".getBytes(StandardCharsets.UTF_8));
+        when(menuItemsReviewsRepository.findByIdGreaterThanOrderByIdAsc(eq(2L), eq(Limit.of(51))))
+                        .thenReturn(Arrays.asList(row3));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/menuitemreviews/page?cursor=" + cursor))
+                        .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(menuItemsReviewsRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(2L), eq(Limit.of(51)));
+        String expectedJson = mapper.writeValueAsString(
+                        new KeysetPage<>(Arrays.asList(row3), 1, null));
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    // Tests for /api/menuitemreviews/all/stream
+
+    @Test
+    public void logged_out_users_cannot_get_all_stream() throws Exception {
+        mockMvc.perform(get("/api/menuitemreviews/all/stream"))
+                        .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_stream_all_menuitemreviews() throws Exception {
+        // arrange
+
+        MenuItemReviews row1 = MenuItemReviews.builder()
+                        .id(1L)
+                        .itemId(1L)
+                        .reviewerEmail("reviewer1@ucsb.edu")
+                        .stars(1)
+                        .dateReviewed(LocalDateTime.parse("2022-01-01T00:00:00"))
+                        .comments("comments1")
+                        .build();
+        MenuItemReviews row2 = MenuItemReviews.builder()
+                        .id(2L)
+                        .itemId(2L)
+                        .reviewerEmail("reviewer2@ucsb.edu")
+                        .stars(2)
+                        .dateReviewed(LocalDateTime.parse("2022-01-02T00:00:00"))
+                        .comments("comments2")
+                        .build();
+
+        List<MenuItemReviews> expected = Arrays.asList(row1, row2);
+        when(menuItemsReviewsRepository.streamAllBy()).thenReturn(expected.stream());
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/menuitemreviews/all/stream"))
+                        .andExpect(status().isOk())
+                        .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                        .andReturn();
+
+        // assert
+        verify(menuItemsReviewsRepository, times(1)).streamAllBy();
+        verify(entityManager, times(2)).detach(any(MenuItemReviews.class));
+        String expectedJson = mapper.writeValueAsString(expected);
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    // Tests for the /api/menuitemreviews/bulk endpoints
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_regular_users_cannot_post_bulk() throws Exception {
+        mockMvc.perform(post("/api/menuitemreviews/bulk").contentType(MediaType.APPLICATION_JSON).content("[]").with(csrf()))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_can_post_several_menu_item_reviews() throws Exception {
+        // arrange
+        MenuItemReviews first = MenuItemReviews.builder().id(7L).itemId(1L).reviewerEmail("a@ucsb.edu").stars(3).dateReviewed(LocalDateTime.parse("2022-01-03T00:00:00")).comments("ok").build();
+        MenuItemReviews second = MenuItemReviews.builder().itemId(2L).reviewerEmail("b@ucsb.edu").stars(5).dateReviewed(LocalDateTime.parse("2023-01-03T00:00:00")).comments("great").build();
+
+        // act
+        MvcResult response = mockMvc.perform(
+                post("/api/menuitemreviews/bulk")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(List.of(first, second)))
+                    .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert: ids sent by the client are ignored
+        first.setId(0);
+        verify(entityManager, times(1)).persist(first);
+        verify(entityManager, times(1)).persist(second);
+        BulkResult expected = new BulkResult(2, 0,
+                List.of(new BulkResult.Item(0L, 201), new BulkResult.Item(0L, 201)));
+        assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_cannot_post_menu_item_reviews_without_the_fields_post_requires() throws Exception {
+        // arrange
+        MenuItemReviews valid = MenuItemReviews.builder().itemId(1L).reviewerEmail("a@ucsb.edu").stars(3).dateReviewed(LocalDateTime.parse("2022-01-03T00:00:00")).comments("ok").build();
+        String body = "[{\"itemId\":9,\"reviewerEmail\":null,\"stars\":null,\"dateReviewed\":null,\"comments\":null},"
+                + "{\"itemId\":9,\"reviewerEmail\":\"b@ucsb.edu\",\"dateReviewed\":\"2023-01-03T00:00:00\",\"comments\":\"no stars\"},"
+                + "{\"itemId\":9,\"reviewerEmail\":\"b@ucsb.edu\",\"stars\":5,\"dateReviewed\":\"yesterday\",\"comments\":\"bad date\"},"
+                + mapper.writeValueAsString(valid) + "]";
+
+        // act
+        MvcResult response = mockMvc.perform(
+                post("/api/menuitemreviews/bulk")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(body)
+                    .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert: only the complete review is stored
+        verify(entityManager, times(1)).persist(any());
+        verify(entityManager, times(1)).persist(valid);
+        BulkResult expected = new BulkResult(1, 3, List.of(new BulkResult.Item(null, 400),
+                new BulkResult.Item(null, 400), new BulkResult.Item(null, 400), new BulkResult.Item(0L, 201)));
+        assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_can_update_several_menu_item_reviews_and_missing_ones_are_reported() throws Exception {
+        // arrange
+        MenuItemReviews orig = MenuItemReviews.builder().id(7L).itemId(1L).reviewerEmail("a@ucsb.edu").stars(3).dateReviewed(LocalDateTime.parse("2022-01-03T00:00:00")).comments("ok").build();
+        MenuItemReviews edited = MenuItemReviews.builder().id(7L).itemId(2L).reviewerEmail("b@ucsb.edu").stars(5).dateReviewed(LocalDateTime.parse("2023-01-03T00:00:00")).comments("great").build();
+        MenuItemReviews missing = MenuItemReviews.builder().id(8L).itemId(2L).reviewerEmail("b@ucsb.edu").stars(5).dateReviewed(LocalDateTime.parse("2023-01-03T00:00:00")).comments("great").build();
+        when(menuItemsReviewsRepository.findAllById(eq(List.of(7L, 8L)))).thenReturn(List.of(orig));
+
+        // act
+        MvcResult response = mockMvc.perform(
+                put("/api/menuitemreviews/bulk")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(List.of(edited, missing)))
+                    .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        assertEquals(edited, orig);
+        BulkResult expected = new BulkResult(1, 1,
+                List.of(new BulkResult.Item(7L, 200), new BulkResult.Item(8L, 404)));
+        assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_can_delete_several_menu_item_reviews_and_missing_ones_are_reported() throws Exception {
+        // arrange
+        MenuItemReviews row = MenuItemReviews.builder().id(7L).itemId(1L).reviewerEmail("a@ucsb.edu").stars(3).dateReviewed(LocalDateTime.parse("2022-01-03T00:00:00")).comments("ok").build();
+        when(menuItemsReviewsRepository.findAllById(eq(List.of(7L, 8L)))).thenReturn(List.of(row));
+
+        // act
+        MvcResult response = mockMvc.perform(
+                delete("/api/menuitemreviews/bulk")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(List.of(7L, 8L)))
+                    .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(menuItemsReviewsRepository, times(1)).deleteAll(List.of(row));
+        BulkResult expected = new BulkResult(1, 1,
+                List.of(new BulkResult.Item(7L, 200), new BulkResult.Item(8L, 404)));
+        assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+    }
+
+    // Tests for PATCH /api/menuitemreviews
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_can_patch_one_field_of_a_review() throws Exception {
+        // arrange
+        MenuItemReviews row = MenuItemReviews.builder().id(7L).itemId(1L).reviewerEmail("a@ucsb.edu").stars(3).dateReviewed(LocalDateTime.parse("2022-01-03T00:00:00")).comments("ok").build();
+        MenuItemReviews expected = MenuItemReviews.builder().id(7L).itemId(1L).reviewerEmail("a@ucsb.edu").stars(3).dateReviewed(LocalDateTime.parse("2022-01-03T00:00:00")).comments("ok").build();
+        expected.setStars(5);
+        expected.setVersion(1);
+        when(menuItemsReviewsRepository.findById(eq(7L))).thenReturn(Optional.of(row));
+        Query update = mock(Query.class);
+        when(entityManager.createQuery("update menuitemreviews e set e.stars = :stars, e.version = e.version + 1 "
+                + "where e.id = :id and e.version = :version")).thenReturn(update);
+        when(update.executeUpdate()).thenReturn(1);
+
+        // act
+        MvcResult response = mockMvc.perform(
+                patch("/api/menuitemreviews?id=7")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"id\": 99, \"stars\": 5}")
+                    .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(update, times(1)).setParameter("id", 7L);
+        verify(update, times(1)).executeUpdate(); // the id in the body is ignored
+        assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void patching_a_review_without_changing_anything_writes_nothing() throws Exception {
+        // arrange
+        MenuItemReviews row = MenuItemReviews.builder().id(7L).itemId(1L).reviewerEmail("a@ucsb.edu").stars(3).dateReviewed(LocalDateTime.parse("2022-01-03T00:00:00")).comments("ok").build();
+        when(menuItemsReviewsRepository.findById(eq(7L))).thenReturn(Optional.of(row));
+        String unchanged = "{\"stars\": " + mapper.valueToTree(row).get("stars") + "}";
+
+        // act
+        MvcResult response = mockMvc.perform(
+                patch("/api/menuitemreviews?id=7")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(unchanged)
+                    .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(entityManager, never()).createQuery(anyString());
+        assertEquals(mapper.writeValueAsString(row), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_cannot_patch_a_review_that_does_not_exist() throws Exception {
+        // arrange
+        when(menuItemsReviewsRepository.findById(eq(7L))).thenReturn(Optional.empty());
+
+        // act
+        MvcResult response = mockMvc.perform(
+                patch("/api/menuitemreviews?id=7")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"stars\": 5}")
+                    .with(csrf()))
+                .andExpect(status().isNotFound()).andReturn();
+
+        // assert
+        verify(entityManager, never()).createQuery(anyString());
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("MenuItemReviews with id 7 not found", json.get("message"));
+    }
+
+    // Tests for If-Match on PUT, PATCH and DELETE /api/menuitemreviews
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_can_edit_a_review_at_the_version_they_read() throws Exception {
+        // arrange
+        MenuItemReviews edited = MenuItemReviews.builder().id(7L).stars(3).build();
+        when(menuItemsReviewsRepository.updateByIdAndVersion(eq(7L), eq(3L), any())).thenReturn(1);
+        String table = tableVersionService.token(MenuItemReviews.class);
+
+        // act
+        MvcResult response = mockMvc.perform(
+                put("/api/menuitemreviews?id=7")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header("If-Match", "\"3\"")
+                    .content(mapper.writeValueAsString(edited))
+                    .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(menuItemsReviewsRepository, never()).updateById(anyLong(), any());
+        verify(menuItemsReviewsRepository, never()).findById(any()); // the new version is known without reading the row
+        edited.setVersion(4);
+        assertEquals("\"4." + table + "\"", response.getResponse().getHeader("ETag"));
+        assertEquals(mapper.writeValueAsString(edited), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_cannot_edit_a_review_changed_since_they_read_it() throws Exception {
+        // arrange
+        MenuItemReviews edited = MenuItemReviews.builder().id(7L).stars(3).build();
+        when(menuItemsReviewsRepository.updateByIdAndVersion(eq(7L), eq(3L), any())).thenReturn(0);
+        when(menuItemsReviewsRepository.existsById(eq(7L))).thenReturn(true);
+
+        // act
+        MvcResult response = mockMvc.perform(
+                put("/api/menuitemreviews?id=7")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header("If-Match", "\"3\"")
+                    .content(mapper.writeValueAsString(edited))
+                    .with(csrf()))
+                .andExpect(status().isPreconditionFailed()).andReturn();
+
+        // assert
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("PreconditionFailedException", json.get("type"));
+        assertEquals("MenuItemReviews with id 7 has been changed since it was read", json.get("message"));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_cannot_delete_a_review_changed_since_they_read_it() throws Exception {
+        // arrange
+        when(menuItemsReviewsRepository.removeByIdAndVersion(eq(7L), eq(3L))).thenReturn(0);
+        when(menuItemsReviewsRepository.existsById(eq(7L))).thenReturn(true);
+
+        // act
+        MvcResult response = mockMvc.perform(
+                delete("/api/menuitemreviews?id=7")
+                    .header("If-Match", "\"3\"")
+                    .with(csrf()))
+                .andExpect(status().isPreconditionFailed()).andReturn();
+
+        // assert
+        verify(menuItemsReviewsRepository, never()).removeById(anyLong());
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("MenuItemReviews with id 7 has been changed since it was read", json.get("message"));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_cannot_patch_a_review_changed_since_they_read_it() throws Exception {
+        // arrange
+        MenuItemReviews row = MenuItemReviews.builder().id(7L).stars(3).version(4).build();
+        when(menuItemsReviewsRepository.findById(eq(7L))).thenReturn(Optional.of(row));
+
+        // act
+        MvcResult response = mockMvc.perform(
+                patch("/api/menuitemreviews?id=7")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header("If-Match", "\"3\"")
+                    .content("{}")
+                    .with(csrf()))
+                .andExpect(status().isPreconditionFailed()).andReturn();
+
+        // assert
+        verify(entityManager, never()).createQuery(anyString());
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("MenuItemReviews with id 7 has been changed since it was read", json.get("message"));
+    }
+
+    // Tests for POST /api/menuitemreviews/lookup
+
+    @Test
+    public void logged_out_users_cannot_lookup_reviews() throws Exception {
+        mockMvc.perform(post("/api/menuitemreviews/lookup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[3, 1, 2, 3]")
+                        .with(csrf()))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_lookup_reviews_in_request_order() throws Exception {
+        // arrange
+        MenuItemReviews first = MenuItemReviews.builder().id(1L).stars(5).build();
+        MenuItemReviews third = MenuItemReviews.builder().id(3L).stars(5).build();
+        when(menuItemsReviewsRepository.findAllById(eq(List.of(3L, 1L, 2L)))).thenReturn(List.of(first, third));
+
+        // act
+        MvcResult response = mockMvc.perform(
+                post("/api/menuitemreviews/lookup")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("[3, 1, 2, 3]")
+                    .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(menuItemsReviewsRepository, times(1)).findAllById(any());
+        LookupResult<MenuItemReviews> expected = new LookupResult<>(List.of(third, first), List.of(2L));
+        assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+    }
+
+    // Tests for filter= and sort= on GET /api/menuitemreviews/page
+
+    @SuppressWarnings("unchecked")
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_a_filtered_sorted_page_of_reviews() throws Exception {
+        // arrange
+        MenuItemReviews first = MenuItemReviews.builder().id(1L).stars(5).build();
+        MenuItemReviews second = MenuItemReviews.builder().id(2L).stars(4).build();
+        Window<MenuItemReviews> window = Window.from(List.of(first, second),
+                i -> ScrollPosition.forward(Map.of("stars", 4)), true);
+        when(menuItemsReviewsRepository.findBy(any(Specification.class), any())).thenReturn(window);
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/menuitemreviews/page?limit=2&filter=stars>=4&sort=-stars"))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(menuItemsReviewsRepository, times(1)).findBy(any(Specification.class), any());
+        verify(menuItemsReviewsRepository, never()).findByIdGreaterThanOrderByIdAsc(anyLong(), any());
+        String nextCursor = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("{\"stars\":4}".getBytes(StandardCharsets.UTF_8));
+        KeysetPage<MenuItemReviews> expected = new KeysetPage<>(List.of(first, second), 2, nextCursor);
+        assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+    }
+
+    @SuppressWarnings("unchecked")
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void filtering_reviews_on_a_field_they_do_not_have_is_a_bad_request() throws Exception {
+        // act
+        MvcResult response = mockMvc.perform(get("/api/menuitemreviews/page?filter=rating>=4"))
+                .andExpect(status().isBadRequest()).andReturn();
+
+        // assert
+        verify(menuItemsReviewsRepository, never()).findBy(any(Specification.class), any());
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("Invalid filter or sort: MenuItemReviews has no field rating", json.get("message"));
+    }
+
+    // Tests for GET /api/menuitemreviews/changes
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_the_menu_item_reviews_changed_since_a_version() throws Exception {
+        // arrange: one row saved and one deleted since the version
+        String since = tableVersionService.token(MenuItemReviews.class);
+        changeLogService.record(MenuItemReviews.class, ChangeLogService.Kind.CREATED, List.of(1L, 2L));
+        changeLogService.record(MenuItemReviews.class, ChangeLogService.Kind.DELETED, List.of(2L));
+        MenuItemReviews first = MenuItemReviews.builder().id(1L).stars(5).build();
+        when(menuItemsReviewsRepository.findAllById(eq(List.of(1L)))).thenReturn(List.of(first));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/menuitemreviews/changes?since=" + since))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(menuItemsReviewsRepository, times(1)).findAllById(any());
+        Delta<MenuItemReviews> expected = new Delta<>(List.of(first), List.of(2L),
+                tableVersionService.token(MenuItemReviews.class));
+        assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void menu_item_reviews_changes_since_a_version_from_before_a_restart_are_gone() throws Exception {
+        // act
+        MvcResult response = mockMvc.perform(get("/api/menuitemreviews/changes?since=stale-3"))
+                .andExpect(status().isGone()).andReturn();
+
+        // assert
+        verify(menuItemsReviewsRepository, never()).findAllById(any());
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("The changes to MenuItemReviews since version stale-3 are no longer known; read all rows again",
+                json.get("message"));
+    }
+
+    // Tests for GET /api/menuitemreviews/events
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_is_sent_an_event_for_each_menu_item_review_written() throws Exception {
+        // arrange
+        MvcResult response = mockMvc.perform(get("/api/menuitemreviews/events"))
+                .andExpect(request().asyncStarted()).andReturn();
+
+        // act
+        long version = changeLogService.record(MenuItemReviews.class, ChangeLogService.Kind.UPDATED, List.of(7L));
+
+        // assert: the event is sent by another thread
+        String event = "event:updated\ndata:{\"id\":7}\nid:" + tableVersionService.token(MenuItemReviews.class, version) + "\n\n";
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!response.getResponse().getContentAsString().contains(event) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals("text/event-stream", response.getResponse().getContentType());
+        assertEquals(event, response.getResponse().getContentAsString());
+    }
+}
@@ -24,10 +24,31 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 import java.time.LocalDateTime;
 
 import java.util.Optional;
-
+import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
+import edu.ucsb.cs156.example.models.BulkResult;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.models.Delta;
+import edu.ucsb.cs156.example.services.ChangeLogService;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import edu.ucsb.cs156.example.models.LookupResult;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+import static org.hamcrest.Matchers.startsWith;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -41,6 +62,12 @@ public class RecommendationRequestsControllerTests extends ControllerTestCase {
     @MockBean
     UserRepository userRepository;
 
+    @Autowired
+    ChangeLogService changeLogService;
+
+    @Autowired
+    TableVersionService tableVersionService;
+
     // Authorization tests for /api/recommendationrequests/admin/all
 
     @Test
@@ -220,7 +247,7 @@ public class RecommendationRequestsControllerTests extends ControllerTestCase {
                                 .done(false)
                                 .build();
 
-                when(recommendationRequestRepository.findById(eq(15L))).thenReturn(Optional.of(req1));
+                when(recommendationRequestRepository.removeById(eq(15L))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -229,8 +256,7 @@ public class RecommendationRequestsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(recommendationRequestRepository, times(1)).findById(15L);
-                verify(recommendationRequestRepository, times(1)).delete(any());
+                verify(recommendationRequestRepository, times(1)).removeById(15L);
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("RecommendationRequest with id 15 deleted", json.get("message"));
@@ -242,7 +268,7 @@ public class RecommendationRequestsControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(recommendationRequestRepository.findById(eq(15L))).thenReturn(Optional.empty());
+                when(recommendationRequestRepository.removeById(eq(15L))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -251,7 +277,7 @@ public class RecommendationRequestsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(recommendationRequestRepository, times(1)).findById(15L);
+                verify(recommendationRequestRepository, times(1)).removeById(15L);
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("RecommendationRequest with id 15 not found", json.get("message"));
         }
@@ -285,8 +311,9 @@ public class RecommendationRequestsControllerTests extends ControllerTestCase {
                                 .build();
 
                 String requestBody = mapper.writeValueAsString(reqEdited);
+                reqEdited.setId(67L);
 
-                when(recommendationRequestRepository.findById(eq(67L))).thenReturn(Optional.of(reqOriginal));
+                when(recommendationRequestRepository.updateById(eq(67L), eq(reqEdited))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -298,10 +325,11 @@ public class RecommendationRequestsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(recommendationRequestRepository, times(1)).findById(67L);
-                verify(recommendationRequestRepository, times(1)).save(reqEdited); // should be saved with correct user
+                verify(recommendationRequestRepository, times(1)).updateById(eq(67L), any());
+                verify(recommendationRequestRepository, never()).findById(any()); // the new version is not known, so no ETag is sent
+                assertEquals(null, response.getResponse().getHeader("ETag"));
                 String responseString = response.getResponse().getContentAsString();
-                assertEquals(requestBody, responseString);
+                assertEquals(withoutVersion(reqEdited), responseString);
         }
 
         @WithMockUser(roles = { "ADMIN", "USER" })
@@ -322,7 +350,7 @@ public class RecommendationRequestsControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(req);
 
-                when(recommendationRequestRepository.findById(eq(67L))).thenReturn(Optional.empty());
+                when(recommendationRequestRepository.updateById(eq(67L), any())).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -334,10 +362,619 @@ public class RecommendationRequestsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(recommendationRequestRepository, times(1)).findById(67L);
+                verify(recommendationRequestRepository, times(1)).updateById(eq(67L), any());
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("RecommendationRequest with id 67 not found", json.get("message"));
 
         }
 
+    // Tests for /api/recommendationrequests/page
+
+    @Test
+    public void logged_out_users_cannot_get_page() throws Exception {
+        mockMvc.perform(get("/api/recommendationrequests/page"))
+                        .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_first_page_of_recommendationrequests() throws Exception {
+        // arrange
+
+        RecommendationRequest row1 = RecommendationRequest.builder()
+                        .id(1L)
+                        .requesterEmail("student1@ucsb.edu")
+                        .professorEmail("professor1@ucsb.edu")
+                        .explanation("explanation1")
+                        .dateRequested(LocalDateTime.parse("2022-01-01T00:00:00"))
+                        .dateNeeded(LocalDateTime.parse("2022-02-01T00:00:00"))
+                        .done(false)
+                        .build();
+        RecommendationRequest row2 = RecommendationRequest.builder()
+                        .id(2L)
+                        .requesterEmail("student2@ucsb.edu")
+                        .professorEmail("professor2@ucsb.edu")
+                        .explanation("explanation2")
+                        .dateRequested(LocalDateTime.parse("2022-01-02T00:00:00"))
+                        .dateNeeded(LocalDateTime.parse("2022-02-02T00:00:00"))
+                        .done(false)
+                        .build();
+        RecommendationRequest row3 = RecommendationRequest.builder()
+                        .id(3L)
+                        .requesterEmail("student3@ucsb.edu")
+                        .professorEmail("professor3@ucsb.edu")
+                        .explanation("explanation3")
+                        .dateRequested(LocalDateTime.parse("2022-01-03T00:00:00"))
+                        .dateNeeded(LocalDateTime.parse("2022-02-03T00:00:00"))
+                        .done(false)
+                        .build();
+
+        when(recommendationRequestRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(Limit.of(3))))
+                        .thenReturn(Arrays.asList(row1, row2, row3));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/recommendationrequests/page?limit=2"))
+                        .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(recommendationRequestRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(Limit.of(3)));
+        String nextCursor = Base64.getUrlEncoder().withoutPadding()
+                        .encodeToString("2".getBytes(StandardCharsets.UTF_8));
+        String expectedJson = mapper.writeValueAsString(
+                        new KeysetPage<>(Arrays.asList(row1, row2), 2, nextCursor));
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_last_page_of_recommendationrequests_using_cursor() throws Exception {
+        // arrange
+
+        RecommendationRequest row3 = RecommendationRequest.builder()
+                        .id(3L)
+                        .requesterEmail("student3@ucsb.edu")
+                        .professorEmail("professor3@ucsb.edu")
+                        .explanation("explanation3")
+                        .dateRequested(LocalDateTime.parse("2022-01-03T00:00:00"))
+                        .dateNeeded(LocalDateTime.parse("2022-02-03T00:00:00"))
+                        .done(false)
+                        .build();
+
+        String cursor = Base64.getUrlEncoder().withoutPadding()
+                        .encodeToString("2".getBytes(StandardCharsets.UTF_8));
+        when(recommendationRequestRepository.findByIdGreaterThanOrderByIdAsc(eq(2L), eq(Limit.of(51))))
+                        .thenReturn(Arrays.asList(row3));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/recommendationrequests/page?cursor=" + cursor))
+                        .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(recommendationRequestRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(2L), eq(Limit.of(51)));
+        String expectedJson = mapper.writeValueAsString(
+                        new KeysetPage<>(Arrays.asList(row3), 1, null));
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    // Tests for /api/recommendationrequests/all/stream
+
+    @Test
+    public void logged_out_users_cannot_get_all_stream() throws Exception {
+        mockMvc.perform(get("/api/recommendationrequests/all/stream"))
+                        .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_stream_all_recommendationrequests() throws Exception {
+        // arrange
+
+        RecommendationRequest row1 = RecommendationRequest.builder()
+                        .id(1L)
+                        .requesterEmail("student1@ucsb.edu")
+                        .professorEmail("professor1@ucsb.edu")
+                        .explanation("explanation1")
+                        .dateRequested(LocalDateTime.parse("2022-01-01T00:00:00"))
+                        .dateNeeded(LocalDateTime.parse("2022-02-01T00:00:00"))
+                        .done(false)
+                        .build();
+        RecommendationRequest row2 = RecommendationRequest.builder()
+                        .id(2L)
+                        .requesterEmail("student2@ucsb.edu")
+                        .professorEmail("professor2@ucsb.edu")
+                        .explanation("explanation2")
+                        .dateRequested(LocalDateTime.parse("2022-01-02T00:00:00"))
+                        .dateNeeded(LocalDateTime.parse("2022-02-02T00:00:00"))
+                        .done(false)
+                        .build();
+
+        List<RecommendationRequest> expected = Arrays.asList(row1, row2);
+        when(recommendationRequestRepository.streamAllBy()).thenReturn(expected.stream());
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/recommendationrequests/all/stream"))
+                        .andExpect(status().isOk())
+                        .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                        .andReturn();
+
+        // assert
+        verify(recommendationRequestRepository, times(1)).streamAllBy();
+        verify(entityManager, times(2)).detach(any(RecommendationRequest.class));
+        String expectedJson = mapper.writeValueAsString(expected);
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+    // Tests for the /api/recommendationrequests/bulk endpoints
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_regular_users_cannot_post_bulk() throws Exception {
+        mockMvc.perform(post("/api/recommendationrequests/bulk").contentType(MediaType.APPLICATION_JSON).content("[]").with(csrf()))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_can_post_several_recommendation_requests() throws Exception {
+        // arrange
+        RecommendationRequest first = RecommendationRequest.builder().id(7L).requesterEmail("a@ucsb.edu").professorEmail("p@ucsb.edu").explanation("grad school").dateRequested(LocalDateTime.parse("2022-01-03T00:00:00")).dateNeeded(LocalDateTime.parse("2023-01-03T00:00:00")).done(false).build();
+        RecommendationRequest second = RecommendationRequest.builder().requesterEmail("b@ucsb.edu").professorEmail("q@ucsb.edu").explanation("internship").dateRequested(LocalDateTime.parse("2023-01-03T00:00:00")).dateNeeded(LocalDateTime.parse("2023-01-03T00:00:00")).done(true).build();
+
+        // act
+        MvcResult response = mockMvc.perform(
+                post("/api/recommendationrequests/bulk")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(List.of(first, second)))
+                    .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert: ids sent by the client are ignored
+        first.setId(0);
+        verify(entityManager, times(1)).persist(first);
+        verify(entityManager, times(1)).persist(second);
+        BulkResult expected = new BulkResult(2, 0,
+                List.of(new BulkResult.Item(0L, 201), new BulkResult.Item(0L, 201)));
+        assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_can_update_several_recommendation_requests_and_missing_ones_are_reported() throws Exception {
+        // arrange
+        RecommendationRequest orig = RecommendationRequest.builder().id(7L).requesterEmail("a@ucsb.edu").professorEmail("p@ucsb.edu").explanation("grad school").dateRequested(LocalDateTime.parse("2022-01-03T00:00:00")).dateNeeded(LocalDateTime.parse("2023-01-03T00:00:00")).done(false).build();
+        RecommendationRequest edited = RecommendationRequest.builder().id(7L).requesterEmail("b@ucsb.edu").professorEmail("q@ucsb.edu").explanation("internship").dateRequested(LocalDateTime.parse("2023-01-03T00:00:00")).dateNeeded(LocalDateTime.parse("2023-01-03T00:00:00")).done(true).build();
+        RecommendationRequest missing = RecommendationRequest.builder().id(8L).requesterEmail("b@ucsb.edu").professorEmail("q@ucsb.edu").explanation("internship").dateRequested(LocalDateTime.parse("2023-01-03T00:00:00")).dateNeeded(LocalDateTime.parse("2023-01-03T00:00:00")).done(true).build();
+        when(recommendationRequestRepository.findAllById(eq(List.of(7L, 8L)))).thenReturn(List.of(orig));
+
+        // act
+        MvcResult response = mockMvc.perform(
+                put("/api/recommendationrequests/bulk")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(List.of(edited, missing)))
+                    .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        assertEquals(edited, orig);
+        BulkResult expected = new BulkResult(1, 1,
+                List.of(new BulkResult.Item(7L, 200), new BulkResult.Item(8L, 404)));
+        assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_can_delete_several_recommendation_requests_and_missing_ones_are_reported() throws Exception {
+        // arrange
+        RecommendationRequest row = RecommendationRequest.builder().id(7L).requesterEmail("a@ucsb.edu").professorEmail("p@ucsb.edu").explanation("grad school").dateRequested(LocalDateTime.parse("2022-01-03T00:00:00")).dateNeeded(LocalDateTime.parse("2023-01-03T00:00:00")).done(false).build();
+        when(recommendationRequestRepository.findAllById(eq(List.of(7L, 8L)))).thenReturn(List.of(row));
+
+        // act
+        MvcResult response = mockMvc.perform(
+                delete("/api/recommendationrequests/bulk")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(List.of(7L, 8L)))
+                    .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(recommendationRequestRepository, times(1)).deleteAll(List.of(row));
+        BulkResult expected = new BulkResult(1, 1,
+                List.of(new BulkResult.Item(7L, 200), new BulkResult.Item(8L, 404)));
+        assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+    }
+
+    // Tests for PATCH /api/recommendationrequests
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_can_patch_one_field_of_a_request() throws Exception {
+        // arrange
+        RecommendationRequest row = RecommendationRequest.builder().id(7L).requesterEmail("a@ucsb.edu").professorEmail("p@ucsb.edu").explanation("grad school").dateRequested(LocalDateTime.parse("2022-01-03T00:00:00")).dateNeeded(LocalDateTime.parse("2023-01-03T00:00:00")).done(false).build();
+        RecommendationRequest expected = RecommendationRequest.builder().id(7L).requesterEmail("a@ucsb.edu").professorEmail("p@ucsb.edu").explanation("grad school").dateRequested(LocalDateTime.parse("2022-01-03T00:00:00")).dateNeeded(LocalDateTime.parse("2023-01-03T00:00:00")).done(false).build();
+        expected.setDone(true);
+        expected.setVersion(1);
+        when(recommendationRequestRepository.findById(eq(7L))).thenReturn(Optional.of(row));
+        Query update = mock(Query.class);
+        when(entityManager.createQuery("update recommendationRequests e set e.done = :done, e.version = e.version + 1 "
+                + "where e.id = :id and e.version = :version")).thenReturn(update);
+        when(update.executeUpdate()).thenReturn(1);
+
+        // act
+        MvcResult response = mockMvc.perform(
+                patch("/api/recommendationrequests?id=7")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"id\": 99, \"done\": true}")
+                    .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(update, times(1)).setParameter("id", 7L);
+        verify(update, times(1)).executeUpdate(); // the id in the body is ignored
+        assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void patching_a_request_without_changing_anything_writes_nothing() throws Exception {
+        // arrange
+        RecommendationRequest row = RecommendationRequest.builder().id(7L).requesterEmail("a@ucsb.edu").professorEmail("p@ucsb.edu").explanation("grad school").dateRequested(LocalDateTime.parse("2022-01-03T00:00:00")).dateNeeded(LocalDateTime.parse("2023-01-03T00:00:00")).done(false).build();
+        when(recommendationRequestRepository.findById(eq(7L))).thenReturn(Optional.of(row));
+        String unchanged = "{\"done\": " + mapper.valueToTree(row).get("done") + "}";
+
+        // act
+        MvcResult response = mockMvc.perform(
+                patch("/api/recommendationrequests?id=7")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(unchanged)
+                    .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(entityManager, never()).createQuery(anyString());
+        assertEquals(mapper.writeValueAsString(row), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_cannot_patch_a_request_that_does_not_exist() throws Exception {
+        // arrange
+        when(recommendationRequestRepository.findById(eq(7L))).thenReturn(Optional.empty());
+
+        // act
+        MvcResult response = mockMvc.perform(
+                patch("/api/recommendationrequests?id=7")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"done\": true}")
+                    .with(csrf()))
+                .andExpect(status().isNotFound()).andReturn();
+
+        // assert
+        verify(entityManager, never()).createQuery(anyString());
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("RecommendationRequest with id 7 not found", json.get("message"));
+    }
+
+    // Tests for If-Match on PUT, PATCH and DELETE /api/recommendationrequests
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_can_edit_a_request_at_the_version_they_read() throws Exception {
+        // arrange
+        RecommendationRequest edited = RecommendationRequest.builder().id(7L).professorEmail("p@ucsb.edu").build();
+        when(recommendationRequestRepository.updateByIdAndVersion(eq(7L), eq(3L), any())).thenReturn(1);
+        String table = tableVersionService.token(RecommendationRequest.class);
+
+        // act
+        MvcResult response = mockMvc.perform(
+                put("/api/recommendationrequests?id=7")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header("If-Match", "\"3\"")
+                    .content(mapper.writeValueAsString(edited))
+                    .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(recommendationRequestRepository, never()).updateById(anyLong(), any());
+        verify(recommendationRequestRepository, never()).findById(any()); // the new version is known without reading the row
+        edited.setVersion(4);
+        assertEquals("\"4." + table + "\"", response.getResponse().getHeader("ETag"));
+        assertEquals(mapper.writeValueAsString(edited), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_cannot_edit_a_request_changed_since_they_read_it() throws Exception {
+        // arrange
+        RecommendationRequest edited = RecommendationRequest.builder().id(7L).professorEmail("p@ucsb.edu").build();
+        when(recommendationRequestRepository.updateByIdAndVersion(eq(7L), eq(3L), any())).thenReturn(0);
+        when(recommendationRequestRepository.existsById(eq(7L))).thenReturn(true);
+
+        // act
+        MvcResult response = mockMvc.perform(
+                put("/api/recommendationrequests?id=7")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header("If-Match", "\"3\"")
+                    .content(mapper.writeValueAsString(edited))
+                    .with(csrf()))
+                .andExpect(status().isPreconditionFailed()).andReturn();
+
+        // assert
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("PreconditionFailedException", json.get("type"));
+        assertEquals("RecommendationRequest with id 7 has been changed since it was read", json.get("message"));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_cannot_delete_a_request_changed_since_they_read_it() throws Exception {
+        // arrange
+        when(recommendationRequestRepository.removeByIdAndVersion(eq(7L), eq(3L))).thenReturn(0);
+        when(recommendationRequestRepository.existsById(eq(7L))).thenReturn(true);
+
+        // act
+        MvcResult response = mockMvc.perform(
+                delete("/api/recommendationrequests?id=7")
+                    .header("If-Match", "\"3\"")
+                    .with(csrf()))
+                .andExpect(status().isPreconditionFailed()).andReturn();
+
+        // assert
+        verify(recommendationRequestRepository, never()).removeById(anyLong());
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("RecommendationRequest with id 7 has been changed since it was read", json.get("message"));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void an_admin_user_cannot_patch_a_request_changed_since_they_read_it() throws Exception {
+        // arrange
+        RecommendationRequest row = RecommendationRequest.builder().id(7L).professorEmail("p@ucsb.edu").version(4).build();
+        when(recommendationRequestRepository.findById(eq(7L))).thenReturn(Optional.of(row));
+
+        // act
+        MvcResult response = mockMvc.perform(
+                patch("/api/recommendationrequests?id=7")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header("If-Match", "\"3\"")
+                    .content("{}")
+                    .with(csrf()))
+                .andExpect(status().isPreconditionFailed()).andReturn();
+
+        // assert
+        verify(entityManager, never()).createQuery(anyString());
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("RecommendationRequest with id 7 has been changed since it was read", json.get("message"));
+    }
+
+    // Tests for POST /api/recommendationrequests/lookup
+
+    @Test
+    public void logged_out_users_cannot_lookup_requests() throws Exception {
+        mockMvc.perform(post("/api/recommendationrequests/lookup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[3, 1, 2, 3]")
+                        .with(csrf()))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_lookup_requests_in_request_order() throws Exception {
+        // arrange
+        RecommendationRequest first = RecommendationRequest.builder().id(1L).professorEmail("p@ucsb.edu").build();
+        RecommendationRequest third = RecommendationRequest.builder().id(3L).professorEmail("p@ucsb.edu").build();
+        when(recommendationRequestRepository.findAllById(eq(List.of(3L, 1L, 2L)))).thenReturn(List.of(first, third));
+
+        // act
+        MvcResult response = mockMvc.perform(
+                post("/api/recommendationrequests/lookup")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("[3, 1, 2, 3]")
+                    .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(recommendationRequestRepository, times(1)).findAllById(any());
+        LookupResult<RecommendationRequest> expected = new LookupResult<>(List.of(third, first), List.of(2L));
+        assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+    }
+
+    // Tests for fields= on GET /api/recommendationrequests/all, /api/recommendationrequests/page and /api/recommendationrequests?id=
+
+    @SuppressWarnings("unchecked")
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_some_fields_of_all_requests() throws Exception {
+        // arrange
+        TypedQuery<Object[]> query = mock(TypedQuery.class);
+        when(entityManager.createQuery("select e.id, e.professorEmail, e.version from recommendationRequests e order by e.id", Object[].class))
+                .thenReturn(query);
+        when(query.getResultList()).thenReturn(List.<Object[]>of(new Object[] { 1L, "p@ucsb.edu", 0L }, new Object[] { 2L, "q@ucsb.edu", 3L }));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/recommendationrequests/all?fields=professorEmail"))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(recommendationRequestRepository, never()).findAll();
+        assertEquals("[{\"id\":1,\"professorEmail\":\"p@ucsb.edu\",\"version\":0},{\"id\":2,\"professorEmail\":\"q@ucsb.edu\",\"version\":3}]",
+                response.getResponse().getContentAsString());
+    }
+
+    @SuppressWarnings("unchecked")
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_a_page_of_some_fields_of_requests() throws Exception {
+        // arrange
+        TypedQuery<Object[]> query = mock(TypedQuery.class);
+        when(entityManager.createQuery("select e.id, e.professorEmail, e.version from recommendationRequests e where e.id > :id order by e.id", Object[].class))
+                .thenReturn(query);
+        when(query.getResultList()).thenReturn(List.<Object[]>of(new Object[] { 1L, "p@ucsb.edu", 0L }, new Object[] { 2L, "q@ucsb.edu", 3L }));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/recommendationrequests/page?limit=1&fields=professorEmail"))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(query, times(1)).setParameter("id", 0L);
+        verify(query, times(1)).setMaxResults(2);
+        Map<String, Object> json = responseToJson(response);
+        assertEquals(List.of(Map.of("id", 1, "professorEmail", "p@ucsb.edu", "version", 0)), json.get("content"));
+        assertEquals("MQ", json.get("nextCursor")); // "1", base64 encoded
+    }
+
+    @SuppressWarnings("unchecked")
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_some_fields_of_request_by_id() throws Exception {
+        // arrange
+        TypedQuery<Object[]> query = mock(TypedQuery.class);
+        when(entityManager.createQuery("select e.id, e.professorEmail, e.version from recommendationRequests e where e.id = :id", Object[].class))
+                .thenReturn(query);
+        when(query.getResultList()).thenReturn(List.<Object[]>of(new Object[] { 7L, "p@ucsb.edu", 3L }));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/recommendationrequests?id=7&fields=professorEmail"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", startsWith("\"3."))).andReturn();
+
+        // assert
+        verify(query, times(1)).setParameter("id", 7L);
+        verify(recommendationRequestRepository, never()).findById(anyLong());
+        assertEquals("{\"id\":7,\"professorEmail\":\"p@ucsb.edu\",\"version\":3}", response.getResponse().getContentAsString());
+    }
+
+    @SuppressWarnings("unchecked")
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_gets_404_for_some_fields_of_a_missing_request() throws Exception {
+        // arrange
+        TypedQuery<Object[]> query = mock(TypedQuery.class);
+        when(entityManager.createQuery("select e.id, e.professorEmail, e.version from recommendationRequests e where e.id = :id", Object[].class))
+                .thenReturn(query);
+        when(query.getResultList()).thenReturn(List.of());
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/recommendationrequests?id=7&fields=professorEmail"))
+                .andExpect(status().isNotFound()).andReturn();
+
+        // assert
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("RecommendationRequest with id 7 not found", json.get("message"));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void asking_for_a_field_requests_do_not_have_is_a_bad_request() throws Exception {
+        // act
+        MvcResult response = mockMvc.perform(get("/api/recommendationrequests/all?fields=professorEmail,stars"))
+                .andExpect(status().isBadRequest()).andReturn();
+
+        // assert
+        verify(entityManager, never()).createQuery(anyString(), eq(Object[].class));
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("RecommendationRequest has no field(s) stars", json.get("message"));
+    }
+
+    // Tests for filter= and sort= on GET /api/recommendationrequests/page
+
+    @SuppressWarnings("unchecked")
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_a_filtered_sorted_page_of_requests() throws Exception {
+        // arrange
+        RecommendationRequest first = RecommendationRequest.builder().id(1L).professorEmail("p@ucsb.edu").done(false).build();
+        RecommendationRequest second = RecommendationRequest.builder().id(2L).professorEmail("q@ucsb.edu").done(false).build();
+        Window<RecommendationRequest> window = Window.from(List.of(first, second),
+                i -> ScrollPosition.forward(Map.of("id", 2L)), true);
+        when(recommendationRequestRepository.findBy(any(Specification.class), any())).thenReturn(window);
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/recommendationrequests/page?limit=2&filter=done=false&sort=dateNeeded"))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(recommendationRequestRepository, times(1)).findBy(any(Specification.class), any());
+        verify(recommendationRequestRepository, never()).findByIdGreaterThanOrderByIdAsc(anyLong(), any());
+        String nextCursor = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("{\"id\":2}".getBytes(StandardCharsets.UTF_8));
+        KeysetPage<RecommendationRequest> expected = new KeysetPage<>(List.of(first, second), 2, nextCursor);
+        assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+    }
+
+    @SuppressWarnings("unchecked")
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void filtering_requests_on_a_field_they_do_not_have_is_a_bad_request() throws Exception {
+        // act
+        MvcResult response = mockMvc.perform(get("/api/recommendationrequests/page?filter=rating>=4"))
+                .andExpect(status().isBadRequest()).andReturn();
+
+        // assert
+        verify(recommendationRequestRepository, never()).findBy(any(Specification.class), any());
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("Invalid filter or sort: RecommendationRequest has no field rating", json.get("message"));
+    }
+
+    // Tests for GET /api/recommendationrequests/changes
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_the_recommendation_requests_changed_since_a_version() throws Exception {
+        // arrange: one row saved and one deleted since the version
+        String since = tableVersionService.token(RecommendationRequest.class);
+        changeLogService.record(RecommendationRequest.class, ChangeLogService.Kind.CREATED, List.of(1L, 2L));
+        changeLogService.record(RecommendationRequest.class, ChangeLogService.Kind.DELETED, List.of(2L));
+        RecommendationRequest first = RecommendationRequest.builder().id(1L).professorEmail("p@ucsb.edu").done(false).build();
+        when(recommendationRequestRepository.findAllById(eq(List.of(1L)))).thenReturn(List.of(first));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/recommendationrequests/changes?since=" + since))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(recommendationRequestRepository, times(1)).findAllById(any());
+        Delta<RecommendationRequest> expected = new Delta<>(List.of(first), List.of(2L),
+                tableVersionService.token(RecommendationRequest.class));
+        assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void recommendation_requests_changes_since_a_version_from_before_a_restart_are_gone() throws Exception {
+        // act
+        MvcResult response = mockMvc.perform(get("/api/recommendationrequests/changes?since=stale-3"))
+                .andExpect(status().isGone()).andReturn();
+
+        // assert
+        verify(recommendationRequestRepository, never()).findAllById(any());
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("The changes to RecommendationRequest since version stale-3 are no longer known; read all rows again",
+                json.get("message"));
+    }
+
+    // Tests for GET /api/recommendationrequests/events
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_is_sent_an_event_for_each_recommendation_request_written() throws Exception {
+        // arrange
+        MvcResult response = mockMvc.perform(get("/api/recommendationrequests/events"))
+                .andExpect(request().asyncStarted()).andReturn();
+
+        // act
+        long version = changeLogService.record(RecommendationRequest.class, ChangeLogService.Kind.UPDATED, List.of(7L));
+
+        // assert: the event is sent by another thread
+        String event = "event:updated\ndata:{\"id\":7}\nid:" + tableVersionService.token(RecommendationRequest.class, version) + "\n\n";
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!response.getResponse().getContentAsString().contains(event) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals("text/event-stream", response.getResponse().getContentType());
+        assertEquals(event, response.getResponse().getContentAsString());
+    }
 }
@@ -22,10 +22,29 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 
 import java.util.Optional;
+import jakarta.persistence.Query;
+import edu.ucsb.cs156.example.models.BulkResult;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.models.Delta;
+import edu.ucsb.cs156.example.services.ChangeLogService;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import edu.ucsb.cs156.example.models.LookupResult;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -40,6 +59,12 @@ public class RestaurantsControllerTests extends ControllerTestCase {
         @MockBean
         UserRepository userRepository;
 
+        @Autowired
+        ChangeLogService changeLogService;
+
+        @Autowired
+        TableVersionService tableVersionService;
+
         // Authorization tests for /api/phones/admin/all
 
         @Test
@@ -192,7 +217,7 @@ public class RestaurantsControllerTests extends ControllerTestCase {
                                 .description("Mexican")
                                 .build();
 
-                when(restaurantRepository.findById(eq(15L))).thenReturn(Optional.of(restaurant));
+                when(restaurantRepository.removeById(eq(15L))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -201,8 +226,7 @@ public class RestaurantsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(restaurantRepository, times(1)).findById(15L);
-                verify(restaurantRepository, times(1)).delete(any());
+                verify(restaurantRepository, times(1)).removeById(15L);
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Restaurant with id 15 deleted", json.get("message"));
@@ -214,7 +238,7 @@ public class RestaurantsControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(restaurantRepository.findById(eq(15L))).thenReturn(Optional.empty());
+                when(restaurantRepository.removeById(eq(15L))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -223,7 +247,7 @@ public class RestaurantsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(restaurantRepository, times(1)).findById(15L);
+                verify(restaurantRepository, times(1)).removeById(15L);
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Restaurant with id 15 not found", json.get("message"));
         }
@@ -245,7 +269,7 @@ public class RestaurantsControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(restaurantEdited);
 
-                when(restaurantRepository.findById(eq(67L))).thenReturn(Optional.of(restaurantOrig));
+                when(restaurantRepository.updateById(eq(67L), eq(restaurantEdited))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -257,10 +281,11 @@ public class RestaurantsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(restaurantRepository, times(1)).findById(67L);
-                verify(restaurantRepository, times(1)).save(restaurantEdited); // should be saved with correct user
+                verify(restaurantRepository, times(1)).updateById(eq(67L), any());
+                verify(restaurantRepository, never()).findById(any()); // the new version is not known, so no ETag is sent
+                assertEquals(null, response.getResponse().getHeader("ETag"));
                 String responseString = response.getResponse().getContentAsString();
-                assertEquals(requestBody, responseString);
+                assertEquals(withoutVersion(restaurantEdited), responseString);
         }
 
         @WithMockUser(roles = { "ADMIN", "USER" })
@@ -277,7 +302,7 @@ public class RestaurantsControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(editedRestaurant);
 
-                when(restaurantRepository.findById(eq(67L))).thenReturn(Optional.empty());
+                when(restaurantRepository.updateById(eq(67L), any())).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -289,9 +314,498 @@ public class RestaurantsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(restaurantRepository, times(1)).findById(67L);
+                verify(restaurantRepository, times(1)).updateById(eq(67L), any());
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Restaurant with id 67 not found", json.get("message"));
 
         }
+
+        // Tests for /api/restaurants/page
+
+        @Test
+        public void logged_out_users_cannot_get_page() throws Exception {
+                mockMvc.perform(get("/api/restaurants/page"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_first_page_of_restaurants() throws Exception {
+                // arrange
+
+                Restaurant row1 = Restaurant.builder()
+                                .id(1L)
+                                .name("restaurant1")
+                                .description("description1")
+                                .build();
+                Restaurant row2 = Restaurant.builder()
+                                .id(2L)
+                                .name("restaurant2")
+                                .description("description2")
+                                .build();
+                Restaurant row3 = Restaurant.builder()
+                                .id(3L)
+                                .name("restaurant3")
+                                .description("description3")
+                                .build();
+
+                when(restaurantRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(Limit.of(3))))
+                                .thenReturn(Arrays.asList(row1, row2, row3));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/restaurants/page?limit=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(restaurantRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(Limit.of(3)));
+                String nextCursor = Base64.getUrlEncoder().withoutPadding()
+                                .encodeToString("2".getBytes(StandardCharsets.UTF_8));
+                String expectedJson = mapper.writeValueAsString(
+                                new KeysetPage<>(Arrays.asList(row1, row2), 2, nextCursor));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_last_page_of_restaurants_using_cursor() throws Exception {
+                // arrange
+
+                Restaurant row3 = Restaurant.builder()
+                                .id(3L)
+                                .name("restaurant3")
+                                .description("description3")
+                                .build();
+
+                String cursor = Base64.getUrlEncoder().withoutPadding()
+                                .encodeToString("2".getBytes(StandardCharsets.UTF_8));
+                when(restaurantRepository.findByIdGreaterThanOrderByIdAsc(eq(2L), eq(Limit.of(51))))
+                                .thenReturn(Arrays.asList(row3));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/restaurants/page?cursor=" + cursor))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(restaurantRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(2L), eq(Limit.of(51)));
+                String expectedJson = mapper.writeValueAsString(
+                                new KeysetPage<>(Arrays.asList(row3), 1, null));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // Tests for /api/restaurants/all/stream
+
+        @Test
+        public void logged_out_users_cannot_get_all_stream() throws Exception {
+                mockMvc.perform(get("/api/restaurants/all/stream"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_stream_all_restaurants() throws Exception {
+                // arrange
+
+                Restaurant row1 = Restaurant.builder()
+                                .id(1L)
+                                .name("restaurant1")
+                                .description("description1")
+                                .build();
+                Restaurant row2 = Restaurant.builder()
+                                .id(2L)
+                                .name("restaurant2")
+                                .description("description2")
+                                .build();
+
+                List<Restaurant> expected = Arrays.asList(row1, row2);
+                when(restaurantRepository.streamAllBy()).thenReturn(expected.stream());
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/restaurants/all/stream"))
+                                .andExpect(status().isOk())
+                                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                                .andReturn();
+
+                // assert
+                verify(restaurantRepository, times(1)).streamAllBy();
+                verify(entityManager, times(2)).detach(any(Restaurant.class));
+                String expectedJson = mapper.writeValueAsString(expected);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // Tests for the /api/restaurants/bulk endpoints
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_post_bulk() throws Exception {
+                mockMvc.perform(post("/api/restaurants/bulk").contentType(MediaType.APPLICATION_JSON).content("[]").with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_post_several_restaurants() throws Exception {
+                // arrange
+                Restaurant first = Restaurant.builder().id(7L).name("Freebirds").description("Burritos").build();
+                Restaurant second = Restaurant.builder().name("Habit").description("Burgers").build();
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/restaurants/bulk")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(mapper.writeValueAsString(List.of(first, second)))
+                                        .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert: ids sent by the client are ignored
+                first.setId(0);
+                verify(entityManager, times(1)).persist(first);
+                verify(entityManager, times(1)).persist(second);
+                BulkResult expected = new BulkResult(2, 0,
+                                List.of(new BulkResult.Item(0L, 201), new BulkResult.Item(0L, 201)));
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_update_several_restaurants_and_missing_ones_are_reported() throws Exception {
+                // arrange
+                Restaurant orig = Restaurant.builder().id(7L).name("Freebirds").description("Burritos").build();
+                Restaurant edited = Restaurant.builder().id(7L).name("Habit").description("Burgers").build();
+                Restaurant missing = Restaurant.builder().id(8L).name("Habit").description("Burgers").build();
+                when(restaurantRepository.findAllById(eq(List.of(7L, 8L)))).thenReturn(List.of(orig));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/restaurants/bulk")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(mapper.writeValueAsString(List.of(edited, missing)))
+                                        .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                assertEquals(edited, orig);
+                BulkResult expected = new BulkResult(1, 1,
+                                List.of(new BulkResult.Item(7L, 200), new BulkResult.Item(8L, 404)));
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_delete_several_restaurants_and_missing_ones_are_reported() throws Exception {
+                // arrange
+                Restaurant row = Restaurant.builder().id(7L).name("Freebirds").description("Burritos").build();
+                when(restaurantRepository.findAllById(eq(List.of(7L, 8L)))).thenReturn(List.of(row));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                delete("/api/restaurants/bulk")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(mapper.writeValueAsString(List.of(7L, 8L)))
+                                        .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(restaurantRepository, times(1)).deleteAll(List.of(row));
+                BulkResult expected = new BulkResult(1, 1,
+                                List.of(new BulkResult.Item(7L, 200), new BulkResult.Item(8L, 404)));
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        // Tests for PATCH /api/restaurants
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_patch_one_field_of_a_restaurant() throws Exception {
+                // arrange
+                Restaurant row = Restaurant.builder().id(7L).name("Freebirds").description("Burritos").build();
+                Restaurant expected = Restaurant.builder().id(7L).name("Freebirds").description("Burritos").build();
+                expected.setDescription("Tacos");
+                expected.setVersion(1);
+                when(restaurantRepository.findById(eq(7L))).thenReturn(Optional.of(row));
+                Query update = mock(Query.class);
+                when(entityManager.createQuery("update restaurants e set e.description = :description, e.version = e.version + 1 "
+                        + "where e.id = :id and e.version = :version")).thenReturn(update);
+                when(update.executeUpdate()).thenReturn(1);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/restaurants?id=7")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content("{\"id\": 99, \"description\": \"Tacos\"}")
+                                        .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(update, times(1)).setParameter("id", 7L);
+                verify(update, times(1)).executeUpdate(); // the id in the body is ignored
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void patching_a_restaurant_without_changing_anything_writes_nothing() throws Exception {
+                // arrange
+                Restaurant row = Restaurant.builder().id(7L).name("Freebirds").description("Burritos").build();
+                when(restaurantRepository.findById(eq(7L))).thenReturn(Optional.of(row));
+                String unchanged = "{\"description\": " + mapper.valueToTree(row).get("description") + "}";
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/restaurants?id=7")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(unchanged)
+                                        .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(entityManager, never()).createQuery(anyString());
+                assertEquals(mapper.writeValueAsString(row), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_cannot_patch_a_restaurant_that_does_not_exist() throws Exception {
+                // arrange
+                when(restaurantRepository.findById(eq(7L))).thenReturn(Optional.empty());
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/restaurants?id=7")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content("{\"description\": \"Tacos\"}")
+                                        .with(csrf()))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                verify(entityManager, never()).createQuery(anyString());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Restaurant with id 7 not found", json.get("message"));
+        }
+
+        // Tests for If-Match on PUT, PATCH and DELETE /api/restaurants
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_edit_a_restaurant_at_the_version_they_read() throws Exception {
+                // arrange
+                Restaurant edited = Restaurant.builder().id(7L).name("Chipotle").build();
+                when(restaurantRepository.updateByIdAndVersion(eq(7L), eq(3L), any())).thenReturn(1);
+                String table = tableVersionService.token(Restaurant.class);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                        put("/api/restaurants?id=7")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .header("If-Match", "\"3\"")
+                            .content(mapper.writeValueAsString(edited))
+                            .with(csrf()))
+                        .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(restaurantRepository, never()).updateById(anyLong(), any());
+                verify(restaurantRepository, never()).findById(any()); // the new version is known without reading the row
+                edited.setVersion(4);
+                assertEquals("\"4." + table + "\"", response.getResponse().getHeader("ETag"));
+                assertEquals(mapper.writeValueAsString(edited), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_cannot_edit_a_restaurant_changed_since_they_read_it() throws Exception {
+                // arrange
+                Restaurant edited = Restaurant.builder().id(7L).name("Chipotle").build();
+                when(restaurantRepository.updateByIdAndVersion(eq(7L), eq(3L), any())).thenReturn(0);
+                when(restaurantRepository.existsById(eq(7L))).thenReturn(true);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                        put("/api/restaurants?id=7")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .header("If-Match", "\"3\"")
+                            .content(mapper.writeValueAsString(edited))
+                            .with(csrf()))
+                        .andExpect(status().isPreconditionFailed()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("PreconditionFailedException", json.get("type"));
+                assertEquals("Restaurant with id 7 has been changed since it was read", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_cannot_delete_a_restaurant_changed_since_they_read_it() throws Exception {
+                // arrange
+                when(restaurantRepository.removeByIdAndVersion(eq(7L), eq(3L))).thenReturn(0);
+                when(restaurantRepository.existsById(eq(7L))).thenReturn(true);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                        delete("/api/restaurants?id=7")
+                            .header("If-Match", "\"3\"")
+                            .with(csrf()))
+                        .andExpect(status().isPreconditionFailed()).andReturn();
+
+                // assert
+                verify(restaurantRepository, never()).removeById(anyLong());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Restaurant with id 7 has been changed since it was read", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_cannot_patch_a_restaurant_changed_since_they_read_it() throws Exception {
+                // arrange
+                Restaurant row = Restaurant.builder().id(7L).name("Chipotle").version(4).build();
+                when(restaurantRepository.findById(eq(7L))).thenReturn(Optional.of(row));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                        patch("/api/restaurants?id=7")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .header("If-Match", "\"3\"")
+                            .content("{}")
+                            .with(csrf()))
+                        .andExpect(status().isPreconditionFailed()).andReturn();
+
+                // assert
+                verify(entityManager, never()).createQuery(anyString());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Restaurant with id 7 has been changed since it was read", json.get("message"));
+        }
+
+        // Tests for POST /api/restaurants/lookup
+
+        @Test
+        public void logged_out_users_cannot_lookup_restaurants() throws Exception {
+                mockMvc.perform(post("/api/restaurants/lookup")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("[3, 1, 2, 3]")
+                                .with(csrf()))
+                        .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_lookup_restaurants_in_request_order() throws Exception {
+                // arrange
+                Restaurant first = Restaurant.builder().id(1L).name("Chipotle").build();
+                Restaurant third = Restaurant.builder().id(3L).name("Chipotle").build();
+                when(restaurantRepository.findAllById(eq(List.of(3L, 1L, 2L)))).thenReturn(List.of(first, third));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                        post("/api/restaurants/lookup")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("[3, 1, 2, 3]")
+                            .with(csrf()))
+                        .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(restaurantRepository, times(1)).findAllById(any());
+                LookupResult<Restaurant> expected = new LookupResult<>(List.of(third, first), List.of(2L));
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        // Tests for filter= and sort= on GET /api/restaurants/page
+
+        @SuppressWarnings("unchecked")
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_a_filtered_sorted_page_of_restaurants() throws Exception {
+                // arrange
+                Restaurant first = Restaurant.builder().id(1L).name("Pizza Mizza").build();
+                Restaurant second = Restaurant.builder().id(2L).name("Pizza My Heart").build();
+                Window<Restaurant> window = Window.from(List.of(first, second),
+                                i -> ScrollPosition.forward(Map.of("name", "Pizza My Heart")), true);
+                when(restaurantRepository.findBy(any(Specification.class), any())).thenReturn(window);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/restaurants/page?limit=2&filter=name~pizza&sort=name"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(restaurantRepository, times(1)).findBy(any(Specification.class), any());
+                verify(restaurantRepository, never()).findByIdGreaterThanOrderByIdAsc(anyLong(), any());
+                String nextCursor = Base64.getUrlEncoder().withoutPadding()
+                                .encodeToString("{\"name\":\"Pizza My Heart\"}".getBytes(StandardCharsets.UTF_8));
+                KeysetPage<Restaurant> expected = new KeysetPage<>(List.of(first, second), 2, nextCursor);
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @SuppressWarnings("unchecked")
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void filtering_restaurants_on_a_field_they_do_not_have_is_a_bad_request() throws Exception {
+                // act
+                MvcResult response = mockMvc.perform(get("/api/restaurants/page?filter=rating>=4"))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(restaurantRepository, never()).findBy(any(Specification.class), any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Invalid filter or sort: Restaurant has no field rating", json.get("message"));
+        }
+
+        // Tests for GET /api/restaurants/changes
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_the_restaurants_changed_since_a_version() throws Exception {
+                // arrange: one row saved and one deleted since the version
+                String since = tableVersionService.token(Restaurant.class);
+                changeLogService.record(Restaurant.class, ChangeLogService.Kind.CREATED, List.of(1L, 2L));
+                changeLogService.record(Restaurant.class, ChangeLogService.Kind.DELETED, List.of(2L));
+                Restaurant first = Restaurant.builder().id(1L).name("Pizza Mizza").build();
+                when(restaurantRepository.findAllById(eq(List.of(1L)))).thenReturn(List.of(first));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/restaurants/changes?since=" + since))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(restaurantRepository, times(1)).findAllById(any());
+                Delta<Restaurant> expected = new Delta<>(List.of(first), List.of(2L),
+                                tableVersionService.token(Restaurant.class));
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void restaurants_changes_since_a_version_from_before_a_restart_are_gone() throws Exception {
+                // act
+                MvcResult response = mockMvc.perform(get("/api/restaurants/changes?since=stale-3"))
+                                .andExpect(status().isGone()).andReturn();
+
+                // assert
+                verify(restaurantRepository, never()).findAllById(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("The changes to Restaurant since version stale-3 are no longer known; read all rows again",
+                                json.get("message"));
+        }
+
+        // Tests for GET /api/restaurants/events
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_is_sent_an_event_for_each_restaurant_written() throws Exception {
+                // arrange
+                MvcResult response = mockMvc.perform(get("/api/restaurants/events"))
+                                .andExpect(request().asyncStarted()).andReturn();
+
+                // act
+                long version = changeLogService.record(Restaurant.class, ChangeLogService.Kind.UPDATED, List.of(7L));
+
+                // assert: the event is sent by another thread
+                String event = "event:updated\ndata:{\"id\":7}\nid:" + tableVersionService.token(Restaurant.class, version) + "\n\n";
+                long deadline = System.currentTimeMillis() + 5000;
+                while (!response.getResponse().getContentAsString().contains(event) && System.currentTimeMillis() < deadline) {
+                        Thread.sleep(1);
+                }
+                assertEquals("text/event-stream", response.getResponse().getContentType());
+                assertEquals(event, response.getResponse().getContentAsString());
+        }
 }
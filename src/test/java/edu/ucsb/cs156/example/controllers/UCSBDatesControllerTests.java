@@ -24,10 +24,29 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 import java.time.LocalDateTime;
 
 import java.util.Optional;
+import jakarta.persistence.Query;
+import edu.ucsb.cs156.example.models.BulkResult;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.models.Delta;
+import edu.ucsb.cs156.example.services.ChangeLogService;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import edu.ucsb.cs156.example.models.LookupResult;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -42,6 +61,12 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
         @MockBean
         UserRepository userRepository;
 
+        @Autowired
+        ChangeLogService changeLogService;
+
+        @Autowired
+        TableVersionService tableVersionService;
+
         // Authorization tests for /api/ucsbdates/admin/all
 
         @Test
@@ -207,7 +232,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                                 .localDateTime(ldt1)
                                 .build();
 
-                when(ucsbDateRepository.findById(eq(15L))).thenReturn(Optional.of(ucsbDate1));
+                when(ucsbDateRepository.removeById(eq(15L))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -216,8 +241,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbDateRepository, times(1)).findById(15L);
-                verify(ucsbDateRepository, times(1)).delete(any());
+                verify(ucsbDateRepository, times(1)).removeById(15L);
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDate with id 15 deleted", json.get("message"));
@@ -229,7 +253,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(ucsbDateRepository.findById(eq(15L))).thenReturn(Optional.empty());
+                when(ucsbDateRepository.removeById(eq(15L))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -238,7 +262,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbDateRepository, times(1)).findById(15L);
+                verify(ucsbDateRepository, times(1)).removeById(15L);
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDate with id 15 not found", json.get("message"));
         }
@@ -264,8 +288,9 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                                 .build();
 
                 String requestBody = mapper.writeValueAsString(ucsbDateEdited);
+                ucsbDateEdited.setId(67L);
 
-                when(ucsbDateRepository.findById(eq(67L))).thenReturn(Optional.of(ucsbDateOrig));
+                when(ucsbDateRepository.updateById(eq(67L), eq(ucsbDateEdited))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -277,10 +302,11 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbDateRepository, times(1)).findById(67L);
-                verify(ucsbDateRepository, times(1)).save(ucsbDateEdited); // should be saved with correct user
+                verify(ucsbDateRepository, times(1)).updateById(eq(67L), any());
+                verify(ucsbDateRepository, never()).findById(any()); // the new version is not known, so no ETag is sent
+                assertEquals(null, response.getResponse().getHeader("ETag"));
                 String responseString = response.getResponse().getContentAsString();
-                assertEquals(requestBody, responseString);
+                assertEquals(withoutVersion(ucsbDateEdited), responseString);
         }
 
         @WithMockUser(roles = { "ADMIN", "USER" })
@@ -298,7 +324,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(ucsbEditedDate);
 
-                when(ucsbDateRepository.findById(eq(67L))).thenReturn(Optional.empty());
+                when(ucsbDateRepository.updateById(eq(67L), any())).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -310,9 +336,568 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbDateRepository, times(1)).findById(67L);
+                verify(ucsbDateRepository, times(1)).updateById(eq(67L), any());
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDate with id 67 not found", json.get("message"));
 
         }
+
+        // Tests for /api/ucsbdates/page
+
+        @Test
+        public void logged_out_users_cannot_get_page() throws Exception {
+                mockMvc.perform(get("/api/ucsbdates/page"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_first_page_of_ucsbdates() throws Exception {
+                // arrange
+
+                UCSBDate row1 = UCSBDate.builder()
+                                .id(1L)
+                                .name("date1")
+                                .quarterYYYYQ("20221")
+                                .localDateTime(LocalDateTime.parse("2022-01-01T00:00:00"))
+                                .build();
+                UCSBDate row2 = UCSBDate.builder()
+                                .id(2L)
+                                .name("date2")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-02T00:00:00"))
+                                .build();
+                UCSBDate row3 = UCSBDate.builder()
+                                .id(3L)
+                                .name("date3")
+                                .quarterYYYYQ("20223")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+
+                when(ucsbDateRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(Limit.of(3))))
+                                .thenReturn(Arrays.asList(row1, row2, row3));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/page?limit=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(Limit.of(3)));
+                String nextCursor = Base64.getUrlEncoder().withoutPadding()
+                                .encodeToString("2".getBytes(StandardCharsets.UTF_8));
+                String expectedJson = mapper.writeValueAsString(
+                                new KeysetPage<>(Arrays.asList(row1, row2), 2, nextCursor));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_last_page_of_ucsbdates_using_cursor() throws Exception {
+                // arrange
+
+                UCSBDate row3 = UCSBDate.builder()
+                                .id(3L)
+                                .name("date3")
+                                .quarterYYYYQ("20223")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+
+                String cursor = Base64.getUrlEncoder().withoutPadding()
+                                .encodeToString("2".getBytes(StandardCharsets.UTF_8));
+                when(ucsbDateRepository.findByIdGreaterThanOrderByIdAsc(eq(2L), eq(Limit.of(51))))
+                                .thenReturn(Arrays.asList(row3));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/page?cursor=" + cursor))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(2L), eq(Limit.of(51)));
+                String expectedJson = mapper.writeValueAsString(
+                                new KeysetPage<>(Arrays.asList(row3), 1, null));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void page_limit_is_clamped_to_between_one_and_the_maximum() throws Exception {
+                // act
+                mockMvc.perform(get("/api/ucsbdates/page?limit=5000"))
+                                .andExpect(status().isOk());
+                mockMvc.perform(get("/api/ucsbdates/page?limit=0"))
+                                .andExpect(status().isOk());
+
+                // assert
+                verify(ucsbDateRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(Limit.of(1001)));
+                verify(ucsbDateRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(Limit.of(2)));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void page_with_a_cursor_that_is_not_base64_returns_bad_request() throws Exception {
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/page?cursor=*"))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("InvalidCursorException", json.get("type"));
+                assertEquals("Invalid cursor *", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void page_with_a_cursor_that_is_not_an_id_returns_bad_request() throws Exception {
+                // arrange
+                String cursor = Base64.getUrlEncoder().withoutPadding()
+                                .encodeToString("SKY".getBytes(StandardCharsets.UTF_8));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/page?cursor=" + cursor))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Invalid cursor " + cursor, json.get("message"));
+        }
+
+        // Tests for /api/ucsbdates/all/stream
+
+        @Test
+        public void logged_out_users_cannot_get_all_stream() throws Exception {
+                mockMvc.perform(get("/api/ucsbdates/all/stream"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_stream_all_ucsbdates() throws Exception {
+                // arrange
+
+                UCSBDate row1 = UCSBDate.builder()
+                                .id(1L)
+                                .name("date1")
+                                .quarterYYYYQ("20221")
+                                .localDateTime(LocalDateTime.parse("2022-01-01T00:00:00"))
+                                .build();
+                UCSBDate row2 = UCSBDate.builder()
+                                .id(2L)
+                                .name("date2")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-02T00:00:00"))
+                                .build();
+
+                List<UCSBDate> expected = Arrays.asList(row1, row2);
+                when(ucsbDateRepository.streamAllBy()).thenReturn(expected.stream());
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/all/stream"))
+                                .andExpect(status().isOk())
+                                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                                .andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(1)).streamAllBy();
+                verify(entityManager, times(2)).detach(any(UCSBDate.class));
+                String expectedJson = mapper.writeValueAsString(expected);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // Tests for the /api/ucsbdates/bulk endpoints
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_post_bulk() throws Exception {
+                mockMvc.perform(post("/api/ucsbdates/bulk").contentType(MediaType.APPLICATION_JSON).content("[]").with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_post_several_ucsbdates() throws Exception {
+                // arrange
+                UCSBDate first = UCSBDate.builder().id(7L).name("firstDayOfClasses").quarterYYYYQ("20222").localDateTime(LocalDateTime.parse("2022-01-03T00:00:00")).build();
+                UCSBDate second = UCSBDate.builder().name("lastDayOfClasses").quarterYYYYQ("20232").localDateTime(LocalDateTime.parse("2023-01-03T00:00:00")).build();
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/ucsbdates/bulk")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(mapper.writeValueAsString(List.of(first, second)))
+                                        .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert: ids sent by the client are ignored
+                first.setId(0);
+                verify(entityManager, times(1)).persist(first);
+                verify(entityManager, times(1)).persist(second);
+                BulkResult expected = new BulkResult(2, 0,
+                                List.of(new BulkResult.Item(0L, 201), new BulkResult.Item(0L, 201)));
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_update_several_ucsbdates_and_missing_ones_are_reported() throws Exception {
+                // arrange
+                UCSBDate orig = UCSBDate.builder().id(7L).name("firstDayOfClasses").quarterYYYYQ("20222").localDateTime(LocalDateTime.parse("2022-01-03T00:00:00")).build();
+                UCSBDate edited = UCSBDate.builder().id(7L).name("lastDayOfClasses").quarterYYYYQ("20232").localDateTime(LocalDateTime.parse("2023-01-03T00:00:00")).build();
+                UCSBDate missing = UCSBDate.builder().id(8L).name("lastDayOfClasses").quarterYYYYQ("20232").localDateTime(LocalDateTime.parse("2023-01-03T00:00:00")).build();
+                when(ucsbDateRepository.findAllById(eq(List.of(7L, 8L)))).thenReturn(List.of(orig));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsbdates/bulk")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(mapper.writeValueAsString(List.of(edited, missing)))
+                                        .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                assertEquals(edited, orig);
+                BulkResult expected = new BulkResult(1, 1,
+                                List.of(new BulkResult.Item(7L, 200), new BulkResult.Item(8L, 404)));
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_delete_several_ucsbdates_and_missing_ones_are_reported() throws Exception {
+                // arrange
+                UCSBDate row = UCSBDate.builder().id(7L).name("firstDayOfClasses").quarterYYYYQ("20222").localDateTime(LocalDateTime.parse("2022-01-03T00:00:00")).build();
+                when(ucsbDateRepository.findAllById(eq(List.of(7L, 8L)))).thenReturn(List.of(row));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                delete("/api/ucsbdates/bulk")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(mapper.writeValueAsString(List.of(7L, 8L)))
+                                        .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(1)).deleteAll(List.of(row));
+                BulkResult expected = new BulkResult(1, 1,
+                                List.of(new BulkResult.Item(7L, 200), new BulkResult.Item(8L, 404)));
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void bulk_requests_with_too_many_elements_return_bad_request() throws Exception {
+                List<Long> ids = new ArrayList<>();
+                for (long id = 1; id <= 1001; id++) {
+                        ids.add(id);
+                }
+
+                MvcResult response = mockMvc.perform(
+                                delete("/api/ucsbdates/bulk")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .content(mapper.writeValueAsString(ids))
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                verify(ucsbDateRepository, times(0)).findAllById(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("BulkLimitExceededException", json.get("type"));
+                assertEquals("Bulk request has 1001 elements; at most 1000 are allowed", json.get("message"));
+        }
+
+        // Tests for PATCH /api/ucsbdates
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_patch_one_field_of_a_date() throws Exception {
+                // arrange
+                UCSBDate row = UCSBDate.builder().id(7L).name("firstDayOfClasses").quarterYYYYQ("20222").localDateTime(LocalDateTime.parse("2022-01-03T00:00:00")).build();
+                UCSBDate expected = UCSBDate.builder().id(7L).name("firstDayOfClasses").quarterYYYYQ("20222").localDateTime(LocalDateTime.parse("2022-01-03T00:00:00")).build();
+                expected.setName("lastDayOfClasses");
+                expected.setVersion(1);
+                when(ucsbDateRepository.findById(eq(7L))).thenReturn(Optional.of(row));
+                Query update = mock(Query.class);
+                when(entityManager.createQuery("update ucsbdates e set e.name = :name, e.version = e.version + 1 "
+                        + "where e.id = :id and e.version = :version")).thenReturn(update);
+                when(update.executeUpdate()).thenReturn(1);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/ucsbdates?id=7")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content("{\"id\": 99, \"name\": \"lastDayOfClasses\"}")
+                                        .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(update, times(1)).setParameter("id", 7L);
+                verify(update, times(1)).executeUpdate(); // the id in the body is ignored
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void patching_a_date_without_changing_anything_writes_nothing() throws Exception {
+                // arrange
+                UCSBDate row = UCSBDate.builder().id(7L).name("firstDayOfClasses").quarterYYYYQ("20222").localDateTime(LocalDateTime.parse("2022-01-03T00:00:00")).build();
+                when(ucsbDateRepository.findById(eq(7L))).thenReturn(Optional.of(row));
+                String unchanged = "{\"name\": " + mapper.valueToTree(row).get("name") + "}";
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/ucsbdates?id=7")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(unchanged)
+                                        .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(entityManager, never()).createQuery(anyString());
+                assertEquals(mapper.writeValueAsString(row), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_cannot_patch_a_date_that_does_not_exist() throws Exception {
+                // arrange
+                when(ucsbDateRepository.findById(eq(7L))).thenReturn(Optional.empty());
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/ucsbdates?id=7")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content("{\"name\": \"lastDayOfClasses\"}")
+                                        .with(csrf()))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                verify(entityManager, never()).createQuery(anyString());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("UCSBDate with id 7 not found", json.get("message"));
+        }
+
+        // Tests for If-Match on PUT, PATCH and DELETE /api/ucsbdates
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_edit_a_date_at_the_version_they_read() throws Exception {
+                // arrange
+                UCSBDate edited = UCSBDate.builder().id(7L).name("firstDayOfClasses").build();
+                when(ucsbDateRepository.updateByIdAndVersion(eq(7L), eq(3L), any())).thenReturn(1);
+                String table = tableVersionService.token(UCSBDate.class);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                        put("/api/ucsbdates?id=7")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .header("If-Match", "\"3\"")
+                            .content(mapper.writeValueAsString(edited))
+                            .with(csrf()))
+                        .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, never()).updateById(anyLong(), any());
+                verify(ucsbDateRepository, never()).findById(any()); // the new version is known without reading the row
+                edited.setVersion(4);
+                assertEquals("\"4." + table + "\"", response.getResponse().getHeader("ETag"));
+                assertEquals(mapper.writeValueAsString(edited), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_cannot_edit_a_date_changed_since_they_read_it() throws Exception {
+                // arrange
+                UCSBDate edited = UCSBDate.builder().id(7L).name("firstDayOfClasses").build();
+                when(ucsbDateRepository.updateByIdAndVersion(eq(7L), eq(3L), any())).thenReturn(0);
+                when(ucsbDateRepository.existsById(eq(7L))).thenReturn(true);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                        put("/api/ucsbdates?id=7")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .header("If-Match", "\"3\"")
+                            .content(mapper.writeValueAsString(edited))
+                            .with(csrf()))
+                        .andExpect(status().isPreconditionFailed()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("PreconditionFailedException", json.get("type"));
+                assertEquals("UCSBDate with id 7 has been changed since it was read", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_cannot_delete_a_date_changed_since_they_read_it() throws Exception {
+                // arrange
+                when(ucsbDateRepository.removeByIdAndVersion(eq(7L), eq(3L))).thenReturn(0);
+                when(ucsbDateRepository.existsById(eq(7L))).thenReturn(true);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                        delete("/api/ucsbdates?id=7")
+                            .header("If-Match", "\"3\"")
+                            .with(csrf()))
+                        .andExpect(status().isPreconditionFailed()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, never()).removeById(anyLong());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("UCSBDate with id 7 has been changed since it was read", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_cannot_patch_a_date_changed_since_they_read_it() throws Exception {
+                // arrange
+                UCSBDate row = UCSBDate.builder().id(7L).name("firstDayOfClasses").version(4).build();
+                when(ucsbDateRepository.findById(eq(7L))).thenReturn(Optional.of(row));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                        patch("/api/ucsbdates?id=7")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .header("If-Match", "\"3\"")
+                            .content("{}")
+                            .with(csrf()))
+                        .andExpect(status().isPreconditionFailed()).andReturn();
+
+                // assert
+                verify(entityManager, never()).createQuery(anyString());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("UCSBDate with id 7 has been changed since it was read", json.get("message"));
+        }
+
+        // Tests for POST /api/ucsbdates/lookup
+
+        @Test
+        public void logged_out_users_cannot_lookup_dates() throws Exception {
+                mockMvc.perform(post("/api/ucsbdates/lookup")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("[3, 1, 2, 3]")
+                                .with(csrf()))
+                        .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_lookup_dates_in_request_order() throws Exception {
+                // arrange
+                UCSBDate first = UCSBDate.builder().id(1L).name("firstDayOfClasses").build();
+                UCSBDate third = UCSBDate.builder().id(3L).name("firstDayOfClasses").build();
+                when(ucsbDateRepository.findAllById(eq(List.of(3L, 1L, 2L)))).thenReturn(List.of(first, third));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                        post("/api/ucsbdates/lookup")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("[3, 1, 2, 3]")
+                            .with(csrf()))
+                        .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(1)).findAllById(any());
+                LookupResult<UCSBDate> expected = new LookupResult<>(List.of(third, first), List.of(2L));
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        // Tests for filter= and sort= on GET /api/ucsbdates/page
+
+        @SuppressWarnings("unchecked")
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_a_filtered_sorted_page_of_dates() throws Exception {
+                // arrange
+                UCSBDate first = UCSBDate.builder().id(1L).name("firstDayOfClasses").quarterYYYYQ("20244").build();
+                UCSBDate second = UCSBDate.builder().id(2L).name("lastDayOfClasses").quarterYYYYQ("20244").build();
+                Window<UCSBDate> window = Window.from(List.of(first, second),
+                                i -> ScrollPosition.forward(Map.of("id", 2L)), true);
+                when(ucsbDateRepository.findBy(any(Specification.class), any())).thenReturn(window);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/page?limit=2&filter=quarterYYYYQ=20244&sort=localDateTime"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(1)).findBy(any(Specification.class), any());
+                verify(ucsbDateRepository, never()).findByIdGreaterThanOrderByIdAsc(anyLong(), any());
+                String nextCursor = Base64.getUrlEncoder().withoutPadding()
+                                .encodeToString("{\"id\":2}".getBytes(StandardCharsets.UTF_8));
+                KeysetPage<UCSBDate> expected = new KeysetPage<>(List.of(first, second), 2, nextCursor);
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @SuppressWarnings("unchecked")
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void filtering_dates_on_a_field_they_do_not_have_is_a_bad_request() throws Exception {
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/page?filter=rating>=4"))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, never()).findBy(any(Specification.class), any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Invalid filter or sort: UCSBDate has no field rating", json.get("message"));
+        }
+
+        // Tests for GET /api/ucsbdates/changes
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_the_dates_changed_since_a_version() throws Exception {
+                // arrange: one row saved and one deleted since the version
+                String since = tableVersionService.token(UCSBDate.class);
+                changeLogService.record(UCSBDate.class, ChangeLogService.Kind.CREATED, List.of(1L, 2L));
+                changeLogService.record(UCSBDate.class, ChangeLogService.Kind.DELETED, List.of(2L));
+                UCSBDate first = UCSBDate.builder().id(1L).name("firstDayOfClasses").quarterYYYYQ("20244").build();
+                when(ucsbDateRepository.findAllById(eq(List.of(1L)))).thenReturn(List.of(first));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/changes?since=" + since))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(1)).findAllById(any());
+                Delta<UCSBDate> expected = new Delta<>(List.of(first), List.of(2L),
+                                tableVersionService.token(UCSBDate.class));
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void dates_changes_since_a_version_from_before_a_restart_are_gone() throws Exception {
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/changes?since=stale-3"))
+                                .andExpect(status().isGone()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, never()).findAllById(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("The changes to UCSBDate since version stale-3 are no longer known; read all rows again",
+                                json.get("message"));
+        }
+
+        // Tests for GET /api/ucsbdates/events
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_is_sent_an_event_for_each_date_written() throws Exception {
+                // arrange
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/events"))
+                                .andExpect(request().asyncStarted()).andReturn();
+
+                // act
+                long version = changeLogService.record(UCSBDate.class, ChangeLogService.Kind.UPDATED, List.of(7L));
+
+                // assert: the event is sent by another thread
+                String event = "event:updated\ndata:{\"id\":7}\nid:" + tableVersionService.token(UCSBDate.class, version) + "\n\n";
+                long deadline = System.currentTimeMillis() + 5000;
+                while (!response.getResponse().getContentAsString().contains(event) && System.currentTimeMillis() < deadline) {
+                        Thread.sleep(1);
+                }
+                assertEquals("text/event-stream", response.getResponse().getContentType());
+                assertEquals(event, response.getResponse().getContentAsString());
+        }
 }
@@ -1,6 +1,7 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.TableVersionService;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
@@ -11,6 +12,7 @@ import java.util.Arrays;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
@@ -22,10 +24,26 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 
 import java.util.Optional;
+import jakarta.persistence.Query;
+import edu.ucsb.cs156.example.models.BulkResult;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.models.Delta;
+import edu.ucsb.cs156.example.services.ChangeLogService;
+import edu.ucsb.cs156.example.models.LookupResult;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -34,6 +52,12 @@ import static org.mockito.Mockito.when;
 @Import(TestConfig.class)
 public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
+        @Autowired
+        TableVersionService tableVersionService;
+
+        @Autowired
+        ChangeLogService changeLogService;
+
         @MockBean
         UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
 
@@ -129,6 +153,114 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                 assertEquals("UCSBDiningCommons with id munger-hall not found", json.get("message"));
         }
 
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_by_id_is_not_modified_without_reading_the_row_while_the_table_is_unchanged() throws Exception {
+
+                // arrange
+
+                UCSBDiningCommons commons = UCSBDiningCommons.builder()
+                                .name("Carrillo")
+                                .code("carrillo")
+                                .build();
+
+                when(ucsbDiningCommonsRepository.findById(eq("carrillo"))).thenReturn(Optional.of(commons));
+                String table = tableVersionService.token(UCSBDiningCommons.class);
+
+                // act
+                MvcResult first = mockMvc.perform(get("/api/ucsbdiningcommons?code=carrillo"))
+                                .andExpect(status().isOk()).andReturn();
+                String etag = first.getResponse().getHeader("ETag");
+                MvcResult second = mockMvc.perform(get("/api/ucsbdiningcommons?code=carrillo")
+                                .header("If-None-Match", etag))
+                                .andExpect(status().isNotModified()).andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsRepository, times(1)).findById(eq("carrillo"));
+                assertEquals("\"0." + table + "\"", etag);
+                assertEquals("private, no-cache", first.getResponse().getHeader("Cache-Control"));
+                assertEquals(etag, second.getResponse().getHeader("ETag"));
+                assertEquals("", second.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_by_id_is_not_modified_after_writes_to_other_rows_with_a_new_etag() throws Exception {
+
+                // arrange
+
+                UCSBDiningCommons commons = UCSBDiningCommons.builder()
+                                .name("Carrillo")
+                                .code("carrillo")
+                                .build();
+
+                when(ucsbDiningCommonsRepository.findById(eq("carrillo"))).thenReturn(Optional.of(commons));
+                String etag = "\"0." + tableVersionService.token(UCSBDiningCommons.class) + "\"";
+                changeLogService.record(UCSBDiningCommons.class, ChangeLogService.Kind.UPDATED, List.of("ortega"));
+                String table = tableVersionService.token(UCSBDiningCommons.class);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons?code=carrillo")
+                                .header("If-None-Match", etag))
+                                .andExpect(status().isNotModified()).andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsRepository, times(1)).findById(eq("carrillo"));
+                assertEquals("\"0." + table + "\"", response.getResponse().getHeader("ETag"));
+                assertEquals("", response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_by_id_is_sent_again_after_the_row_changes() throws Exception {
+
+                // arrange
+
+                UCSBDiningCommons commons = UCSBDiningCommons.builder()
+                                .name("Carrillo")
+                                .code("carrillo")
+                                .build();
+
+                when(ucsbDiningCommonsRepository.findById(eq("carrillo"))).thenReturn(Optional.of(commons));
+                String etag = "\"0." + tableVersionService.token(UCSBDiningCommons.class) + "\"";
+                commons.setVersion(1);
+                changeLogService.record(UCSBDiningCommons.class, ChangeLogService.Kind.UPDATED, List.of("carrillo"));
+                String table = tableVersionService.token(UCSBDiningCommons.class);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons?code=carrillo")
+                                .header("If-None-Match", etag))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsRepository, times(1)).findById(eq("carrillo"));
+                assertEquals("\"1." + table + "\"", response.getResponse().getHeader("ETag"));
+                assertEquals(mapper.writeValueAsString(commons), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_all_is_not_modified_without_reading_the_table() throws Exception {
+
+                // arrange
+
+                String etag = tableVersionService.etag(UCSBDiningCommons.class);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/all")
+                                .header("If-None-Match", etag))
+                                .andExpect(status().isNotModified()).andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsRepository, times(0)).findAll();
+                assertEquals(etag, response.getResponse().getHeader("ETag"));
+                assertEquals("", response.getResponse().getContentAsString());
+        }
+
         @WithMockUser(roles = { "USER" })
         @Test
         public void logged_in_user_can_get_all_ucsbdiningcommons() throws Exception {
@@ -189,6 +321,8 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
                 when(ucsbDiningCommonsRepository.save(eq(ortega))).thenReturn(ortega);
 
+                long version = tableVersionService.version(UCSBDiningCommons.class);
+
                 // act
                 MvcResult response = mockMvc.perform(
                                 post("/api/ucsbdiningcommons/post?name=Ortega&code=ortega&hasSackMeal=true&hasTakeOutMeal=true&hasDiningCam=true&latitude=34.410987&longitude=-119.84709")
@@ -197,6 +331,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
                 // assert
                 verify(ucsbDiningCommonsRepository, times(1)).save(ortega);
+                assertEquals(version + 1, tableVersionService.version(UCSBDiningCommons.class));
                 String expectedJson = mapper.writeValueAsString(ortega);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
@@ -217,7 +352,9 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                                 .longitude(-119.867427)
                                 .build();
 
-                when(ucsbDiningCommonsRepository.findById(eq("portola"))).thenReturn(Optional.of(portola));
+                when(ucsbDiningCommonsRepository.removeByCode(eq("portola"))).thenReturn(1);
+
+                long version = tableVersionService.version(UCSBDiningCommons.class);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -226,8 +363,8 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsRepository, times(1)).findById("portola");
-                verify(ucsbDiningCommonsRepository, times(1)).delete(any());
+                verify(ucsbDiningCommonsRepository, times(1)).removeByCode("portola");
+                assertEquals(version + 1, tableVersionService.version(UCSBDiningCommons.class));
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommons with id portola deleted", json.get("message"));
@@ -239,7 +376,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(ucsbDiningCommonsRepository.findById(eq("munger-hall"))).thenReturn(Optional.empty());
+                when(ucsbDiningCommonsRepository.removeByCode(eq("munger-hall"))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -248,7 +385,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsRepository, times(1)).findById("munger-hall");
+                verify(ucsbDiningCommonsRepository, times(1)).removeByCode("munger-hall");
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommons with id munger-hall not found", json.get("message"));
         }
@@ -280,7 +417,9 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(carrilloEdited);
 
-                when(ucsbDiningCommonsRepository.findById(eq("carrillo"))).thenReturn(Optional.of(carrilloOrig));
+                when(ucsbDiningCommonsRepository.updateByCode(eq("carrillo"), eq(carrilloEdited))).thenReturn(1);
+
+                long version = tableVersionService.version(UCSBDiningCommons.class);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -292,10 +431,12 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsRepository, times(1)).findById("carrillo");
-                verify(ucsbDiningCommonsRepository, times(1)).save(carrilloEdited); // should be saved with updated info
+                verify(ucsbDiningCommonsRepository, times(1)).updateByCode(eq("carrillo"), any());
+                verify(ucsbDiningCommonsRepository, never()).findById(any()); // the new version is not known, so no ETag is sent
+                assertEquals(null, response.getResponse().getHeader("ETag"));
+                assertEquals(version + 1, tableVersionService.version(UCSBDiningCommons.class));
                 String responseString = response.getResponse().getContentAsString();
-                assertEquals(requestBody, responseString);
+                assertEquals(withoutVersion(carrilloEdited), responseString);
         }
 
         @WithMockUser(roles = { "ADMIN", "USER" })
@@ -315,7 +456,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(editedCommons);
 
-                when(ucsbDiningCommonsRepository.findById(eq("munger-hall"))).thenReturn(Optional.empty());
+                when(ucsbDiningCommonsRepository.updateByCode(eq("munger-hall"), any())).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -327,9 +468,523 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsRepository, times(1)).findById("munger-hall");
+                verify(ucsbDiningCommonsRepository, times(1)).updateByCode(eq("munger-hall"), any());
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommons with id munger-hall not found", json.get("message"));
 
         }
+
+        // Tests for /api/ucsbdiningcommons/page
+
+        @Test
+        public void logged_out_users_cannot_get_page() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommons/page"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_first_page_of_ucsbdiningcommons() throws Exception {
+                // arrange
+
+                UCSBDiningCommons row1 = UCSBDiningCommons.builder()
+                                .code("carrillo")
+                                .name("Commons 1")
+                                .hasSackMeal(false)
+                                .hasTakeOutMeal(false)
+                                .hasDiningCam(true)
+                                .latitude(34.41)
+                                .longitude(-119.81)
+                                .build();
+                UCSBDiningCommons row2 = UCSBDiningCommons.builder()
+                                .code("dlg")
+                                .name("Commons 2")
+                                .hasSackMeal(false)
+                                .hasTakeOutMeal(false)
+                                .hasDiningCam(true)
+                                .latitude(34.42)
+                                .longitude(-119.82)
+                                .build();
+                UCSBDiningCommons row3 = UCSBDiningCommons.builder()
+                                .code("ortega")
+                                .name("Commons 3")
+                                .hasSackMeal(false)
+                                .hasTakeOutMeal(false)
+                                .hasDiningCam(true)
+                                .latitude(34.43)
+                                .longitude(-119.83)
+                                .build();
+
+                when(ucsbDiningCommonsRepository.findByCodeGreaterThanOrderByCodeAsc(eq(""), eq(Limit.of(3))))
+                                .thenReturn(Arrays.asList(row1, row2, row3));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/page?limit=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, times(1)).findByCodeGreaterThanOrderByCodeAsc(eq(""), eq(Limit.of(3)));
+                String nextCursor = Base64.getUrlEncoder().withoutPadding()
+                                .encodeToString("dlg".getBytes(StandardCharsets.UTF_8));
+                String expectedJson = mapper.writeValueAsString(
+                                new KeysetPage<>(Arrays.asList(row1, row2), 2, nextCursor));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_last_page_of_ucsbdiningcommons_using_cursor() throws Exception {
+                // arrange
+
+                UCSBDiningCommons row3 = UCSBDiningCommons.builder()
+                                .code("ortega")
+                                .name("Commons 3")
+                                .hasSackMeal(false)
+                                .hasTakeOutMeal(false)
+                                .hasDiningCam(true)
+                                .latitude(34.43)
+                                .longitude(-119.83)
+                                .build();
+
+                String cursor = Base64.getUrlEncoder().withoutPadding()
+                                .encodeToString("dlg".getBytes(StandardCharsets.UTF_8));
+                when(ucsbDiningCommonsRepository.findByCodeGreaterThanOrderByCodeAsc(eq("dlg"), eq(Limit.of(51))))
+                                .thenReturn(Arrays.asList(row3));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/page?cursor=" + cursor))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, times(1)).findByCodeGreaterThanOrderByCodeAsc(eq("dlg"), eq(Limit.of(51)));
+                String expectedJson = mapper.writeValueAsString(
+                                new KeysetPage<>(Arrays.asList(row3), 1, null));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // Tests for /api/ucsbdiningcommons/all/stream
+
+        @Test
+        public void logged_out_users_cannot_get_all_stream() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommons/all/stream"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_stream_all_ucsbdiningcommons() throws Exception {
+                // arrange
+
+                UCSBDiningCommons row1 = UCSBDiningCommons.builder()
+                                .code("carrillo")
+                                .name("Commons 1")
+                                .hasSackMeal(false)
+                                .hasTakeOutMeal(false)
+                                .hasDiningCam(true)
+                                .latitude(34.41)
+                                .longitude(-119.81)
+                                .build();
+                UCSBDiningCommons row2 = UCSBDiningCommons.builder()
+                                .code("dlg")
+                                .name("Commons 2")
+                                .hasSackMeal(false)
+                                .hasTakeOutMeal(false)
+                                .hasDiningCam(true)
+                                .latitude(34.42)
+                                .longitude(-119.82)
+                                .build();
+
+                List<UCSBDiningCommons> expected = Arrays.asList(row1, row2);
+                when(ucsbDiningCommonsRepository.streamAllBy()).thenReturn(expected.stream());
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/all/stream"))
+                                .andExpect(status().isOk())
+                                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                                .andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, times(1)).streamAllBy();
+                verify(entityManager, times(2)).detach(any(UCSBDiningCommons.class));
+                String expectedJson = mapper.writeValueAsString(expected);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // Tests for the /api/ucsbdiningcommons/bulk endpoints
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_post_bulk() throws Exception {
+                mockMvc.perform(post("/api/ucsbdiningcommons/bulk").contentType(MediaType.APPLICATION_JSON).content("[]").with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_post_several_commons_and_taken_codes_are_skipped() throws Exception {
+                // arrange
+                UCSBDiningCommons existing = UCSBDiningCommons.builder().code("ortega").name("Ortega").hasSackMeal(true).hasTakeOutMeal(true).hasDiningCam(false).latitude(34.41).longitude(-119.85).build();
+                UCSBDiningCommons taken = UCSBDiningCommons.builder().code("ortega").name("Ortega Commons").hasSackMeal(false).hasTakeOutMeal(true).hasDiningCam(true).latitude(34.42).longitude(-119.86).build();
+                UCSBDiningCommons fresh = UCSBDiningCommons.builder().code("carrillo").name("Ortega Commons").hasSackMeal(false).hasTakeOutMeal(true).hasDiningCam(true).latitude(34.42).longitude(-119.86).build();
+                when(ucsbDiningCommonsRepository.findAllById(eq(List.of("ortega", "carrillo")))).thenReturn(List.of(existing));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/ucsbdiningcommons/bulk")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(mapper.writeValueAsString(List.of(taken, fresh)))
+                                        .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(entityManager, times(1)).persist(fresh);
+                verify(entityManager, times(0)).persist(taken);
+                BulkResult expected = new BulkResult(1, 1,
+                                List.of(new BulkResult.Item("ortega", 409), new BulkResult.Item("carrillo", 201)));
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_update_several_commons_and_missing_ones_are_reported() throws Exception {
+                // arrange
+                UCSBDiningCommons orig = UCSBDiningCommons.builder().code("ortega").name("Ortega").hasSackMeal(true).hasTakeOutMeal(true).hasDiningCam(false).latitude(34.41).longitude(-119.85).build();
+                UCSBDiningCommons edited = UCSBDiningCommons.builder().code("ortega").name("Ortega Commons").hasSackMeal(false).hasTakeOutMeal(true).hasDiningCam(true).latitude(34.42).longitude(-119.86).build();
+                UCSBDiningCommons missing = UCSBDiningCommons.builder().code("carrillo").name("Ortega Commons").hasSackMeal(false).hasTakeOutMeal(true).hasDiningCam(true).latitude(34.42).longitude(-119.86).build();
+                when(ucsbDiningCommonsRepository.findAllById(eq(List.of("ortega", "carrillo")))).thenReturn(List.of(orig));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsbdiningcommons/bulk")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(mapper.writeValueAsString(List.of(edited, missing)))
+                                        .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                assertEquals(edited, orig);
+                BulkResult expected = new BulkResult(1, 1,
+                                List.of(new BulkResult.Item("ortega", 200), new BulkResult.Item("carrillo", 404)));
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_delete_several_commons_and_missing_ones_are_reported() throws Exception {
+                // arrange
+                UCSBDiningCommons row = UCSBDiningCommons.builder().code("ortega").name("Ortega").hasSackMeal(true).hasTakeOutMeal(true).hasDiningCam(false).latitude(34.41).longitude(-119.85).build();
+                when(ucsbDiningCommonsRepository.findAllById(eq(List.of("ortega", "carrillo")))).thenReturn(List.of(row));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                delete("/api/ucsbdiningcommons/bulk")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(mapper.writeValueAsString(List.of("ortega", "carrillo")))
+                                        .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, times(1)).deleteAll(List.of(row));
+                BulkResult expected = new BulkResult(1, 1,
+                                List.of(new BulkResult.Item("ortega", 200), new BulkResult.Item("carrillo", 404)));
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        // Tests for PATCH /api/ucsbdiningcommons
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_patch_one_field_of_a_commons() throws Exception {
+                // arrange
+                UCSBDiningCommons row = UCSBDiningCommons.builder().code("ortega").name("Ortega").hasSackMeal(true).hasTakeOutMeal(true).hasDiningCam(false).latitude(34.41).longitude(-119.85).build();
+                UCSBDiningCommons expected = UCSBDiningCommons.builder().code("ortega").name("Ortega").hasSackMeal(true).hasTakeOutMeal(true).hasDiningCam(false).latitude(34.41).longitude(-119.85).build();
+                expected.setHasDiningCam(true);
+                expected.setVersion(1);
+                when(ucsbDiningCommonsRepository.findById(eq("ortega"))).thenReturn(Optional.of(row));
+                Query update = mock(Query.class);
+                when(entityManager.createQuery("update ucsbdiningcommons e set e.hasDiningCam = :hasDiningCam, e.version = e.version + 1 "
+                        + "where e.code = :id and e.version = :version")).thenReturn(update);
+                when(update.executeUpdate()).thenReturn(1);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/ucsbdiningcommons?code=ortega")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content("{\"code\": \"other\", \"hasDiningCam\": true}")
+                                        .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(update, times(1)).setParameter("id", "ortega");
+                verify(update, times(1)).executeUpdate(); // the code in the body is ignored
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void patching_a_commons_without_changing_anything_writes_nothing() throws Exception {
+                // arrange
+                UCSBDiningCommons row = UCSBDiningCommons.builder().code("ortega").name("Ortega").hasSackMeal(true).hasTakeOutMeal(true).hasDiningCam(false).latitude(34.41).longitude(-119.85).build();
+                when(ucsbDiningCommonsRepository.findById(eq("ortega"))).thenReturn(Optional.of(row));
+                String unchanged = "{\"hasDiningCam\": " + mapper.valueToTree(row).get("hasDiningCam") + "}";
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/ucsbdiningcommons?code=ortega")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(unchanged)
+                                        .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(entityManager, never()).createQuery(anyString());
+                assertEquals(mapper.writeValueAsString(row), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_cannot_patch_a_commons_that_does_not_exist() throws Exception {
+                // arrange
+                when(ucsbDiningCommonsRepository.findById(eq("ortega"))).thenReturn(Optional.empty());
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/ucsbdiningcommons?code=ortega")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content("{\"hasDiningCam\": true}")
+                                        .with(csrf()))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                verify(entityManager, never()).createQuery(anyString());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("UCSBDiningCommons with id ortega not found", json.get("message"));
+        }
+
+        // Tests for If-Match on PUT, PATCH and DELETE /api/ucsbdiningcommons
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_edit_a_commons_at_the_version_they_read() throws Exception {
+                // arrange
+                UCSBDiningCommons edited = UCSBDiningCommons.builder().code("ortega").name("Ortega").build();
+                when(ucsbDiningCommonsRepository.updateByCodeAndVersion(eq("ortega"), eq(3L), any())).thenReturn(1);
+                String table = tableVersionService.token(UCSBDiningCommons.class);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                        put("/api/ucsbdiningcommons?code=ortega")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .header("If-Match", "\"3\"")
+                            .content(mapper.writeValueAsString(edited))
+                            .with(csrf()))
+                        .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, never()).updateByCode(any(), any());
+                verify(ucsbDiningCommonsRepository, never()).findById(any()); // the new version is known without reading the row
+                edited.setVersion(4);
+                assertEquals("\"4." + table + "\"", response.getResponse().getHeader("ETag"));
+                assertEquals(mapper.writeValueAsString(edited), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_cannot_edit_a_commons_changed_since_they_read_it() throws Exception {
+                // arrange
+                UCSBDiningCommons edited = UCSBDiningCommons.builder().code("ortega").name("Ortega").build();
+                when(ucsbDiningCommonsRepository.updateByCodeAndVersion(eq("ortega"), eq(3L), any())).thenReturn(0);
+                when(ucsbDiningCommonsRepository.existsById(eq("ortega"))).thenReturn(true);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                        put("/api/ucsbdiningcommons?code=ortega")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .header("If-Match", "\"3\"")
+                            .content(mapper.writeValueAsString(edited))
+                            .with(csrf()))
+                        .andExpect(status().isPreconditionFailed()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("PreconditionFailedException", json.get("type"));
+                assertEquals("UCSBDiningCommons with id ortega has been changed since it was read", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_cannot_delete_a_commons_changed_since_they_read_it() throws Exception {
+                // arrange
+                when(ucsbDiningCommonsRepository.removeByCodeAndVersion(eq("ortega"), eq(3L))).thenReturn(0);
+                when(ucsbDiningCommonsRepository.existsById(eq("ortega"))).thenReturn(true);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                        delete("/api/ucsbdiningcommons?code=ortega")
+                            .header("If-Match", "\"3\"")
+                            .with(csrf()))
+                        .andExpect(status().isPreconditionFailed()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, never()).removeByCode(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("UCSBDiningCommons with id ortega has been changed since it was read", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_cannot_patch_a_commons_changed_since_they_read_it() throws Exception {
+                // arrange
+                UCSBDiningCommons row = UCSBDiningCommons.builder().code("ortega").name("Ortega").version(4).build();
+                when(ucsbDiningCommonsRepository.findById(eq("ortega"))).thenReturn(Optional.of(row));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                        patch("/api/ucsbdiningcommons?code=ortega")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .header("If-Match", "\"3\"")
+                            .content("{}")
+                            .with(csrf()))
+                        .andExpect(status().isPreconditionFailed()).andReturn();
+
+                // assert
+                verify(entityManager, never()).createQuery(anyString());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("UCSBDiningCommons with id ortega has been changed since it was read", json.get("message"));
+        }
+
+        // Tests for POST /api/ucsbdiningcommons/lookup
+
+        @Test
+        public void logged_out_users_cannot_lookup_commons() throws Exception {
+                mockMvc.perform(post("/api/ucsbdiningcommons/lookup")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("[\"portola\", \"ortega\", \"munger-hall\", \"portola\"]")
+                                .with(csrf()))
+                        .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_lookup_commons_in_request_order() throws Exception {
+                // arrange
+                UCSBDiningCommons first = UCSBDiningCommons.builder().code("ortega").name("Dining Hall").build();
+                UCSBDiningCommons third = UCSBDiningCommons.builder().code("portola").name("Dining Hall").build();
+                when(ucsbDiningCommonsRepository.findAllById(eq(List.of("portola", "ortega", "munger-hall")))).thenReturn(List.of(first, third));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                        post("/api/ucsbdiningcommons/lookup")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("[\"portola\", \"ortega\", \"munger-hall\", \"portola\"]")
+                            .with(csrf()))
+                        .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, times(1)).findAllById(any());
+                LookupResult<UCSBDiningCommons> expected = new LookupResult<>(List.of(third, first), List.of("munger-hall"));
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        // Tests for filter= and sort= on GET /api/ucsbdiningcommons/page
+
+        @SuppressWarnings("unchecked")
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_a_filtered_sorted_page_of_commons() throws Exception {
+                // arrange
+                UCSBDiningCommons first = UCSBDiningCommons.builder().code("ortega").name("Ortega").hasSackMeal(true).build();
+                UCSBDiningCommons second = UCSBDiningCommons.builder().code("portola").name("Portola").hasSackMeal(true).build();
+                Window<UCSBDiningCommons> window = Window.from(List.of(first, second),
+                                i -> ScrollPosition.forward(Map.of("code", "portola")), true);
+                when(ucsbDiningCommonsRepository.findBy(any(Specification.class), any())).thenReturn(window);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/page?limit=2&filter=hasSackMeal=true&sort=name"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, times(1)).findBy(any(Specification.class), any());
+                verify(ucsbDiningCommonsRepository, never()).findByCodeGreaterThanOrderByCodeAsc(any(), any());
+                String nextCursor = Base64.getUrlEncoder().withoutPadding()
+                                .encodeToString("{\"code\":\"portola\"}".getBytes(StandardCharsets.UTF_8));
+                KeysetPage<UCSBDiningCommons> expected = new KeysetPage<>(List.of(first, second), 2, nextCursor);
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @SuppressWarnings("unchecked")
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void filtering_commons_on_a_field_they_do_not_have_is_a_bad_request() throws Exception {
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/page?filter=rating>=4"))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, never()).findBy(any(Specification.class), any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Invalid filter or sort: UCSBDiningCommons has no field rating", json.get("message"));
+        }
+
+        // Tests for GET /api/ucsbdiningcommons/changes
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_the_commons_changed_since_a_version() throws Exception {
+                // arrange: one row saved and one deleted since the version
+                String since = tableVersionService.token(UCSBDiningCommons.class);
+                changeLogService.record(UCSBDiningCommons.class, ChangeLogService.Kind.CREATED, List.of("ortega", "munger-hall"));
+                changeLogService.record(UCSBDiningCommons.class, ChangeLogService.Kind.DELETED, List.of("munger-hall"));
+                UCSBDiningCommons first = UCSBDiningCommons.builder().code("ortega").name("Ortega").hasSackMeal(true).build();
+                when(ucsbDiningCommonsRepository.findAllById(eq(List.of("ortega")))).thenReturn(List.of(first));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/changes?since=" + since))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, times(1)).findAllById(any());
+                Delta<UCSBDiningCommons> expected = new Delta<>(List.of(first), List.of("munger-hall"),
+                                tableVersionService.token(UCSBDiningCommons.class));
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void commons_changes_since_a_version_from_before_a_restart_are_gone() throws Exception {
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/changes?since=stale-3"))
+                                .andExpect(status().isGone()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, never()).findAllById(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("The changes to UCSBDiningCommons since version stale-3 are no longer known; read all rows again",
+                                json.get("message"));
+        }
+
+        // Tests for GET /api/ucsbdiningcommons/events
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_is_sent_an_event_for_each_dining_commons_written() throws Exception {
+                // arrange
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/events"))
+                                .andExpect(request().asyncStarted()).andReturn();
+
+                // act
+                long version = changeLogService.record(UCSBDiningCommons.class, ChangeLogService.Kind.UPDATED, List.of("ortega"));
+
+                // assert: the event is sent by another thread
+                String event = "event:updated\ndata:{\"id\":\"ortega\"}\nid:" + tableVersionService.token(UCSBDiningCommons.class, version) + "\n\n";
+                long deadline = System.currentTimeMillis() + 5000;
+                while (!response.getResponse().getContentAsString().contains(event) && System.currentTimeMillis() < deadline) {
+                        Thread.sleep(1);
+                }
+                assertEquals("text/event-stream", response.getResponse().getContentType());
+                assertEquals(event, response.getResponse().getContentAsString());
+        }
 }
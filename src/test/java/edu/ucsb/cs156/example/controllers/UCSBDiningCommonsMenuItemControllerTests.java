@@ -24,10 +24,29 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 import java.time.LocalDateTime;
 
 import java.util.Optional;
+import jakarta.persistence.Query;
+import edu.ucsb.cs156.example.models.BulkResult;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.models.Delta;
+import edu.ucsb.cs156.example.services.ChangeLogService;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import edu.ucsb.cs156.example.models.LookupResult;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -42,6 +61,12 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
         @MockBean
         UserRepository userRepository;
 
+        @Autowired
+        ChangeLogService changeLogService;
+
+        @Autowired
+        TableVersionService tableVersionService;
+
         // Authorization tests for /api/ucsbdiningcommonsmenuitem/admin/all
         
         @Test
@@ -190,7 +215,7 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
                                 .station("Grill")
                                 .build();
 
-                when(ucsbDiningCommonsMenuItemRepository.findById(eq(15L))).thenReturn(Optional.of(ucsbDiningCommonsMenuItem1));
+                when(ucsbDiningCommonsMenuItemRepository.removeById(eq(15L))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -199,8 +224,7 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findById(15L);
-                verify(ucsbDiningCommonsMenuItemRepository, times(1)).delete(any());
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).removeById(15L);
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommonsMenuItem with id 15 deleted", json.get("message"));
@@ -212,7 +236,7 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
                         throws Exception {
                 // arrange
 
-                when(ucsbDiningCommonsMenuItemRepository.findById(eq(15L))).thenReturn(Optional.empty());
+                when(ucsbDiningCommonsMenuItemRepository.removeById(eq(15L))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -221,7 +245,7 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findById(15L);
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).removeById(15L);
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommonsMenuItem with id 15 not found", json.get("message"));
         }
@@ -244,8 +268,9 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
                                 .build(); 
 
                 String requestBody = mapper.writeValueAsString(ucsbDiningCommonsMenuItemEdited);
+                ucsbDiningCommonsMenuItemEdited.setId(67L);
 
-                when(ucsbDiningCommonsMenuItemRepository.findById(eq(67L))).thenReturn(Optional.of(ucsbDiningCommonsMenuItemOrig));
+                when(ucsbDiningCommonsMenuItemRepository.updateById(eq(67L), eq(ucsbDiningCommonsMenuItemEdited))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -257,10 +282,11 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findById(67L);
-                verify(ucsbDiningCommonsMenuItemRepository, times(1)).save(ucsbDiningCommonsMenuItemEdited); // should be saved with correct user
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).updateById(eq(67L), any());
+                verify(ucsbDiningCommonsMenuItemRepository, never()).findById(any()); // the new version is not known, so no ETag is sent
+                assertEquals(null, response.getResponse().getHeader("ETag"));
                 String responseString = response.getResponse().getContentAsString();
-                assertEquals(requestBody, responseString);
+                assertEquals(withoutVersion(ucsbDiningCommonsMenuItemEdited), responseString);
         }
 
         @WithMockUser(roles = { "ADMIN", "USER" })
@@ -276,7 +302,7 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
 
                 String requestBody = mapper.writeValueAsString(ucsbEditedDiningCommonsMenuItem);
 
-                when(ucsbDiningCommonsMenuItemRepository.findById(eq(67L))).thenReturn(Optional.empty());
+                when(ucsbDiningCommonsMenuItemRepository.updateById(eq(67L), any())).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -288,11 +314,504 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findById(67L);
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).updateById(eq(67L), any());
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommonsMenuItem with id 67 not found", json.get("message"));
 
         }
 
-        
+        // Tests for /api/ucsbdiningcommonsmenuitem/page
+
+        @Test
+        public void logged_out_users_cannot_get_page() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommonsmenuitem/page"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_first_page_of_menuitems() throws Exception {
+                // arrange
+
+                UCSBDiningCommonsMenuItem row1 = UCSBDiningCommonsMenuItem.builder()
+                                .id(1L)
+                                .diningCommonsCode("DLG")
+                                .name("item1")
+                                .station("station1")
+                                .build();
+                UCSBDiningCommonsMenuItem row2 = UCSBDiningCommonsMenuItem.builder()
+                                .id(2L)
+                                .diningCommonsCode("DLG")
+                                .name("item2")
+                                .station("station2")
+                                .build();
+                UCSBDiningCommonsMenuItem row3 = UCSBDiningCommonsMenuItem.builder()
+                                .id(3L)
+                                .diningCommonsCode("DLG")
+                                .name("item3")
+                                .station("station3")
+                                .build();
+
+                when(ucsbDiningCommonsMenuItemRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(Limit.of(3))))
+                                .thenReturn(Arrays.asList(row1, row2, row3));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommonsmenuitem/page?limit=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(Limit.of(3)));
+                String nextCursor = Base64.getUrlEncoder().withoutPadding()
+                                .encodeToString("2".getBytes(StandardCharsets.UTF_8));
+                String expectedJson = mapper.writeValueAsString(
+                                new KeysetPage<>(Arrays.asList(row1, row2), 2, nextCursor));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_last_page_of_menuitems_using_cursor() throws Exception {
+                // arrange
+
+                UCSBDiningCommonsMenuItem row3 = UCSBDiningCommonsMenuItem.builder()
+                                .id(3L)
+                                .diningCommonsCode("DLG")
+                                .name("item3")
+                                .station("station3")
+                                .build();
+
+                String cursor = Base64.getUrlEncoder().withoutPadding()
+                                .encodeToString("2".getBytes(StandardCharsets.UTF_8));
+                when(ucsbDiningCommonsMenuItemRepository.findByIdGreaterThanOrderByIdAsc(eq(2L), eq(Limit.of(51))))
+                                .thenReturn(Arrays.asList(row3));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommonsmenuitem/page?cursor=" + cursor))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(2L), eq(Limit.of(51)));
+                String expectedJson = mapper.writeValueAsString(
+                                new KeysetPage<>(Arrays.asList(row3), 1, null));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // Tests for /api/ucsbdiningcommonsmenuitem/all/stream
+
+        @Test
+        public void logged_out_users_cannot_get_all_stream() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommonsmenuitem/all/stream"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_stream_all_menuitems() throws Exception {
+                // arrange
+
+                UCSBDiningCommonsMenuItem row1 = UCSBDiningCommonsMenuItem.builder()
+                                .id(1L)
+                                .diningCommonsCode("DLG")
+                                .name("item1")
+                                .station("station1")
+                                .build();
+                UCSBDiningCommonsMenuItem row2 = UCSBDiningCommonsMenuItem.builder()
+                                .id(2L)
+                                .diningCommonsCode("DLG")
+                                .name("item2")
+                                .station("station2")
+                                .build();
+
+                List<UCSBDiningCommonsMenuItem> expected = Arrays.asList(row1, row2);
+                when(ucsbDiningCommonsMenuItemRepository.streamAllBy()).thenReturn(expected.stream());
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommonsmenuitem/all/stream"))
+                                .andExpect(status().isOk())
+                                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                                .andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).streamAllBy();
+                verify(entityManager, times(2)).detach(any(UCSBDiningCommonsMenuItem.class));
+                String expectedJson = mapper.writeValueAsString(expected);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // Tests for the /api/ucsbdiningcommonsmenuitem/bulk endpoints
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_post_bulk() throws Exception {
+                mockMvc.perform(post("/api/ucsbdiningcommonsmenuitem/bulk").contentType(MediaType.APPLICATION_JSON).content("[]").with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_post_several_menu_items() throws Exception {
+                // arrange
+                UCSBDiningCommonsMenuItem first = UCSBDiningCommonsMenuItem.builder().id(7L).diningCommonsCode("ortega").name("Baked Pesto Pasta").station("Entree").build();
+                UCSBDiningCommonsMenuItem second = UCSBDiningCommonsMenuItem.builder().diningCommonsCode("portola").name("Tofu Stir Fry").station("Wok").build();
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/ucsbdiningcommonsmenuitem/bulk")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(mapper.writeValueAsString(List.of(first, second)))
+                                        .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert: ids sent by the client are ignored
+                first.setId(0);
+                verify(entityManager, times(1)).persist(first);
+                verify(entityManager, times(1)).persist(second);
+                BulkResult expected = new BulkResult(2, 0,
+                                List.of(new BulkResult.Item(0L, 201), new BulkResult.Item(0L, 201)));
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_update_several_menu_items_and_missing_ones_are_reported() throws Exception {
+                // arrange
+                UCSBDiningCommonsMenuItem orig = UCSBDiningCommonsMenuItem.builder().id(7L).diningCommonsCode("ortega").name("Baked Pesto Pasta").station("Entree").build();
+                UCSBDiningCommonsMenuItem edited = UCSBDiningCommonsMenuItem.builder().id(7L).diningCommonsCode("portola").name("Tofu Stir Fry").station("Wok").build();
+                UCSBDiningCommonsMenuItem missing = UCSBDiningCommonsMenuItem.builder().id(8L).diningCommonsCode("portola").name("Tofu Stir Fry").station("Wok").build();
+                when(ucsbDiningCommonsMenuItemRepository.findAllById(eq(List.of(7L, 8L)))).thenReturn(List.of(orig));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsbdiningcommonsmenuitem/bulk")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(mapper.writeValueAsString(List.of(edited, missing)))
+                                        .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                assertEquals(edited, orig);
+                BulkResult expected = new BulkResult(1, 1,
+                                List.of(new BulkResult.Item(7L, 200), new BulkResult.Item(8L, 404)));
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_delete_several_menu_items_and_missing_ones_are_reported() throws Exception {
+                // arrange
+                UCSBDiningCommonsMenuItem row = UCSBDiningCommonsMenuItem.builder().id(7L).diningCommonsCode("ortega").name("Baked Pesto Pasta").station("Entree").build();
+                when(ucsbDiningCommonsMenuItemRepository.findAllById(eq(List.of(7L, 8L)))).thenReturn(List.of(row));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                delete("/api/ucsbdiningcommonsmenuitem/bulk")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(mapper.writeValueAsString(List.of(7L, 8L)))
+                                        .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).deleteAll(List.of(row));
+                BulkResult expected = new BulkResult(1, 1,
+                                List.of(new BulkResult.Item(7L, 200), new BulkResult.Item(8L, 404)));
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        // Tests for PATCH /api/ucsbdiningcommonsmenuitem
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_patch_one_field_of_a_menu_item() throws Exception {
+                // arrange
+                UCSBDiningCommonsMenuItem row = UCSBDiningCommonsMenuItem.builder().id(7L).diningCommonsCode("ortega").name("Baked Pesto Pasta").station("Entree").build();
+                UCSBDiningCommonsMenuItem expected = UCSBDiningCommonsMenuItem.builder().id(7L).diningCommonsCode("ortega").name("Baked Pesto Pasta").station("Entree").build();
+                expected.setStation("Grill");
+                expected.setVersion(1);
+                when(ucsbDiningCommonsMenuItemRepository.findById(eq(7L))).thenReturn(Optional.of(row));
+                Query update = mock(Query.class);
+                when(entityManager.createQuery("update ucsbdiningcommonsmenuitem e set e.station = :station, e.version = e.version + 1 "
+                        + "where e.id = :id and e.version = :version")).thenReturn(update);
+                when(update.executeUpdate()).thenReturn(1);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/ucsbdiningcommonsmenuitem?id=7")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content("{\"id\": 99, \"station\": \"Grill\"}")
+                                        .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(update, times(1)).setParameter("id", 7L);
+                verify(update, times(1)).executeUpdate(); // the id in the body is ignored
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void patching_a_menu_item_without_changing_anything_writes_nothing() throws Exception {
+                // arrange
+                UCSBDiningCommonsMenuItem row = UCSBDiningCommonsMenuItem.builder().id(7L).diningCommonsCode("ortega").name("Baked Pesto Pasta").station("Entree").build();
+                when(ucsbDiningCommonsMenuItemRepository.findById(eq(7L))).thenReturn(Optional.of(row));
+                String unchanged = "{\"station\": " + mapper.valueToTree(row).get("station") + "}";
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/ucsbdiningcommonsmenuitem?id=7")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(unchanged)
+                                        .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(entityManager, never()).createQuery(anyString());
+                assertEquals(mapper.writeValueAsString(row), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_cannot_patch_a_menu_item_that_does_not_exist() throws Exception {
+                // arrange
+                when(ucsbDiningCommonsMenuItemRepository.findById(eq(7L))).thenReturn(Optional.empty());
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/ucsbdiningcommonsmenuitem?id=7")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content("{\"station\": \"Grill\"}")
+                                        .with(csrf()))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                verify(entityManager, never()).createQuery(anyString());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("UCSBDiningCommonsMenuItem with id 7 not found", json.get("message"));
+        }
+
+        // Tests for If-Match on PUT, PATCH and DELETE /api/ucsbdiningcommonsmenuitem
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_edit_a_menu_item_at_the_version_they_read() throws Exception {
+                // arrange
+                UCSBDiningCommonsMenuItem edited = UCSBDiningCommonsMenuItem.builder().id(7L).name("Baked Pesto Pasta").build();
+                when(ucsbDiningCommonsMenuItemRepository.updateByIdAndVersion(eq(7L), eq(3L), any())).thenReturn(1);
+                String table = tableVersionService.token(UCSBDiningCommonsMenuItem.class);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                        put("/api/ucsbdiningcommonsmenuitem?id=7")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .header("If-Match", "\"3\"")
+                            .content(mapper.writeValueAsString(edited))
+                            .with(csrf()))
+                        .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsMenuItemRepository, never()).updateById(anyLong(), any());
+                verify(ucsbDiningCommonsMenuItemRepository, never()).findById(any()); // the new version is known without reading the row
+                edited.setVersion(4);
+                assertEquals("\"4." + table + "\"", response.getResponse().getHeader("ETag"));
+                assertEquals(mapper.writeValueAsString(edited), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_cannot_edit_a_menu_item_changed_since_they_read_it() throws Exception {
+                // arrange
+                UCSBDiningCommonsMenuItem edited = UCSBDiningCommonsMenuItem.builder().id(7L).name("Baked Pesto Pasta").build();
+                when(ucsbDiningCommonsMenuItemRepository.updateByIdAndVersion(eq(7L), eq(3L), any())).thenReturn(0);
+                when(ucsbDiningCommonsMenuItemRepository.existsById(eq(7L))).thenReturn(true);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                        put("/api/ucsbdiningcommonsmenuitem?id=7")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .header("If-Match", "\"3\"")
+                            .content(mapper.writeValueAsString(edited))
+                            .with(csrf()))
+                        .andExpect(status().isPreconditionFailed()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("PreconditionFailedException", json.get("type"));
+                assertEquals("UCSBDiningCommonsMenuItem with id 7 has been changed since it was read", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_cannot_delete_a_menu_item_changed_since_they_read_it() throws Exception {
+                // arrange
+                when(ucsbDiningCommonsMenuItemRepository.removeByIdAndVersion(eq(7L), eq(3L))).thenReturn(0);
+                when(ucsbDiningCommonsMenuItemRepository.existsById(eq(7L))).thenReturn(true);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                        delete("/api/ucsbdiningcommonsmenuitem?id=7")
+                            .header("If-Match", "\"3\"")
+                            .with(csrf()))
+                        .andExpect(status().isPreconditionFailed()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsMenuItemRepository, never()).removeById(anyLong());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("UCSBDiningCommonsMenuItem with id 7 has been changed since it was read", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_cannot_patch_a_menu_item_changed_since_they_read_it() throws Exception {
+                // arrange
+                UCSBDiningCommonsMenuItem row = UCSBDiningCommonsMenuItem.builder().id(7L).name("Baked Pesto Pasta").version(4).build();
+                when(ucsbDiningCommonsMenuItemRepository.findById(eq(7L))).thenReturn(Optional.of(row));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                        patch("/api/ucsbdiningcommonsmenuitem?id=7")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .header("If-Match", "\"3\"")
+                            .content("{}")
+                            .with(csrf()))
+                        .andExpect(status().isPreconditionFailed()).andReturn();
+
+                // assert
+                verify(entityManager, never()).createQuery(anyString());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("UCSBDiningCommonsMenuItem with id 7 has been changed since it was read", json.get("message"));
+        }
+
+        // Tests for POST /api/ucsbdiningcommonsmenuitem/lookup
+
+        @Test
+        public void logged_out_users_cannot_lookup_menu_items() throws Exception {
+                mockMvc.perform(post("/api/ucsbdiningcommonsmenuitem/lookup")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("[3, 1, 2, 3]")
+                                .with(csrf()))
+                        .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_lookup_menu_items_in_request_order() throws Exception {
+                // arrange
+                UCSBDiningCommonsMenuItem first = UCSBDiningCommonsMenuItem.builder().id(1L).name("Baked Pesto Pasta").build();
+                UCSBDiningCommonsMenuItem third = UCSBDiningCommonsMenuItem.builder().id(3L).name("Baked Pesto Pasta").build();
+                when(ucsbDiningCommonsMenuItemRepository.findAllById(eq(List.of(3L, 1L, 2L)))).thenReturn(List.of(first, third));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                        post("/api/ucsbdiningcommonsmenuitem/lookup")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("[3, 1, 2, 3]")
+                            .with(csrf()))
+                        .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findAllById(any());
+                LookupResult<UCSBDiningCommonsMenuItem> expected = new LookupResult<>(List.of(third, first), List.of(2L));
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        // Tests for filter= and sort= on GET /api/ucsbdiningcommonsmenuitem/page
+
+        @SuppressWarnings("unchecked")
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_a_filtered_sorted_page_of_menu_items() throws Exception {
+                // arrange
+                UCSBDiningCommonsMenuItem first = UCSBDiningCommonsMenuItem.builder().id(1L).diningCommonsCode("ortega").station("Entrees").build();
+                UCSBDiningCommonsMenuItem second = UCSBDiningCommonsMenuItem.builder().id(2L).diningCommonsCode("ortega").station("Grill").build();
+                Window<UCSBDiningCommonsMenuItem> window = Window.from(List.of(first, second),
+                                i -> ScrollPosition.forward(Map.of("id", 2L)), true);
+                when(ucsbDiningCommonsMenuItemRepository.findBy(any(Specification.class), any())).thenReturn(window);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommonsmenuitem/page?limit=2&filter=diningCommonsCode=ortega&sort=station"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findBy(any(Specification.class), any());
+                verify(ucsbDiningCommonsMenuItemRepository, never()).findByIdGreaterThanOrderByIdAsc(anyLong(), any());
+                String nextCursor = Base64.getUrlEncoder().withoutPadding()
+                                .encodeToString("{\"id\":2}".getBytes(StandardCharsets.UTF_8));
+                KeysetPage<UCSBDiningCommonsMenuItem> expected = new KeysetPage<>(List.of(first, second), 2, nextCursor);
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @SuppressWarnings("unchecked")
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void filtering_menu_items_on_a_field_they_do_not_have_is_a_bad_request() throws Exception {
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommonsmenuitem/page?filter=rating>=4"))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsMenuItemRepository, never()).findBy(any(Specification.class), any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Invalid filter or sort: UCSBDiningCommonsMenuItem has no field rating", json.get("message"));
+        }
+
+        // Tests for GET /api/ucsbdiningcommonsmenuitem/changes
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_the_menu_items_changed_since_a_version() throws Exception {
+                // arrange: one row saved and one deleted since the version
+                String since = tableVersionService.token(UCSBDiningCommonsMenuItem.class);
+                changeLogService.record(UCSBDiningCommonsMenuItem.class, ChangeLogService.Kind.CREATED, List.of(1L, 2L));
+                changeLogService.record(UCSBDiningCommonsMenuItem.class, ChangeLogService.Kind.DELETED, List.of(2L));
+                UCSBDiningCommonsMenuItem first = UCSBDiningCommonsMenuItem.builder().id(1L).diningCommonsCode("ortega").station("Entrees").build();
+                when(ucsbDiningCommonsMenuItemRepository.findAllById(eq(List.of(1L)))).thenReturn(List.of(first));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommonsmenuitem/changes?since=" + since))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findAllById(any());
+                Delta<UCSBDiningCommonsMenuItem> expected = new Delta<>(List.of(first), List.of(2L),
+                                tableVersionService.token(UCSBDiningCommonsMenuItem.class));
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void menu_items_changes_since_a_version_from_before_a_restart_are_gone() throws Exception {
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommonsmenuitem/changes?since=stale-3"))
+                                .andExpect(status().isGone()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsMenuItemRepository, never()).findAllById(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("The changes to UCSBDiningCommonsMenuItem since version stale-3 are no longer known; read all rows again",
+                                json.get("message"));
+        }
+
+        // Tests for GET /api/ucsbdiningcommonsmenuitem/events
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_is_sent_an_event_for_each_menu_item_written() throws Exception {
+                // arrange
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommonsmenuitem/events"))
+                                .andExpect(request().asyncStarted()).andReturn();
+
+                // act
+                long version = changeLogService.record(UCSBDiningCommonsMenuItem.class, ChangeLogService.Kind.UPDATED, List.of(7L));
+
+                // assert: the event is sent by another thread
+                String event = "event:updated\ndata:{\"id\":7}\nid:" + tableVersionService.token(UCSBDiningCommonsMenuItem.class, version) + "\n\n";
+                long deadline = System.currentTimeMillis() + 5000;
+                while (!response.getResponse().getContentAsString().contains(event) && System.currentTimeMillis() < deadline) {
+                        Thread.sleep(1);
+                }
+                assertEquals("text/event-stream", response.getResponse().getContentType());
+                assertEquals(event, response.getResponse().getContentAsString());
+        }
 }
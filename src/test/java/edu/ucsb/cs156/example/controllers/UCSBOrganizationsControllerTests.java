@@ -1,6 +1,7 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.TableVersionService;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.UCSBOrganizations;
@@ -11,6 +12,7 @@ import java.util.Arrays;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
@@ -22,10 +24,26 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 
 import java.util.Optional;
+import jakarta.persistence.Query;
+import edu.ucsb.cs156.example.models.BulkResult;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.models.Delta;
+import edu.ucsb.cs156.example.services.ChangeLogService;
+import edu.ucsb.cs156.example.models.LookupResult;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -34,6 +52,12 @@ import static org.mockito.Mockito.when;
 @Import(TestConfig.class)
 public class UCSBOrganizationsControllerTests extends ControllerTestCase {
 
+        @Autowired
+        TableVersionService tableVersionService;
+
+        @Autowired
+        ChangeLogService changeLogService;
+
         @MockBean
         UCSBOrganizationsRepository ucsbOrganizationsRepository;
 
@@ -177,6 +201,8 @@ public class UCSBOrganizationsControllerTests extends ControllerTestCase {
 
                 when(ucsbOrganizationsRepository.save(eq(OSLI))).thenReturn(OSLI);
 
+                long version = tableVersionService.version(UCSBOrganizations.class);
+
                 // act
                 MvcResult response = mockMvc.perform(
                                 post("/api/ucsborganizations/post?orgcode=OSLI&orgTranslationShort=STUDENT LIFE&orgTranslation=OFFICE OF STUDENT LIFE&inactive=true")
@@ -185,6 +211,7 @@ public class UCSBOrganizationsControllerTests extends ControllerTestCase {
 
                 // assert
                 verify(ucsbOrganizationsRepository, times(1)).save(OSLI);
+                assertEquals(version + 1, tableVersionService.version(UCSBOrganizations.class));
                 String expectedJson = mapper.writeValueAsString(OSLI);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
@@ -200,7 +227,9 @@ public class UCSBOrganizationsControllerTests extends ControllerTestCase {
                                 .inactive(false)
                                 .build();
 
-                when(ucsbOrganizationsRepository.findById(eq("KRC"))).thenReturn(Optional.of(KRC));
+                when(ucsbOrganizationsRepository.removeByOrgcode(eq("KRC"))).thenReturn(1);
+
+                long version = tableVersionService.version(UCSBOrganizations.class);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -209,8 +238,8 @@ public class UCSBOrganizationsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbOrganizationsRepository, times(1)).findById("KRC");
-                verify(ucsbOrganizationsRepository, times(1)).delete(any());
+                verify(ucsbOrganizationsRepository, times(1)).removeByOrgcode("KRC");
+                assertEquals(version + 1, tableVersionService.version(UCSBOrganizations.class));
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBOrganizations with id KRC deleted", json.get("message"));
@@ -222,7 +251,7 @@ public class UCSBOrganizationsControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(ucsbOrganizationsRepository.findById(eq("munger-hall"))).thenReturn(Optional.empty());
+                when(ucsbOrganizationsRepository.removeByOrgcode(eq("munger-hall"))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -231,7 +260,7 @@ public class UCSBOrganizationsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbOrganizationsRepository, times(1)).findById("munger-hall");
+                verify(ucsbOrganizationsRepository, times(1)).removeByOrgcode("munger-hall");
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBOrganizations with id munger-hall not found", json.get("message"));
         }
@@ -256,8 +285,11 @@ public class UCSBOrganizationsControllerTests extends ControllerTestCase {
                                 .build();
 
                 String requestBody = mapper.writeValueAsString(ZPREdited);
+                ZPREdited.setOrgcode("ZPR"); // the orgcode in the body is ignored
 
-                when(ucsbOrganizationsRepository.findById(eq("ZPR"))).thenReturn(Optional.of(ZPR));
+                when(ucsbOrganizationsRepository.updateByOrgcode(eq("ZPR"), eq(ZPREdited))).thenReturn(1);
+
+                long version = tableVersionService.version(UCSBOrganizations.class);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -269,10 +301,12 @@ public class UCSBOrganizationsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbOrganizationsRepository, times(1)).findById("ZPR");
-                verify(ucsbOrganizationsRepository, times(1)).save(ZPREdited); // should be saved with updated info
+                verify(ucsbOrganizationsRepository, times(1)).updateByOrgcode(eq("ZPR"), any());
+                verify(ucsbOrganizationsRepository, never()).findById(any()); // the new version is not known, so no ETag is sent
+                assertEquals(null, response.getResponse().getHeader("ETag"));
+                assertEquals(version + 1, tableVersionService.version(UCSBOrganizations.class));
                 String responseString = response.getResponse().getContentAsString();
-                assertEquals(requestBody, responseString);
+                assertEquals(withoutVersion(ZPREdited), responseString);
         }
 
         @WithMockUser(roles = { "ADMIN", "USER" })
@@ -289,7 +323,7 @@ public class UCSBOrganizationsControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(editedOrganizations);
 
-                when(ucsbOrganizationsRepository.findById(eq("munger-hall"))).thenReturn(Optional.empty());
+                when(ucsbOrganizationsRepository.updateByOrgcode(eq("munger-hall"), any())).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -301,9 +335,543 @@ public class UCSBOrganizationsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbOrganizationsRepository, times(1)).findById("munger-hall");
+                verify(ucsbOrganizationsRepository, times(1)).updateByOrgcode(eq("munger-hall"), any());
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBOrganizations with id munger-hall not found", json.get("message"));
 
         }
+
+        // Tests for /api/ucsborganizations/page
+
+        @Test
+        public void logged_out_users_cannot_get_page() throws Exception {
+                mockMvc.perform(get("/api/ucsborganizations/page"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_first_page_of_ucsborganizations() throws Exception {
+                // arrange
+
+                UCSBOrganizations row1 = UCSBOrganizations.builder()
+                                .orgcode("AAA")
+                                .orgTranslationShort("ORG1")
+                                .orgTranslation("ORGANIZATION 1")
+                                .inactive(false)
+                                .build();
+                UCSBOrganizations row2 = UCSBOrganizations.builder()
+                                .orgcode("BBB")
+                                .orgTranslationShort("ORG2")
+                                .orgTranslation("ORGANIZATION 2")
+                                .inactive(false)
+                                .build();
+                UCSBOrganizations row3 = UCSBOrganizations.builder()
+                                .orgcode("CCC")
+                                .orgTranslationShort("ORG3")
+                                .orgTranslation("ORGANIZATION 3")
+                                .inactive(false)
+                                .build();
+
+                when(ucsbOrganizationsRepository.findByOrgcodeGreaterThanOrderByOrgcodeAsc(eq(""), eq(Limit.of(3))))
+                                .thenReturn(Arrays.asList(row1, row2, row3));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsborganizations/page?limit=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbOrganizationsRepository, times(1)).findByOrgcodeGreaterThanOrderByOrgcodeAsc(eq(""), eq(Limit.of(3)));
+                String nextCursor = Base64.getUrlEncoder().withoutPadding()
+                                .encodeToString("BBB".getBytes(StandardCharsets.UTF_8));
+                String expectedJson = mapper.writeValueAsString(
+                                new KeysetPage<>(Arrays.asList(row1, row2), 2, nextCursor));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_last_page_of_ucsborganizations_using_cursor() throws Exception {
+                // arrange
+
+                UCSBOrganizations row3 = UCSBOrganizations.builder()
+                                .orgcode("CCC")
+                                .orgTranslationShort("ORG3")
+                                .orgTranslation("ORGANIZATION 3")
+                                .inactive(false)
+                                .build();
+
+                String cursor = Base64.getUrlEncoder().withoutPadding()
+                                .encodeToString("BBB".getBytes(StandardCharsets.UTF_8));
+                when(ucsbOrganizationsRepository.findByOrgcodeGreaterThanOrderByOrgcodeAsc(eq("BBB"), eq(Limit.of(51))))
+                                .thenReturn(Arrays.asList(row3));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsborganizations/page?cursor=" + cursor))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbOrganizationsRepository, times(1)).findByOrgcodeGreaterThanOrderByOrgcodeAsc(eq("BBB"), eq(Limit.of(51)));
+                String expectedJson = mapper.writeValueAsString(
+                                new KeysetPage<>(Arrays.asList(row3), 1, null));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void page_with_a_cursor_that_is_not_base64_returns_bad_request() throws Exception {
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsborganizations/page?cursor=*"))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Invalid cursor *", json.get("message"));
+        }
+
+        // Tests for /api/ucsborganizations/all/stream
+
+        @Test
+        public void logged_out_users_cannot_get_all_stream() throws Exception {
+                mockMvc.perform(get("/api/ucsborganizations/all/stream"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_stream_all_ucsborganizations() throws Exception {
+                // arrange
+
+                UCSBOrganizations row1 = UCSBOrganizations.builder()
+                                .orgcode("AAA")
+                                .orgTranslationShort("ORG1")
+                                .orgTranslation("ORGANIZATION 1")
+                                .inactive(false)
+                                .build();
+                UCSBOrganizations row2 = UCSBOrganizations.builder()
+                                .orgcode("BBB")
+                                .orgTranslationShort("ORG2")
+                                .orgTranslation("ORGANIZATION 2")
+                                .inactive(false)
+                                .build();
+
+                List<UCSBOrganizations> expected = Arrays.asList(row1, row2);
+                when(ucsbOrganizationsRepository.streamAllBy()).thenReturn(expected.stream());
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsborganizations/all/stream"))
+                                .andExpect(status().isOk())
+                                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                                .andReturn();
+
+                // assert
+                verify(ucsbOrganizationsRepository, times(1)).streamAllBy();
+                verify(entityManager, times(2)).detach(any(UCSBOrganizations.class));
+                String expectedJson = mapper.writeValueAsString(expected);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        // Tests for the /api/ucsborganizations/bulk endpoints
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_post_bulk() throws Exception {
+                mockMvc.perform(post("/api/ucsborganizations/bulk").contentType(MediaType.APPLICATION_JSON).content("[]").with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_post_several_organizations_and_taken_codes_are_skipped() throws Exception {
+                // arrange
+                UCSBOrganizations existing = UCSBOrganizations.builder().orgcode("ZPR").orgTranslationShort("ZETA PHI RHO").orgTranslation("ZETA PHI RHO").inactive(false).build();
+                UCSBOrganizations taken = UCSBOrganizations.builder().orgcode("ZPR").orgTranslationShort("ZPR").orgTranslation("ZETA PHI RHO FRATERNITY").inactive(true).build();
+                UCSBOrganizations fresh = UCSBOrganizations.builder().orgcode("SKY").orgTranslationShort("ZPR").orgTranslation("ZETA PHI RHO FRATERNITY").inactive(true).build();
+                when(ucsbOrganizationsRepository.findAllById(eq(List.of("ZPR", "SKY")))).thenReturn(List.of(existing));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/ucsborganizations/bulk")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(mapper.writeValueAsString(List.of(taken, fresh)))
+                                        .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(entityManager, times(1)).persist(fresh);
+                verify(entityManager, times(0)).persist(taken);
+                BulkResult expected = new BulkResult(1, 1,
+                                List.of(new BulkResult.Item("ZPR", 409), new BulkResult.Item("SKY", 201)));
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_cannot_post_organizations_without_the_fields_post_requires() throws Exception {
+                // arrange
+                UCSBOrganizations fresh = UCSBOrganizations.builder().orgcode("SKY").orgTranslationShort("SKY").orgTranslation("SKYDIVING CLUB").inactive(false).build();
+                String body = "[{\"orgcode\":\"ZPR\",\"orgTranslationShort\":\"ZPR\",\"orgTranslation\":null,\"inactive\":true},"
+                                + "{\"orgcode\":\"KRC\",\"orgTranslationShort\":\"KRC\",\"orgTranslation\":\"KOREAN RADIO CL\"},"
+                                + mapper.writeValueAsString(fresh) + "]";
+                when(ucsbOrganizationsRepository.findAllById(eq(List.of("SKY")))).thenReturn(List.of());
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/ucsborganizations/bulk")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(body)
+                                        .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(entityManager, times(1)).persist(any());
+                verify(entityManager, times(1)).persist(fresh);
+                BulkResult expected = new BulkResult(1, 2, List.of(new BulkResult.Item(null, 400),
+                                new BulkResult.Item(null, 400), new BulkResult.Item("SKY", 201)));
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_update_several_organizations_and_missing_ones_are_reported() throws Exception {
+                // arrange
+                UCSBOrganizations orig = UCSBOrganizations.builder().orgcode("ZPR").orgTranslationShort("ZETA PHI RHO").orgTranslation("ZETA PHI RHO").inactive(false).build();
+                UCSBOrganizations edited = UCSBOrganizations.builder().orgcode("ZPR").orgTranslationShort("ZPR").orgTranslation("ZETA PHI RHO FRATERNITY").inactive(true).build();
+                UCSBOrganizations missing = UCSBOrganizations.builder().orgcode("SKY").orgTranslationShort("ZPR").orgTranslation("ZETA PHI RHO FRATERNITY").inactive(true).build();
+                when(ucsbOrganizationsRepository.findAllById(eq(List.of("ZPR", "SKY")))).thenReturn(List.of(orig));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsborganizations/bulk")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(mapper.writeValueAsString(List.of(edited, missing)))
+                                        .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                assertEquals(edited, orig);
+                BulkResult expected = new BulkResult(1, 1,
+                                List.of(new BulkResult.Item("ZPR", 200), new BulkResult.Item("SKY", 404)));
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_delete_several_organizations_and_missing_ones_are_reported() throws Exception {
+                // arrange
+                UCSBOrganizations row = UCSBOrganizations.builder().orgcode("ZPR").orgTranslationShort("ZETA PHI RHO").orgTranslation("ZETA PHI RHO").inactive(false).build();
+                when(ucsbOrganizationsRepository.findAllById(eq(List.of("ZPR", "SKY")))).thenReturn(List.of(row));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                delete("/api/ucsborganizations/bulk")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(mapper.writeValueAsString(List.of("ZPR", "SKY")))
+                                        .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbOrganizationsRepository, times(1)).deleteAll(List.of(row));
+                BulkResult expected = new BulkResult(1, 1,
+                                List.of(new BulkResult.Item("ZPR", 200), new BulkResult.Item("SKY", 404)));
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        // Tests for PATCH /api/ucsborganizations
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_patch_one_field_of_an_organization() throws Exception {
+                // arrange
+                UCSBOrganizations row = UCSBOrganizations.builder().orgcode("ZPR").orgTranslationShort("ZETA PHI RHO").orgTranslation("ZETA PHI RHO").inactive(false).build();
+                UCSBOrganizations expected = UCSBOrganizations.builder().orgcode("ZPR").orgTranslationShort("ZETA PHI RHO").orgTranslation("ZETA PHI RHO").inactive(false).build();
+                expected.setInactive(true);
+                expected.setVersion(1);
+                when(ucsbOrganizationsRepository.findById(eq("ZPR"))).thenReturn(Optional.of(row));
+                Query update = mock(Query.class);
+                when(entityManager.createQuery("update ucsborganizations e set e.inactive = :inactive, e.version = e.version + 1 "
+                        + "where e.orgcode = :id and e.version = :version")).thenReturn(update);
+                when(update.executeUpdate()).thenReturn(1);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/ucsborganizations?orgcode=ZPR")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content("{\"orgcode\": \"other\", \"inactive\": true}")
+                                        .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(update, times(1)).setParameter("id", "ZPR");
+                verify(update, times(1)).executeUpdate(); // the orgcode in the body is ignored
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void patching_an_organization_without_changing_anything_writes_nothing() throws Exception {
+                // arrange
+                UCSBOrganizations row = UCSBOrganizations.builder().orgcode("ZPR").orgTranslationShort("ZETA PHI RHO").orgTranslation("ZETA PHI RHO").inactive(false).build();
+                when(ucsbOrganizationsRepository.findById(eq("ZPR"))).thenReturn(Optional.of(row));
+                String unchanged = "{\"inactive\": " + mapper.valueToTree(row).get("inactive") + "}";
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/ucsborganizations?orgcode=ZPR")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(unchanged)
+                                        .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(entityManager, never()).createQuery(anyString());
+                assertEquals(mapper.writeValueAsString(row), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_cannot_patch_an_organization_that_does_not_exist() throws Exception {
+                // arrange
+                when(ucsbOrganizationsRepository.findById(eq("ZPR"))).thenReturn(Optional.empty());
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/ucsborganizations?orgcode=ZPR")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content("{\"inactive\": true}")
+                                        .with(csrf()))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                verify(entityManager, never()).createQuery(anyString());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("UCSBOrganizations with id ZPR not found", json.get("message"));
+        }
+
+        // Tests for If-Match on PUT, PATCH and DELETE /api/ucsborganizations
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_edit_an_organization_at_the_version_they_read() throws Exception {
+                // arrange
+                UCSBOrganizations edited = UCSBOrganizations.builder().orgcode("ZPR").orgTranslationShort("ZETA PHI RHO").build();
+                when(ucsbOrganizationsRepository.updateByOrgcodeAndVersion(eq("ZPR"), eq(3L), any())).thenReturn(1);
+                String table = tableVersionService.token(UCSBOrganizations.class);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                        put("/api/ucsborganizations?orgcode=ZPR")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .header("If-Match", "\"3\"")
+                            .content(mapper.writeValueAsString(edited))
+                            .with(csrf()))
+                        .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbOrganizationsRepository, never()).updateByOrgcode(any(), any());
+                verify(ucsbOrganizationsRepository, never()).findById(any()); // the new version is known without reading the row
+                edited.setVersion(4);
+                assertEquals("\"4." + table + "\"", response.getResponse().getHeader("ETag"));
+                assertEquals(mapper.writeValueAsString(edited), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_cannot_edit_an_organization_changed_since_they_read_it() throws Exception {
+                // arrange
+                UCSBOrganizations edited = UCSBOrganizations.builder().orgcode("ZPR").orgTranslationShort("ZETA PHI RHO").build();
+                when(ucsbOrganizationsRepository.updateByOrgcodeAndVersion(eq("ZPR"), eq(3L), any())).thenReturn(0);
+                when(ucsbOrganizationsRepository.existsById(eq("ZPR"))).thenReturn(true);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                        put("/api/ucsborganizations?orgcode=ZPR")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .header("If-Match", "\"3\"")
+                            .content(mapper.writeValueAsString(edited))
+                            .with(csrf()))
+                        .andExpect(status().isPreconditionFailed()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("PreconditionFailedException", json.get("type"));
+                assertEquals("UCSBOrganizations with id ZPR has been changed since it was read", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_cannot_delete_an_organization_changed_since_they_read_it() throws Exception {
+                // arrange
+                when(ucsbOrganizationsRepository.removeByOrgcodeAndVersion(eq("ZPR"), eq(3L))).thenReturn(0);
+                when(ucsbOrganizationsRepository.existsById(eq("ZPR"))).thenReturn(true);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                        delete("/api/ucsborganizations?orgcode=ZPR")
+                            .header("If-Match", "\"3\"")
+                            .with(csrf()))
+                        .andExpect(status().isPreconditionFailed()).andReturn();
+
+                // assert
+                verify(ucsbOrganizationsRepository, never()).removeByOrgcode(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("UCSBOrganizations with id ZPR has been changed since it was read", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_cannot_patch_an_organization_changed_since_they_read_it() throws Exception {
+                // arrange
+                UCSBOrganizations row = UCSBOrganizations.builder().orgcode("ZPR").orgTranslationShort("ZETA PHI RHO").version(4).build();
+                when(ucsbOrganizationsRepository.findById(eq("ZPR"))).thenReturn(Optional.of(row));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                        patch("/api/ucsborganizations?orgcode=ZPR")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .header("If-Match", "\"3\"")
+                            .content("{}")
+                            .with(csrf()))
+                        .andExpect(status().isPreconditionFailed()).andReturn();
+
+                // assert
+                verify(entityManager, never()).createQuery(anyString());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("UCSBOrganizations with id ZPR has been changed since it was read", json.get("message"));
+        }
+
+        // Tests for POST /api/ucsborganizations/lookup
+
+        @Test
+        public void logged_out_users_cannot_lookup_organizations() throws Exception {
+                mockMvc.perform(post("/api/ucsborganizations/lookup")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("[\"ZPR\", \"KRC\", \"OSLI\", \"ZPR\"]")
+                                .with(csrf()))
+                        .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_lookup_organizations_in_request_order() throws Exception {
+                // arrange
+                UCSBOrganizations first = UCSBOrganizations.builder().orgcode("KRC").orgTranslation("Student Org").build();
+                UCSBOrganizations third = UCSBOrganizations.builder().orgcode("ZPR").orgTranslation("Student Org").build();
+                when(ucsbOrganizationsRepository.findAllById(eq(List.of("ZPR", "KRC", "OSLI")))).thenReturn(List.of(first, third));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                        post("/api/ucsborganizations/lookup")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("[\"ZPR\", \"KRC\", \"OSLI\", \"ZPR\"]")
+                            .with(csrf()))
+                        .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbOrganizationsRepository, times(1)).findAllById(any());
+                LookupResult<UCSBOrganizations> expected = new LookupResult<>(List.of(third, first), List.of("OSLI"));
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        // Tests for filter= and sort= on GET /api/ucsborganizations/page
+
+        @SuppressWarnings("unchecked")
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_a_filtered_sorted_page_of_organizations() throws Exception {
+                // arrange
+                UCSBOrganizations first = UCSBOrganizations.builder().orgcode("KRC").orgTranslationShort("Korean Radio").build();
+                UCSBOrganizations second = UCSBOrganizations.builder().orgcode("ZPR").orgTranslationShort("Zeta Phi Rho").build();
+                Window<UCSBOrganizations> window = Window.from(List.of(first, second),
+                                i -> ScrollPosition.forward(Map.of("orgcode", "ZPR")), true);
+                when(ucsbOrganizationsRepository.findBy(any(Specification.class), any())).thenReturn(window);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsborganizations/page?limit=2&filter=inactive=false&sort=orgTranslationShort"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbOrganizationsRepository, times(1)).findBy(any(Specification.class), any());
+                verify(ucsbOrganizationsRepository, never()).findByOrgcodeGreaterThanOrderByOrgcodeAsc(any(), any());
+                String nextCursor = Base64.getUrlEncoder().withoutPadding()
+                                .encodeToString("{\"orgcode\":\"ZPR\"}".getBytes(StandardCharsets.UTF_8));
+                KeysetPage<UCSBOrganizations> expected = new KeysetPage<>(List.of(first, second), 2, nextCursor);
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @SuppressWarnings("unchecked")
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void filtering_organizations_on_a_field_they_do_not_have_is_a_bad_request() throws Exception {
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsborganizations/page?filter=rating>=4"))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(ucsbOrganizationsRepository, never()).findBy(any(Specification.class), any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Invalid filter or sort: UCSBOrganizations has no field rating", json.get("message"));
+        }
+
+        // Tests for GET /api/ucsborganizations/changes
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_the_organizations_changed_since_a_version() throws Exception {
+                // arrange: one row saved and one deleted since the version
+                String since = tableVersionService.token(UCSBOrganizations.class);
+                changeLogService.record(UCSBOrganizations.class, ChangeLogService.Kind.CREATED, List.of("KRC", "ZPR"));
+                changeLogService.record(UCSBOrganizations.class, ChangeLogService.Kind.DELETED, List.of("ZPR"));
+                UCSBOrganizations first = UCSBOrganizations.builder().orgcode("KRC").orgTranslationShort("Korean Radio").build();
+                when(ucsbOrganizationsRepository.findAllById(eq(List.of("KRC")))).thenReturn(List.of(first));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsborganizations/changes?since=" + since))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbOrganizationsRepository, times(1)).findAllById(any());
+                Delta<UCSBOrganizations> expected = new Delta<>(List.of(first), List.of("ZPR"),
+                                tableVersionService.token(UCSBOrganizations.class));
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void organizations_changes_since_a_version_from_before_a_restart_are_gone() throws Exception {
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsborganizations/changes?since=stale-3"))
+                                .andExpect(status().isGone()).andReturn();
+
+                // assert
+                verify(ucsbOrganizationsRepository, never()).findAllById(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("The changes to UCSBOrganizations since version stale-3 are no longer known; read all rows again",
+                                json.get("message"));
+        }
+
+        // Tests for GET /api/ucsborganizations/events
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_is_sent_an_event_for_each_organization_written() throws Exception {
+                // arrange
+                MvcResult response = mockMvc.perform(get("/api/ucsborganizations/events"))
+                                .andExpect(request().asyncStarted()).andReturn();
+
+                // act
+                long version = changeLogService.record(UCSBOrganizations.class, ChangeLogService.Kind.UPDATED, List.of("KRC"));
+
+                // assert: the event is sent by another thread
+                String event = "event:updated\ndata:{\"id\":\"KRC\"}\nid:" + tableVersionService.token(UCSBOrganizations.class, version) + "\n\n";
+                long deadline = System.currentTimeMillis() + 5000;
+                while (!response.getResponse().getContentAsString().contains(event) && System.currentTimeMillis() < deadline) {
+                        Thread.sleep(1);
+                }
+                assertEquals("text/event-stream", response.getResponse().getContentType());
+                assertEquals(event, response.getResponse().getContentAsString());
+        }
 }
@@ -0,0 +1,108 @@
+package edu.ucsb.cs156.example.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.repositories.RestaurantRepository;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Inserts and updates through JPA are sent as JDBC batches now that ids come
+ * from sequences (see the *_SEQ changesets and hibernate.jdbc.batch_size).
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@ActiveProfiles("integration")
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class BatchInsertIT {
+        @Autowired
+        RestaurantRepository restaurantRepository;
+
+        @Autowired
+        JdbcTemplate jdbcTemplate;
+
+        @Autowired
+        TransactionTemplate transactionTemplate;
+
+        @Autowired
+        EntityManagerFactory entityManagerFactory;
+
+        Statistics statistics;
+
+        @BeforeEach
+        public void setup() {
+                statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+                statistics.clear();
+        }
+
+        private List<Restaurant> restaurants(int count) {
+                List<Restaurant> restaurants = new ArrayList<>();
+                for (int i = 0; i < count; i++) {
+                        restaurants.add(Restaurant.builder().name("Restaurant " + i).description("Tacos").build());
+                }
+                return restaurants;
+        }
+
+        @Test
+        public void saveAll_sends_inserts_in_batches() {
+                List<Restaurant> saved = restaurantRepository.saveAll(restaurants(120));
+
+                // 3 sequence calls (blocks of 50) and 3 batches of inserts, rather than 120 inserts
+                assertTrue(statistics.getPrepareStatementCount() <= 6,
+                                "statements prepared: " + statistics.getPrepareStatementCount());
+                assertEquals(120, statistics.getEntityInsertCount());
+                assertEquals(120, restaurantRepository.count());
+
+                Set<Long> ids = saved.stream().map(Restaurant::getId).collect(Collectors.toSet());
+                assertEquals(120, ids.size());
+        }
+
+        @Test
+        public void dirty_rows_are_updated_in_batches() {
+                restaurantRepository.saveAll(restaurants(120));
+                statistics.clear();
+
+                transactionTemplate.executeWithoutResult(status -> restaurantRepository.findAll()
+                                .forEach(r -> r.setDescription("Burritos")));
+
+                // the SELECT and 3 batches of updates
+                assertEquals(120, statistics.getEntityUpdateCount());
+                assertTrue(statistics.getPrepareStatementCount() <= 4,
+                                "statements prepared: " + statistics.getPrepareStatementCount());
+                assertEquals(120, jdbcTemplate.queryForObject(
+                                "SELECT COUNT(*) FROM RESTAURANTS WHERE DESCRIPTION = 'Burritos'", Integer.class));
+        }
+
+        @Test
+        public void rows_inserted_with_sql_do_not_collide_with_allocated_ids() {
+                Restaurant first = restaurantRepository.save(Restaurant.builder().name("First").description("").build());
+                jdbcTemplate.update("INSERT INTO RESTAURANTS (NAME, DESCRIPTION) VALUES ('Plain SQL', '')");
+                Restaurant second = restaurantRepository.save(Restaurant.builder().name("Second").description("").build());
+
+                long sqlId = jdbcTemplate.queryForObject("SELECT ID FROM RESTAURANTS WHERE NAME = 'Plain SQL'",
+                                Long.class);
+                assertEquals(first.getId() + 1, second.getId());
+                assertTrue(sqlId >= first.getId() + 50, "id of the row inserted with SQL: " + sqlId);
+                assertEquals(3, restaurantRepository.count());
+        }
+}
@@ -0,0 +1,124 @@
+package edu.ucsb.cs156.example.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.models.BulkResult;
+import edu.ucsb.cs156.example.repositories.RestaurantRepository;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * The /bulk endpoints write all of their rows with a few batched statements.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("integration")
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+@WithMockUser(roles = { "ADMIN", "USER" })
+public class BulkWriteIT {
+        @Autowired
+        public MockMvc mockMvc;
+
+        @Autowired
+        ObjectMapper mapper;
+
+        @Autowired
+        RestaurantRepository restaurantRepository;
+
+        @Autowired
+        EntityManagerFactory entityManagerFactory;
+
+        Statistics statistics;
+
+        @BeforeEach
+        public void setup() {
+                statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        }
+
+        private BulkResult bulk(MockHttpServletRequestBuilder request, Object body) throws Exception {
+                statistics.clear();
+                String json = mockMvc.perform(request
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(mapper.writeValueAsString(body))
+                                .with(csrf()))
+                                .andExpect(status().isOk())
+                                .andReturn().getResponse().getContentAsString();
+                return mapper.readValue(json, BulkResult.class);
+        }
+
+        private void assertStatementsAtMost(int max) {
+                assertTrue(statistics.getPrepareStatementCount() <= max,
+                                "statements prepared: " + statistics.getPrepareStatementCount());
+        }
+
+        @Test
+        public void restaurants_are_created_updated_and_deleted_in_batches() throws Exception {
+                List<Restaurant> restaurants = new ArrayList<>();
+                for (int i = 0; i < 120; i++) {
+                        restaurants.add(Restaurant.builder().name("Restaurant " + i).description("Tacos").build());
+                }
+
+                // 3 sequence calls and 3 batches of inserts
+                BulkResult created = bulk(post("/api/restaurants/bulk"), restaurants);
+                assertEquals(120, created.getSucceeded());
+                assertStatementsAtMost(6);
+                assertEquals(120, restaurantRepository.count());
+
+                List<Long> ids = new ArrayList<>();
+                created.getItems().forEach(item -> ids.add(((Number) item.getId()).longValue()));
+                for (int i = 0; i < 120; i++) {
+                        restaurants.get(i).setId(ids.get(i));
+                        restaurants.get(i).setDescription("Burritos");
+                }
+
+                // one SELECT ... IN and 3 batches of updates
+                BulkResult updated = bulk(put("/api/restaurants/bulk"), restaurants);
+                assertEquals(120, updated.getSucceeded());
+                assertStatementsAtMost(4);
+
+                String all = mockMvc.perform(get("/api/restaurants/all")).andExpect(status().isOk())
+                                .andReturn().getResponse().getContentAsString();
+                List<Restaurant> listed = mapper.readValue(all, new TypeReference<List<Restaurant>>() {
+                });
+                assertTrue(listed.stream().allMatch(r -> r.getDescription().equals("Burritos")));
+
+                ids.add(999999L);
+                BulkResult deleted = bulk(delete("/api/restaurants/bulk"), ids);
+                assertEquals(120, deleted.getSucceeded());
+                assertEquals(1, deleted.getFailed());
+                assertEquals(404, deleted.getItems().get(120).getStatus());
+                assertStatementsAtMost(4);
+                assertEquals(0, restaurantRepository.count());
+        }
+}
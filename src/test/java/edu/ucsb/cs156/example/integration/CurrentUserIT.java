@@ -0,0 +1,98 @@
+package edu.ucsb.cs156.example.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.oauth2Login;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+
+import java.util.List;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+@ActiveProfiles("integration")
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class CurrentUserIT {
+        @Autowired
+        public MockMvc mockMvc;
+
+        @SpyBean
+        UserRepository userRepository;
+
+        private OAuth2User cgaucho() {
+                Map<String, Object> attributes = Map.of(
+                                "sub", "107126842018026740288",
+                                "email", "cgaucho@ucsb.edu",
+                                "name", "Chris Gaucho",
+                                "given_name", "Chris",
+                                "family_name", "Gaucho",
+                                "email_verified", true,
+                                "hd", "ucsb.edu");
+                return new DefaultOAuth2User(List.of(new SimpleGrantedAuthority("ROLE_USER")), attributes, "email");
+        }
+
+        @Test
+        public void current_user_is_read_from_the_database_once_per_session() throws Exception {
+                // arrange
+                MockHttpSession session = new MockHttpSession();
+
+                // act
+                for (int i = 0; i < 3; i++) {
+                        MvcResult response = mockMvc.perform(get("/api/currentUser")
+                                        .session(session).with(oauth2Login().oauth2User(cgaucho())))
+                                        .andExpect(status().isOk()).andReturn();
+                        assertTrue(response.getResponse().getContentAsString().contains("cgaucho@ucsb.edu"));
+                }
+
+                // assert
+                verify(userRepository, times(1)).upsertByEmail(any(User.class));
+        }
+
+        @Test
+        public void current_user_is_reloaded_after_the_user_row_changes() throws Exception {
+                // arrange
+                MockHttpSession session = new MockHttpSession();
+                mockMvc.perform(get("/api/currentUser").session(session).with(oauth2Login().oauth2User(cgaucho())))
+                                .andExpect(status().isOk());
+                User user = userRepository.findByEmail("cgaucho@ucsb.edu").get();
+                user.setFullName("Christine Gaucho");
+                userRepository.save(user);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/currentUser")
+                                .session(session).with(oauth2Login().oauth2User(cgaucho())))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                assertTrue(response.getResponse().getContentAsString().contains("Christine Gaucho"));
+                // once for the first request, once after the change
+                verify(userRepository, times(2)).upsertByEmail(any(User.class));
+                assertEquals(1, userRepository.count());
+        }
+}
@@ -0,0 +1,156 @@
+package edu.ucsb.cs156.example.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+
+/**
+ * A client that has read a table catches up with /changes, which reads only the rows written since.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("integration")
+@Import(QueryPlanIT.StatementRecordingConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+@WithMockUser(roles = { "ADMIN", "USER" })
+public class DeltaSyncIT {
+        @Autowired
+        public MockMvc mockMvc;
+
+        @Autowired
+        ObjectMapper mapper;
+
+        @Autowired
+        HelpRequestRepository helpRequestRepository;
+
+        @Autowired
+        QueryPlanIT.RecordingStatementInspector inspector;
+
+        List<HelpRequest> helpRequests;
+
+        @BeforeEach
+        public void setup() {
+                helpRequests = helpRequestRepository.saveAll(List.of(
+                                helpRequest("s22-5pm-3"), helpRequest("s22-6pm-4"), helpRequest("s22-7pm-1")));
+        }
+
+        private HelpRequest helpRequest(String teamId) {
+                return HelpRequest.builder()
+                                .requesterEmail("cgaucho@ucsb.edu")
+                                .teamId(teamId)
+                                .tableOrBreakoutRoom("7")
+                                .requestTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .explanation("Need help with Swagger-ui")
+                                .solved(false)
+                                .build();
+        }
+
+        private JsonNode changes(String url, String since) throws Exception {
+                String json = mockMvc.perform(get(url + "/changes").param("since", since))
+                                .andExpect(status().isOk())
+                                .andReturn().getResponse().getContentAsString();
+                return mapper.readTree(json);
+        }
+
+        private List<String> selects() {
+                return inspector.statements().stream().filter(sql -> sql.startsWith("select")).toList();
+        }
+
+        @Test
+        public void changes_since_the_all_list_are_only_the_rows_written_since() throws Exception {
+                // arrange: the client reads the list, then one row is patched and one deleted
+                String since = mockMvc.perform(get("/api/helprequests/all"))
+                                .andExpect(status().isOk())
+                                .andReturn().getResponse().getHeader("ETag");
+                mockMvc.perform(patch("/api/helprequests?id=" + helpRequests.get(0).getId())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"solved\": true}")
+                                .with(csrf()))
+                                .andExpect(status().isOk());
+                mockMvc.perform(delete("/api/helprequests?id=" + helpRequests.get(1).getId()).with(csrf()))
+                                .andExpect(status().isOk());
+                inspector.clear();
+
+                // act
+                JsonNode delta = changes("/api/helprequests", since);
+                JsonNode caughtUp = changes("/api/helprequests", delta.get("version").asText());
+
+                // assert
+                assertEquals(1, delta.get("changed").size());
+                assertEquals(helpRequests.get(0).getId(), delta.get("changed").get(0).get("id").asLong());
+                assertEquals(true, delta.get("changed").get(0).get("solved").asBoolean());
+                assertEquals(List.of(helpRequests.get(1).getId()), List.of(delta.get("deleted").get(0).asLong()));
+                assertEquals(0, caughtUp.get("changed").size());
+                assertEquals(0, caughtUp.get("deleted").size());
+                assertEquals(delta.get("version"), caughtUp.get("version"));
+                // one select for the changed row, none at all once the client is up to date
+                assertEquals(1, selects().size(), selects().toString());
+        }
+
+        @Test
+        public void menu_item_reviews_posted_since_are_sent_and_an_unknown_version_is_gone() throws Exception {
+                // arrange
+                String since = mockMvc.perform(get("/api/menuitemreviews/all"))
+                                .andExpect(status().isOk())
+                                .andReturn().getResponse().getHeader("ETag");
+                mockMvc.perform(post("/api/menuitemreviews/post")
+                                .param("itemId", "27")
+                                .param("reviewerEmail", "cgaucho@ucsb.edu")
+                                .param("stars", "4")
+                                .param("dateReviewed", "2022-01-03T00:00:00")
+                                .param("comments", "good")
+                                .with(csrf()))
+                                .andExpect(status().isOk());
+
+                // act
+                JsonNode delta = changes("/api/menuitemreviews", since);
+
+                // assert
+                assertEquals(1, delta.get("changed").size());
+                assertEquals("good", delta.get("changed").get(0).get("comments").asText());
+                mockMvc.perform(get("/api/menuitemreviews/changes").param("since", "stale-3"))
+                                .andExpect(status().isGone());
+        }
+
+        @Test
+        public void the_version_of_another_table_is_gone() throws Exception {
+                // arrange: both tables are at version 0, so only the table in the tag tells them apart
+                String helpRequestsVersion = mockMvc.perform(get("/api/helprequests/all"))
+                                .andExpect(status().isOk())
+                                .andReturn().getResponse().getHeader("ETag");
+
+                // act and assert
+                mockMvc.perform(get("/api/menuitemreviews/changes").param("since", helpRequestsVersion))
+                                .andExpect(status().isGone());
+                changes("/api/helprequests", helpRequestsVersion);
+        }
+}
@@ -0,0 +1,159 @@
+package edu.ucsb.cs156.example.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.entities.MenuItemReviews;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import edu.ucsb.cs156.example.repositories.MenuItemsReviewsRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+
+/**
+ * A filtered, sorted /page reads just the rows on the page, with the filter and order in its one query.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("integration")
+@Import(QueryPlanIT.StatementRecordingConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+@WithMockUser(roles = { "USER" })
+public class FilterIT {
+        @Autowired
+        public MockMvc mockMvc;
+
+        @Autowired
+        public ObjectMapper mapper;
+
+        @Autowired
+        MenuItemsReviewsRepository menuItemsReviewsRepository;
+
+        @Autowired
+        HelpRequestRepository helpRequestRepository;
+
+        @Autowired
+        UCSBDateRepository ucsbDateRepository;
+
+        @Autowired
+        QueryPlanIT.RecordingStatementInspector inspector;
+
+        private JsonNode page(String url) throws Exception {
+                inspector.clear();
+                String json = mockMvc.perform(get(url))
+                                .andExpect(status().isOk())
+                                .andReturn().getResponse().getContentAsString();
+                List<String> selects = inspector.statements().stream()
+                                .filter(sql -> sql.startsWith("select")).toList();
+                assertEquals(1, selects.size(), selects.toString());
+                return mapper.readTree(json);
+        }
+
+        private static List<String> values(JsonNode page, String field) {
+                List<String> values = new ArrayList<>();
+                page.get("content").forEach(row -> values.add(row.get(field).asText()));
+                return values;
+        }
+
+        @Test
+        public void a_filtered_sorted_listing_pages_through_only_the_matching_rows() throws Exception {
+                int[] stars = { 5, 3, 4, 5, 1, 4 };
+                for (int i = 0; i < stars.length; i++) {
+                        menuItemsReviewsRepository.save(MenuItemReviews.builder()
+                                        .itemId(7).reviewerEmail("reviewer" + i + "@ucsb.edu").stars(stars[i])
+                                        .dateReviewed(LocalDateTime.parse("2024-10-18T12:00:00").plusDays(i))
+                                        .comments("review " + i).build());
+                }
+
+                JsonNode first = page("/api/menuitemreviews/page?limit=3&filter=stars>=4&sort=-stars");
+                assertTrue(inspector.statements().get(0).contains("stars>=?"), inspector.statements().get(0));
+                assertEquals(List.of("review 0", "review 3", "review 2"), values(first, "comments"));
+
+                JsonNode second = page("/api/menuitemreviews/page?limit=3&filter=stars>=4&sort=-stars&cursor="
+                                + first.get("nextCursor").asText());
+                assertEquals(List.of("review 5"), values(second, "comments"));
+                assertTrue(second.get("nextCursor").isNull());
+
+                JsonNode newest = page("/api/menuitemreviews/page?filter=comments~REVIEW&filter=stars<4&sort=-dateReviewed");
+                assertEquals(List.of("review 4", "review 1"), values(newest, "comments"));
+        }
+
+        private List<String> allPages(String url) throws Exception {
+                List<String> comments = new ArrayList<>();
+                JsonNode page = page(url);
+                comments.addAll(values(page, "comments"));
+                while (!page.get("nextCursor").isNull()) {
+                        page = page(url + "&cursor=" + page.get("nextCursor").asText());
+                        comments.addAll(values(page, "comments"));
+                }
+                return comments;
+        }
+
+        @Test
+        public void paging_by_a_field_with_nulls_returns_every_row_once() throws Exception {
+                String[] dates = { null, "2024-10-20T12:00:00", null, "2024-10-18T12:00:00", null, "2024-10-20T12:00:00",
+                                null };
+                for (int i = 0; i < dates.length; i++) {
+                        menuItemsReviewsRepository.save(MenuItemReviews.builder()
+                                        .itemId(7).reviewerEmail("reviewer" + i + "@ucsb.edu").stars(3)
+                                        .dateReviewed(dates[i] == null ? null : LocalDateTime.parse(dates[i]))
+                                        .comments("review " + i).build());
+                }
+
+                assertEquals(List.of("review 3", "review 1", "review 5", "review 0", "review 2", "review 4", "review 6"),
+                                allPages("/api/menuitemreviews/page?limit=2&sort=dateReviewed"));
+                assertEquals(List.of("review 0", "review 2", "review 4", "review 6", "review 1", "review 5", "review 3"),
+                                allPages("/api/menuitemreviews/page?limit=2&sort=-dateReviewed"));
+                assertEquals(List.of("review 0", "review 2", "review 4", "review 6", "review 1", "review 5", "review 3"),
+                                allPages("/api/menuitemreviews/page?limit=3&filter=stars=3&sort=-dateReviewed&sort=-stars"));
+        }
+
+        @Test
+        public void help_requests_and_dates_filter_on_their_indexed_columns() throws Exception {
+                for (boolean solved : new boolean[] { true, false, false }) {
+                        helpRequestRepository.save(HelpRequest.builder().requesterEmail("cgaucho@ucsb.edu")
+                                        .teamId(solved ? "solved" : "open").tableOrBreakoutRoom("7")
+                                        .requestTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                        .explanation("Need help").solved(solved).build());
+                }
+                for (String quarter : List.of("20243", "20244", "20244")) {
+                        ucsbDateRepository.save(UCSBDate.builder().quarterYYYYQ(quarter).name("Q" + quarter)
+                                        .localDateTime(LocalDateTime.parse("2024-09-26T00:00:00")).build());
+                }
+
+                assertEquals(List.of("open", "open"), values(page("/api/helprequests/page?filter=solved=false"), "teamId"));
+                assertEquals(List.of("Q20244", "Q20244"),
+                                values(page("/api/ucsbdates/page?filter=quarterYYYYQ=20244"), "name"));
+        }
+
+        @Test
+        public void an_unknown_field_is_a_bad_request() throws Exception {
+                mockMvc.perform(get("/api/menuitemreviews/page?filter=rating>=4"))
+                                .andExpect(status().isBadRequest());
+                mockMvc.perform(get("/api/menuitemreviews/page?sort=-rating"))
+                                .andExpect(status().isBadRequest());
+        }
+}
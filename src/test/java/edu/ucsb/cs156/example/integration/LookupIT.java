@@ -0,0 +1,103 @@
+package edu.ucsb.cs156.example.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import edu.ucsb.cs156.example.services.LookupService;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * A lookup reads all the rows it returns with one query per chunk of ids, not one per id.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("integration")
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+@WithMockUser(roles = { "USER" })
+public class LookupIT {
+        @Autowired
+        public MockMvc mockMvc;
+
+        @Autowired
+        public ObjectMapper mapper;
+
+        @Autowired
+        UCSBDiningCommonsMenuItemRepository menuItemRepository;
+
+        @Autowired
+        EntityManagerFactory entityManagerFactory;
+
+        @Test
+        public void a_lookup_of_many_ids_reads_one_chunk_at_a_time() throws Exception {
+                // arrange
+                List<Long> saved = new ArrayList<>();
+                for (String name : List.of("Baked Pesto Pasta", "Tofu Banh Mi", "Chicken Caesar Salad")) {
+                        saved.add(menuItemRepository.save(UCSBDiningCommonsMenuItem.builder()
+                                        .diningCommonsCode("ortega").name(name).station("Entrees").build()).getId());
+                }
+                // the saved ids in reverse order, then enough ids with no row to need a third chunk
+                List<Long> reversed = new ArrayList<>(saved);
+                Collections.reverse(reversed);
+                List<Long> ids = new ArrayList<>(reversed);
+                long missing = saved.get(saved.size() - 1) + 1000;
+                LongStream.range(missing, missing + 2 * LookupService.CHUNK_SIZE).forEach(ids::add);
+                Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+                statistics.clear();
+
+                // act
+                MvcResult response = mockMvc.perform(post("/api/ucsbdiningcommonsmenuitem/lookup")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(mapper.writeValueAsString(ids))
+                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                assertEquals(3, statistics.getPrepareStatementCount());
+                JsonNode json = mapper.readTree(response.getResponse().getContentAsString());
+                List<Long> found = new ArrayList<>();
+                json.get("found").forEach(row -> found.add(row.get("id").asLong()));
+                assertEquals(reversed, found);
+                assertEquals(2 * LookupService.CHUNK_SIZE, json.get("notFound").size());
+                assertEquals(missing, json.get("notFound").get(0).asLong());
+        }
+
+        @Test
+        public void a_lookup_of_too_many_ids_is_rejected() throws Exception {
+                List<Long> ids = LongStream.rangeClosed(1, 10001).boxed().toList();
+
+                mockMvc.perform(post("/api/ucsbdiningcommonsmenuitem/lookup")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(mapper.writeValueAsString(ids))
+                                .with(csrf()))
+                                .andExpect(status().isBadRequest());
+        }
+}
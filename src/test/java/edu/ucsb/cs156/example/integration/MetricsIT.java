@@ -0,0 +1,105 @@
+package edu.ucsb.cs156.example.integration;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.repositories.RestaurantRepository;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+                properties = "app.metrics.scrape-token=scrape-secret")
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+@ActiveProfiles("integration")
+public class MetricsIT {
+        @Autowired
+        public MockMvc mockMvc;
+
+        @Autowired
+        RestaurantRepository restaurantRepository;
+
+        @Test
+        public void anonymous_users_cannot_read_metrics() throws Exception {
+                mockMvc.perform(get("/actuator/metrics")).andExpect(status().isForbidden());
+                mockMvc.perform(get("/actuator/metrics/jvm.memory.used")).andExpect(status().isForbidden());
+                mockMvc.perform(get("/actuator/prometheus")).andExpect(status().isForbidden());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void regular_users_cannot_read_metrics() throws Exception {
+                mockMvc.perform(get("/actuator/metrics")).andExpect(status().isForbidden());
+                mockMvc.perform(get("/actuator/prometheus")).andExpect(status().isForbidden());
+        }
+
+        @Test
+        public void a_wrong_scrape_token_is_rejected() throws Exception {
+                mockMvc.perform(get("/actuator/prometheus").header("Authorization", "Bearer wrong-secret"))
+                                .andExpect(status().isForbidden());
+                mockMvc.perform(get("/actuator/prometheus").header("Authorization", "Basic scrape-secret"))
+                                .andExpect(status().isForbidden());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admins_can_read_controller_method_timers() throws Exception {
+                // arrange
+                mockMvc.perform(get("/api/restaurants/all")).andExpect(status().isOk());
+
+                // act
+                String names = mockMvc.perform(get("/actuator/metrics"))
+                                .andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+                String timer = mockMvc.perform(get("/actuator/metrics/app.controller.method")
+                                .param("tag", "controller:RestaurantsController", "method:allRestaurants"))
+                                .andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+
+                // assert
+                assertTrue(names.contains("\"app.controller.method\""), names);
+                assertTrue(names.contains("\"jdbc.query\""), names);
+                assertTrue(names.contains("\"hikaricp.connections.active\""), names);
+                assertTrue(timer.contains("\"statistic\":\"COUNT\",\"value\":1.0"), timer);
+        }
+
+        @Test
+        public void prometheus_can_scrape_with_the_token() throws Exception {
+                // arrange
+                restaurantRepository.save(Restaurant.builder().name("Taco Bell").description("Mexican").build());
+
+                // act
+                String scrape = mockMvc.perform(get("/actuator/prometheus")
+                                .header("Authorization", "Bearer scrape-secret"))
+                                .andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+
+                // assert
+                assertTrue(scrape.contains("jdbc_query_seconds_bucket"), scrape);
+                assertTrue(scrape.contains("hikaricp_connections_active"), scrape);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void prometheus_scrape_has_controller_method_histograms() throws Exception {
+                // arrange
+                mockMvc.perform(get("/api/restaurants").param("id", "12345")).andExpect(status().isNotFound());
+
+                // act
+                String scrape = mockMvc.perform(get("/actuator/prometheus"))
+                                .andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+
+                // assert
+                assertTrue(scrape.contains("app_controller_method_seconds_bucket{controller=\"RestaurantsController\","
+                                + "exception=\"EntityNotFoundException\",method=\"getById\""), scrape);
+        }
+}
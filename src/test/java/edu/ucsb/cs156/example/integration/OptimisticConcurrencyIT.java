@@ -0,0 +1,197 @@
+package edu.ucsb.cs156.example.integration;
+
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+
+/**
+ * Writes with If-Match only succeed against the version the client read; a client that lost a
+ * race gets 412 Precondition Failed instead of overwriting the winner's change.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("integration")
+@Import(QueryPlanIT.StatementRecordingConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+@WithMockUser(roles = { "ADMIN", "USER" })
+public class OptimisticConcurrencyIT {
+        @Autowired
+        public MockMvc mockMvc;
+
+        @Autowired
+        public ObjectMapper mapper;
+
+        @Autowired
+        HelpRequestRepository helpRequestRepository;
+
+        @Autowired
+        QueryPlanIT.RecordingStatementInspector inspector;
+
+        HelpRequest helpRequest;
+
+        @BeforeEach
+        public void setup() {
+                helpRequest = helpRequestRepository.save(HelpRequest.builder()
+                                .requesterEmail("cgaucho@ucsb.edu")
+                                .teamId("s22-5pm-3")
+                                .tableOrBreakoutRoom("7")
+                                .requestTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .explanation("Need help with Swagger-ui")
+                                .solved(false)
+                                .build());
+        }
+
+        private String url() {
+                return "/api/helprequests?id=" + helpRequest.getId();
+        }
+
+        private String edited(String explanation) throws Exception {
+                HelpRequest edited = helpRequestRepository.findById(helpRequest.getId()).get();
+                edited.setExplanation(explanation);
+                return mapper.writeValueAsString(edited);
+        }
+
+        @Test
+        public void the_second_of_two_edits_of_the_same_version_is_refused() throws Exception {
+                String etag = mockMvc.perform(get(url()))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", startsWith("\"0.")))
+                                .andReturn().getResponse().getHeader("ETag");
+                String first = edited("first");
+                String second = edited("second");
+
+                mockMvc.perform(put(url()).contentType(MediaType.APPLICATION_JSON).header("If-Match", etag)
+                                .content(first).with(csrf()))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", startsWith("\"1.")));
+                mockMvc.perform(put(url()).contentType(MediaType.APPLICATION_JSON).header("If-Match", etag)
+                                .content(second).with(csrf()))
+                                .andExpect(status().isPreconditionFailed());
+
+                HelpRequest saved = helpRequestRepository.findById(helpRequest.getId()).get();
+                assertEquals("first", saved.getExplanation());
+                assertEquals(1, saved.getVersion());
+        }
+
+        @Test
+        public void a_patch_or_delete_of_an_old_version_is_refused() throws Exception {
+                mockMvc.perform(patch(url()).contentType(MediaType.APPLICATION_JSON).header("If-Match", "\"0\"")
+                                .content("{\"solved\": true}").with(csrf()))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", startsWith("\"1.")));
+
+                mockMvc.perform(patch(url()).contentType(MediaType.APPLICATION_JSON).header("If-Match", "\"0\"")
+                                .content("{\"solved\": false}").with(csrf()))
+                                .andExpect(status().isPreconditionFailed());
+                mockMvc.perform(delete(url()).header("If-Match", "\"0\"").with(csrf()))
+                                .andExpect(status().isPreconditionFailed());
+                assertTrue(helpRequestRepository.findById(helpRequest.getId()).get().getSolved());
+
+                mockMvc.perform(delete(url()).header("If-Match", "\"1\"").with(csrf()))
+                                .andExpect(status().isOk());
+                mockMvc.perform(delete(url()).header("If-Match", "\"1\"").with(csrf()))
+                                .andExpect(status().isNotFound());
+        }
+
+        @Test
+        public void an_edit_without_if_match_still_bumps_the_version() throws Exception {
+                mockMvc.perform(put(url()).contentType(MediaType.APPLICATION_JSON)
+                                .content(edited("unconditional")).with(csrf()))
+                                .andExpect(status().isOk())
+                                .andExpect(header().doesNotExist("ETag"))
+                                // the client's version is not the row's, and the row's is not known
+                                .andExpect(jsonPath("$.version").doesNotExist())
+                                .andExpect(jsonPath("$.explanation").value("unconditional"));
+
+                mockMvc.perform(get(url()).header("If-None-Match", "\"1\""))
+                                .andExpect(status().isNotModified());
+                mockMvc.perform(put(url()).contentType(MediaType.APPLICATION_JSON).header("If-Match", "\"0\"")
+                                .content(edited("stale")).with(csrf()))
+                                .andExpect(status().isPreconditionFailed());
+        }
+
+        @Test
+        public void an_unconditional_edit_and_a_get_of_an_unchanged_table_read_no_rows() throws Exception {
+                String body = edited("unconditional");
+                inspector.clear();
+                mockMvc.perform(put(url()).contentType(MediaType.APPLICATION_JSON).content(body).with(csrf()))
+                                .andExpect(status().isOk());
+                String etag = mockMvc.perform(get(url()))
+                                .andExpect(status().isOk())
+                                .andReturn().getResponse().getHeader("ETag");
+                mockMvc.perform(get(url()).header("If-None-Match", etag))
+                                .andExpect(status().isNotModified());
+
+                // only the GET that was answered with the row read it
+                List<String> selects = inspector.statements().stream()
+                                .filter(sql -> sql.startsWith("select") && sql.contains("helprequest")).toList();
+                assertEquals(1, selects.size(), selects.toString());
+        }
+
+        @Test
+        public void only_one_of_many_concurrent_edits_of_the_same_version_wins() throws Exception {
+                int clients = 8;
+                ExecutorService executor = Executors.newFixedThreadPool(clients);
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Integer>> statuses = new ArrayList<>();
+                for (int i = 0; i < clients; i++) {
+                        String body = edited("client " + i);
+                        statuses.add(executor.submit(() -> {
+                                start.await();
+                                return mockMvc.perform(put(url()).contentType(MediaType.APPLICATION_JSON)
+                                                .header("If-Match", "\"0\"").content(body)
+                                                .with(user("admin").roles("ADMIN", "USER")).with(csrf()))
+                                                .andReturn().getResponse().getStatus();
+                        }));
+                }
+                start.countDown();
+
+                List<Integer> results = new ArrayList<>();
+                for (Future<Integer> status : statuses) {
+                        results.add(status.get());
+                }
+                executor.shutdown();
+
+                assertEquals(1, results.stream().filter(status -> status == 200).count());
+                assertEquals(clients - 1, results.stream().filter(status -> status == 412).count());
+                assertEquals(1, helpRequestRepository.findById(helpRequest.getId()).get().getVersion());
+        }
+}
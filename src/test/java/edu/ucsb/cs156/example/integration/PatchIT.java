@@ -0,0 +1,104 @@
+package edu.ucsb.cs156.example.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * A PATCH writes only the columns it changes, and nothing at all if it changes none.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("integration")
+@Import(QueryPlanIT.StatementRecordingConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+@WithMockUser(roles = { "ADMIN", "USER" })
+public class PatchIT {
+        @Autowired
+        public MockMvc mockMvc;
+
+        @Autowired
+        HelpRequestRepository helpRequestRepository;
+
+        @Autowired
+        QueryPlanIT.RecordingStatementInspector inspector;
+
+        @Autowired
+        EntityManagerFactory entityManagerFactory;
+
+        Statistics statistics;
+
+        HelpRequest helpRequest;
+
+        @BeforeEach
+        public void setup() {
+                helpRequest = helpRequestRepository.save(HelpRequest.builder()
+                                .requesterEmail("cgaucho@ucsb.edu")
+                                .teamId("s22-5pm-3")
+                                .tableOrBreakoutRoom("7")
+                                .requestTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .explanation("Need help with Swagger-ui")
+                                .solved(false)
+                                .build());
+                statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+                statistics.clear();
+                inspector.clear();
+        }
+
+        private void patchHelpRequest(String json) throws Exception {
+                mockMvc.perform(patch("/api/helprequests?id=" + helpRequest.getId())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(json)
+                                .with(csrf()))
+                                .andExpect(status().isOk());
+        }
+
+        @Test
+        public void a_patch_updates_only_the_column_it_changes() throws Exception {
+                patchHelpRequest("{\"solved\": true}");
+
+                List<String> updates = inspector.statements().stream()
+                                .filter(sql -> sql.startsWith("update")).toList();
+                assertEquals(1, updates.size());
+                // sets the one column (and the version), not all six
+                assertTrue(updates.get(0).matches("update helprequest( \\w+)? set [^,]*solved=\\?,[^,]*version=[^,]* where .*"),
+                                updates.get(0));
+                assertTrue(helpRequestRepository.findById(helpRequest.getId()).get().getSolved());
+        }
+
+        @Test
+        public void a_patch_that_changes_nothing_writes_nothing() throws Exception {
+                patchHelpRequest("{\"solved\": false, \"teamId\": \"s22-5pm-3\"}");
+
+                assertEquals(0, statistics.getEntityUpdateCount());
+                assertEquals(List.of(), inspector.statements().stream()
+                                .filter(sql -> !sql.startsWith("select")).toList());
+        }
+}
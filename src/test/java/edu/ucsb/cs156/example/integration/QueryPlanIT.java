@@ -0,0 +1,447 @@
+package edu.ucsb.cs156.example.integration;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.repository.core.RepositoryInformation;
+import org.springframework.data.repository.support.Repositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import edu.ucsb.cs156.example.entities.Articles;
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.entities.MenuItemReviews;
+import edu.ucsb.cs156.example.entities.RecommendationRequest;
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.entities.UCSBOrganizations;
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Runs EXPLAIN ANALYZE on the SQL of every query method declared in the repositories package,
+ * against a database seeded by the datagen profile, and fails if a plan
+ *
+ * <ul>
+ * <li>reads a whole table, unless the method is listed below as one that has to;</li>
+ * <li>does not look rows up through the index the method is listed with; or</li>
+ * <li>reads more than MAX_ROWS_READ_PER_ROW_RETURNED rows for each row it returns, the cost
+ *     of a lookup that only uses part of an index, or the wrong one.</li>
+ * </ul>
+ *
+ * Writes (@Modifying methods) get plain EXPLAIN instead, inside a transaction that is rolled
+ * back, and are only checked for the index they find their rows through.
+ *
+ * Every repository method must have an entry in PLANS, so a new finder fails this test until
+ * its expected plan is written down.  Plans are those of H2, the database the tests run on.
+ */
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = { "app.datagen.scale=0.005", "app.datagen.rows.ucsbdiningcommons=20" })
+@ActiveProfiles({ "integration", "datagen" })
+public class QueryPlanIT {
+
+        /**
+         * Most rows a plan may read for each row it returns (plus one, for the row that ends
+         * an index range).
+         */
+        static final int MAX_ROWS_READ_PER_ROW_RETURNED = 2;
+
+        /**
+         * The expected plan of one repository method.
+         * @param index the index the rows must be looked up through, or null for a full scan
+         * @param args the arguments the method is called with
+         * @param skip why the method is not checked, or null if it is
+         * @param write whether the method updates or deletes rows rather than returning them
+         */
+        record Plan(String index, Object[] args, String skip, boolean write) {
+                static Plan lookup(String index, Object... args) {
+                        return new Plan(index, args, null, false);
+                }
+
+                static Plan fullScan(Object... args) {
+                        return new Plan(null, args, null, false);
+                }
+
+                static Plan write(String index, Object... args) {
+                        return new Plan(index, args, null, true);
+                }
+
+                static Plan notChecked(String reason) {
+                        return new Plan(null, new Object[0], reason, false);
+                }
+        }
+
+        /**
+         * Expected plans, keyed by repository interface and method name.
+         */
+        static final Map<String, Plan> PLANS = new LinkedHashMap<>();
+
+        static {
+                Limit page = Limit.of(20);
+
+                PLANS.put("ArticlesRepository.findByIdGreaterThanOrderByIdAsc", Plan.lookup("PRIMARY_KEY", 10L, page));
+                PLANS.put("ArticlesRepository.streamAllBy", Plan.fullScan());
+                PLANS.put("ArticlesRepository.updateById", Plan.write("PRIMARY_KEY", 1L, new Articles()));
+                PLANS.put("ArticlesRepository.updateByIdAndVersion", Plan.write("PRIMARY_KEY", 1L, 0L, new Articles()));
+                PLANS.put("ArticlesRepository.removeById", Plan.write("PRIMARY_KEY", 1L));
+                PLANS.put("ArticlesRepository.removeByIdAndVersion", Plan.write("PRIMARY_KEY", 1L, 0L));
+
+                PLANS.put("HelpRequestRepository.findBySolvedFalseOrderByRequestTimeAsc",
+                                Plan.lookup("HELPREQUEST_UNSOLVED_IDX"));
+                PLANS.put("HelpRequestRepository.findByIdGreaterThanOrderByIdAsc", Plan.lookup("PRIMARY_KEY", 10L, page));
+                PLANS.put("HelpRequestRepository.streamAllBy", Plan.fullScan());
+                PLANS.put("HelpRequestRepository.updateById", Plan.write("PRIMARY_KEY", 1L, new HelpRequest()));
+                PLANS.put("HelpRequestRepository.updateByIdAndVersion", Plan.write("PRIMARY_KEY", 1L, 0L, new HelpRequest()));
+                PLANS.put("HelpRequestRepository.removeById", Plan.write("PRIMARY_KEY", 1L));
+                PLANS.put("HelpRequestRepository.removeByIdAndVersion", Plan.write("PRIMARY_KEY", 1L, 0L));
+
+                PLANS.put("MenuItemsReviewsRepository.findByItemId", Plan.lookup("MENUITEMREVIEWS_ITEM_IDX", 3L));
+                PLANS.put("MenuItemsReviewsRepository.findByIdGreaterThanOrderByIdAsc",
+                                Plan.lookup("PRIMARY_KEY", 10L, page));
+                PLANS.put("MenuItemsReviewsRepository.streamAllBy", Plan.fullScan());
+                PLANS.put("MenuItemsReviewsRepository.updateById",
+                                Plan.write("PRIMARY_KEY", 1L, new MenuItemReviews()));
+                PLANS.put("MenuItemsReviewsRepository.updateByIdAndVersion",
+                                Plan.write("PRIMARY_KEY", 1L, 0L, new MenuItemReviews()));
+                PLANS.put("MenuItemsReviewsRepository.removeById", Plan.write("PRIMARY_KEY", 1L));
+                PLANS.put("MenuItemsReviewsRepository.removeByIdAndVersion", Plan.write("PRIMARY_KEY", 1L, 0L));
+
+                PLANS.put("RecommendationRequestRepository.findByDoneFalseOrderByDateNeededAsc",
+                                Plan.lookup("RECOMMENDATION_REQUESTS_NOT_DONE_IDX"));
+                PLANS.put("RecommendationRequestRepository.findByIdGreaterThanOrderByIdAsc",
+                                Plan.lookup("PRIMARY_KEY", 10L, page));
+                PLANS.put("RecommendationRequestRepository.streamAllBy", Plan.fullScan());
+                PLANS.put("RecommendationRequestRepository.updateById",
+                                Plan.write("PRIMARY_KEY", 1L, new RecommendationRequest()));
+                PLANS.put("RecommendationRequestRepository.updateByIdAndVersion",
+                                Plan.write("PRIMARY_KEY", 1L, 0L, new RecommendationRequest()));
+                PLANS.put("RecommendationRequestRepository.removeById", Plan.write("PRIMARY_KEY", 1L));
+                PLANS.put("RecommendationRequestRepository.removeByIdAndVersion", Plan.write("PRIMARY_KEY", 1L, 0L));
+
+                PLANS.put("RestaurantRepository.findByIdGreaterThanOrderByIdAsc", Plan.lookup("PRIMARY_KEY", 10L, page));
+                PLANS.put("RestaurantRepository.streamAllBy", Plan.fullScan());
+                PLANS.put("RestaurantRepository.updateById", Plan.write("PRIMARY_KEY", 1L, new Restaurant()));
+                PLANS.put("RestaurantRepository.updateByIdAndVersion", Plan.write("PRIMARY_KEY", 1L, 0L, new Restaurant()));
+                PLANS.put("RestaurantRepository.removeById", Plan.write("PRIMARY_KEY", 1L));
+                PLANS.put("RestaurantRepository.removeByIdAndVersion", Plan.write("PRIMARY_KEY", 1L, 0L));
+
+                PLANS.put("UCSBDateRepository.findAllByQuarterYYYYQ", Plan.lookup("UCSBDATES_QUARTER_IDX", "20233"));
+                PLANS.put("UCSBDateRepository.findByIdGreaterThanOrderByIdAsc", Plan.lookup("PRIMARY_KEY", 10L, page));
+                PLANS.put("UCSBDateRepository.streamAllBy", Plan.fullScan());
+                PLANS.put("UCSBDateRepository.updateById", Plan.write("PRIMARY_KEY", 1L, new UCSBDate()));
+                PLANS.put("UCSBDateRepository.updateByIdAndVersion", Plan.write("PRIMARY_KEY", 1L, 0L, new UCSBDate()));
+                PLANS.put("UCSBDateRepository.removeById", Plan.write("PRIMARY_KEY", 1L));
+                PLANS.put("UCSBDateRepository.removeByIdAndVersion", Plan.write("PRIMARY_KEY", 1L, 0L));
+
+                PLANS.put("UCSBDiningCommonsMenuItemRepository.findByDiningCommonsCodeAndStation",
+                                Plan.lookup("UCSBDININGCOMMONSMENUITEM_STATION_IDX", "dc1", "Entrees"));
+                PLANS.put("UCSBDiningCommonsMenuItemRepository.findByIdGreaterThanOrderByIdAsc",
+                                Plan.lookup("PRIMARY_KEY", 10L, page));
+                PLANS.put("UCSBDiningCommonsMenuItemRepository.findAll", Plan.fullScan());
+                PLANS.put("UCSBDiningCommonsMenuItemRepository.streamAllBy", Plan.fullScan());
+                PLANS.put("UCSBDiningCommonsMenuItemRepository.updateById",
+                                Plan.write("PRIMARY_KEY", 1L, new UCSBDiningCommonsMenuItem()));
+                PLANS.put("UCSBDiningCommonsMenuItemRepository.updateByIdAndVersion",
+                                Plan.write("PRIMARY_KEY", 1L, 0L, new UCSBDiningCommonsMenuItem()));
+                PLANS.put("UCSBDiningCommonsMenuItemRepository.removeById", Plan.write("PRIMARY_KEY", 1L));
+                PLANS.put("UCSBDiningCommonsMenuItemRepository.removeByIdAndVersion", Plan.write("PRIMARY_KEY", 1L, 0L));
+
+                PLANS.put("UCSBDiningCommonsRepository.findByCodeGreaterThanOrderByCodeAsc",
+                                Plan.lookup("PRIMARY_KEY", "dc1", Limit.of(5)));
+                PLANS.put("UCSBDiningCommonsRepository.findAll", Plan.fullScan());
+                PLANS.put("UCSBDiningCommonsRepository.streamAllBy", Plan.fullScan());
+                PLANS.put("UCSBDiningCommonsRepository.updateByCode",
+                                Plan.write("PRIMARY_KEY", "dc1", new UCSBDiningCommons()));
+                PLANS.put("UCSBDiningCommonsRepository.updateByCodeAndVersion",
+                                Plan.write("PRIMARY_KEY", "dc1", 0L, new UCSBDiningCommons()));
+                PLANS.put("UCSBDiningCommonsRepository.removeByCode", Plan.write("PRIMARY_KEY", "dc1"));
+                PLANS.put("UCSBDiningCommonsRepository.removeByCodeAndVersion", Plan.write("PRIMARY_KEY", "dc1", 0L));
+
+                PLANS.put("UCSBOrganizationsRepository.findByOrgcodeGreaterThanOrderByOrgcodeAsc",
+                                Plan.lookup("PRIMARY_KEY", "ORG1", page));
+                PLANS.put("UCSBOrganizationsRepository.findAll", Plan.fullScan());
+                PLANS.put("UCSBOrganizationsRepository.streamAllBy", Plan.fullScan());
+                PLANS.put("UCSBOrganizationsRepository.updateByOrgcode",
+                                Plan.write("PRIMARY_KEY", "ORG1", new UCSBOrganizations()));
+                PLANS.put("UCSBOrganizationsRepository.updateByOrgcodeAndVersion",
+                                Plan.write("PRIMARY_KEY", "ORG1", 0L, new UCSBOrganizations()));
+                PLANS.put("UCSBOrganizationsRepository.removeByOrgcode", Plan.write("PRIMARY_KEY", "ORG1"));
+                PLANS.put("UCSBOrganizationsRepository.removeByOrgcodeAndVersion", Plan.write("PRIMARY_KEY", "ORG1", 0L));
+
+                PLANS.put("UserRepository.findByEmail", Plan.lookup("USERS_EMAIL_UNIQUE", "user7@ucsb.edu"));
+                PLANS.put("UserRepository.streamAllBy", Plan.fullScan());
+                PLANS.put("UserRepository.upsertByEmail", Plan.notChecked("a write; see UserUpsertIT"));
+        }
+
+        private static final Pattern SCAN_COUNT = Pattern.compile("scanCount: (\\d+)");
+
+        /**
+         * Keeps the SQL of every statement Hibernate prepares.
+         */
+        static class RecordingStatementInspector implements StatementInspector {
+                private final List<String> statements = new ArrayList<>();
+
+                @Override
+                public synchronized String inspect(String sql) {
+                        statements.add(sql);
+                        return sql;
+                }
+
+                synchronized void clear() {
+                        statements.clear();
+                }
+
+                synchronized List<String> statements() {
+                        return List.copyOf(statements);
+                }
+        }
+
+        @TestConfiguration
+        static class StatementRecordingConfig {
+                @Bean
+                RecordingStatementInspector recordingStatementInspector() {
+                        return new RecordingStatementInspector();
+                }
+
+                @Bean
+                HibernatePropertiesCustomizer statementInspectorCustomizer(RecordingStatementInspector inspector) {
+                        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, inspector);
+                }
+        }
+
+        @Autowired
+        ApplicationContext applicationContext;
+
+        @Autowired
+        RecordingStatementInspector inspector;
+
+        @Autowired
+        JdbcTemplate jdbcTemplate;
+
+        @Autowired
+        TransactionTemplate transactionTemplate;
+
+        @Autowired
+        EntityManagerFactory entityManagerFactory;
+
+        @Autowired
+        UserRepository userRepository;
+
+        @BeforeEach
+        public void seedUsers() {
+                // datagen fills every table but users
+                if (userRepository.count() == 0) {
+                        for (int i = 0; i < 500; i++) {
+                                userRepository.save(User.builder().email("user" + i + "@ucsb.edu").googleSub("sub" + i)
+                                                .emailVerified(true).build());
+                        }
+                        jdbcTemplate.execute("ANALYZE");
+                }
+        }
+
+        /**
+         * The query methods declared in the repositories package, keyed as in PLANS.
+         */
+        private Map<String, Method> repositoryMethods(Repositories repositories) {
+                Map<String, Method> methods = new LinkedHashMap<>();
+                for (Class<?> domainClass : repositories) {
+                        Class<?> repository = repositories.getRequiredRepositoryInformation(domainClass)
+                                        .getRepositoryInterface();
+                        List<Class<?>> interfaces = new ArrayList<>(List.of(repository));
+                        interfaces.addAll(Arrays.asList(repository.getInterfaces()));
+                        for (Class<?> declaring : interfaces) {
+                                if (!declaring.getPackageName().equals(UserRepository.class.getPackageName())) {
+                                        continue;
+                                }
+                                for (Method method : declaring.getDeclaredMethods()) {
+                                        if (method.isBridge()) {
+                                                continue;
+                                        }
+                                        String key = repository.getSimpleName() + "." + method.getName();
+                                        assertTrue(methods.put(key, method) == null, "overloaded: " + key);
+                                }
+                        }
+                }
+                return methods;
+        }
+
+        @Test
+        public void every_repository_method_has_an_expected_plan() {
+                Map<String, Method> methods = repositoryMethods(new Repositories(applicationContext));
+
+                TreeSet<String> missing = new TreeSet<>(methods.keySet());
+                missing.removeAll(PLANS.keySet());
+                TreeSet<String> stale = new TreeSet<>(PLANS.keySet());
+                stale.removeAll(methods.keySet());
+
+                assertTrue(missing.isEmpty(), "add the expected plan of these methods to PLANS: " + missing);
+                assertTrue(stale.isEmpty(), "these methods in PLANS no longer exist: " + stale);
+        }
+
+        @Test
+        public void every_repository_query_uses_its_expected_plan() throws Exception {
+                Repositories repositories = new Repositories(applicationContext);
+                Map<String, Method> methods = repositoryMethods(repositories);
+                Map<String, Object> beans = new LinkedHashMap<>();
+                for (Class<?> domainClass : repositories) {
+                        RepositoryInformation information = repositories.getRequiredRepositoryInformation(domainClass);
+                        beans.put(information.getRepositoryInterface().getSimpleName(),
+                                        repositories.getRepositoryFor(domainClass).orElseThrow());
+                }
+
+                List<String> failures = new ArrayList<>();
+                for (Map.Entry<String, Plan> entry : PLANS.entrySet()) {
+                        Plan plan = entry.getValue();
+                        Method method = methods.get(entry.getKey());
+                        if (plan.skip() != null || method == null) {
+                                continue;
+                        }
+                        Object repository = beans.get(entry.getKey().substring(0, entry.getKey().indexOf('.')));
+                        String problem = check(plan, () -> method.invoke(repository, plan.args()));
+                        if (problem != null) {
+                                failures.add(entry.getKey() + ": " + problem);
+                        }
+                }
+
+                assertTrue(failures.isEmpty(), String.join("\n\n", failures));
+        }
+
+        @FunctionalInterface
+        interface Query {
+                Object run() throws IllegalAccessException, InvocationTargetException;
+        }
+
+        /**
+         * Runs a query, then EXPLAIN ANALYZE on the statement it ran.
+         * @return what is wrong with the plan, or null if nothing is
+         */
+        private String check(Plan plan, Query query) {
+                if (plan.write()) {
+                        return checkWrite(plan, query);
+                }
+                // a query cache hit runs no SQL at all
+                entityManagerFactory.getCache().evictAll();
+                inspector.clear();
+                long returned = transactionTemplate.execute(status -> {
+                        try {
+                                return rows(query.run());
+                        } catch (IllegalAccessException | InvocationTargetException e) {
+                                throw new IllegalStateException(e);
+                        }
+                });
+                List<String> statements = inspector.statements();
+                if (statements.size() != 1) {
+                        return "expected one statement, ran " + statements;
+                }
+
+                Object[] parameters = Arrays.stream(plan.args())
+                                .map(arg -> arg instanceof Limit limit ? limit.max() : arg)
+                                .toArray();
+                String explained = jdbcTemplate.queryForObject("EXPLAIN ANALYZE " + statements.get(0), String.class,
+                                parameters);
+
+                if (plan.index() == null) {
+                        return null;
+                }
+                if (explained.contains(".tableScan")) {
+                        return "reads the whole table:\n" + explained;
+                }
+                if (!explained.contains("/* PUBLIC." + plan.index())) {
+                        return "does not use " + plan.index() + ":\n" + explained;
+                }
+                long read = 0;
+                Matcher matcher = SCAN_COUNT.matcher(explained);
+                while (matcher.find()) {
+                        read += Long.parseLong(matcher.group(1));
+                }
+                if (returned == 0) {
+                        return "returned no rows; pick arguments that match some:\n" + explained;
+                }
+                if (read > MAX_ROWS_READ_PER_ROW_RETURNED * returned + 1) {
+                        return "read " + read + " rows to return " + returned + ":\n" + explained;
+                }
+                return null;
+        }
+
+        /**
+         * Runs an update or delete in a transaction that is rolled back, then EXPLAIN on the
+         * statement it ran.  The statement is prepared before it is run, so it is recorded even
+         * if the arguments break a constraint.
+         * @return what is wrong with the plan, or null if nothing is
+         */
+        private String checkWrite(Plan plan, Query query) {
+                entityManagerFactory.getCache().evictAll();
+                inspector.clear();
+                transactionTemplate.executeWithoutResult(status -> {
+                        status.setRollbackOnly();
+                        try {
+                                query.run();
+                        } catch (IllegalAccessException | InvocationTargetException e) {
+                                // only the statement matters here
+                        }
+                });
+                List<String> statements = inspector.statements();
+                if (statements.size() != 1) {
+                        return "expected one statement, ran " + statements;
+                }
+
+                String explained = jdbcTemplate.queryForObject("EXPLAIN " + statements.get(0), String.class);
+                if (explained.contains(".tableScan")) {
+                        return "reads the whole table:\n" + explained;
+                }
+                if (!explained.contains("/* PUBLIC." + plan.index())) {
+                        return "does not use " + plan.index() + ":\n" + explained;
+                }
+                return null;
+        }
+
+        private static long rows(Object result) {
+                if (result instanceof Optional<?> optional) {
+                        return optional.isPresent() ? 1 : 0;
+                }
+                if (result instanceof Collection<?> collection) {
+                        return collection.size();
+                }
+                if (result instanceof Stream<?> stream) {
+                        try (stream) {
+                                return stream.count();
+                        }
+                }
+                if (result instanceof Iterable<?> iterable) {
+                        return StreamSupport.stream(iterable.spliterator(), false).count();
+                }
+                throw new IllegalArgumentException("cannot count the rows in a " + result.getClass());
+        }
+}
@@ -0,0 +1,182 @@
+package edu.ucsb.cs156.example.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.entities.UCSBOrganizations;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.repositories.UCSBOrganizationsRepository;
+import jakarta.persistence.EntityManagerFactory;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+@ActiveProfiles("integration")
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class ReferenceDataCacheIT {
+        @Autowired
+        public MockMvc mockMvc;
+
+        @Autowired
+        EntityManagerFactory entityManagerFactory;
+
+        @Autowired
+        UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
+
+        @Autowired
+        UCSBOrganizationsRepository ucsbOrganizationsRepository;
+
+        @Autowired
+        UCSBDiningCommonsMenuItemRepository ucsbDiningCommonsMenuItemRepository;
+
+        Statistics statistics;
+
+        @BeforeEach
+        public void setup() {
+                statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+                ucsbDiningCommonsRepository.save(UCSBDiningCommons.builder().code("ortega").name("Ortega")
+                                .latitude(34.4).longitude(-119.8).build());
+                ucsbOrganizationsRepository.save(UCSBOrganizations.builder().orgcode("ZPR")
+                                .orgTranslationShort("ZETA PHI RHO").orgTranslation("ZETA PHI RHO").build());
+                ucsbDiningCommonsMenuItemRepository.save(UCSBDiningCommonsMenuItem.builder()
+                                .diningCommonsCode("ortega").name("Baked Pesto Pasta").station("Entree").build());
+        }
+
+        private String getTwiceWithoutSql(String url) throws Exception {
+                String first = mockMvc.perform(get(url)).andExpect(status().isOk())
+                                .andReturn().getResponse().getContentAsString();
+                statistics.clear();
+                String second = mockMvc.perform(get(url)).andExpect(status().isOk())
+                                .andReturn().getResponse().getContentAsString();
+                assertEquals(0, statistics.getPrepareStatementCount(), "statements run for the second GET " + url);
+                assertEquals(first, second);
+                return second;
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void reading_reference_data_by_id_again_does_not_run_sql() throws Exception {
+                getTwiceWithoutSql("/api/ucsbdiningcommons?code=ortega");
+                getTwiceWithoutSql("/api/ucsborganizations?orgcode=ZPR");
+                getTwiceWithoutSql("/api/ucsbdiningcommonsmenuitem?id=1");
+                assertTrue(statistics.getSecondLevelCacheHitCount() > 0);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void listing_reference_data_again_does_not_run_sql() throws Exception {
+                assertTrue(getTwiceWithoutSql("/api/ucsbdiningcommons/all").contains("Ortega"));
+                assertTrue(getTwiceWithoutSql("/api/ucsborganizations/all").contains("ZPR"));
+                assertTrue(getTwiceWithoutSql("/api/ucsbdiningcommonsmenuitem/all").contains("Baked Pesto Pasta"));
+                getTwiceWithoutSql("/api/ucsbdiningcommons/page?limit=10");
+                assertEquals(1, statistics.getQueryCacheHitCount());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void posting_commons_invalidates_the_cached_list() throws Exception {
+                // arrange
+                getTwiceWithoutSql("/api/ucsbdiningcommons/all");
+
+                // act
+                mockMvc.perform(post("/api/ucsbdiningcommons/post?code=dlg&name=De La Guerra&hasSackMeal=false"
+                                + "&hasTakeOutMeal=false&hasDiningCam=true&latitude=34.4&longitude=-119.8")
+                                .with(csrf())).andExpect(status().isOk());
+
+                // assert
+                String all = mockMvc.perform(get("/api/ucsbdiningcommons/all")).andExpect(status().isOk())
+                                .andReturn().getResponse().getContentAsString();
+                assertTrue(all.contains("De La Guerra"), all);
+                assertTrue(getTwiceWithoutSql("/api/ucsbdiningcommons/all").contains("Ortega"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void putting_an_organization_updates_the_cached_row_and_list() throws Exception {
+                // arrange
+                getTwiceWithoutSql("/api/ucsborganizations?orgcode=ZPR");
+                getTwiceWithoutSql("/api/ucsborganizations/all");
+
+                // act
+                mockMvc.perform(put("/api/ucsborganizations?orgcode=ZPR").with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"orgcode\":\"ZPR\",\"orgTranslationShort\":\"ZPR\","
+                                                + "\"orgTranslation\":\"ZETA PHI RHO SORORITY\",\"inactive\":true}"))
+                                .andExpect(status().isOk());
+
+                // assert
+                assertTrue(getTwiceWithoutSql("/api/ucsborganizations?orgcode=ZPR").contains("SORORITY"));
+                assertTrue(mockMvc.perform(get("/api/ucsborganizations/all")).andExpect(status().isOk())
+                                .andReturn().getResponse().getContentAsString().contains("SORORITY"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void deleting_a_menu_item_evicts_it() throws Exception {
+                // arrange
+                getTwiceWithoutSql("/api/ucsbdiningcommonsmenuitem?id=1");
+                getTwiceWithoutSql("/api/ucsbdiningcommonsmenuitem/all");
+
+                // act
+                mockMvc.perform(delete("/api/ucsbdiningcommonsmenuitem?id=1").with(csrf()))
+                                .andExpect(status().isOk());
+
+                // assert
+                mockMvc.perform(get("/api/ucsbdiningcommonsmenuitem?id=1")).andExpect(status().isNotFound());
+                assertFalse(mockMvc.perform(get("/api/ucsbdiningcommonsmenuitem/all")).andExpect(status().isOk())
+                                .andReturn().getResponse().getContentAsString().contains("Baked Pesto Pasta"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admins_can_read_cache_statistics() throws Exception {
+                // arrange
+                getTwiceWithoutSql("/api/ucsbdiningcommons?code=ortega");
+
+                // act
+                String hits = mockMvc.perform(get("/actuator/metrics/hibernate.second.level.cache.requests")
+                                .param("tag", "region:ucsbdiningcommons", "result:hit"))
+                                .andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+                String queries = mockMvc.perform(get("/actuator/metrics/hibernate.cache.query.requests"))
+                                .andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+
+                // assert: one hit since getTwiceWithoutSql cleared the statistics
+                assertTrue(hits.contains("\"value\":1.0"), hits);
+                assertTrue(queries.contains("\"result\""), queries);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void regular_users_cannot_read_cache_statistics() throws Exception {
+                mockMvc.perform(get("/actuator/metrics/hibernate.second.level.cache.requests"))
+                                .andExpect(status().isForbidden());
+        }
+}
@@ -1,7 +1,10 @@
 package edu.ucsb.cs156.example.integration;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,6 +12,7 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.annotation.DirtiesContext.ClassMode;
@@ -19,6 +23,8 @@ import org.springframework.test.web.servlet.MvcResult;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.util.Arrays;
+
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
@@ -29,6 +35,7 @@ import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.services.CurrentUserService;
 import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
+import jakarta.persistence.EntityManagerFactory;
 
 @ExtendWith(SpringExtension.class)
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
@@ -52,6 +59,9 @@ public class RestaurantIT {
         @Autowired
         public ObjectMapper mapper;
 
+        @Autowired
+        EntityManagerFactory entityManagerFactory;
+
         @MockBean
         UserRepository userRepository;
 
@@ -99,4 +109,86 @@ public class RestaurantIT {
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
         }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_stream_all_restaurants() throws Exception {
+                // arrange
+
+                Restaurant restaurant1 = Restaurant.builder()
+                                .name("Taco Bell")
+                                .description("Mexican")
+                                .build();
+                Restaurant restaurant2 = Restaurant.builder()
+                                .name("Panda Express")
+                                .description("Chinese")
+                                .build();
+
+                restaurantRepository.saveAll(Arrays.asList(restaurant1, restaurant2));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/restaurants/all/stream"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(restaurant1, restaurant2));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_edit_a_restaurant_with_one_statement() throws Exception {
+                // arrange
+
+                Restaurant restaurant = restaurantRepository.save(Restaurant.builder()
+                                .name("Taco Bell")
+                                .description("Mexican")
+                                .build());
+                Restaurant edited = Restaurant.builder()
+                                .id(restaurant.getId())
+                                .name("Taco Bell Cantina")
+                                .description("Tex-Mex")
+                                .build();
+                Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+                statistics.clear();
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/restaurants?id=" + restaurant.getId())
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .header("If-Match", "\"0\"")
+                                                .content(mapper.writeValueAsString(edited))
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                assertEquals(1, statistics.getPrepareStatementCount());
+                edited.setVersion(1);
+                assertEquals(mapper.writeValueAsString(edited), response.getResponse().getContentAsString());
+                assertEquals(edited, restaurantRepository.findById(restaurant.getId()).get());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_delete_a_restaurant_with_one_statement() throws Exception {
+                // arrange
+
+                Restaurant restaurant = restaurantRepository.save(Restaurant.builder()
+                                .name("Taco Bell")
+                                .description("Mexican")
+                                .build());
+                Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+                statistics.clear();
+
+                // act
+                mockMvc.perform(delete("/api/restaurants?id=" + restaurant.getId()).with(csrf()))
+                                .andExpect(status().isOk());
+                mockMvc.perform(delete("/api/restaurants?id=" + restaurant.getId()).with(csrf()))
+                                .andExpect(status().isNotFound());
+
+                // assert
+                assertEquals(2, statistics.getPrepareStatementCount());
+                assertFalse(restaurantRepository.findById(restaurant.getId()).isPresent());
+        }
 }
@@ -0,0 +1,91 @@
+package edu.ucsb.cs156.example.integration;
+
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import edu.ucsb.cs156.example.entities.Articles;
+import edu.ucsb.cs156.example.repositories.ArticlesRepository;
+
+/**
+ * With fields=, the columns left out are not in the SELECT, and not in the JSON either.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("integration")
+@Import(QueryPlanIT.StatementRecordingConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+@WithMockUser(roles = { "USER" })
+public class SparseFieldsetIT {
+        @Autowired
+        public MockMvc mockMvc;
+
+        @Autowired
+        ArticlesRepository articlesRepository;
+
+        @Autowired
+        QueryPlanIT.RecordingStatementInspector inspector;
+
+        Articles article;
+
+        @BeforeEach
+        public void setup() {
+                article = articlesRepository.save(Articles.builder()
+                                .title("Sparse fieldsets")
+                                .url("https://example.org/sparse-fieldsets")
+                                .explanation("a long explanation that the table view never shows ".repeat(4))
+                                .email("cgaucho@ucsb.edu")
+                                .dateAdded(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build());
+                inspector.clear();
+        }
+
+        private List<String> selects() {
+                return inspector.statements().stream().filter(sql -> sql.startsWith("select")).toList();
+        }
+
+        @Test
+        public void a_list_of_some_fields_reads_only_those_columns() throws Exception {
+                String json = mockMvc.perform(get("/api/articles/all?fields=title,url"))
+                                .andExpect(status().isOk())
+                                .andReturn().getResponse().getContentAsString();
+
+                assertEquals("[{\"id\":%d,\"title\":\"Sparse fieldsets\",\"url\":\"https://example.org/sparse-fieldsets\",\"version\":0}]"
+                                .formatted(article.getId()), json);
+                assertEquals(1, selects().size());
+                assertFalse(selects().get(0).contains("explanation"), selects().get(0));
+        }
+
+        @Test
+        public void a_page_or_row_of_some_fields_reads_only_those_columns() throws Exception {
+                mockMvc.perform(get("/api/articles/page?fields=title"))
+                                .andExpect(status().isOk());
+                mockMvc.perform(get("/api/articles?id=" + article.getId() + "&fields=title"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", startsWith("\"0.")));
+
+                assertEquals(2, selects().size());
+                selects().forEach(sql -> assertFalse(sql.contains("explanation"), sql));
+        }
+}
@@ -0,0 +1,114 @@
+package edu.ucsb.cs156.example.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.CurrentUserServiceImpl;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@ActiveProfiles("integration")
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class UserUpsertIT {
+        @Autowired
+        UserRepository userRepository;
+
+        @Autowired
+        CurrentUserServiceImpl currentUserService;
+
+        private User user(String email, String fullName, boolean admin) {
+                return User.builder()
+                                .email(email)
+                                .googleSub("sub-" + email)
+                                .fullName(fullName)
+                                .emailVerified(true)
+                                .hostedDomain("ucsb.edu")
+                                .admin(admin)
+                                .build();
+        }
+
+        @Test
+        public void upsert_inserts_a_new_user() {
+                User stored = userRepository.upsertByEmail(user("cgaucho@ucsb.edu", "Chris Gaucho", false));
+
+                assertTrue(stored.getId() > 0);
+                assertEquals("Chris Gaucho", stored.getFullName());
+                assertEquals(1, userRepository.count());
+        }
+
+        @Test
+        public void upsert_of_an_existing_user_returns_the_stored_row_unchanged() {
+                User first = userRepository.upsertByEmail(user("cgaucho@ucsb.edu", "Chris Gaucho", false));
+                User second = userRepository.upsertByEmail(user("cgaucho@ucsb.edu", "Someone Else", false));
+
+                assertEquals(first.getId(), second.getId());
+                assertEquals("Chris Gaucho", second.getFullName());
+                assertFalse(second.getAdmin());
+                assertEquals(1, userRepository.count());
+        }
+
+        @Test
+        public void upsert_promotes_but_never_demotes_admins() {
+                userRepository.upsertByEmail(user("cgaucho@ucsb.edu", "Chris Gaucho", false));
+
+                assertTrue(userRepository.upsertByEmail(user("cgaucho@ucsb.edu", "Chris Gaucho", true)).getAdmin());
+                assertTrue(userRepository.upsertByEmail(user("cgaucho@ucsb.edu", "Chris Gaucho", false)).getAdmin());
+                assertTrue(userRepository.findByEmail("cgaucho@ucsb.edu").get().getAdmin());
+        }
+
+        @Test
+        public void concurrent_first_logins_of_the_same_user_create_one_row() throws Exception {
+                // arrange
+                int logins = 16;
+                DefaultOAuth2User principal = new DefaultOAuth2User(
+                                List.of(new SimpleGrantedAuthority("ROLE_USER")),
+                                Map.of("email", "cgaucho@ucsb.edu", "sub", "107126842018026740288",
+                                                "name", "Chris Gaucho", "email_verified", true),
+                                "email");
+                OAuth2AuthenticationToken token = new OAuth2AuthenticationToken(principal, principal.getAuthorities(), "google");
+                CountDownLatch start = new CountDownLatch(1);
+                ExecutorService pool = Executors.newFixedThreadPool(logins);
+                List<Future<User>> results = new ArrayList<>();
+
+                // act
+                for (int i = 0; i < logins; i++) {
+                        results.add(pool.submit(() -> {
+                                start.await();
+                                return currentUserService.getOAuth2AuthenticatedUser(new SecurityContextImpl(token), token);
+                        }));
+                }
+                start.countDown();
+
+                // assert
+                long id = results.get(0).get().getId();
+                for (Future<User> result : results) {
+                        assertEquals(id, result.get().getId());
+                }
+                pool.shutdown();
+                assertEquals(1, userRepository.count());
+        }
+}
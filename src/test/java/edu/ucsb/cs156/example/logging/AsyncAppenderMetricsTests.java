@@ -0,0 +1,44 @@
+package edu.ucsb.cs156.example.logging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class AsyncAppenderMetricsTests {
+
+  @Test
+  void test_metrics_are_published_once_per_bounded_async_appender() {
+    // arrange
+    LoggerContext context = new LoggerContext();
+    BoundedAsyncAppender appender = new BoundedAsyncAppender();
+    appender.setName("REQUEST_LOG");
+    appender.setContext(context);
+    ListAppender<ILoggingEvent> other = new ListAppender<>();
+    other.setContext(context);
+
+    Logger requests = context.getLogger("requests");
+    requests.addAppender(appender);
+    requests.addAppender(other);
+    context.getLogger("more.requests").addAppender(appender);
+
+    AsyncAppenderMetrics metrics = new AsyncAppenderMetrics();
+    metrics.loggerContext = context;
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    // act
+    metrics.bindTo(registry);
+
+    // assert
+    assertEquals(1, metrics.boundedAsyncAppenders().size());
+    assertEquals(0.0, registry.get("logging.async.dropped").tag("appender", "REQUEST_LOG")
+        .functionCounter().count());
+    assertEquals(0.0, registry.get("logging.async.queued").tag("appender", "REQUEST_LOG")
+        .gauge().value());
+  }
+}
@@ -0,0 +1,236 @@
+package edu.ucsb.cs156.example.logging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+import ch.qos.logback.core.read.ListAppender;
+import ch.qos.logback.core.status.Status;
+
+class BoundedAsyncAppenderTests {
+
+  /**
+   * A child appender that waits on a latch before each event, so the queue fills up.
+   * It ignores interrupts, like a write to a stuck stream would.
+   */
+  static class GatedAppender extends AppenderBase<ILoggingEvent> {
+    final CountDownLatch gate = new CountDownLatch(1);
+    final List<ILoggingEvent> events = new CopyOnWriteArrayList<>();
+
+    @Override
+    protected void append(ILoggingEvent event) {
+      while (true) {
+        try {
+          gate.await();
+          break;
+        } catch (InterruptedException e) {
+          // keep waiting
+        }
+      }
+      events.add(event);
+    }
+  }
+
+  /**
+   * A child appender that throws instead of writing events whose message is "bad", without the
+   * error handling of AppenderBase.doAppend.
+   */
+  static class ThrowingAppender extends ListAppender<ILoggingEvent> {
+    @Override
+    public void doAppend(ILoggingEvent event) {
+      if (event.getMessage().equals("bad")) {
+        throw new IllegalStateException("cannot write " + event.getMessage());
+      }
+      super.doAppend(event);
+    }
+  }
+
+  private LoggerContext context;
+  private Logger logger;
+  private BoundedAsyncAppender appender;
+
+  @BeforeEach
+  void setup() {
+    context = new LoggerContext();
+    context.setMDCAdapter(MDC.getMDCAdapter());
+    logger = context.getLogger("requests");
+    logger.setLevel(Level.INFO);
+    appender = new BoundedAsyncAppender();
+    appender.setContext(context);
+    appender.setName("REQUEST_LOG");
+  }
+
+  @AfterEach
+  void teardown() {
+    appender.stop();
+    MDC.clear();
+  }
+
+  @Test
+  void test_events_are_passed_to_child_appenders_with_the_callers_thread_name_and_mdc() throws Exception {
+    ListAppender<ILoggingEvent> child = new ListAppender<>();
+    child.setContext(context);
+    child.start();
+    appender.addAppender(child);
+    appender.start();
+    logger.addAppender(appender);
+
+    MDC.put("request", "42");
+    logger.info("===== {} {} handled by {}", "GET", "/api/ucsbdates/all", "allUCSBDates in UCSBDatesController");
+    appender.stop();
+
+    assertEquals(1, child.list.size());
+    ILoggingEvent event = child.list.get(0);
+    assertEquals("===== GET /api/ucsbdates/all handled by allUCSBDates in UCSBDatesController",
+        event.getFormattedMessage());
+    assertEquals(Thread.currentThread().getName(), event.getThreadName());
+    assertEquals("42", event.getMDCPropertyMap().get("request"));
+    assertEquals(0, appender.getDroppedCount());
+  }
+
+  @Test
+  void test_events_are_dropped_and_counted_when_the_queue_is_full() throws Exception {
+    GatedAppender child = new GatedAppender();
+    child.setContext(context);
+    child.start();
+    appender.addAppender(child);
+    appender.setQueueSize(2);
+    appender.start();
+    logger.addAppender(appender);
+
+    // the worker takes the first event and blocks on the gate; two more fill the queue
+    logger.info("event 1");
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (appender.getNumberOfElementsInQueue() > 0 && System.nanoTime() < deadline) {
+      Thread.sleep(1);
+    }
+    logger.info("event 2");
+    logger.info("event 3");
+    logger.info("event 4");
+    logger.info("event 5");
+
+    assertEquals(2, appender.getDroppedCount());
+    assertEquals(2, appender.getNumberOfElementsInQueue());
+    child.gate.countDown();
+    appender.stop();
+    assertEquals(3, child.events.size());
+  }
+
+  @Test
+  void test_an_event_a_child_appender_throws_on_is_reported_and_later_events_are_written() {
+    ThrowingAppender child = new ThrowingAppender();
+    child.setContext(context);
+    child.start();
+    appender.addAppender(child);
+    appender.start();
+    logger.addAppender(appender);
+
+    logger.info("event 1");
+    logger.info("bad");
+    logger.info("event 3");
+    appender.stop();
+
+    assertEquals(List.of("event 1", "event 3"), child.list.stream().map(ILoggingEvent::getMessage).toList());
+    assertTrue(context.getStatusManager().getCopyOfStatusList().stream()
+        .anyMatch(s -> s.getMessage().equals("Child appender failed to write an event")
+            && s.getThrowable().getMessage().equals("cannot write bad")));
+  }
+
+  @Test
+  void test_invalid_queue_size_is_reported_and_appender_does_not_start() {
+    appender.setQueueSize(0);
+    appender.start();
+
+    assertFalse(appender.isStarted());
+    assertEquals(0, appender.getNumberOfElementsInQueue());
+    Status status = context.getStatusManager().getCopyOfStatusList().get(0);
+    assertEquals("Invalid queue size [0]", status.getMessage());
+  }
+
+  @Test
+  void test_start_and_stop_are_idempotent() {
+    appender.start();
+    appender.start();
+    assertTrue(appender.isStarted());
+    appender.stop();
+    appender.stop();
+    assertFalse(appender.isStarted());
+  }
+
+  @Test
+  void test_stop_gives_up_after_max_flush_time() {
+    GatedAppender child = new GatedAppender();
+    child.setContext(context);
+    child.start();
+    appender.addAppender(child);
+    appender.setMaxFlushTime(10);
+    appender.start();
+    logger.addAppender(appender);
+    logger.info("stuck");
+
+    appender.stop();
+
+    assertTrue(context.getStatusManager().getCopyOfStatusList().stream()
+        .anyMatch(s -> s.getMessage().startsWith("Worker thread did not finish within 10 ms")));
+    child.gate.countDown();
+  }
+
+  @Test
+  void test_stop_keeps_the_interrupt_status_of_an_interrupted_caller() {
+    GatedAppender child = new GatedAppender();
+    child.setContext(context);
+    child.start();
+    appender.addAppender(child);
+    appender.start();
+    logger.addAppender(appender);
+    logger.info("stuck");
+
+    Thread.currentThread().interrupt();
+    appender.stop();
+
+    assertTrue(Thread.interrupted());
+    child.gate.countDown();
+  }
+
+  @Test
+  void test_settings_and_child_appender_management() {
+    ListAppender<ILoggingEvent> child = new ListAppender<>();
+    child.setName("LIST");
+    child.setContext(context);
+    child.start();
+
+    appender.setQueueSize(5);
+    appender.setMaxFlushTime(50);
+    appender.addAppender(child);
+
+    assertEquals(5, appender.getQueueSize());
+    assertEquals(50, appender.getMaxFlushTime());
+    assertSame(child, appender.getAppender("LIST"));
+    assertSame(child, appender.iteratorForAppenders().next());
+    assertTrue(appender.isAttached(child));
+    assertTrue(appender.detachAppender(child));
+    appender.addAppender(child);
+    assertTrue(appender.detachAppender("LIST"));
+    appender.addAppender(child);
+    appender.detachAndStopAllAppenders();
+    assertFalse(child.isStarted());
+    assertNotNull(appender.iteratorForAppenders());
+  }
+}
@@ -0,0 +1,120 @@
+package edu.ucsb.cs156.example.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.jdbc.spi.JdbcServices;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Query;
+
+class UserUpsertRepositoryImplTests {
+
+  private UserUpsertRepositoryImpl repository;
+  private EntityManager entityManager;
+  private JdbcServices jdbcServices;
+  private Query query;
+
+  @BeforeEach
+  void setup() {
+    entityManager = mock(EntityManager.class);
+    EntityManagerFactory entityManagerFactory = mock(EntityManagerFactory.class);
+    SessionFactoryImplementor sessionFactory = mock(SessionFactoryImplementor.class);
+    jdbcServices = mock(JdbcServices.class);
+    query = mock(Query.class);
+    when(entityManager.getEntityManagerFactory()).thenReturn(entityManagerFactory);
+    when(entityManagerFactory.unwrap(SessionFactoryImplementor.class)).thenReturn(sessionFactory);
+    when(sessionFactory.getJdbcServices()).thenReturn(jdbcServices);
+    when(entityManager.createNativeQuery(anyString(), eq(User.class))).thenReturn(query);
+    when(query.setParameter(anyString(), any())).thenReturn(query);
+    repository = new UserUpsertRepositoryImpl();
+    repository.entityManager = entityManager;
+  }
+
+  private void dialect(Dialect dialect) {
+    when(jdbcServices.getDialect()).thenReturn(dialect);
+    repository.chooseUpsertSql();
+  }
+
+  @Test
+  void test_postgres_uses_insert_on_conflict() {
+    dialect(new PostgreSQLDialect());
+    assertEquals(UserUpsertRepositoryImpl.POSTGRES_UPSERT, repository.upsertSql);
+  }
+
+  @Test
+  void test_h2_uses_merge() {
+    dialect(new H2Dialect());
+    assertEquals(UserUpsertRepositoryImpl.H2_UPSERT, repository.upsertSql);
+  }
+
+  @Test
+  void test_other_databases_are_refused_when_the_repository_is_created() {
+    when(jdbcServices.getDialect()).thenReturn(new MySQLDialect());
+    IllegalStateException e = assertThrows(IllegalStateException.class, repository::chooseUpsertSql);
+    assertEquals("No user upsert statement for MySQLDialect", e.getMessage());
+  }
+
+  @Test
+  void test_upsertByEmail_binds_every_column_and_returns_the_row() {
+    dialect(new H2Dialect());
+    User stored = User.builder().id(7L).email("cgaucho@ucsb.edu").build();
+    when(query.getResultList()).thenReturn(List.of(stored));
+    User user = User.builder()
+        .email("cgaucho@ucsb.edu")
+        .googleSub("sub")
+        .pictureUrl("https://example.org/picture.jpg")
+        .fullName("Chris Gaucho")
+        .givenName("Chris")
+        .familyName("Gaucho")
+        .emailVerified(true)
+        .locale("en")
+        .hostedDomain("ucsb.edu")
+        .admin(true)
+        .build();
+
+    assertSame(stored, repository.upsertByEmail(user));
+
+    verify(query).setParameter("email", "cgaucho@ucsb.edu");
+    verify(query).setParameter("googleSub", "sub");
+    verify(query).setParameter("pictureUrl", "https://example.org/picture.jpg");
+    verify(query).setParameter("fullName", "Chris Gaucho");
+    verify(query).setParameter("givenName", "Chris");
+    verify(query).setParameter("familyName", "Gaucho");
+    verify(query).setParameter("emailVerified", true);
+    verify(query).setParameter("locale", "en");
+    verify(query).setParameter("hostedDomain", "ucsb.edu");
+    verify(query).setParameter("admin", true);
+  }
+
+  @Test
+  void test_upsertByEmail_reads_the_row_when_the_upsert_returns_none() {
+    dialect(new H2Dialect());
+    User stored = User.builder().id(7L).email("cgaucho@ucsb.edu").build();
+    when(query.getResultList()).thenReturn(List.of(), List.of(stored));
+
+    assertSame(stored, repository.upsertByEmail(User.builder().email("cgaucho@ucsb.edu").admin(false).build()));
+
+    verify(entityManager).createNativeQuery(UserUpsertRepositoryImpl.SELECT_BY_EMAIL, User.class);
+    verify(query, times(2)).setParameter("email", "cgaucho@ucsb.edu");
+  }
+}
@@ -0,0 +1,120 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+
+class AdminRoleResolverTests {
+
+  private UserRepository userRepository;
+  private AdminRoleResolver resolver;
+  private long now;
+
+  @BeforeEach
+  void setup() {
+    userRepository = mock(UserRepository.class);
+    resolver = new AdminRoleResolver(List.of("phtcon@ucsb.edu"), userRepository, Duration.ofSeconds(60), 2);
+    resolver.clock = () -> now;
+    now = 0;
+    when(userRepository.findByEmail("cgaucho@ucsb.edu"))
+        .thenReturn(Optional.of(User.builder().email("cgaucho@ucsb.edu").admin(false).build()));
+    when(userRepository.findByEmail("ldelplaya@ucsb.edu"))
+        .thenReturn(Optional.of(User.builder().email("ldelplaya@ucsb.edu").admin(true).build()));
+    when(userRepository.findByEmail("nobody@ucsb.edu")).thenReturn(Optional.empty());
+  }
+
+  @Test
+  void test_configured_admins_never_touch_the_database() {
+    assertTrue(resolver.isAdmin("phtcon@ucsb.edu"));
+    verify(userRepository, never()).findByEmail("phtcon@ucsb.edu");
+    assertEquals(0, resolver.size());
+  }
+
+  @Test
+  void test_flags_are_read_once_and_cached() {
+    assertTrue(resolver.isAdmin("ldelplaya@ucsb.edu"));
+    assertTrue(resolver.isAdmin("ldelplaya@ucsb.edu"));
+    assertFalse(resolver.isAdmin("cgaucho@ucsb.edu"));
+    assertFalse(resolver.isAdmin("cgaucho@ucsb.edu"));
+
+    verify(userRepository, times(1)).findByEmail("ldelplaya@ucsb.edu");
+    verify(userRepository, times(1)).findByEmail("cgaucho@ucsb.edu");
+  }
+
+  @Test
+  void test_unknown_users_are_not_admins() {
+    assertFalse(resolver.isAdmin("nobody@ucsb.edu"));
+  }
+
+  @Test
+  void test_flags_expire_after_the_ttl() {
+    resolver.isAdmin("cgaucho@ucsb.edu");
+    now += Duration.ofSeconds(59).toNanos();
+    resolver.isAdmin("cgaucho@ucsb.edu");
+    now += Duration.ofSeconds(1).toNanos();
+    resolver.isAdmin("cgaucho@ucsb.edu");
+
+    verify(userRepository, times(2)).findByEmail("cgaucho@ucsb.edu");
+  }
+
+  @Test
+  void test_invalidate_forces_a_reread() {
+    resolver.isAdmin("cgaucho@ucsb.edu");
+    resolver.invalidate("cgaucho@ucsb.edu");
+    resolver.invalidate(null);
+    resolver.isAdmin("cgaucho@ucsb.edu");
+
+    verify(userRepository, times(2)).findByEmail("cgaucho@ucsb.edu");
+  }
+
+  @Test
+  void test_a_flag_read_while_the_row_changes_is_not_cached() {
+    when(userRepository.findByEmail("cgaucho@ucsb.edu")).thenAnswer(invocation -> {
+      resolver.invalidate("cgaucho@ucsb.edu");
+      return Optional.of(User.builder().email("cgaucho@ucsb.edu").admin(false).build());
+    });
+
+    resolver.isAdmin("cgaucho@ucsb.edu");
+
+    assertEquals(0, resolver.size());
+  }
+
+  @Test
+  void test_cache_is_bounded_and_evicts_expired_entries_first() {
+    resolver.isAdmin("cgaucho@ucsb.edu");
+    now += Duration.ofSeconds(61).toNanos();
+    resolver.isAdmin("ldelplaya@ucsb.edu");
+    resolver.isAdmin("nobody@ucsb.edu");
+
+    assertEquals(2, resolver.size());
+    // cgaucho was expired and evicted; ldelplaya is still cached
+    resolver.isAdmin("ldelplaya@ucsb.edu");
+    verify(userRepository, times(1)).findByEmail("ldelplaya@ucsb.edu");
+  }
+
+  @Test
+  void test_cache_is_bounded_when_nothing_has_expired() {
+    resolver.isAdmin("cgaucho@ucsb.edu");
+    resolver.isAdmin("ldelplaya@ucsb.edu");
+    resolver.isAdmin("nobody@ucsb.edu");
+    resolver.isAdmin("nobody@ucsb.edu");
+
+    assertEquals(2, resolver.size());
+    verify(userRepository, times(1)).findByEmail("nobody@ucsb.edu");
+  }
+}
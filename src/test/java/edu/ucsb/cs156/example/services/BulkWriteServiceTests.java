@@ -0,0 +1,88 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.UCSBOrganizations;
+import edu.ucsb.cs156.example.models.BulkResult;
+import edu.ucsb.cs156.example.repositories.UCSBOrganizationsRepository;
+import jakarta.persistence.EntityManager;
+
+class BulkWriteServiceTests {
+
+  private final UCSBOrganizationsRepository repository = mock(UCSBOrganizationsRepository.class);
+  private final BulkWriteService bulkWriteService = new BulkWriteService();
+
+  BulkWriteServiceTests() {
+    bulkWriteService.entityManager = mock(EntityManager.class);
+  }
+
+  private static UCSBOrganizations org(String orgcode) {
+    return UCSBOrganizations.builder().orgcode(orgcode).orgTranslation(orgcode).build();
+  }
+
+  private static List<Integer> statuses(BulkResult result) {
+    return result.getItems().stream().map(BulkResult.Item::getStatus).toList();
+  }
+
+  @Test
+  void create_skips_rows_without_a_key_and_keys_repeated_in_the_request() {
+    UCSBOrganizations first = org("ZPR");
+    UCSBOrganizations again = org("ZPR");
+    UCSBOrganizations noKey = org(null);
+    when(repository.findAllById(List.of("ZPR"))).thenReturn(List.of());
+
+    BulkResult result = bulkWriteService.createAll(repository, List.of(first, again, noKey),
+        UCSBOrganizations::getOrgcode);
+
+    assertEquals(List.of(201, 409, 400), statuses(result));
+    assertEquals(1, result.getSucceeded());
+    assertEquals(2, result.getFailed());
+    verify(bulkWriteService.entityManager, times(1)).persist(any());
+  }
+
+  @Test
+  void create_skips_elements_that_are_not_valid_rows() {
+    UCSBOrganizations row = org("ZPR");
+    when(repository.findAllById(List.of("ZPR"))).thenReturn(List.of());
+
+    BulkResult generated = bulkWriteService.createAll(Arrays.asList(null, row), UCSBOrganizations::getOrgcode);
+    BulkResult keyed = bulkWriteService.createAll(repository, Arrays.asList(row, null), UCSBOrganizations::getOrgcode);
+
+    assertEquals(List.of(400, 201), statuses(generated));
+    assertEquals(List.of(201, 400), statuses(keyed));
+    verify(bulkWriteService.entityManager, times(2)).persist(row);
+  }
+
+  @Test
+  void update_reports_rows_without_a_key_as_not_found() {
+    when(repository.findAllById(List.of())).thenReturn(List.of());
+
+    BulkResult result = bulkWriteService.updateAll(repository, List.of(org(null)),
+        UCSBOrganizations::getOrgcode, (row, incoming) -> {
+        });
+
+    assertEquals(List.of(404), statuses(result));
+  }
+
+  @Test
+  void delete_removes_a_row_once_even_if_its_key_is_repeated() {
+    UCSBOrganizations row = org("ZPR");
+    when(repository.findAllById(List.of("ZPR"))).thenReturn(List.of(row));
+
+    BulkResult result = bulkWriteService.deleteAll(repository, Arrays.asList("ZPR", "ZPR", null),
+        UCSBOrganizations::getOrgcode);
+
+    assertEquals(List.of(200, 404, 404), statuses(result));
+    verify(repository, times(1)).deleteAll(List.of(row));
+  }
+}
@@ -0,0 +1,217 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.entities.MenuItemReviews;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ChangeFeedServiceTests {
+
+  private final TableVersionService tableVersionService = new TableVersionService();
+  private final ChangeLogService changeLogService = new ChangeLogService(tableVersionService, 3);
+
+  // runs nothing until run() is called, like a sender that is busy
+  private final List<Runnable> tasks = new ArrayList<>();
+  private final Executor heldSender = tasks::add;
+
+  private ChangeFeedService feed(Executor sender, int bufferSize) {
+    return new ChangeFeedService(changeLogService, tableVersionService, new ObjectMapper(), sender, bufferSize,
+        Duration.ofMinutes(1), Duration.ofMillis(50));
+  }
+
+  private void run() {
+    while (!tasks.isEmpty()) {
+      tasks.remove(0).run();
+    }
+  }
+
+  private String id(long version) {
+    return "id:" + tableVersionService.token(HelpRequest.class, version) + "\n";
+  }
+
+  /**
+   * This is a stream that keeps what is sent to it, as the client would read it.
+   */
+  static class RecordingEmitter extends SseEmitter {
+    private final StringBuilder text = new StringBuilder();
+    private volatile boolean completed;
+
+    @Override
+    public synchronized void send(Set<DataWithMediaType> items) {
+      items.forEach(item -> text.append(item.getData()));
+    }
+
+    @Override
+    public synchronized void complete() {
+      completed = true;
+    }
+
+    boolean completed() {
+      return completed;
+    }
+
+    synchronized String text() {
+      return text.toString();
+    }
+  }
+
+  /**
+   * This is a stream whose client has stopped reading: every write blocks until released.
+   */
+  static class StalledEmitter extends RecordingEmitter {
+    private final CountDownLatch released = new CountDownLatch(1);
+
+    @Override
+    public void send(Set<DataWithMediaType> items) {
+      try {
+        released.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      super.send(items);
+    }
+  }
+
+  private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(1);
+    }
+  }
+
+  @Test
+  void each_write_is_sent_as_one_event_per_row_with_the_version_on_the_last() {
+    // arrange
+    ChangeFeedService feed = feed(Runnable::run, 10);
+    RecordingEmitter emitter = new RecordingEmitter();
+    feed.subscribe(HelpRequest.class, null, emitter);
+
+    // act
+    changeLogService.record(HelpRequest.class, ChangeLogService.Kind.CREATED, List.of(1L, 2L));
+    changeLogService.record(MenuItemReviews.class, ChangeLogService.Kind.CREATED, List.of(1L));
+    changeLogService.record(HelpRequest.class, ChangeLogService.Kind.DELETED, List.of(1L));
+    feed.heartbeat();
+
+    // assert
+    assertEquals("event:created\ndata:{\"id\":1}\n\n"
+        + "event:created\ndata:{\"id\":2}\n" + id(1) + "\n"
+        + "event:deleted\ndata:{\"id\":1}\n" + id(2) + "\n"
+        + ":\n\n", emitter.text.toString());
+    assertEquals(1, feed.subscribers(HelpRequest.class));
+  }
+
+  @Test
+  void a_client_that_reconnects_is_first_sent_the_events_it_missed() {
+    // arrange
+    ChangeFeedService feed = feed(Runnable::run, 10);
+    changeLogService.record(HelpRequest.class, ChangeLogService.Kind.CREATED, List.of(1L));
+    changeLogService.record(HelpRequest.class, ChangeLogService.Kind.UPDATED, List.of(1L));
+    RecordingEmitter emitter = new RecordingEmitter();
+
+    // act
+    feed.subscribe(HelpRequest.class, tableVersionService.token(HelpRequest.class, 1L), emitter);
+    changeLogService.record(HelpRequest.class, ChangeLogService.Kind.DELETED, List.of(1L));
+
+    // assert
+    assertEquals("event:updated\ndata:{\"id\":1}\n" + id(2) + "\n"
+        + "event:deleted\ndata:{\"id\":1}\n" + id(3) + "\n", emitter.text.toString());
+  }
+
+  @Test
+  void a_client_whose_last_event_the_log_no_longer_has_or_is_of_another_table_is_told_to_reset() {
+    // arrange: the log keeps 3 changes, so version 1 is gone
+    ChangeFeedService feed = feed(Runnable::run, 10);
+    changeLogService.record(HelpRequest.class, ChangeLogService.Kind.CREATED, List.of(1L, 2L, 3L, 4L));
+    RecordingEmitter stale = new RecordingEmitter();
+    RecordingEmitter restarted = new RecordingEmitter();
+    RecordingEmitter otherTable = new RecordingEmitter();
+
+    // act
+    feed.subscribe(HelpRequest.class, tableVersionService.token(HelpRequest.class, 0L), stale);
+    feed.subscribe(HelpRequest.class, "stale-3", restarted);
+    feed.subscribe(HelpRequest.class, tableVersionService.token(MenuItemReviews.class, 1L), otherTable);
+
+    // assert
+    String reset = "event:reset\n" + id(1) + "data:{\"version\":\"" + tableVersionService.token(HelpRequest.class, 1L) + "\"}\n\n";
+    assertEquals(reset, stale.text.toString());
+    assertEquals(reset, restarted.text.toString());
+    assertEquals(reset, otherTable.text.toString());
+  }
+
+  @Test
+  void a_client_that_falls_a_buffer_behind_is_disconnected() {
+    // arrange
+    ChangeFeedService feed = feed(heldSender, 2);
+    RecordingEmitter slow = new RecordingEmitter();
+    feed.subscribe(HelpRequest.class, null, slow);
+
+    // act: three writes while the sender is busy
+    for (long id = 1; id <= 3; id++) {
+      changeLogService.record(HelpRequest.class, ChangeLogService.Kind.CREATED, List.of(id));
+    }
+    run();
+    changeLogService.record(HelpRequest.class, ChangeLogService.Kind.CREATED, List.of(4L));
+    run();
+
+    // assert
+    assertTrue(slow.completed);
+    assertEquals(0, feed.subscribers(HelpRequest.class));
+    assertFalse(slow.text.toString().contains("\"id\":4"));
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    feed.bindTo(registry);
+    assertEquals(1.0, registry.get("change.feed.evictions").functionCounter().count());
+    assertEquals(0.0, registry.get("change.feed.subscribers").gauge().value());
+  }
+
+  @Test
+  void a_client_that_stops_reading_holds_up_only_itself_and_is_disconnected() throws Exception {
+    // arrange
+    ExecutorService senders = Executors.newCachedThreadPool();
+    ChangeFeedService feed = feed(senders, 10);
+    StalledEmitter stalled = new StalledEmitter();
+    RecordingEmitter reading = new RecordingEmitter();
+    feed.subscribe(HelpRequest.class, null, stalled);
+    feed.subscribe(HelpRequest.class, null, reading);
+
+    try {
+      // act: the stalled client's first write never returns
+      changeLogService.record(HelpRequest.class, ChangeLogService.Kind.CREATED, List.of(1L));
+      changeLogService.record(HelpRequest.class, ChangeLogService.Kind.CREATED, List.of(2L));
+      waitFor(() -> reading.text().contains("\"id\":2"));
+      Thread.sleep(100);
+      feed.tick();
+
+      // assert: the other client got every event, and the stalled one is gone
+      assertEquals("event:created\ndata:{\"id\":1}\n" + id(1) + "\n"
+          + "event:created\ndata:{\"id\":2}\n" + id(2) + "\n", reading.text());
+      assertEquals(1, feed.subscribers(HelpRequest.class));
+      stalled.released.countDown();
+      waitFor(() -> stalled.completed());
+      assertTrue(stalled.completed());
+      assertFalse(stalled.text().contains("\"id\":2"));
+      SimpleMeterRegistry registry = new SimpleMeterRegistry();
+      feed.bindTo(registry);
+      assertEquals(1.0, registry.get("change.feed.evictions").functionCounter().count());
+    } finally {
+      senders.shutdownNow();
+    }
+  }
+}
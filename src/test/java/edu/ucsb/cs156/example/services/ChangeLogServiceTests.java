@@ -0,0 +1,107 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.entities.MenuItemReviews;
+
+class ChangeLogServiceTests {
+
+  private final TableVersionService tableVersionService = new TableVersionService();
+  private final ChangeLogService changeLogService = new ChangeLogService(tableVersionService, 5);
+
+  @Test
+  void each_row_is_listed_once_as_of_its_latest_write() {
+    // act
+    changeLogService.record(HelpRequest.class, ChangeLogService.Kind.CREATED, List.of(1L, 2L));
+    changeLogService.record(HelpRequest.class, ChangeLogService.Kind.CREATED, List.of(3L));
+    changeLogService.record(HelpRequest.class, ChangeLogService.Kind.DELETED, List.of(2L));
+    changeLogService.record(HelpRequest.class, ChangeLogService.Kind.UPDATED, List.of(1L));
+
+    // assert
+    assertEquals(4L, tableVersionService.version(HelpRequest.class));
+    assertEquals(Optional.of(new ChangeLogService.Changes(List.of(3L, 1L), List.of(2L), 4L)),
+        changeLogService.since(HelpRequest.class, 0L));
+    assertEquals(Optional.of(new ChangeLogService.Changes(List.of(1L), List.of(2L), 4L)),
+        changeLogService.since(HelpRequest.class, 2L));
+    assertEquals(Optional.of(new ChangeLogService.Changes(List.of(), List.of(), 4L)),
+        changeLogService.since(HelpRequest.class, 4L));
+  }
+
+  @Test
+  void versions_older_than_the_log_or_not_yet_reached_have_no_changes() {
+    // act: the sixth change pushes the first one out
+    for (long id = 1; id <= 6; id++) {
+      changeLogService.record(MenuItemReviews.class, ChangeLogService.Kind.CREATED, List.of(id));
+    }
+
+    // assert
+    assertEquals(Optional.empty(), changeLogService.since(MenuItemReviews.class, 0L));
+    assertEquals(List.of(2L, 3L, 4L, 5L, 6L), changeLogService.since(MenuItemReviews.class, 1L).get().saved());
+    assertEquals(Optional.empty(), changeLogService.since(MenuItemReviews.class, 7L));
+    assertEquals(Optional.empty(), changeLogService.since(MenuItemReviews.class, -1L));
+  }
+
+  @Test
+  void after_unlogged_writes_only_the_new_version_has_changes() {
+    // arrange
+    List<Long> forgotten = new ArrayList<>();
+    changeLogService.addListener(new ChangeLogService.Listener() {
+      @Override
+      public void recorded(Class<?> entity, List<ChangeLogService.Change> changes) {
+      }
+
+      @Override
+      public void forgotten(Class<?> entity, long version) {
+        forgotten.add(version);
+      }
+    });
+    changeLogService.record(HelpRequest.class, ChangeLogService.Kind.CREATED, List.of(1L));
+
+    // act
+    assertEquals(2L, changeLogService.forget(HelpRequest.class));
+
+    // assert
+    assertEquals(List.of(2L), forgotten);
+    assertEquals(Optional.empty(), changeLogService.since(HelpRequest.class, 1L));
+    assertEquals(Optional.of(new ChangeLogService.Changes(List.of(), List.of(), 2L)),
+        changeLogService.since(HelpRequest.class, 2L));
+  }
+
+  @Test
+  void a_table_never_written_has_no_changes_since_version_zero() {
+    assertEquals(Optional.of(new ChangeLogService.Changes(List.of(), List.of(), 0L)),
+        changeLogService.since(HelpRequest.class, 0L));
+  }
+
+  @Test
+  void replay_passes_every_change_since_a_version_and_listeners_see_the_rest() {
+    // arrange
+    List<ChangeLogService.Change> heard = new ArrayList<>();
+    changeLogService.record(HelpRequest.class, ChangeLogService.Kind.CREATED, List.of(1L, 2L));
+    changeLogService.record(HelpRequest.class, ChangeLogService.Kind.UPDATED, List.of(1L));
+    List<Object> replayed = new ArrayList<>();
+
+    // act
+    changeLogService.replay(HelpRequest.class, 1L, (version, missed) -> {
+      replayed.add(version);
+      replayed.add(missed);
+      changeLogService.addListener((entity, changes) -> heard.addAll(changes));
+    });
+    changeLogService.record(HelpRequest.class, ChangeLogService.Kind.DELETED, List.of(2L));
+    changeLogService.replay(HelpRequest.class, 0L, (version, missed) -> replayed.add(missed.get().size()));
+    changeLogService.replay(HelpRequest.class, 4L, (version, missed) -> replayed.add(missed));
+    changeLogService.replay(HelpRequest.class, null, (version, missed) -> replayed.add(missed));
+
+    // assert
+    assertEquals(List.of(2L, Optional.of(List.of(new ChangeLogService.Change(2L, 1L, ChangeLogService.Kind.UPDATED))),
+        4, Optional.empty(), Optional.of(List.of())), replayed);
+    assertEquals(List.of(new ChangeLogService.Change(3L, 2L, ChangeLogService.Kind.DELETED)), heard);
+  }
+}
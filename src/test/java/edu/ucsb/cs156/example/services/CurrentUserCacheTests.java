@@ -0,0 +1,119 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import edu.ucsb.cs156.example.entities.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class CurrentUserCacheTests {
+
+  private CurrentUserCache cache;
+  private MockHttpServletRequest request;
+  private AtomicInteger loads;
+
+  private final User cgaucho = User.builder().id(1L).email("cgaucho@ucsb.edu").build();
+  private final User ldelplaya = User.builder().id(2L).email("ldelplaya@ucsb.edu").build();
+
+  @BeforeEach
+  void setup() {
+    cache = new CurrentUserCache();
+    request = new MockHttpServletRequest();
+    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    loads = new AtomicInteger();
+  }
+
+  @AfterEach
+  void teardown() {
+    RequestContextHolder.resetRequestAttributes();
+  }
+
+  private Supplier<User> loader(User user) {
+    return () -> {
+      loads.incrementAndGet();
+      return user;
+    };
+  }
+
+  @Test
+  void test_hit_ratio_is_zero_before_any_lookups() {
+    assertEquals(0.0, cache.hitRatio());
+  }
+
+  @Test
+  void test_second_lookup_in_the_same_session_is_a_hit() {
+    assertSame(cgaucho, cache.get("cgaucho@ucsb.edu", loader(cgaucho)));
+    assertSame(cgaucho, cache.get("cgaucho@ucsb.edu", loader(cgaucho)));
+
+    assertEquals(1, loads.get());
+    assertEquals(0.5, cache.hitRatio());
+  }
+
+  @Test
+  void test_invalidate_forces_a_reload() {
+    cache.get("cgaucho@ucsb.edu", loader(cgaucho));
+    cache.invalidate("cgaucho@ucsb.edu");
+    cache.get("cgaucho@ucsb.edu", loader(cgaucho));
+    cache.get("cgaucho@ucsb.edu", loader(cgaucho));
+
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  void test_invalidating_another_user_does_not_force_a_reload() {
+    cache.get("cgaucho@ucsb.edu", loader(cgaucho));
+    cache.invalidate("ldelplaya@ucsb.edu");
+    cache.invalidate(null);
+    cache.get("cgaucho@ucsb.edu", loader(cgaucho));
+
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  void test_a_different_email_in_the_same_session_is_a_miss() {
+    cache.get("cgaucho@ucsb.edu", loader(cgaucho));
+    assertSame(ldelplaya, cache.get("ldelplaya@ucsb.edu", loader(ldelplaya)));
+
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  void test_nothing_is_cached_outside_a_request_or_without_an_email() {
+    cache.get(null, loader(cgaucho));
+    cache.get(null, loader(cgaucho));
+    RequestContextHolder.resetRequestAttributes();
+    cache.get("cgaucho@ucsb.edu", loader(cgaucho));
+    cache.get("cgaucho@ucsb.edu", loader(cgaucho));
+
+    assertEquals(4, loads.get());
+    assertEquals(0.0, cache.hitRatio());
+  }
+
+  @Test
+  void test_metrics_are_published() {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    cache.bindTo(registry);
+
+    cache.get("cgaucho@ucsb.edu", loader(cgaucho));
+    cache.get("cgaucho@ucsb.edu", loader(cgaucho));
+    cache.get("cgaucho@ucsb.edu", loader(cgaucho));
+    cache.invalidate("cgaucho@ucsb.edu");
+
+    assertEquals(2.0, registry.get("cache.gets").tags("cache", "currentUser", "result", "hit")
+        .functionCounter().count());
+    assertEquals(1.0, registry.get("cache.gets").tags("cache", "currentUser", "result", "miss")
+        .functionCounter().count());
+    assertEquals(1.0, registry.get("cache.evictions").tags("cache", "currentUser")
+        .functionCounter().count());
+  }
+}
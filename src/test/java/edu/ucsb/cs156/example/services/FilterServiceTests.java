@@ -0,0 +1,83 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.entities.MenuItemReviews;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.errors.InvalidCursorException;
+import edu.ucsb.cs156.example.errors.InvalidFilterException;
+
+class FilterServiceTests {
+
+  private final FilterService filterService = new FilterService();
+
+  FilterServiceTests() {
+    filterService.mapper = new ObjectMapper().findAndRegisterModules()
+        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+  }
+
+  @Test
+  void a_sort_always_ends_with_the_id() {
+    assertEquals(Sort.by(Sort.Order.desc("stars"), Sort.Order.asc("dateReviewed"), Sort.Order.asc("id")),
+        filterService.sort(MenuItemReviews.class, List.of("-stars", " dateReviewed", "stars")));
+    assertEquals(Sort.by(Sort.Order.asc("name"), Sort.Order.asc("code")),
+        filterService.sort(UCSBDiningCommons.class, List.of("name")));
+    assertEquals(Sort.by(Sort.Order.desc("id")), filterService.sort(HelpRequest.class, List.of("-id")));
+  }
+
+  @Test
+  void filters_and_sorts_the_entity_cannot_apply_are_rejected() {
+    assertEquals("Invalid filter or sort: MenuItemReviews has no field rating",
+        assertThrows(InvalidFilterException.class,
+            () -> filterService.specification(MenuItemReviews.class, List.of("rating>=4"))).getMessage());
+    assertEquals("Invalid filter or sort: four is not a valid value for stars",
+        assertThrows(InvalidFilterException.class,
+            () -> filterService.specification(MenuItemReviews.class, List.of("stars>=four"))).getMessage());
+    assertEquals("Invalid filter or sort: stars is not text, so it can't be matched with ~",
+        assertThrows(InvalidFilterException.class,
+            () -> filterService.specification(MenuItemReviews.class, List.of("stars~4"))).getMessage());
+    assertEquals("Invalid filter or sort: stars is not of the form field<op>value",
+        assertThrows(InvalidFilterException.class,
+            () -> filterService.specification(MenuItemReviews.class, List.of("stars"))).getMessage());
+    assertThrows(InvalidFilterException.class, () -> filterService.sort(HelpRequest.class, List.of("-urgency")));
+  }
+
+  @Test
+  void a_cursor_reads_back_as_the_position_it_was_written_for() {
+    Sort sort = filterService.sort(MenuItemReviews.class, List.of("-dateReviewed", "stars"));
+    Map<String, Object> keys = new LinkedHashMap<>();
+    keys.put("dateReviewed", LocalDateTime.parse("2024-10-18T12:30:00"));
+    keys.put("stars", 4);
+    keys.put("id", 17L);
+
+    String cursor = filterService.cursor(ScrollPosition.forward(keys));
+
+    assertEquals("{\"dateReviewed\":\"2024-10-18T12:30:00\",\"stars\":4,\"id\":17}", cursor);
+    assertEquals(ScrollPosition.forward(keys), filterService.position(MenuItemReviews.class, sort, cursor));
+  }
+
+  @Test
+  void a_cursor_for_another_order_is_rejected() {
+    Sort sort = filterService.sort(MenuItemReviews.class, List.of("-stars"));
+
+    assertThrows(InvalidCursorException.class,
+        () -> filterService.position(MenuItemReviews.class, sort, "{\"dateReviewed\":\"2024-10-18T12:30:00\",\"id\":17}"));
+    assertThrows(InvalidCursorException.class,
+        () -> filterService.position(MenuItemReviews.class, sort, "{\"stars\":\"many\",\"id\":17}"));
+    assertThrows(InvalidCursorException.class, () -> filterService.position(MenuItemReviews.class, sort, "17"));
+  }
+}
@@ -0,0 +1,244 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.Restaurant;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class JsonResponseCacheTests {
+
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final TableVersionService tableVersionService = new TableVersionService();
+  private final JsonResponseCache cache = new JsonResponseCache(mapper, tableVersionService, 100_000, true);
+
+  private final AtomicInteger loads = new AtomicInteger();
+
+  private Supplier<List<Restaurant>> restaurants(int n) {
+    return () -> {
+      loads.incrementAndGet();
+      List<Restaurant> rows = new ArrayList<>();
+      for (long id = 1; id <= n; id++) {
+        rows.add(Restaurant.builder().id(id).name("Restaurant " + id).description("Pizza").build());
+      }
+      return rows;
+    };
+  }
+
+  private MockHttpServletResponse write(Supplier<?> loader, String acceptEncoding) throws Exception {
+    return write(loader, acceptEncoding, null);
+  }
+
+  private MockHttpServletResponse write(Supplier<?> loader, String acceptEncoding, String ifNoneMatch)
+      throws Exception {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/restaurants/all");
+    if (acceptEncoding != null) {
+      request.addHeader("Accept-Encoding", acceptEncoding);
+    }
+    if (ifNoneMatch != null) {
+      request.addHeader("If-None-Match", ifNoneMatch);
+    }
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    cache.write(Restaurant.class, loader, request, response);
+    return response;
+  }
+
+  @Test
+  void the_rows_are_loaded_once_until_the_table_changes() throws Exception {
+    // act
+    MockHttpServletResponse first = write(restaurants(2), null);
+    MockHttpServletResponse second = write(restaurants(2), null);
+    tableVersionService.changed(Restaurant.class);
+    write(restaurants(3), null);
+    MockHttpServletResponse fourth = write(restaurants(3), null);
+
+    // assert
+    assertEquals(2, loads.get());
+    assertEquals(mapper.writeValueAsString(restaurants(2).get()), first.getContentAsString());
+    assertEquals(first.getContentAsString(), second.getContentAsString());
+    assertEquals("application/json", first.getContentType());
+    assertEquals(first.getContentAsByteArray().length, first.getContentLength());
+    assertTrue(fourth.getContentAsString().contains("Restaurant 3"));
+
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    cache.bindTo(registry);
+    assertEquals(2.0, registry.get("cache.gets").tags("cache", "jsonResponses", "result", "hit")
+        .functionCounter().count());
+    assertEquals(2.0, registry.get("cache.gets").tags("cache", "jsonResponses", "result", "miss")
+        .functionCounter().count());
+  }
+
+  @Test
+  void a_list_of_some_fields_is_cached_apart_from_the_full_rows() throws Exception {
+    // arrange
+    Supplier<List<String>> names = () -> {
+      loads.incrementAndGet();
+      return List.of("Restaurant 1");
+    };
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/restaurants/all");
+
+    // act
+    MockHttpServletResponse full = write(restaurants(1), null);
+    MockHttpServletResponse some = new MockHttpServletResponse();
+    cache.write(Restaurant.class, "id,name", names, request, some);
+    cache.write(Restaurant.class, "id,name", names, request, new MockHttpServletResponse());
+    MockHttpServletResponse fullAgain = write(restaurants(1), null);
+
+    // assert
+    assertEquals(2, loads.get());
+    assertEquals("[\"Restaurant 1\"]", some.getContentAsString());
+    assertEquals(full.getContentAsString(), fullAgain.getContentAsString());
+  }
+
+  @Test
+  void lists_longer_than_max_bytes_are_not_kept() throws Exception {
+    JsonResponseCache small = new JsonResponseCache(mapper, tableVersionService, 100, true);
+
+    small.get(Restaurant.class, restaurants(5));
+    small.get(Restaurant.class, restaurants(5));
+
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  void a_load_that_raced_with_a_write_does_not_replace_newer_rows() throws Exception {
+    // arrange: while rows are read at version 1, the table changes and version 2 is cached
+    tableVersionService.changed(Restaurant.class);
+    Supplier<List<Restaurant>> racing = () -> {
+      tableVersionService.changed(Restaurant.class);
+      try {
+        cache.get(Restaurant.class, restaurants(2));
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+      return restaurants(1).get();
+    };
+
+    // act
+    JsonResponseCache.Entry stale = cache.get(Restaurant.class, racing);
+    JsonResponseCache.Entry current = cache.get(Restaurant.class, restaurants(2));
+
+    // assert
+    assertEquals(1L, stale.version());
+    assertEquals(2L, current.version());
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  void large_lists_are_sent_compressed_to_clients_that_accept_gzip() throws Exception {
+    // act
+    MockHttpServletResponse plain = write(restaurants(50), null);
+    MockHttpServletResponse compressed = write(restaurants(50), "deflate, gzip");
+
+    // assert
+    assertNull(plain.getHeader("Content-Encoding"));
+    assertEquals("Accept-Encoding", plain.getHeader("Vary"));
+    assertEquals("gzip", compressed.getHeader("Content-Encoding"));
+    assertEquals("Accept-Encoding", compressed.getHeader("Vary"));
+    assertTrue(compressed.getContentLength() < plain.getContentLength() / 4);
+    byte[] unzipped = new GZIPInputStream(new ByteArrayInputStream(compressed.getContentAsByteArray())).readAllBytes();
+    assertArrayEquals(plain.getContentAsByteArray(), unzipped);
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  void small_lists_and_lists_with_gzip_turned_off_are_sent_uncompressed() throws Exception {
+    MockHttpServletResponse small = write(restaurants(1), "gzip");
+    JsonResponseCache uncompressed = new JsonResponseCache(mapper, tableVersionService, 100_000, false);
+    JsonResponseCache.Entry entry = uncompressed.get(Restaurant.class, restaurants(50));
+
+    assertNull(small.getHeader("Content-Encoding"));
+    assertNull(small.getHeader("Vary"));
+    assertNull(entry.gzip());
+  }
+
+  @Test
+  void acceptsGzip_reads_the_accept_encoding_header() {
+    assertTrue(JsonResponseCache.acceptsGzip("gzip"));
+    assertTrue(JsonResponseCache.acceptsGzip("br, GZIP"));
+    assertTrue(JsonResponseCache.acceptsGzip("gzip;q=0.5, br"));
+    assertFalse(JsonResponseCache.acceptsGzip(null));
+    assertFalse(JsonResponseCache.acceptsGzip("deflate, br"));
+    assertFalse(JsonResponseCache.acceptsGzip("br, gzip; q=0"));
+    assertFalse(JsonResponseCache.acceptsGzip("gzip;q=0.00"));
+  }
+
+  @Test
+  void entries_are_kept_per_table() throws Exception {
+    JsonResponseCache.Entry restaurantsEntry = cache.get(Restaurant.class, restaurants(1));
+    JsonResponseCache.Entry otherEntry = cache.get(String.class, () -> List.of("x"));
+
+    assertSame(restaurantsEntry, cache.get(Restaurant.class, restaurants(1)));
+    assertEquals("[\"x\"]", new String(otherEntry.json()));
+  }
+
+  @Test
+  void a_request_naming_the_current_etag_is_not_modified_and_reads_nothing() throws Exception {
+    // act
+    MockHttpServletResponse first = write(restaurants(2), null);
+    MockHttpServletResponse second = write(restaurants(2), null, first.getHeader("ETag"));
+
+    // assert
+    assertEquals(tableVersionService.etag(Restaurant.class), first.getHeader("ETag"));
+    assertEquals("private, no-cache", first.getHeader("Cache-Control"));
+    assertEquals(304, second.getStatus());
+    assertEquals(first.getHeader("ETag"), second.getHeader("ETag"));
+    assertEquals(0, second.getContentAsByteArray().length);
+    assertEquals(1, loads.get());
+
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    cache.bindTo(registry);
+    assertEquals(1.0, registry.get("cache.gets").tags("cache", "jsonResponses", "result", "notModified")
+        .functionCounter().count());
+  }
+
+  @Test
+  void an_old_etag_gets_the_new_rows() throws Exception {
+    String etag = write(restaurants(2), null).getHeader("ETag");
+    tableVersionService.changed(Restaurant.class);
+
+    MockHttpServletResponse response = write(restaurants(3), null, etag);
+
+    assertEquals(200, response.getStatus());
+    assertTrue(response.getContentAsString().contains("Restaurant 3"));
+    assertEquals(tableVersionService.etag(Restaurant.class), response.getHeader("ETag"));
+  }
+
+  @Test
+  void the_gzip_copy_has_its_own_etag() throws Exception {
+    MockHttpServletResponse compressed = write(restaurants(50), "gzip");
+    MockHttpServletResponse revalidated = write(restaurants(50), "gzip", compressed.getHeader("ETag"));
+
+    assertEquals(JsonResponseCache.gzipEtag(tableVersionService.etag(Restaurant.class)),
+        compressed.getHeader("ETag"));
+    assertEquals(304, revalidated.getStatus());
+    assertEquals(compressed.getHeader("ETag"), revalidated.getHeader("ETag"));
+    assertEquals("Accept-Encoding", revalidated.getHeader("Vary"));
+  }
+
+  @Test
+  void matchingEtag_reads_the_if_none_match_header() {
+    assertEquals("\"a-1\"", JsonResponseCache.matchingEtag("\"a-1\"", "\"a-1\"", "\"a-1-gzip\""));
+    assertEquals("\"a-1-gzip\"", JsonResponseCache.matchingEtag("\"x\", W/\"a-1-gzip\"", "\"a-1\"", "\"a-1-gzip\""));
+    assertEquals("\"a-1\"", JsonResponseCache.matchingEtag("*", "\"a-1\"", "\"a-1-gzip\""));
+    assertNull(JsonResponseCache.matchingEtag(null, "\"a-1\""));
+    assertNull(JsonResponseCache.matchingEtag("\"a-0\"", "\"a-1\""));
+  }
+}
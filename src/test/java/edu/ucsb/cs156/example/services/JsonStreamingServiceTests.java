@@ -0,0 +1,62 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.example.entities.Restaurant;
+import jakarta.persistence.EntityManager;
+
+@ExtendWith(SpringExtension.class)
+@Import({ JsonStreamingService.class, JacksonAutoConfiguration.class })
+class JsonStreamingServiceTests {
+
+  @Autowired
+  private JsonStreamingService jsonStreamingService;
+
+  @MockBean
+  private EntityManager entityManager;
+
+  @Test
+  void test_writeJsonArray_writes_an_empty_array_for_an_empty_stream() throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    jsonStreamingService.writeJsonArray(Stream::empty, response);
+
+    assertEquals("[]", response.getContentAsString());
+    assertEquals("application/json;charset=UTF-8", response.getContentType());
+    verify(entityManager, never()).detach(any());
+  }
+
+  @Test
+  void test_writeJsonArray_writes_each_row_detaches_it_and_closes_the_stream() throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    Restaurant r1 = Restaurant.builder().id(1L).name("Freebirds").description("Burritos").build();
+    Restaurant r2 = Restaurant.builder().id(2L).name("Woodstock's").description("Pizza").build();
+    AtomicBoolean closed = new AtomicBoolean(false);
+
+    jsonStreamingService.writeJsonArray(() -> Stream.of(r1, r2).onClose(() -> closed.set(true)), response);
+
+    assertEquals(
+        "[{\"id\":1,\"name\":\"Freebirds\",\"description\":\"Burritos\",\"version\":0},"
+            + "{\"id\":2,\"name\":\"Woodstock's\",\"description\":\"Pizza\",\"version\":0}]",
+        response.getContentAsString());
+    verify(entityManager).detach(r1);
+    verify(entityManager).detach(r2);
+    assertTrue(closed.get());
+  }
+}
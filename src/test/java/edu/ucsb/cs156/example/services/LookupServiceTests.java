@@ -0,0 +1,77 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.entities.UCSBOrganizations;
+import edu.ucsb.cs156.example.models.LookupResult;
+import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import edu.ucsb.cs156.example.repositories.UCSBOrganizationsRepository;
+
+class LookupServiceTests {
+
+  private final LookupService lookupService = new LookupService();
+
+  private static UCSBOrganizations org(String orgcode) {
+    return UCSBOrganizations.builder().orgcode(orgcode).orgTranslation(orgcode).build();
+  }
+
+  @Test
+  void rows_come_back_in_request_order_and_missing_ids_are_listed_separately() {
+    UCSBOrganizationsRepository repository = mock(UCSBOrganizationsRepository.class);
+    when(repository.findAllById(List.of("ZPR", "KRC", "OSLI", "SKY")))
+        .thenReturn(List.of(org("KRC"), org("SKY"), org("ZPR")));
+
+    LookupResult<UCSBOrganizations> result = lookupService.findAll(repository,
+        Arrays.asList("ZPR", "KRC", null, "OSLI", "ZPR", "SKY"), UCSBOrganizations::getOrgcode);
+
+    assertEquals(List.of(org("ZPR"), org("KRC"), org("SKY")), result.getFound());
+    assertEquals(List.of("OSLI"), result.getNotFound());
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void a_long_list_is_read_in_chunks() {
+    HelpRequestRepository repository = mock(HelpRequestRepository.class);
+    when(repository.findAllById(anyList())).thenAnswer(invocation -> ((List<Long>) invocation.getArgument(0))
+        .stream().filter(id -> id % 2 == 0).map(id -> HelpRequest.builder().id(id).build()).toList());
+    List<Long> ids = LongStream.rangeClosed(1, 2 * LookupService.CHUNK_SIZE + 1).boxed().toList();
+
+    LookupResult<HelpRequest> result = lookupService.findAll(repository, ids, HelpRequest::getId);
+
+    ArgumentCaptor<List<Long>> chunks = ArgumentCaptor.forClass(List.class);
+    verify(repository, times(3)).findAllById(chunks.capture());
+    assertEquals(List.of(LookupService.CHUNK_SIZE, LookupService.CHUNK_SIZE, 1),
+        chunks.getAllValues().stream().map(List::size).toList());
+    assertEquals(LookupService.CHUNK_SIZE, result.getFound().size());
+    assertEquals(LookupService.CHUNK_SIZE + 1, result.getNotFound().size());
+    assertEquals(2L, result.getFound().get(0).getId());
+    assertEquals(1L, result.getNotFound().get(0));
+  }
+
+  @Test
+  void an_empty_list_reads_nothing() {
+    HelpRequestRepository repository = mock(HelpRequestRepository.class);
+
+    LookupResult<HelpRequest> result = lookupService.findAll(repository, new ArrayList<>(), HelpRequest::getId);
+
+    assertEquals(List.of(), result.getFound());
+    assertEquals(List.of(), result.getNotFound());
+    verify(repository, never()).findAllById(any());
+  }
+}
@@ -0,0 +1,133 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import edu.ucsb.cs156.example.entities.UCSBOrganizations;
+import edu.ucsb.cs156.example.errors.InvalidPatchException;
+import edu.ucsb.cs156.example.errors.PreconditionFailedException;
+import edu.ucsb.cs156.example.repositories.UCSBOrganizationsRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+
+class PatchServiceTests {
+
+  private final UCSBOrganizationsRepository repository = mock(UCSBOrganizationsRepository.class);
+  private final PatchService patchService = new PatchService();
+
+  private final Query update = mock(Query.class);
+
+  PatchServiceTests() {
+    patchService.mapper = new ObjectMapper();
+    patchService.entityManager = mock(EntityManager.class);
+    when(patchService.entityManager.createQuery(anyString())).thenReturn(update);
+  }
+
+  private static UCSBOrganizations zpr() {
+    return UCSBOrganizations.builder().orgcode("ZPR").orgTranslationShort("ZETA PHI RHO")
+        .orgTranslation("ZETA PHI RHO").inactive(false).build();
+  }
+
+  private ObjectNode json(String json) throws Exception {
+    return (ObjectNode) patchService.mapper.readTree(json);
+  }
+
+  @Test
+  void a_patch_that_only_repeats_the_key_and_unchanged_fields_changes_nothing() throws Exception {
+    when(repository.findById("ZPR")).thenReturn(Optional.of(zpr()));
+
+    PatchService.Patched<UCSBOrganizations> patched = patchService
+        .patch(repository, "ZPR", json("{\"orgcode\": \"KRC\", \"version\": 9, \"inactive\": false}"), null).get();
+
+    assertFalse(patched.changed());
+    assertEquals(zpr(), patched.row());
+    verify(patchService.entityManager, never()).createQuery(anyString());
+  }
+
+  @Test
+  void a_patch_with_an_unknown_field_is_rejected() throws Exception {
+    when(repository.findById("ZPR")).thenReturn(Optional.of(zpr()));
+    ObjectNode patch = json("{\"orgcode\": \"KRC\", \"version\": 9, \"members\": 40, \"inactive\": true}");
+
+    InvalidPatchException e = assertThrows(InvalidPatchException.class,
+        () -> patchService.patch(repository, "ZPR", patch, null));
+    assertEquals("Invalid patch: no field named members", e.getMessage());
+    verify(patchService.entityManager, never()).createQuery(anyString());
+  }
+
+  @Test
+  void a_patch_updates_only_the_fields_it_changes() throws Exception {
+    when(repository.findById("ZPR")).thenReturn(Optional.of(zpr()));
+    when(update.executeUpdate()).thenReturn(1);
+
+    PatchService.Patched<UCSBOrganizations> patched = patchService
+        .patch(repository, "ZPR", json("{\"inactive\": true, \"orgTranslation\": \"ZETA PHI RHO\"}"), null).get();
+
+    UCSBOrganizations expected = zpr();
+    expected.setInactive(true);
+    expected.setVersion(1);
+    assertTrue(patched.changed());
+    assertEquals(expected, patched.row());
+    verify(patchService.entityManager).detach(patched.row());
+    verify(patchService.entityManager)
+        .createQuery("update ucsborganizations e set e.inactive = :inactive, e.version = e.version + 1 "
+            + "where e.orgcode = :id and e.version = :version");
+    verify(update).setParameter("inactive", true);
+    verify(update).setParameter("id", "ZPR");
+    verify(update).setParameter("version", 0L);
+    verify(update).executeUpdate();
+  }
+
+  @Test
+  void a_patch_with_a_value_of_the_wrong_type_is_rejected() throws Exception {
+    when(repository.findById("ZPR")).thenReturn(Optional.of(zpr()));
+    ObjectNode patch = json("{\"inactive\": \"sometimes\"}");
+
+    assertThrows(InvalidPatchException.class, () -> patchService.patch(repository, "ZPR", patch, null));
+    verify(update, never()).executeUpdate();
+  }
+
+  @Test
+  void a_patch_of_a_missing_row_returns_empty() throws Exception {
+    when(repository.findById("ZPR")).thenReturn(Optional.empty());
+
+    assertTrue(patchService.patch(repository, "ZPR", json("{\"inactive\": true}"), null).isEmpty());
+  }
+
+  @Test
+  void a_patch_of_a_row_not_at_the_expected_version_is_refused() throws Exception {
+    UCSBOrganizations zpr = zpr();
+    zpr.setVersion(3);
+    when(repository.findById("ZPR")).thenReturn(Optional.of(zpr));
+    ObjectNode patch = json("{\"inactive\": true}");
+
+    assertThrows(PreconditionFailedException.class, () -> patchService.patch(repository, "ZPR", patch, 2L));
+    verify(patchService.entityManager, never()).createQuery(anyString());
+  }
+
+  @Test
+  void a_patch_of_a_row_changed_after_it_was_read_is_refused() throws Exception {
+    UCSBOrganizations zpr = zpr();
+    zpr.setVersion(3);
+    when(repository.findById("ZPR")).thenReturn(Optional.of(zpr));
+    when(update.executeUpdate()).thenReturn(0);
+    ObjectNode patch = json("{\"inactive\": true}");
+
+    assertThrows(PreconditionFailedException.class, () -> patchService.patch(repository, "ZPR", patch, 3L));
+    verify(update).setParameter("version", 3L);
+  }
+}
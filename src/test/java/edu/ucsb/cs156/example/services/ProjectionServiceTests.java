@@ -0,0 +1,58 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.Articles;
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.errors.InvalidFieldsException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+
+class ProjectionServiceTests {
+
+  private final ProjectionService projectionService = new ProjectionService();
+
+  @Test
+  void the_id_and_version_are_always_selected_and_fields_keep_the_entity_order() {
+    assertEquals(List.of("id", "teamId", "solved", "version"),
+        projectionService.columns(HelpRequest.class, List.of("solved", "teamId", "solved")));
+    assertEquals(List.of("id", "version"), projectionService.columns(HelpRequest.class, List.of()));
+  }
+
+  @Test
+  void fields_the_entity_does_not_have_are_rejected() {
+    InvalidFieldsException e = assertThrows(InvalidFieldsException.class,
+        () -> projectionService.columns(Articles.class, List.of("title", "stars", "e.title")));
+    assertEquals("Articles has no field(s) stars, e.title", e.getMessage());
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void only_the_selected_columns_are_queried_and_returned() {
+    projectionService.entityManager = mock(EntityManager.class);
+    TypedQuery<Object[]> query = mock(TypedQuery.class);
+    when(projectionService.entityManager.createQuery(
+        "select e.id, e.title, e.version from articles e where e.id = :id", Object[].class)).thenReturn(query);
+    when(query.getResultList()).thenReturn(List.<Object[]>of(new Object[] { 7L, "Sparse fieldsets", 2L }));
+
+    Optional<Map<String, Object>> row = projectionService.findById(Articles.class, List.of("id", "title", "version"), 7L);
+
+    verify(query).setParameter("id", 7L);
+    Map<String, Object> expected = new LinkedHashMap<>();
+    expected.put("id", 7L);
+    expected.put("title", "Sparse fieldsets");
+    expected.put("version", 2L);
+    assertEquals(Optional.of(expected), row);
+  }
+}
@@ -0,0 +1,71 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+
+class TableVersionServiceTests {
+
+  private final TableVersionService tableVersionService = new TableVersionService();
+
+  @Test
+  void a_table_starts_at_version_zero() {
+    assertEquals(0L, tableVersionService.version(Restaurant.class));
+  }
+
+  @Test
+  void each_change_bumps_only_that_table() {
+    assertEquals(1L, tableVersionService.changed(Restaurant.class));
+    assertEquals(2L, tableVersionService.changed(Restaurant.class));
+
+    assertEquals(2L, tableVersionService.version(Restaurant.class));
+    assertEquals(0L, tableVersionService.version(UCSBDate.class));
+  }
+
+  @Test
+  void a_version_is_bumped_once_it_is_max_age_old() {
+    AtomicLong now = new AtomicLong();
+    TableVersionService expiring = new TableVersionService(Duration.ofNanos(100), now::get);
+
+    assertEquals(0L, expiring.version(Restaurant.class));
+    now.set(60);
+    assertEquals(1L, expiring.changed(Restaurant.class));
+    now.set(159);
+    assertEquals(1L, expiring.version(Restaurant.class));
+    now.set(160);
+    assertEquals(2L, expiring.version(Restaurant.class));
+    assertEquals(2L, expiring.version(Restaurant.class));
+    assertEquals(0L, expiring.version(UCSBDate.class));
+  }
+
+  @Test
+  void etags_change_with_the_version_and_the_epoch() {
+    String before = tableVersionService.etag(Restaurant.class);
+    tableVersionService.changed(Restaurant.class);
+    String after = tableVersionService.etag(Restaurant.class);
+
+    assertTrue(before.matches("\"[0-9a-z]+-restaurant-0\""));
+    assertTrue(after.endsWith("-1\""));
+    assertEquals(tableVersionService.etag(Restaurant.class, 1L), after);
+    assertNotEquals(new TableVersionService().etag(Restaurant.class, 1L), after);
+    assertNotEquals(tableVersionService.etag(UCSBDate.class, 1L), after);
+  }
+
+  @Test
+  void a_token_or_etag_reads_back_as_its_version_only_for_the_same_table_and_epoch() {
+    assertEquals(7L, tableVersionService.version(Restaurant.class, tableVersionService.token(Restaurant.class, 7L)));
+    assertEquals(7L, tableVersionService.version(Restaurant.class, tableVersionService.etag(Restaurant.class, 7L)));
+    assertEquals(-1L, tableVersionService.version(Restaurant.class, new TableVersionService().token(Restaurant.class, 7L)));
+    assertEquals(-1L, tableVersionService.version(Restaurant.class, tableVersionService.token(UCSBDate.class, 7L)));
+    assertEquals(-1L, tableVersionService.version(Restaurant.class, tableVersionService.token(Restaurant.class, 7L) + "x"));
+    assertEquals(-1L, tableVersionService.version(Restaurant.class, "7"));
+  }
+}
@@ -0,0 +1,52 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import edu.ucsb.cs156.example.entities.User;
+
+class UserCacheInvalidatorTests {
+
+  private final User cgaucho = User.builder().id(1L).email("cgaucho@ucsb.edu").build();
+
+  @AfterEach
+  void teardown() {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  @Test
+  void test_invalidates_immediately_outside_a_transaction() {
+    UserCacheInvalidator invalidator = new UserCacheInvalidator();
+    invalidator.currentUserCache = mock(CurrentUserCache.class);
+    invalidator.adminRoleResolver = mock(AdminRoleResolver.class);
+
+    invalidator.userChanged(cgaucho);
+
+    verify(invalidator.currentUserCache).invalidate("cgaucho@ucsb.edu");
+    verify(invalidator.adminRoleResolver).invalidate("cgaucho@ucsb.edu");
+  }
+
+  @Test
+  void test_invalidates_after_commit_inside_a_transaction() {
+    UserCacheInvalidator invalidator = new UserCacheInvalidator();
+    invalidator.currentUserCache = mock(CurrentUserCache.class);
+    invalidator.adminRoleResolver = mock(AdminRoleResolver.class);
+    TransactionSynchronizationManager.initSynchronization();
+
+    invalidator.userChanged(cgaucho);
+
+    verify(invalidator.currentUserCache, never()).invalidate("cgaucho@ucsb.edu");
+    verify(invalidator.adminRoleResolver, never()).invalidate("cgaucho@ucsb.edu");
+    TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+    verify(invalidator.currentUserCache).invalidate("cgaucho@ucsb.edu");
+    verify(invalidator.adminRoleResolver).invalidate("cgaucho@ucsb.edu");
+  }
+}
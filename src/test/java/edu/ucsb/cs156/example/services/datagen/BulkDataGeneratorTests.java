@@ -0,0 +1,132 @@
+package edu.ucsb.cs156.example.services.datagen;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import edu.ucsb.cs156.example.entities.MenuItemReviews;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.services.ChangeLogService;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import edu.ucsb.cs156.example.services.wiremock.WiremockService;
+
+@JdbcTest
+class BulkDataGeneratorTests {
+
+  @MockBean
+  WiremockService wiremockService;
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  TransactionTemplate transactionTemplate;
+
+  private final TableVersionService tableVersionService = new TableVersionService(Duration.ofMinutes(1));
+
+  private final ChangeLogService changeLogService = new ChangeLogService(tableVersionService, 100);
+
+  private BulkDataGenerator generator(double scale, MockEnvironment environment) {
+    return new BulkDataGenerator(jdbcTemplate, transactionTemplate, environment, changeLogService, scale, 64, 42);
+  }
+
+  private long count(String table) {
+    return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+  }
+
+  @Test
+  void generate_adds_rows_in_proportion_to_the_scale() {
+    // act
+    Map<String, Long> added = generator(0.001, new MockEnvironment()).generate();
+
+    // assert
+    Map<String, Long> expected = Map.of(
+        "ucsbdiningcommons", 0L,
+        "ucsbdiningcommonsmenuitem", 100L,
+        "menuitemreviews", 2000L,
+        "ucsbdates", 100L,
+        "ucsborganizations", 2L,
+        "restaurants", 20L,
+        "articles", 500L,
+        "helprequest", 1000L,
+        "recommendationrequests", 500L);
+    assertEquals(expected, added);
+    assertEquals(100L, count("ucsbdiningcommonsmenuitem"));
+    assertEquals(2000L, count("menuitemreviews"));
+    assertEquals(100L, count("ucsbdates"));
+    assertEquals(2L, count("ucsborganizations"));
+    assertEquals(20L, count("restaurants"));
+    assertEquals(500L, count("articles"));
+    assertEquals(1000L, count("helprequest"));
+    assertEquals(500L, count("recommendation_requests"));
+    // with no dining commons, menu items go to carrillo
+    assertEquals(100L, jdbcTemplate.queryForObject(
+        "SELECT COUNT(*) FROM ucsbdiningcommonsmenuitem WHERE dining_commons_code = 'carrillo'", Long.class));
+    // tables that were filled are marked as written, so clients read them again
+    assertEquals(1L, tableVersionService.version(MenuItemReviews.class));
+    assertEquals(0L, tableVersionService.version(UCSBDiningCommons.class));
+  }
+
+  @Test
+  void generated_values_are_skewed_like_real_ones() {
+    // act
+    generator(0.001, new MockEnvironment().withProperty("app.datagen.rows.ucsbdiningcommons", "5")).generate();
+
+    // assert
+    assertEquals(5L, count("ucsbdiningcommons"));
+    long goodReviews = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM menuitemreviews WHERE stars >= 4", Long.class);
+    assertTrue(goodReviews > 1200 && goodReviews < 1600, "4 and 5 star reviews: " + goodReviews);
+    long unsolved = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM helprequest WHERE NOT solved", Long.class);
+    assertTrue(unsolved > 20 && unsolved < 100, "unsolved help requests: " + unsolved);
+    Map<String, Object> itemIds = jdbcTemplate.queryForMap(
+        "SELECT MIN(id) AS lo, MAX(id) AS hi FROM ucsbdiningcommonsmenuitem");
+    long outside = jdbcTemplate.queryForObject(
+        "SELECT COUNT(*) FROM menuitemreviews WHERE item_id < ? OR item_id > ?", Long.class,
+        itemIds.get("lo"), itemIds.get("hi"));
+    assertEquals(0L, outside);
+    long reviewsOfMostPopular = jdbcTemplate.queryForObject(
+        "SELECT MAX(c) FROM (SELECT COUNT(*) AS c FROM menuitemreviews GROUP BY item_id) t", Long.class);
+    assertTrue(reviewsOfMostPopular > 2000 / 100 * 5, "reviews of the most popular item: " + reviewsOfMostPopular);
+    long commonsUsed = jdbcTemplate.queryForObject(
+        "SELECT COUNT(DISTINCT dining_commons_code) FROM ucsbdiningcommonsmenuitem WHERE dining_commons_code LIKE 'dc%'",
+        Long.class);
+    assertTrue(commonsUsed > 1, "dining commons used: " + commonsUsed);
+  }
+
+  @Test
+  void running_again_adds_more_rows_without_key_conflicts() {
+    // arrange
+    MockEnvironment environment = new MockEnvironment()
+        .withProperty("app.datagen.rows.ucsbdiningcommons", "3")
+        .withProperty("app.datagen.rows.ucsborganizations", "4");
+    BulkDataGenerator generator = generator(0, environment);
+
+    // act
+    generator.run(null);
+    generator.run(null);
+
+    // assert
+    assertEquals(6L, count("ucsbdiningcommons"));
+    assertEquals(8L, count("ucsborganizations"));
+    assertEquals(0L, count("menuitemreviews"));
+  }
+
+  @Test
+  void rows_uses_the_override_for_a_table_if_there_is_one() {
+    BulkDataGenerator generator = generator(2.5,
+        new MockEnvironment().withProperty("app.datagen.rows.restaurants", "7"));
+
+    assertEquals(7L, generator.rows("restaurants"));
+    assertEquals(250_000L, generator.rows("ucsbdates"));
+  }
+}
@@ -0,0 +1,79 @@
+package edu.ucsb.cs156.example.services.datagen;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class DistributionsTests {
+
+  private final Distributions random = new Distributions(1);
+
+  @Test
+  void skewed_favors_small_values() {
+    int[] counts = new int[101];
+    for (int i = 0; i < 100_000; i++) {
+      long value = random.skewed(100);
+      assertTrue(value >= 1 && value <= 100, "value " + value);
+      counts[(int) value]++;
+    }
+    assertTrue(counts[1] > counts[2] && counts[2] > counts[10] && counts[10] > counts[100]);
+  }
+
+  @Test
+  void weighted_follows_the_weights() {
+    int[] counts = new int[3];
+    for (int i = 0; i < 100_000; i++) {
+      counts[random.weighted(1, 0, 9)]++;
+    }
+    assertEquals(0, counts[1]);
+    assertTrue(counts[2] > 8 * counts[0] && counts[2] < 10 * counts[0]);
+  }
+
+  @Test
+  void email_is_different_for_each_member_of_the_population() {
+    Set<String> emails = new HashSet<>();
+    for (long k = 1; k <= 30_000; k++) {
+      emails.add(Distributions.email(k));
+    }
+    assertEquals(30_000, emails.size());
+    assertEquals("chris.gaucho@ucsb.edu", Distributions.email(1));
+    assertEquals("lauren.gaucho@ucsb.edu", Distributions.email(2));
+    assertEquals("chris.gaucho1@ucsb.edu", Distributions.email(1 + 20 * 18));
+  }
+
+  @Test
+  void timestamps_are_in_the_daytime_between_2021_and_2025() {
+    for (int i = 0; i < 10_000; i++) {
+      LocalDateTime when = random.timestamp().toLocalDateTime();
+      assertTrue(when.getYear() >= 2021 && when.getYear() <= 2025, "year of " + when);
+      assertTrue(when.getHour() >= 8 && when.getHour() < 22, "hour of " + when);
+    }
+  }
+
+  @Test
+  void days_after_is_later_but_not_too_much_later() {
+    Timestamp start = Timestamp.valueOf(LocalDateTime.of(2024, 1, 1, 12, 0));
+    for (int i = 0; i < 1000; i++) {
+      LocalDateTime later = random.daysAfter(start, 30).toLocalDateTime();
+      assertTrue(later.isAfter(start.toLocalDateTime()) && !later.isAfter(LocalDateTime.of(2024, 1, 31, 12, 0)));
+    }
+  }
+
+  @Test
+  void uniform_chance_and_pick_stay_in_range() {
+    for (int i = 0; i < 1000; i++) {
+      assertTrue(random.uniform(3) < 3);
+      double d = random.uniform(1.0, 2.0);
+      assertTrue(d >= 1.0 && d < 2.0);
+      assertTrue(Set.of("a", "b").contains(random.pick("a", "b")));
+    }
+    assertTrue(!random.chance(0.0));
+    assertTrue(random.chance(1.0));
+  }
+}
@@ -5,12 +5,28 @@ import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
 
 
+import edu.ucsb.cs156.example.services.AdminRoleResolver;
+import edu.ucsb.cs156.example.services.BulkWriteService;
+import edu.ucsb.cs156.example.services.ChangeFeedService;
+import edu.ucsb.cs156.example.services.ChangeLogService;
+import edu.ucsb.cs156.example.services.CurrentUserCache;
 import edu.ucsb.cs156.example.services.CurrentUserService;
+import edu.ucsb.cs156.example.services.FilterService;
 import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
+import edu.ucsb.cs156.example.services.JsonResponseCache;
+import edu.ucsb.cs156.example.services.JsonStreamingService;
+import edu.ucsb.cs156.example.services.LookupService;
+import edu.ucsb.cs156.example.services.PatchService;
+import edu.ucsb.cs156.example.services.ProjectionService;
+import edu.ucsb.cs156.example.services.TableVersionService;
 import org.springframework.context.annotation.Import;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 @TestConfiguration
-@Import(SecurityConfig.class)
+@Import({SecurityConfig.class, JsonStreamingService.class, CurrentUserCache.class, AdminRoleResolver.class,
+    TableVersionService.class, BulkWriteService.class, PatchService.class, LookupService.class,
+    ProjectionService.class, FilterService.class, ChangeLogService.class, ChangeFeedService.class})
 public class TestConfig {
 
     @Bean
@@ -23,4 +39,10 @@ public class TestConfig {
         return new GrantedAuthoritiesService();
     }
 
+    // keeps nothing (max-bytes is 0), so each test sees the rows its own mocks return
+    @Bean
+    public JsonResponseCache jsonResponseCache(ObjectMapper mapper, TableVersionService tableVersionService) {
+        return new JsonResponseCache(mapper, tableVersionService, 0, true);
+    }
+
 }